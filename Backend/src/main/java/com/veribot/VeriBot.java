@@ -1,19 +1,17 @@
 package com.veribot;
 
-import com.veribot.config.AzureOpenAIConfig;
-import com.veribot.config.SerpApiConfig;
+import com.veribot.llm.LlmException;
+import com.veribot.model.ConversationSession;
 import com.veribot.model.ConversationState;
 import com.veribot.model.NewsVerificationResult;
 import com.veribot.model.UserContext;
-import com.veribot.service.NewsSearchService;
 import com.veribot.service.NewsVerificationService;
+import com.veribot.service.VerificationListener;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.util.Scanner;
-
 /**
  * Main entry point for the VeriBot news verification and summarization agent.
  */
@@ -21,21 +19,48 @@ import java.util.Scanner;
 public class VeriBot {
     private static final Logger logger = LoggerFactory.getLogger(VeriBot.class);
 
+    private final NewsVerificationService verificationService;
+
+    /**
+     * Creates the agent on top of the verification service shared by every session.
+     *
+     * @param verificationService the service to use for verifying news
+     */
+    public VeriBot(NewsVerificationService verificationService) {
+        this.verificationService = verificationService;
+    }
+
     /**
      * Runs the interactive command-line interface for the VeriBot agent.
      *
      * @param verificationService the service to use for verifying news
      */
     public String run(String query, UserContext userContext) {
+        return run(query, userContext, VerificationListener.NONE);
+    }
+
+    /**
+     * Processes a query, reporting the progress of the verification to a listener.
+     *
+     * @param query the user's query
+     * @param userContext the context of the user's session
+     * @param listener receives the pipeline stages and the generated tokens
+     * @return the formatted answer
+     */
+    public String run(String query, UserContext userContext, VerificationListener listener) {
             try {
                 System.out.println("\nProcessing your query... Please wait."); 
                 
-                NewsVerificationResult result = userContext.getVerificationService().verifyNews(query);
-                if(userContext.getVerificationService().getConversationSession().getState()==ConversationState.LOOKING_FOR_NEW_EVENT) {
-                	userContext.getVerificationService().getConversationSession().updateWithNewsResult(result);
+                ConversationSession session = userContext.getSession();
+                NewsVerificationResult result = verificationService.verifyNews(query, session, listener);
+                if(session.getState()==ConversationState.LOOKING_FOR_NEW_EVENT) {
+                	session.updateWithNewsResult(result);
                 	return GetVerificationResult(result);
                 }else
                     return result.summary();
+            } catch (LlmException e) {
+                logger.error("Language model unavailable ({}): {}", e.getKind(), e.getMessage());
+                return "The verification service is temporarily unavailable, please try again in a few moments.";
             } catch (Exception e) {
                 logger.error("Error processing query: {}", e.getMessage(), e);
                 return("Error processing your query: " + e.getMessage());
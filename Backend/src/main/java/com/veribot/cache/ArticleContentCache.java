@@ -0,0 +1,113 @@
+package com.veribot.cache;
+
+import com.veribot.config.CacheConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Cache of the text extracted from news articles, keyed by canonical URL. Recently used
+ * articles are kept in memory and every article is also written to disk, so popular
+ * stories are not downloaded and parsed again after a restart.
+ */
+public class ArticleContentCache {
+    private static final Logger logger = LoggerFactory.getLogger(ArticleContentCache.class);
+
+    private final TieredCache tiers;
+
+    /**
+     * Creates a new ArticleContentCache with the provided configuration.
+     *
+     * @param config the cache configuration
+     */
+    public ArticleContentCache(CacheConfig config) {
+        this(config, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a new ArticleContentCache with the given clock.
+     *
+     * @param config the cache configuration
+     * @param clock the clock used to expire the entries of both tiers
+     */
+    public ArticleContentCache(CacheConfig config, Clock clock) {
+        String directory = config.getContentCacheDirectory();
+        this.tiers = new TieredCache("articles", config.getContentCacheMaxEntries(),
+                config.getContentCacheMaxMemoryBytes(), Duration.ofMinutes(config.getContentCacheTtlMinutes()),
+                directory, config.getContentCacheMaxDiskBytes(), clock);
+        
+        logger.info("ArticleContentCache initialized (disk tier: {})", tiers.hasDiskTier() ? directory : "disabled");
+    }
+
+
+    /**
+     * Looks up the text of an article, first in memory and then on disk.
+     *
+     * @param url the article URL
+     * @return the extracted text, or null on a miss
+     */
+    public String get(String url) {
+        return tiers.get(canonicalUrl(url));
+    }
+
+    /**
+     * Caches the text extracted from an article in both tiers.
+     *
+     * @param url the article URL
+     * @param text the extracted text
+     */
+    public void put(String url, String text) {
+        tiers.put(canonicalUrl(url), text);
+    }
+
+    /**
+     * Normalizes a URL so the same article gets the same key: lower-case scheme and
+     * host, no default port, fragment, trailing slash or tracking parameters, and the
+     * remaining query parameters sorted.
+     *
+     * @param url the URL
+     * @return the canonical URL, or the trimmed input if it can't be parsed
+     */
+    static String canonicalUrl(String url) {
+        try {
+            URI uri = new URI(url.trim());
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return url.trim();
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            String host = uri.getHost().toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            if ((scheme.equals("http") && port == 80) || (scheme.equals("https") && port == 443)) {
+                port = -1;
+            }
+            
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (path.length() > 1 && path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+            
+            String query = uri.getRawQuery() == null ? "" : Arrays.stream(uri.getRawQuery().split("&"))
+                    .filter(param -> !param.isEmpty() && !isTrackingParameter(param))
+                    .sorted()
+                    .collect(Collectors.joining("&"));
+            
+            return scheme + "://" + host + (port == -1 ? "" : ":" + port) + path + (query.isEmpty() ? "" : "?" + query);
+        } catch (URISyntaxException e) {
+            return url.trim();
+        }
+    }
+
+    private static boolean isTrackingParameter(String param) {
+        String name = param.split("=", 2)[0].toLowerCase(Locale.ROOT);
+        return name.startsWith("utm_") || name.equals("fbclid") || name.equals("gclid")
+                || name.equals("ocid") || name.equals("cmpid") || name.equals("ref");
+    }
+}
@@ -0,0 +1,246 @@
+package com.veribot.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * String cache stored as one file per entry in a directory, so it survives restarts.
+ * Entries expire at their own instant and the oldest files are deleted when the
+ * directory goes over its size budget.
+ */
+public class DiskCache {
+    private static final Logger logger = LoggerFactory.getLogger(DiskCache.class);
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".entry";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Clock clock;
+    
+    // File name -> size, in write order, so the eldest is evicted first
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>();
+    private long totalBytes;
+
+    /**
+     * An entry read from disk.
+     *
+     * @param value the value
+     * @param expiresAt when the entry stops being served, to keep when copying it elsewhere
+     */
+    public record Entry(String value, Instant expiresAt) {
+    }
+
+    /**
+     * Opens the cache in a directory, creating it if needed and indexing the files
+     * left by previous runs.
+     *
+     * @param directory the directory where the entries are stored
+     * @param maxBytes the size budget of the directory
+     */
+    public DiskCache(Path directory, long maxBytes) {
+        this(directory, maxBytes, Clock.systemUTC());
+    }
+
+    /**
+     * Opens the cache in a directory with the given clock.
+     *
+     * @param directory the directory where the entries are stored
+     * @param maxBytes the size budget of the directory
+     * @param clock the clock used to expire the entries
+     */
+    public DiskCache(Path directory, long maxBytes, Clock clock) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+        loadIndex();
+    }
+
+    /**
+     * Indexes the existing entries from the oldest to the newest.
+     */
+    private void loadIndex() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> existing;
+            try (Stream<Path> stream = Files.list(directory)) {
+                existing = stream
+                        .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                        .sorted(Comparator.comparingLong(this::lastModified))
+                        .toList();
+            }
+            for (Path path : existing) {
+                long size = Files.size(path);
+                files.put(path.getFileName().toString(), size);
+                totalBytes += size;
+            }
+            logger.info("Disk cache at {} holds {} entries ({} bytes)", directory, files.size(), totalBytes);
+            evictOverBudget();
+        } catch (IOException e) {
+            logger.error("Error indexing disk cache at {}: {}", directory, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @param key the key
+     * @return the value and its expiry, or null if absent, expired or unreadable
+     */
+    public Entry get(String key) {
+        String fileName = fileName(key);
+        Path path = directory.resolve(fileName);
+        try (InputStream in = Files.newInputStream(path);
+             DataInputStream data = new DataInputStream(in)) {
+            if (data.readInt() != FORMAT_VERSION) {
+                delete(fileName);
+                return null;
+            }
+            Instant expiresAt = Instant.ofEpochMilli(data.readLong());
+            String storedKey = data.readUTF();
+            if (!storedKey.equals(key)) {
+                return null;
+            }
+            if (!expiresAt.isAfter(clock.instant())) {
+                delete(fileName);
+                return null;
+            }
+            byte[] value = new byte[data.readInt()];
+            data.readFully(value);
+            return new Entry(new String(value, StandardCharsets.UTF_8), expiresAt);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Dropping unreadable disk cache entry {}: {}", path, e.getMessage());
+            delete(fileName);
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry, replacing the file atomically so readers never see half of it.
+     *
+     * @param key the key
+     * @param value the value
+     * @param expiresAt when the entry stops being served
+     */
+    public void put(String key, String value, Instant expiresAt) {
+        String fileName = fileName(key);
+        Path target = directory.resolve(fileName);
+        try {
+            Path temp = Files.createTempFile(directory, "put", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp);
+                 DataOutputStream data = new DataOutputStream(out)) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                data.writeInt(FORMAT_VERSION);
+                data.writeLong(expiresAt.toEpochMilli());
+                data.writeUTF(key);
+                data.writeInt(bytes.length);
+                data.write(bytes);
+            }
+            long size = Files.size(temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            
+            synchronized (this) {
+                Long previous = files.remove(fileName);
+                totalBytes += size - (previous != null ? previous : 0);
+                files.put(fileName, size);
+                evictOverBudget();
+            }
+        } catch (IOException e) {
+            logger.warn("Error writing disk cache entry {}: {}", target, e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the oldest entries while the directory is over its size budget.
+     */
+    private synchronized void evictOverBudget() {
+        Iterator<Map.Entry<String, Long>> eldest = files.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            totalBytes -= entry.getValue();
+            deleteFile(entry.getKey());
+        }
+    }
+
+    /**
+     * Removes an entry from the index and the directory.
+     *
+     * @param fileName the file of the entry
+     */
+    private synchronized void delete(String fileName) {
+        Long size = files.remove(fileName);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        deleteFile(fileName);
+    }
+
+    private void deleteFile(String fileName) {
+        try {
+            Files.deleteIfExists(directory.resolve(fileName));
+        } catch (IOException e) {
+            logger.warn("Error deleting disk cache entry {}: {}", fileName, e.getMessage());
+        }
+    }
+
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the number of entries on disk
+     */
+    public synchronized int size() {
+        return files.size();
+    }
+
+    /**
+     * @return the bytes used by the entries on disk
+     */
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Maps a key to a file name that is safe on every file system.
+     *
+     * @param key the key
+     * @return the SHA-256 of the key in hexadecimal, with the entry suffix
+     */
+    private static String fileName(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8))) + SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.veribot.cache;
+
+import com.veribot.config.CacheConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HexFormat;
+
+/**
+ * Cache of LLM completions for deterministic (temperature 0) prompts, keyed by a hash
+ * of the deployment and the prompt. Responses to prompts that embed the current date
+ * expire at midnight, when the same question would produce a different prompt.
+ */
+public class LlmResponseCache {
+    private static final Logger logger = LoggerFactory.getLogger(LlmResponseCache.class);
+
+    private final TieredCache tiers;
+    private final Duration ttl;
+    private final Clock clock;
+
+    /**
+     * Creates a new LlmResponseCache with the provided configuration.
+     *
+     * @param config the cache configuration
+     */
+    public LlmResponseCache(CacheConfig config) {
+        this(config, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates a new LlmResponseCache with the given clock.
+     *
+     * @param config the cache configuration
+     * @param clock the clock used to expire the entries, in the time zone of the dates in prompts
+     */
+    public LlmResponseCache(CacheConfig config, Clock clock) {
+        this.ttl = Duration.ofMinutes(config.getLlmCacheTtlMinutes());
+        this.clock = clock;
+        String directory = config.getLlmCacheDirectory();
+        this.tiers = new TieredCache("llm", config.getLlmCacheMaxEntries(), config.getLlmCacheMaxMemoryBytes(), ttl,
+                directory, config.getLlmCacheMaxDiskBytes(), clock);
+        
+        logger.info("LlmResponseCache initialized (disk tier: {})", tiers.hasDiskTier() ? directory : "disabled");
+    }
+
+
+    /**
+     * Looks up the response to a prompt.
+     *
+     * @param deployment the deployment that answers the prompt
+     * @param prompt the prompt
+     * @return the cached response, or null on a miss
+     */
+    public String get(String deployment, String prompt) {
+        return tiers.get(key(deployment, prompt));
+    }
+
+    /**
+     * Caches the response to a prompt.
+     *
+     * @param deployment the deployment that answered the prompt
+     * @param prompt the prompt
+     * @param response the response
+     * @param dateSensitive whether the prompt embeds the current date
+     */
+    public void put(String deployment, String prompt, String response, boolean dateSensitive) {
+        Instant expiresAt = clock.instant().plus(ttl);
+        if (dateSensitive) {
+            Instant midnight = LocalDate.now(clock).plusDays(1).atStartOfDay(clock.getZone()).toInstant();
+            if (midnight.isBefore(expiresAt)) {
+                expiresAt = midnight;
+            }
+        }
+        tiers.put(key(deployment, prompt), response, expiresAt);
+    }
+
+    /**
+     * Hashes the deployment and the prompt, so large prompts make small keys.
+     *
+     * @return the SHA-256 in hexadecimal
+     */
+    private static String key(String deployment, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(deployment.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
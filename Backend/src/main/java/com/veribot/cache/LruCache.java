@@ -0,0 +1,147 @@
+package com.veribot.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-memory least-recently-used cache bounded by entry count and total weight,
+ * where every entry expires after its own time to live.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LruCache<K, V> {
+    private final int maxEntries;
+    private final long maxWeight;
+    private final Duration defaultTtl;
+    private final ToLongFunction<V> weigher;
+    private final Clock clock;
+    
+    // Access order: the eldest entry is the least recently used one
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long evictions;
+
+    /**
+     * Creates a new LruCache.
+     *
+     * @param maxEntries the maximum number of entries
+     * @param maxWeight the maximum sum of the weights of the values
+     * @param defaultTtl the time to live of the entries put without one
+     * @param weigher computes the weight of a value, e.g. its size in bytes
+     */
+    public LruCache(int maxEntries, long maxWeight, Duration defaultTtl, ToLongFunction<V> weigher) {
+        this(maxEntries, maxWeight, defaultTtl, weigher, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a new LruCache with the given clock.
+     *
+     * @param maxEntries the maximum number of entries
+     * @param maxWeight the maximum sum of the weights of the values
+     * @param defaultTtl the time to live of the entries put without one
+     * @param weigher computes the weight of a value, e.g. its size in bytes
+     * @param clock the clock used to expire the entries
+     */
+    public LruCache(int maxEntries, long maxWeight, Duration defaultTtl, ToLongFunction<V> weigher, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.defaultTtl = defaultTtl;
+        this.weigher = weigher;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cached value and marks it as recently used.
+     *
+     * @param key the key
+     * @return the value, or null if absent or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.expiresAt().isAfter(clock.instant())) {
+            remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    /**
+     * Caches a value with the default time to live.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public void put(K key, V value) {
+        put(key, value, clock.instant().plus(defaultTtl));
+    }
+
+    /**
+     * Caches a value until the given instant, evicting the least recently used
+     * entries while the cache is over its bounds.
+     *
+     * @param key the key
+     * @param value the value
+     * @param expiresAt when the entry stops being served
+     */
+    public synchronized void put(K key, V value, Instant expiresAt) {
+        long valueWeight = weigher.applyAsLong(value);
+        if (valueWeight > maxWeight) {
+            return;
+        }
+        remove(key);
+        entries.put(key, new Entry<>(value, valueWeight, expiresAt));
+        weight += valueWeight;
+        
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+            weight -= eldest.next().getValue().weight();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param key the key
+     */
+    public synchronized void remove(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight();
+        }
+    }
+
+    /**
+     * @return the number of entries, including expired ones not yet removed
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the sum of the weights of the cached values
+     */
+    public synchronized long weight() {
+        return weight;
+    }
+
+    /**
+     * @return how many entries were evicted to stay within bounds
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    private record Entry<V>(V value, long weight, Instant expiresAt) {
+    }
+}
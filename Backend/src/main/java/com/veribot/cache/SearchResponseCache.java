@@ -0,0 +1,217 @@
+package com.veribot.cache;
+
+import com.veribot.config.CacheConfig;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of SerpApi response bodies keyed by the normalized search parameters. Identical
+ * searches running at the same time share one call, and the freshness of a response
+ * depends on how old the news it searched for is.
+ */
+public class SearchResponseCache {
+    private static final Logger logger = LoggerFactory.getLogger(SearchResponseCache.class);
+    private static final Pattern US_DATE = Pattern.compile("\\b(\\d{1,2})/(\\d{1,2})/(\\d{4})\\b");
+    private static final Pattern ISO_DATE = Pattern.compile("\\b\\d{4}-\\d{2}-\\d{2}\\b");
+
+    private final CacheConfig config;
+    private final LruCache<String, String> responses;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+
+    /**
+     * A call to SerpApi that may fail.
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+        /**
+         * @return the response body, or null if it must not be cached
+         */
+        String fetch() throws Exception;
+    }
+
+    /**
+     * Creates a new SearchResponseCache with the provided configuration.
+     *
+     * @param config the cache configuration
+     */
+    public SearchResponseCache(CacheConfig config) {
+        this.config = config;
+        this.responses = new LruCache<>(config.getSearchCacheMaxEntries(), Long.MAX_VALUE,
+                Duration.ofMinutes(config.getSearchCacheTtlMinutes()), body -> 2L * body.length());
+        this.hits = Metrics.counter("veribot.cache.requests", "cache", "search", "result", "hit", "tier", "memory");
+        this.misses = Metrics.counter("veribot.cache.requests", "cache", "search", "result", "miss", "tier", "none");
+        this.coalesced = Metrics.counter("veribot.cache.requests", "cache", "search", "result", "coalesced", "tier", "none");
+        Gauge.builder("veribot.cache.entries", responses, LruCache::size)
+                .tags("cache", "search", "tier", "memory").register(Metrics.globalRegistry);
+        Gauge.builder("veribot.cache.bytes", responses, LruCache::weight)
+                .tags("cache", "search", "tier", "memory").register(Metrics.globalRegistry);
+        
+        logger.info("SearchResponseCache initialized");
+    }
+
+
+    /**
+     * Returns the cached response for a search, or waits for the identical search
+     * already running, or else calls the fetcher and caches what it returns. If the
+     * running search failed or returned nothing to cache, one of the searches that
+     * waited for it takes its place and the others wait for that one. A search that
+     * waited longer than the maximum wait calls the fetcher itself, and caches the
+     * response too.
+     *
+     * @param query the search query
+     * @param country the country code (gl)
+     * @param language the language code (hl)
+     * @param fetcher the call to SerpApi
+     * @return the response body, or null if the search failed
+     * @throws Exception if the fetcher failed
+     */
+    public String getOrFetch(String query, String country, String language, Fetcher fetcher) throws Exception {
+        String key = key(query, country, language);
+        long waitDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getSearchCacheMaxWaitMillis());
+        while (true) {
+            String body = responses.get(key);
+            if (body != null) {
+                hits.increment();
+                return body;
+            }
+            
+            CompletableFuture<String> call = new CompletableFuture<>();
+            CompletableFuture<String> running = inFlight.putIfAbsent(key, call);
+            if (running == null) {
+                misses.increment();
+                return lead(key, query, call, fetcher);
+            }
+            
+            coalesced.increment();
+            try {
+                body = running.get(Math.max(0, waitDeadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (body != null) {
+                    return body;
+                }
+                logger.debug("Coalesced search returned nothing to cache, searching again");
+            } catch (ExecutionException e) {
+                // The leading call failed, possibly because its caller was cancelled
+                logger.debug("Coalesced search failed, searching again: {}", e.getCause().getMessage());
+            } catch (TimeoutException e) {
+                logger.debug("Coalesced search still running after {} ms, fetching again",
+                        config.getSearchCacheMaxWaitMillis());
+                return store(key, query, fetcher.fetch());
+            }
+        }
+    }
+
+    /**
+     * Calls the fetcher for the searches waiting on the call, and caches the response.
+     */
+    private String lead(String key, String query, CompletableFuture<String> call, Fetcher fetcher) throws Exception {
+        try {
+            String body = store(key, query, fetcher.fetch());
+            call.complete(body);
+            return body;
+        } catch (Exception e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private String store(String key, String query, String body) {
+        if (body != null) {
+            responses.put(key, body, Instant.now().plus(ttlFor(query, LocalDate.now())));
+        }
+        return body;
+    }
+
+    /**
+     * Normalizes the search parameters so equivalent searches share an entry.
+     *
+     * @return the cache key
+     */
+    static String key(String query, String country, String language) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT)
+                + "|" + country.trim().toLowerCase(Locale.ROOT)
+                + "|" + language.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Chooses how long a response stays fresh from the newest date mentioned in the
+     * query, as the generated queries carry the date of the news they look for.
+     *
+     * @param query the search query
+     * @param today the current date
+     * @return the time to live of the response
+     */
+    Duration ttlFor(String query, LocalDate today) {
+        LocalDate newest = newestDate(query);
+        if (newest == null) {
+            return Duration.ofMinutes(config.getSearchCacheTtlMinutes());
+        }
+        long age = ChronoUnit.DAYS.between(newest, today);
+        if (age <= config.getSearchCacheRecentDays()) {
+            return Duration.ofMinutes(config.getSearchCacheRecentTtlMinutes());
+        }
+        return Duration.ofMinutes(config.getSearchCacheArchiveTtlMinutes());
+    }
+
+    /**
+     * Finds the newest date written as mm/dd/yyyy or yyyy-mm-dd in a query.
+     *
+     * @param query the search query
+     * @return the newest date, or null if there is none
+     */
+    private static LocalDate newestDate(String query) {
+        LocalDate newest = null;
+        Matcher us = US_DATE.matcher(query);
+        while (us.find()) {
+            newest = newer(newest, parse(us.group(3) + "-" + pad(us.group(1)) + "-" + pad(us.group(2))));
+        }
+        Matcher iso = ISO_DATE.matcher(query);
+        while (iso.find()) {
+            newest = newer(newest, parse(iso.group()));
+        }
+        return newest;
+    }
+
+    private static LocalDate newer(LocalDate current, LocalDate candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || candidate.isAfter(current) ? candidate : current;
+    }
+
+    private static LocalDate parse(String isoDate) {
+        try {
+            return LocalDate.parse(isoDate, DateTimeFormatter.ISO_LOCAL_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String pad(String number) {
+        return number.length() == 1 ? "0" + number : number;
+    }
+}
@@ -0,0 +1,119 @@
+package com.veribot.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * String cache with a memory tier in front of an optional disk tier. Every value is
+ * written to both; a value found on disk only is copied to memory with the expiry it has
+ * on disk, so that it is never served longer than it was cached for.
+ */
+public class TieredCache {
+    private final LruCache<String, String> memory;
+    private final DiskCache disk;
+    private final Duration ttl;
+    private final Clock clock;
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    /**
+     * Creates a new TieredCache.
+     *
+     * @param name the name of the cache, as the "cache" tag of its metrics
+     * @param maxEntries the maximum number of entries in memory
+     * @param maxMemoryBytes the maximum size of the values in memory
+     * @param ttl the time to live of the values put without an expiry
+     * @param directory the directory of the disk tier, or null or blank for none
+     * @param maxDiskBytes the size budget of the disk tier, 0 for none
+     * @param clock the clock used to expire the entries of both tiers
+     */
+    public TieredCache(String name, int maxEntries, long maxMemoryBytes, Duration ttl, String directory,
+            long maxDiskBytes, Clock clock) {
+        this.ttl = ttl;
+        this.clock = clock;
+        // Strings are weighed as two bytes per char
+        this.memory = new LruCache<>(maxEntries, maxMemoryBytes, ttl, value -> 2L * value.length(), clock);
+        this.disk = directory == null || directory.isBlank() || maxDiskBytes == 0
+                ? null
+                : new DiskCache(Path.of(directory), maxDiskBytes, clock);
+
+        this.memoryHits = Metrics.counter("veribot.cache.requests", "cache", name, "result", "hit", "tier", "memory");
+        this.diskHits = Metrics.counter("veribot.cache.requests", "cache", name, "result", "hit", "tier", "disk");
+        this.misses = Metrics.counter("veribot.cache.requests", "cache", name, "result", "miss", "tier", "none");
+        Gauge.builder("veribot.cache.entries", memory, LruCache::size)
+                .tags("cache", name, "tier", "memory").register(Metrics.globalRegistry);
+        Gauge.builder("veribot.cache.bytes", memory, LruCache::weight)
+                .tags("cache", name, "tier", "memory").register(Metrics.globalRegistry);
+        FunctionCounter.builder("veribot.cache.evictions", memory, LruCache::evictions)
+                .tags("cache", name, "tier", "memory").register(Metrics.globalRegistry);
+        if (disk != null) {
+            Gauge.builder("veribot.cache.entries", disk, DiskCache::size)
+                    .tags("cache", name, "tier", "disk").register(Metrics.globalRegistry);
+            Gauge.builder("veribot.cache.bytes", disk, DiskCache::totalBytes)
+                    .tags("cache", name, "tier", "disk").register(Metrics.globalRegistry);
+        }
+    }
+
+    /**
+     * Looks up a value, first in memory and then on disk.
+     *
+     * @param key the key
+     * @return the value, or null on a miss
+     */
+    public String get(String key) {
+        String value = memory.get(key);
+        if (value != null) {
+            memoryHits.increment();
+            return value;
+        }
+        if (disk != null) {
+            DiskCache.Entry stored = disk.get(key);
+            if (stored != null) {
+                diskHits.increment();
+                memory.put(key, stored.value(), stored.expiresAt());
+                return stored.value();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches a value in both tiers for the time to live of the cache.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public void put(String key, String value) {
+        put(key, value, clock.instant().plus(ttl));
+    }
+
+    /**
+     * Caches a value in both tiers until the given instant.
+     *
+     * @param key the key
+     * @param value the value
+     * @param expiresAt when the entry stops being served
+     */
+    public void put(String key, String value, Instant expiresAt) {
+        memory.put(key, value, expiresAt);
+        if (disk != null) {
+            disk.put(key, value, expiresAt);
+        }
+    }
+
+    /**
+     * @return whether the values are also written to disk
+     */
+    public boolean hasDiskTier() {
+        return disk != null;
+    }
+}
@@ -0,0 +1,252 @@
+package com.veribot.classifier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.veribot.config.ClassificationBatchConfig;
+import com.veribot.llm.LlmPriority;
+import com.veribot.llm.LlmRouter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Sends the short classification prompts of concurrent sessions to the LLM together.
+ * The first classification waits a few milliseconds for others to join it; then all of
+ * them go in one prompt that states each task once and asks for a JSON object with the
+ * answer of every item, which is handed back to each waiting caller. A classification
+ * alone in its window is sent with its own prompt, and an item the batched answer left
+ * out or got wrong is retried alone. Either way the caller gets a label of its task.
+ * <p>
+ * A batch is sent at the highest priority of its items, so that a user waiting for a
+ * verification never waits behind the background classifications batched with theirs.
+ */
+public class ClassificationBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ClassificationBatcher.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final BiFunction<String, LlmPriority, CompletableFuture<LlmRouter.Completion>> completer;
+    private final long windowMillis;
+    private final int maxSize;
+    private final DistributionSummary batchSizes;
+
+    // The batch accepting classifications, null until the next one arrives
+    private List<Item> pending;
+
+    /**
+     * The answer to a classification.
+     *
+     * @param label one of the labels of the task, or null if the LLM's answer gave none
+     * @param response the LLM's answer to the item's own prompt, or null if the label
+     *        came from a batch; only such an answer may be cached under that prompt, as
+     *        a batched one also depends on the other items, written by other users
+     */
+    public record Answer(String label, LlmRouter.Completion response) {
+    }
+
+    /**
+     * A classification waiting for its answer.
+     *
+     * @param task the question
+     * @param query the user's query
+     * @param currentEvent the event being discussed, for the intent task
+     * @param prompt the prompt asking the question alone
+     * @param priority the priority of the caller's LLM calls
+     * @param answer completed with the LLM's answer
+     */
+    record Item(FastPathClassifier.Task task, String query, String currentEvent, String prompt,
+            LlmPriority priority, CompletableFuture<Answer> answer) {
+    }
+
+    /**
+     * Creates a new ClassificationBatcher.
+     *
+     * @param config the size and window of the batches
+     * @param completer sends a prompt to the LLM at temperature 0 with the given priority
+     *        and returns its answer and the deployment that gave it
+     */
+    public ClassificationBatcher(ClassificationBatchConfig config,
+            BiFunction<String, LlmPriority, CompletableFuture<LlmRouter.Completion>> completer) {
+        this.completer = completer;
+        this.windowMillis = config.getWindowMillis();
+        this.maxSize = config.getMaxSize();
+        this.batchSizes = DistributionSummary.builder("veribot.classification.batch.size")
+                .description("Classifications sent to the LLM in one prompt")
+                .register(Metrics.globalRegistry);
+
+        logger.info("ClassificationBatcher initialized: window={} ms, maxSize={}", windowMillis, maxSize);
+    }
+
+
+    /**
+     * Asks the LLM a classification question, together with the ones other sessions ask
+     * at about the same time.
+     *
+     * @param task the question
+     * @param query the user's query
+     * @param currentEvent the event being discussed, for the intent task
+     * @param prompt the prompt asking the question alone, used when it is not batched
+     * @param priority the priority of the caller's LLM calls
+     * @return the answer, whether batched or not
+     */
+    public CompletableFuture<Answer> classify(FastPathClassifier.Task task, String query, String currentEvent,
+            String prompt, LlmPriority priority) {
+        Item item = new Item(task, query, currentEvent, prompt, priority, new CompletableFuture<>());
+        List<Item> full = null;
+        synchronized (this) {
+            if (pending == null) {
+                List<Item> batch = new ArrayList<>();
+                pending = batch;
+                CompletableFuture.delayedExecutor(windowMillis, TimeUnit.MILLISECONDS).execute(() -> flush(batch));
+            }
+            pending.add(item);
+            if (pending.size() >= maxSize) {
+                full = pending;
+                pending = null;
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return item.answer();
+    }
+
+    /**
+     * Sends a batch when its window ends, unless it was already sent full.
+     */
+    private void flush(List<Item> batch) {
+        synchronized (this) {
+            if (pending != batch) {
+                return;
+            }
+            pending = null;
+        }
+        send(batch);
+    }
+
+    private void send(List<Item> batch) {
+        batchSizes.record(batch.size());
+        if (batch.size() == 1) {
+            sendAlone(batch.get(0), "alone");
+            return;
+        }
+
+        Metrics.counter("veribot.classification.items", "mode", "batched").increment(batch.size());
+        LlmPriority priority = batch.stream().map(Item::priority).min(Comparator.naturalOrder()).orElseThrow();
+        completer.apply(batchPrompt(batch), priority).whenComplete((response, failure) -> {
+            if (failure != null) {
+                batch.forEach(item -> item.answer().completeExceptionally(failure));
+                return;
+            }
+            Map<Integer, String> answers = parseAnswers(response.content());
+            for (int i = 0; i < batch.size(); i++) {
+                Item item = batch.get(i);
+                String label = answers.get(i + 1);
+                if (label != null && item.task().labels().contains(label)) {
+                    item.answer().complete(new Answer(label, null));
+                } else {
+                    logger.debug("Batched classification {} not answered ({}), retrying alone", i + 1, label);
+                    sendAlone(item, "fallback");
+                }
+            }
+        });
+    }
+
+    private void sendAlone(Item item, String mode) {
+        Metrics.counter("veribot.classification.items", "mode", mode).increment();
+        completer.apply(item.prompt(), item.priority()).whenComplete((response, failure) -> {
+            if (failure != null) {
+                item.answer().completeExceptionally(failure);
+            } else {
+                item.answer().complete(new Answer(item.task().labelOf(response.content()), response));
+            }
+        });
+    }
+
+    /**
+     * Builds the prompt of a batch: the instructions of each task present in it, then
+     * the numbered items.
+     */
+    static String batchPrompt(List<Item> batch) {
+        boolean relevance = batch.stream().anyMatch(item -> item.task() == FastPathClassifier.Task.RELEVANCE);
+        boolean intent = batch.stream().anyMatch(item -> item.task() == FastPathClassifier.Task.INTENT);
+
+        StringBuilder prompt = new StringBuilder("Classify each of the numbered items below.\n\n");
+        if (relevance) {
+            prompt.append("""
+                    Items marked RELEVANCE give a query. Classify it for its likelihood to be related to news content:
+                    - LIKELY: It can reasonably appear in news articles (even local news).
+                    - UNLIKELY: It is technical, informational, or clearly unrelated to news.
+
+                    """);
+        }
+        if (intent) {
+            prompt.append("""
+                    Items marked INTENT give the news topic a conversation is about and the question the user asked. Answer:
+                    - SAME_EVENT if the question is about the same topic
+                    - NEW_EVENT if it is about a different news topic
+                    - IRRELEVANT if it is not about news
+
+                    """);
+        }
+
+        prompt.append("Items:\n");
+        for (int i = 0; i < batch.size(); i++) {
+            Item item = batch.get(i);
+            prompt.append(i + 1).append(". ");
+            if (item.task() == FastPathClassifier.Task.RELEVANCE) {
+                prompt.append("RELEVANCE. Query: \"").append(oneLine(item.query())).append("\"\n");
+            } else {
+                prompt.append("INTENT. Topic: \"").append(oneLine(item.currentEvent()))
+                        .append("\" Question: \"").append(oneLine(item.query())).append("\"\n");
+            }
+        }
+
+        prompt.append("""
+
+                Respond ONLY with a JSON object mapping each item number to its answer, for example:
+                {"1": "LIKELY", "2": "NEW_EVENT"}
+                """);
+        return prompt.toString();
+    }
+
+    /**
+     * Reads the answers of a batch from the LLM's response.
+     *
+     * @return the upper-case answer of each item number found in the response
+     */
+    static Map<Integer, String> parseAnswers(String response) {
+        Map<Integer, String> answers = new HashMap<>();
+        int start = response.indexOf('{');
+        int end = response.lastIndexOf('}');
+        if (start < 0 || end <= start) {
+            return answers;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(response.substring(start, end + 1));
+            Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                answers.put(Integer.parseInt(field.getKey().trim()), field.getValue().asText().trim().toUpperCase());
+            }
+        } catch (Exception e) {
+            logger.warn("Could not parse batched classification response: {}", e.getMessage());
+        }
+        return answers;
+    }
+
+    private static String oneLine(String text) {
+        return text.replaceAll("\\s+", " ").replace("\"", "'").trim();
+    }
+}
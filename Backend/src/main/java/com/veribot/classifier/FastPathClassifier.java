@@ -0,0 +1,285 @@
+package com.veribot.classifier;
+
+import com.veribot.config.ClassifierConfig;
+import com.veribot.util.TextNormalizer;
+
+import io.micrometer.core.instrument.Metrics;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * In-process classifier that decides the obvious news-relevance and query-intent
+ * cases in microseconds, so only ambiguous queries need an LLM call. It learns from
+ * every decision the LLM makes. If a decision log is configured, those decisions are
+ * also appended to it, to retrain the classifier at startup; the log is rotated when it
+ * reaches its maximum size, keeping the previous one.
+ */
+public class FastPathClassifier {
+    private static final Logger logger = LoggerFactory.getLogger(FastPathClassifier.class);
+
+    private final ClassifierConfig config;
+    private final Map<Task, NaiveBayesClassifier> models = new EnumMap<>(Task.class);
+    private final Path decisionLog;
+    private final Path previousDecisionLog;
+    private BufferedWriter logWriter;
+    private long logBytes;
+
+    /**
+     * The questions the classifier can answer.
+     */
+    public enum Task {
+        /**
+         * Whether a query is related to news: "LIKELY" or "UNLIKELY".
+         */
+        RELEVANCE(List.of("LIKELY", "UNLIKELY")),
+
+        /**
+         * Whether a query is about the event being discussed: "SAME_EVENT", "NEW_EVENT" or "IRRELEVANT".
+         */
+        INTENT(List.of("SAME_EVENT", "NEW_EVENT", "IRRELEVANT"));
+
+        private final List<String> labels;
+        private final List<Pattern> labelPatterns;
+
+        Task(List<String> labels) {
+            this.labels = labels;
+            this.labelPatterns = labels.stream().map(label -> Pattern.compile("\\b" + label + "\\b")).toList();
+        }
+
+        public List<String> labels() {
+            return labels;
+        }
+
+        public String tag() {
+            return name().toLowerCase();
+        }
+
+        /**
+         * Reads the label an LLM response gives, as a whole word, so that "UNLIKELY" is
+         * not read as "LIKELY".
+         *
+         * @param response the LLM's answer to the question of the task
+         * @return the label, or null if the response gives none or several
+         */
+        public String labelOf(String response) {
+            String answer = response.toUpperCase();
+            String found = null;
+            for (int i = 0; i < labels.size(); i++) {
+                if (labelPatterns.get(i).matcher(answer).find()) {
+                    if (found != null) {
+                        return null;
+                    }
+                    found = labels.get(i);
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Creates a new FastPathClassifier and trains it with the logged decisions.
+     *
+     * @param config the classifier configuration
+     */
+    public FastPathClassifier(ClassifierConfig config) {
+        this.config = config;
+        for (Task task : Task.values()) {
+            models.put(task, new NaiveBayesClassifier(task.labels()));
+        }
+        String log = config.getDecisionLog();
+        this.decisionLog = log == null || log.isBlank() ? null : Path.of(log);
+        this.previousDecisionLog = decisionLog == null ? null
+                : decisionLog.resolveSibling(decisionLog.getFileName() + ".1");
+        loadDecisions();
+        
+        logger.info("FastPathClassifier initialized in {} mode with {} relevance and {} intent examples",
+                config.getMode(), models.get(Task.RELEVANCE).documents(), models.get(Task.INTENT).documents());
+    }
+
+
+    /**
+     * Predicts the answer to a question locally.
+     *
+     * @param task the question
+     * @param query the user's query
+     * @param currentEvent the event being discussed, for the intent task
+     * @return the prediction, or null if the model has learned nothing yet
+     */
+    public NaiveBayesClassifier.Prediction predict(Task task, String query, String currentEvent) {
+        return models.get(task).predict(features(task, query, currentEvent));
+    }
+
+    /**
+     * Checks if a local prediction can be used instead of asking the LLM, and counts
+     * the avoided call if so.
+     *
+     * @param task the question
+     * @param prediction the local prediction, may be null
+     * @return true in active mode when the model is trained enough and confident
+     */
+    public boolean decides(Task task, NaiveBayesClassifier.Prediction prediction) {
+        boolean decides = config.getMode() == ClassifierConfig.Mode.ACTIVE
+                && prediction != null
+                && prediction.probability() >= config.getConfidenceThreshold()
+                && models.get(task).documents() >= config.getMinExamples();
+        if (decides) {
+            Metrics.counter("veribot.classifier.decisions", "task", task.tag(), "source", "local").increment();
+        }
+        return decides;
+    }
+
+    /**
+     * Learns the answer the LLM gave, logs it for the next restart, and measures how
+     * the local prediction compares with it.
+     *
+     * @param task the question
+     * @param query the user's query
+     * @param currentEvent the event being discussed, for the intent task
+     * @param label the label the LLM answered
+     * @param prediction the local prediction made before asking the LLM, may be null
+     */
+    public void learn(Task task, String query, String currentEvent, String label, NaiveBayesClassifier.Prediction prediction) {
+        Metrics.counter("veribot.classifier.decisions", "task", task.tag(), "source", "llm").increment();
+        
+        String agreement;
+        if (prediction == null || prediction.probability() < config.getConfidenceThreshold()) {
+            agreement = "abstain";
+        } else {
+            agreement = prediction.label().equals(label) ? "agree" : "disagree";
+        }
+        Metrics.counter("veribot.classifier.shadow", "task", task.tag(), "agreement", agreement).increment();
+        if (agreement.equals("disagree")) {
+            logger.debug("Local {} classifier said {} ({}) but the LLM said {} for: {}",
+                    task.tag(), prediction.label(), prediction.probability(), label, query);
+        }
+        
+        models.get(task).train(features(task, query, currentEvent), label);
+        appendDecision(task, query, currentEvent, label);
+    }
+
+    /**
+     * Extracts the features of a query: its words and word pairs and, for the intent
+     * task, how much of the current event it mentions.
+     */
+    static Set<String> features(Task task, String query, String currentEvent) {
+        List<String> tokens = TextNormalizer.tokens(query);
+        Set<String> features = new HashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            features.add("w:" + tokens.get(i));
+            if (i > 0) {
+                features.add("b:" + tokens.get(i - 1) + "_" + tokens.get(i));
+            }
+        }
+        features.add("len:" + Math.min(tokens.size() / 4, 5));
+        
+        if (task == Task.INTENT && currentEvent != null) {
+            Set<String> eventTokens = new HashSet<>(TextNormalizer.tokens(currentEvent));
+            long shared = tokens.stream().filter(token -> token.length() > 3 && eventTokens.contains(token)).count();
+            long words = Math.max(1, tokens.stream().filter(token -> token.length() > 3).count());
+            features.add("overlap:" + Math.round(4.0 * shared / words));
+        }
+        return features;
+    }
+
+    /**
+     * Trains the models with the decisions logged by previous runs, the rotated log first.
+     */
+    private void loadDecisions() {
+        if (decisionLog == null) {
+            return;
+        }
+        for (Path log : List.of(previousDecisionLog, decisionLog)) {
+            if (Files.exists(log)) {
+                loadDecisions(log);
+            }
+        }
+    }
+
+    private void loadDecisions(Path log) {
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    JSONObject decision = new JSONObject(line);
+                    Task task = Task.valueOf(decision.getString("task"));
+                    String event = decision.optString("event", null);
+                    models.get(task).train(features(task, decision.getString("query"), event), decision.getString("label"));
+                } catch (RuntimeException e) {
+                    skipped++;
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error reading classifier decisions from {}: {}", log, e.getMessage(), e);
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped {} unreadable lines of {}", skipped, log);
+        }
+    }
+
+    /**
+     * Appends an LLM decision to the log, kept open between decisions, and rotates it
+     * once it has reached its maximum size.
+     */
+    private synchronized void appendDecision(Task task, String query, String currentEvent, String label) {
+        if (decisionLog == null) {
+            return;
+        }
+        JSONObject decision = new JSONObject();
+        decision.put("task", task.name());
+        decision.put("query", query);
+        if (currentEvent != null) {
+            decision.put("event", currentEvent);
+        }
+        decision.put("label", label);
+        String line = decision.toString() + "\n";
+        try {
+            if (logWriter != null && logBytes >= config.getDecisionLogMaxBytes()) {
+                logWriter.close();
+                logWriter = null;
+                Files.move(decisionLog, previousDecisionLog, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (logWriter == null) {
+                if (decisionLog.getParent() != null) {
+                    Files.createDirectories(decisionLog.getParent());
+                }
+                logWriter = Files.newBufferedWriter(decisionLog, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                logBytes = Files.size(decisionLog);
+            }
+            logWriter.write(line);
+            logWriter.flush();
+            logBytes += line.getBytes(StandardCharsets.UTF_8).length;
+        } catch (IOException e) {
+            logger.warn("Error logging classifier decision: {}", e.getMessage());
+            closeLog();
+        }
+    }
+
+    private void closeLog() {
+        if (logWriter != null) {
+            try {
+                logWriter.close();
+            } catch (IOException e) {
+                logger.debug("Error closing the classifier decision log: {}", e.getMessage());
+            }
+            logWriter = null;
+        }
+    }
+}
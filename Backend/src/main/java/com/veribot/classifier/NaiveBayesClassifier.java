@@ -0,0 +1,103 @@
+package com.veribot.classifier;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binarized naive Bayes classifier over sets of string features, with Laplace
+ * smoothing: the multinomial model, with each feature counted at most once per example
+ * rather than by its frequency, which suits short queries better. It is trained
+ * incrementally and is safe to use from several threads.
+ */
+public class NaiveBayesClassifier {
+    private final List<String> labels;
+    private final Map<String, long[]> featureCounts = new HashMap<>();
+    private final long[] documentCounts;
+    private final long[] featureTotals;
+    private long documents;
+
+    /**
+     * A predicted label with its posterior probability.
+     */
+    public record Prediction(String label, double probability) {
+    }
+
+    /**
+     * Creates an untrained classifier.
+     *
+     * @param labels the labels it can predict
+     */
+    public NaiveBayesClassifier(List<String> labels) {
+        this.labels = List.copyOf(labels);
+        this.documentCounts = new long[labels.size()];
+        this.featureTotals = new long[labels.size()];
+    }
+
+    /**
+     * Learns one labelled example. Repeated features count once.
+     *
+     * @param features the features of the example
+     * @param label the correct label
+     */
+    public synchronized void train(Collection<String> features, String label) {
+        int index = labels.indexOf(label);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown label: " + label);
+        }
+        for (String feature : new HashSet<>(features)) {
+            featureCounts.computeIfAbsent(feature, f -> new long[labels.size()])[index]++;
+            featureTotals[index]++;
+        }
+        documentCounts[index]++;
+        documents++;
+    }
+
+    /**
+     * Predicts the most probable label. Features never seen in training are ignored.
+     *
+     * @param features the features of the example
+     * @return the best label and its probability, or null if nothing was learned yet
+     */
+    public synchronized Prediction predict(Collection<String> features) {
+        if (documents == 0) {
+            return null;
+        }
+        int vocabulary = featureCounts.size();
+        double[] scores = new double[labels.size()];
+        for (int i = 0; i < labels.size(); i++) {
+            scores[i] = Math.log((documentCounts[i] + 1.0) / (documents + labels.size()));
+        }
+        for (String feature : new HashSet<>(features)) {
+            long[] counts = featureCounts.get(feature);
+            if (counts == null) {
+                continue;
+            }
+            for (int i = 0; i < labels.size(); i++) {
+                scores[i] += Math.log((counts[i] + 1.0) / (featureTotals[i] + vocabulary));
+            }
+        }
+        
+        // Softmax of the log scores, shifted by the maximum to avoid underflow
+        int best = 0;
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        double sum = 0;
+        for (double score : scores) {
+            sum += Math.exp(score - scores[best]);
+        }
+        return new Prediction(labels.get(best), 1.0 / sum);
+    }
+
+    /**
+     * @return how many examples were learned
+     */
+    public synchronized long documents() {
+        return documents;
+    }
+}
@@ -0,0 +1,106 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for the admission control in front of the interactive queries.
+ */
+public class AdmissionConfig {
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueSize;
+    private final long maxQueueMillis;
+    private final long latencyTargetMillis;
+    private final double backoffRatio;
+
+    /**
+     * Creates a new AdmissionConfig from environment variables, falling back to defaults.
+     */
+    public AdmissionConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.enabled = Boolean.parseBoolean(dotenv.get("ADMISSION_ENABLED", "true"));
+        this.initialLimit = Integer.parseInt(dotenv.get("ADMISSION_INITIAL_LIMIT", "100"));
+        this.minLimit = Integer.parseInt(dotenv.get("ADMISSION_MIN_LIMIT", "10"));
+        this.maxLimit = Integer.parseInt(dotenv.get("ADMISSION_MAX_LIMIT", "2000"));
+        this.queueSize = Integer.parseInt(dotenv.get("ADMISSION_QUEUE_SIZE", "200"));
+        this.maxQueueMillis = Long.parseLong(dotenv.get("ADMISSION_MAX_QUEUE_MS", "5000"));
+        this.latencyTargetMillis = Long.parseLong(dotenv.get("ADMISSION_LATENCY_TARGET_MS", "20000"));
+        this.backoffRatio = Double.parseDouble(dotenv.get("ADMISSION_BACKOFF_RATIO", "0.9"));
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalStateException(
+                    "ADMISSION_MIN_LIMIT, ADMISSION_INITIAL_LIMIT and ADMISSION_MAX_LIMIT must be positive and in that order");
+        }
+        if (queueSize < 0 || maxQueueMillis < 0) {
+            throw new IllegalStateException("ADMISSION_QUEUE_SIZE and ADMISSION_MAX_QUEUE_MS must not be negative");
+        }
+        if (latencyTargetMillis <= 0) {
+            throw new IllegalStateException("ADMISSION_LATENCY_TARGET_MS must be positive");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalStateException("ADMISSION_BACKOFF_RATIO must be between 0 and 1, exclusive");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return how many queries may run at once before the limit has adapted
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * @return the lowest the limit goes when queries are slow
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * @return the highest the limit goes when queries are fast
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * @return how many queries may wait for a slot; more are rejected at once
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @return how long a query may wait for a slot before it is rejected
+     */
+    public long getMaxQueueMillis() {
+        return maxQueueMillis;
+    }
+
+    /**
+     * @return the latency above which the limit is decreased
+     */
+    public long getLatencyTargetMillis() {
+        return latencyTargetMillis;
+    }
+
+    /**
+     * @return the factor applied to the limit when a query is slower than the target
+     */
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+}
@@ -24,6 +24,52 @@ public class AzureOpenAIConfig {
         validateConfig();
     }
 
+    /**
+     * Creates a new AzureOpenAIConfig for an additional deployment from environment
+     * variables named AZURE_OPENAI_&lt;ROUTE&gt;_*. The endpoint, key and API version
+     * default to those of the main deployment.
+     *
+     * @param route the name of the route the deployment serves, e.g. "FAST"
+     */
+    public AzureOpenAIConfig(String route) {
+        Dotenv dotenv = Dotenv.load();
+        String prefix = "AZURE_OPENAI_" + route + "_";
+        this.endpoint = dotenv.get(prefix + "ENDPOINT", dotenv.get("AZURE_OPENAI_ENDPOINT"));
+        this.apiKey = dotenv.get(prefix + "API_KEY", dotenv.get("AZURE_OPENAI_API_KEY"));
+        this.deploymentName = dotenv.get(prefix + "DEPLOYMENT_NAME");
+        this.apiVersion = dotenv.get(prefix + "API_VERSION", dotenv.get("AZURE_OPENAI_API_VERSION"));
+        
+        validateConfig();
+    }
+
+    /**
+     * Creates a new AzureOpenAIConfig with the given values.
+     *
+     * @param endpoint the endpoint of the Azure OpenAI resource
+     * @param apiKey the key of the resource
+     * @param deploymentName the name of the deployment
+     * @param apiVersion the version of the API
+     */
+    public AzureOpenAIConfig(String endpoint, String apiKey, String deploymentName, String apiVersion) {
+        this.endpoint = endpoint;
+        this.apiKey = apiKey;
+        this.deploymentName = deploymentName;
+        this.apiVersion = apiVersion;
+
+        validateConfig();
+    }
+
+    /**
+     * Checks if an additional deployment is configured for a route.
+     *
+     * @param route the name of the route, e.g. "FAST"
+     * @return true if AZURE_OPENAI_&lt;ROUTE&gt;_DEPLOYMENT_NAME is set
+     */
+    public static boolean isConfigured(String route) {
+        String name = Dotenv.configure().ignoreIfMissing().load().get("AZURE_OPENAI_" + route + "_DEPLOYMENT_NAME");
+        return name != null && !name.isBlank();
+    }
+
     /**
      * Validates that all required configuration is present.
      */
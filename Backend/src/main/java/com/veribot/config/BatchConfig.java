@@ -0,0 +1,75 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for verifying batches of claims.
+ */
+public class BatchConfig {
+    private final int maxClaims;
+    private final int understandingConcurrency;
+    private final int searchConcurrency;
+    private final int scrapeConcurrency;
+    private final int analysisConcurrency;
+
+    /**
+     * Creates a new BatchConfig from environment variables, falling back to defaults.
+     */
+    public BatchConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.maxClaims = Integer.parseInt(dotenv.get("BATCH_MAX_CLAIMS", "500"));
+        this.understandingConcurrency = Integer.parseInt(dotenv.get("BATCH_UNDERSTANDING_CONCURRENCY", "8"));
+        this.searchConcurrency = Integer.parseInt(dotenv.get("BATCH_SEARCH_CONCURRENCY", "8"));
+        this.scrapeConcurrency = Integer.parseInt(dotenv.get("BATCH_SCRAPE_CONCURRENCY", "16"));
+        this.analysisConcurrency = Integer.parseInt(dotenv.get("BATCH_ANALYSIS_CONCURRENCY", "4"));
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (maxClaims <= 0) {
+            throw new IllegalStateException("BATCH_MAX_CLAIMS must be positive");
+        }
+        if (understandingConcurrency <= 0 || searchConcurrency <= 0 || scrapeConcurrency <= 0 || analysisConcurrency <= 0) {
+            throw new IllegalStateException("BATCH_*_CONCURRENCY values must be positive");
+        }
+    }
+
+    /**
+     * @return the largest number of claims accepted in one batch
+     */
+    public int getMaxClaims() {
+        return maxClaims;
+    }
+
+    /**
+     * @return how many claims are understood by the LLM at once
+     */
+    public int getUnderstandingConcurrency() {
+        return understandingConcurrency;
+    }
+
+    /**
+     * @return how many SerpApi searches run at once
+     */
+    public int getSearchConcurrency() {
+        return searchConcurrency;
+    }
+
+    /**
+     * @return how many claims have their articles scraped at once
+     */
+    public int getScrapeConcurrency() {
+        return scrapeConcurrency;
+    }
+
+    /**
+     * @return how many claims are analyzed by the LLM at once
+     */
+    public int getAnalysisConcurrency() {
+        return analysisConcurrency;
+    }
+}
@@ -0,0 +1,196 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for the caches in front of external services.
+ */
+public class CacheConfig {
+    private final boolean contentCacheEnabled;
+    private final int contentCacheMaxEntries;
+    private final long contentCacheMaxMemoryBytes;
+    private final String contentCacheDirectory;
+    private final long contentCacheMaxDiskBytes;
+    private final long contentCacheTtlMinutes;
+    private final boolean searchCacheEnabled;
+    private final int searchCacheMaxEntries;
+    private final long searchCacheTtlMinutes;
+    private final long searchCacheRecentTtlMinutes;
+    private final long searchCacheArchiveTtlMinutes;
+    private final int searchCacheRecentDays;
+    private final long searchCacheMaxWaitMillis;
+    private final boolean llmCacheEnabled;
+    private final int llmCacheMaxEntries;
+    private final long llmCacheMaxMemoryBytes;
+    private final long llmCacheTtlMinutes;
+    private final String llmCacheDirectory;
+    private final long llmCacheMaxDiskBytes;
+
+    /**
+     * Creates a new CacheConfig from environment variables, falling back to defaults.
+     */
+    public CacheConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.contentCacheEnabled = Boolean.parseBoolean(dotenv.get("CONTENT_CACHE_ENABLED", "true"));
+        this.contentCacheMaxEntries = Integer.parseInt(dotenv.get("CONTENT_CACHE_MAX_ENTRIES", "2000"));
+        this.contentCacheMaxMemoryBytes = Long.parseLong(dotenv.get("CONTENT_CACHE_MAX_MEMORY_MB", "64")) * 1024 * 1024;
+        this.contentCacheDirectory = dotenv.get("CONTENT_CACHE_DIR", "cache/articles");
+        this.contentCacheMaxDiskBytes = Long.parseLong(dotenv.get("CONTENT_CACHE_MAX_DISK_MB", "512")) * 1024 * 1024;
+        this.contentCacheTtlMinutes = Long.parseLong(dotenv.get("CONTENT_CACHE_TTL_MINUTES", "1440"));
+        this.searchCacheEnabled = Boolean.parseBoolean(dotenv.get("SEARCH_CACHE_ENABLED", "true"));
+        this.searchCacheMaxEntries = Integer.parseInt(dotenv.get("SEARCH_CACHE_MAX_ENTRIES", "1000"));
+        this.searchCacheTtlMinutes = Long.parseLong(dotenv.get("SEARCH_CACHE_TTL_MINUTES", "30"));
+        this.searchCacheRecentTtlMinutes = Long.parseLong(dotenv.get("SEARCH_CACHE_RECENT_TTL_MINUTES", "10"));
+        this.searchCacheArchiveTtlMinutes = Long.parseLong(dotenv.get("SEARCH_CACHE_ARCHIVE_TTL_MINUTES", "720"));
+        this.searchCacheRecentDays = Integer.parseInt(dotenv.get("SEARCH_CACHE_RECENT_DAYS", "2"));
+        this.searchCacheMaxWaitMillis = Long.parseLong(dotenv.get("SEARCH_CACHE_MAX_WAIT_MS", "15000"));
+        this.llmCacheEnabled = Boolean.parseBoolean(dotenv.get("LLM_CACHE_ENABLED", "true"));
+        this.llmCacheMaxEntries = Integer.parseInt(dotenv.get("LLM_CACHE_MAX_ENTRIES", "5000"));
+        this.llmCacheMaxMemoryBytes = Long.parseLong(dotenv.get("LLM_CACHE_MAX_MEMORY_MB", "32")) * 1024 * 1024;
+        this.llmCacheTtlMinutes = Long.parseLong(dotenv.get("LLM_CACHE_TTL_MINUTES", "360"));
+        this.llmCacheDirectory = dotenv.get("LLM_CACHE_DIR", "cache/llm");
+        this.llmCacheMaxDiskBytes = Long.parseLong(dotenv.get("LLM_CACHE_MAX_DISK_MB", "128")) * 1024 * 1024;
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (contentCacheMaxEntries <= 0 || contentCacheMaxMemoryBytes <= 0) {
+            throw new IllegalStateException("CONTENT_CACHE_MAX_ENTRIES and CONTENT_CACHE_MAX_MEMORY_MB must be positive");
+        }
+        if (contentCacheMaxDiskBytes < 0) {
+            throw new IllegalStateException("CONTENT_CACHE_MAX_DISK_MB must not be negative");
+        }
+        if (contentCacheTtlMinutes <= 0) {
+            throw new IllegalStateException("CONTENT_CACHE_TTL_MINUTES must be positive");
+        }
+        if (searchCacheMaxEntries <= 0) {
+            throw new IllegalStateException("SEARCH_CACHE_MAX_ENTRIES must be positive");
+        }
+        if (searchCacheTtlMinutes <= 0 || searchCacheRecentTtlMinutes <= 0 || searchCacheArchiveTtlMinutes <= 0) {
+            throw new IllegalStateException("SEARCH_CACHE_*_TTL_MINUTES must be positive");
+        }
+        if (searchCacheRecentDays < 0) {
+            throw new IllegalStateException("SEARCH_CACHE_RECENT_DAYS must not be negative");
+        }
+        if (searchCacheMaxWaitMillis <= 0) {
+            throw new IllegalStateException("SEARCH_CACHE_MAX_WAIT_MS must be positive");
+        }
+        if (llmCacheMaxEntries <= 0 || llmCacheMaxMemoryBytes <= 0) {
+            throw new IllegalStateException("LLM_CACHE_MAX_ENTRIES and LLM_CACHE_MAX_MEMORY_MB must be positive");
+        }
+        if (llmCacheTtlMinutes <= 0) {
+            throw new IllegalStateException("LLM_CACHE_TTL_MINUTES must be positive");
+        }
+        if (llmCacheMaxDiskBytes < 0) {
+            throw new IllegalStateException("LLM_CACHE_MAX_DISK_MB must not be negative");
+        }
+    }
+
+    public boolean isContentCacheEnabled() {
+        return contentCacheEnabled;
+    }
+
+    public int getContentCacheMaxEntries() {
+        return contentCacheMaxEntries;
+    }
+
+    public long getContentCacheMaxMemoryBytes() {
+        return contentCacheMaxMemoryBytes;
+    }
+
+    /**
+     * @return the directory of the disk tier, empty to keep the cache in memory only
+     */
+    public String getContentCacheDirectory() {
+        return contentCacheDirectory;
+    }
+
+    /**
+     * @return the size budget of the disk tier, 0 to keep the cache in memory only
+     */
+    public long getContentCacheMaxDiskBytes() {
+        return contentCacheMaxDiskBytes;
+    }
+
+    public long getContentCacheTtlMinutes() {
+        return contentCacheTtlMinutes;
+    }
+
+    public boolean isSearchCacheEnabled() {
+        return searchCacheEnabled;
+    }
+
+    public int getSearchCacheMaxEntries() {
+        return searchCacheMaxEntries;
+    }
+
+    /**
+     * @return the freshness of searches that don't mention a date
+     */
+    public long getSearchCacheTtlMinutes() {
+        return searchCacheTtlMinutes;
+    }
+
+    /**
+     * @return the freshness of searches about the last {@link #getSearchCacheRecentDays()} days
+     */
+    public long getSearchCacheRecentTtlMinutes() {
+        return searchCacheRecentTtlMinutes;
+    }
+
+    /**
+     * @return the freshness of searches about older dates, whose results rarely change
+     */
+    public long getSearchCacheArchiveTtlMinutes() {
+        return searchCacheArchiveTtlMinutes;
+    }
+
+    /**
+     * @return how many days back a searched date is still considered recent news
+     */
+    public int getSearchCacheRecentDays() {
+        return searchCacheRecentDays;
+    }
+
+    /**
+     * @return how long a search waits for the identical one already running before
+     *         calling SerpApi itself
+     */
+    public long getSearchCacheMaxWaitMillis() {
+        return searchCacheMaxWaitMillis;
+    }
+
+    public boolean isLlmCacheEnabled() {
+        return llmCacheEnabled;
+    }
+
+    public int getLlmCacheMaxEntries() {
+        return llmCacheMaxEntries;
+    }
+
+    public long getLlmCacheMaxMemoryBytes() {
+        return llmCacheMaxMemoryBytes;
+    }
+
+    public long getLlmCacheTtlMinutes() {
+        return llmCacheTtlMinutes;
+    }
+
+    /**
+     * @return the directory where responses are persisted, empty to keep them in memory only
+     */
+    public String getLlmCacheDirectory() {
+        return llmCacheDirectory;
+    }
+
+    /**
+     * @return the size budget of the persisted responses, 0 to keep them in memory only
+     */
+    public long getLlmCacheMaxDiskBytes() {
+        return llmCacheMaxDiskBytes;
+    }
+}
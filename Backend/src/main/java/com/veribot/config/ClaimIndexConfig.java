@@ -0,0 +1,100 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for answering queries from the verdicts of similar past claims.
+ */
+public class ClaimIndexConfig {
+    private final boolean enabled;
+    private final double minScore;
+    private final long maxAgeMinutes;
+    private final double k1;
+    private final double b;
+
+    /**
+     * Creates a new ClaimIndexConfig from environment variables, falling back to defaults.
+     */
+    public ClaimIndexConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.enabled = Boolean.parseBoolean(dotenv.get("CLAIM_INDEX_ENABLED", "true"));
+        this.minScore = Double.parseDouble(dotenv.get("CLAIM_INDEX_MIN_SCORE", "0.7"));
+        this.maxAgeMinutes = Long.parseLong(dotenv.get("CLAIM_INDEX_MAX_AGE_MINUTES", "360"));
+        this.k1 = Double.parseDouble(dotenv.get("CLAIM_INDEX_BM25_K1", "1.2"));
+        this.b = Double.parseDouble(dotenv.get("CLAIM_INDEX_BM25_B", "0.75"));
+
+        validateConfig();
+    }
+
+    /**
+     * Creates a new ClaimIndexConfig with the given values, without reading the environment.
+     *
+     * @param enabled whether similar-claim lookup is enabled
+     * @param minScore the normalized score from which a past verdict answers a query
+     * @param maxAgeMinutes how old a verdict may be to answer a query
+     * @param k1 the BM25 term frequency saturation
+     * @param b the BM25 document length normalization
+     */
+    public ClaimIndexConfig(boolean enabled, double minScore, long maxAgeMinutes, double k1, double b) {
+        this.enabled = enabled;
+        this.minScore = minScore;
+        this.maxAgeMinutes = maxAgeMinutes;
+        this.k1 = k1;
+        this.b = b;
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (minScore <= 0) {
+            throw new IllegalStateException("CLAIM_INDEX_MIN_SCORE must be positive");
+        }
+        if (maxAgeMinutes <= 0) {
+            throw new IllegalStateException("CLAIM_INDEX_MAX_AGE_MINUTES must be positive");
+        }
+        if (k1 < 0) {
+            throw new IllegalStateException("CLAIM_INDEX_BM25_K1 must not be negative");
+        }
+        if (b < 0 || b > 1) {
+            throw new IllegalStateException("CLAIM_INDEX_BM25_B must be between 0 and 1");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The normalized score is the BM25 score divided by the score of a document of average
+     * length containing each query word once, so a close rephrasing scores around 1.
+     *
+     * @return the normalized score from which a past verdict answers a query
+     */
+    public double getMinScore() {
+        return minScore;
+    }
+
+    /**
+     * @return how old a verdict may be to answer a query
+     */
+    public long getMaxAgeMinutes() {
+        return maxAgeMinutes;
+    }
+
+    /**
+     * @return the BM25 term frequency saturation
+     */
+    public double getK1() {
+        return k1;
+    }
+
+    /**
+     * @return the BM25 document length normalization
+     */
+    public double getB() {
+        return b;
+    }
+}
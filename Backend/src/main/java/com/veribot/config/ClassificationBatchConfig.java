@@ -0,0 +1,55 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for sending the classification prompts of concurrent sessions
+ * to the LLM together.
+ */
+public class ClassificationBatchConfig {
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxSize;
+
+    /**
+     * Creates a new ClassificationBatchConfig from environment variables, falling back to defaults.
+     */
+    public ClassificationBatchConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.enabled = Boolean.parseBoolean(dotenv.get("CLASSIFICATION_BATCH_ENABLED", "true"));
+        this.windowMillis = Long.parseLong(dotenv.get("CLASSIFICATION_BATCH_WINDOW_MS", "5"));
+        this.maxSize = Integer.parseInt(dotenv.get("CLASSIFICATION_BATCH_MAX_SIZE", "16"));
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (windowMillis < 0) {
+            throw new IllegalStateException("CLASSIFICATION_BATCH_WINDOW_MS must not be negative");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalStateException("CLASSIFICATION_BATCH_MAX_SIZE must be positive");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return how long the first classification of a batch waits for others to join it
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * @return how many classifications are sent in one prompt at most
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
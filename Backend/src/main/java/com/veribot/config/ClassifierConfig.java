@@ -0,0 +1,120 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for the local classifier that answers obvious relevance
+ * and intent questions without calling the LLM.
+ */
+public class ClassifierConfig {
+    private final Mode mode;
+    private final double confidenceThreshold;
+    private final int minExamples;
+    private final String decisionLog;
+    private final long decisionLogMaxBytes;
+
+    /**
+     * How the local classifier is used.
+     */
+    public enum Mode {
+        /**
+         * The local classifier is not used.
+         */
+        OFF,
+
+        /**
+         * The LLM decides everything; the local classifier learns from it, in memory and
+         * from the decision log if one is configured, and its agreement is measured.
+         */
+        SHADOW,
+
+        /**
+         * High-confidence decisions are made locally; ambiguous ones go to the LLM.
+         */
+        ACTIVE
+    }
+
+    /**
+     * Creates a new ClassifierConfig from environment variables, falling back to defaults.
+     */
+    public ClassifierConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.mode = Mode.valueOf(dotenv.get("CLASSIFIER_MODE", "shadow").trim().toUpperCase());
+        this.confidenceThreshold = Double.parseDouble(dotenv.get("CLASSIFIER_CONFIDENCE", "0.99"));
+        this.minExamples = Integer.parseInt(dotenv.get("CLASSIFIER_MIN_EXAMPLES", "500"));
+        // Off by default: the log keeps the raw queries of the users
+        this.decisionLog = dotenv.get("CLASSIFIER_DECISION_LOG", "");
+        this.decisionLogMaxBytes = Long.parseLong(dotenv.get("CLASSIFIER_DECISION_LOG_MAX_BYTES", "10485760"));
+
+        validateConfig();
+    }
+
+    /**
+     * Creates a new ClassifierConfig with the given values, without reading the environment.
+     *
+     * @param mode how the local classifier is used
+     * @param confidenceThreshold the probability a local prediction needs to be used
+     * @param minExamples how many LLM decisions a model must learn before deciding locally
+     * @param decisionLog the file where LLM decisions are logged, empty to disable
+     * @param decisionLogMaxBytes the size from which the decision log is rotated
+     */
+    public ClassifierConfig(Mode mode, double confidenceThreshold, int minExamples, String decisionLog,
+            long decisionLogMaxBytes) {
+        this.mode = mode;
+        this.confidenceThreshold = confidenceThreshold;
+        this.minExamples = minExamples;
+        this.decisionLog = decisionLog;
+        this.decisionLogMaxBytes = decisionLogMaxBytes;
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (confidenceThreshold <= 0.5 || confidenceThreshold > 1.0) {
+            throw new IllegalStateException("CLASSIFIER_CONFIDENCE must be between 0.5 and 1");
+        }
+        if (minExamples < 0) {
+            throw new IllegalStateException("CLASSIFIER_MIN_EXAMPLES must not be negative");
+        }
+        if (decisionLogMaxBytes <= 0) {
+            throw new IllegalStateException("CLASSIFIER_DECISION_LOG_MAX_BYTES must be positive");
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the probability a local prediction needs to be used instead of the LLM
+     */
+    public double getConfidenceThreshold() {
+        return confidenceThreshold;
+    }
+
+    /**
+     * @return how many LLM decisions a model must learn before deciding locally
+     */
+    public int getMinExamples() {
+        return minExamples;
+    }
+
+    /**
+     * @return the file where LLM decisions are logged to retrain at startup, empty (the
+     *         default) to disable it, as it keeps the users' queries
+     */
+    public String getDecisionLog() {
+        return decisionLog;
+    }
+
+    /**
+     * @return the size from which the decision log is rotated; the previous log is kept,
+     *         so at most twice this size is on disk and read at startup
+     */
+    public long getDecisionLogMaxBytes() {
+        return decisionLogMaxBytes;
+    }
+}
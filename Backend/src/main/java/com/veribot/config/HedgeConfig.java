@@ -0,0 +1,91 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for hedging the LLM calls of the main deployment with a
+ * redundant deployment, e.g. the same model in another region.
+ */
+public class HedgeConfig {
+    private final boolean enabled;
+    private final double percentile;
+    private final long initialDelayMillis;
+    private final long minDelayMillis;
+    private final int minSamples;
+    private final double maxRate;
+
+    /**
+     * Creates a new HedgeConfig from environment variables, falling back to defaults.
+     */
+    public HedgeConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.enabled = Boolean.parseBoolean(dotenv.get("LLM_HEDGE_ENABLED", "false"));
+        this.percentile = Double.parseDouble(dotenv.get("LLM_HEDGE_PERCENTILE", "0.95"));
+        this.initialDelayMillis = Long.parseLong(dotenv.get("LLM_HEDGE_INITIAL_DELAY_MS", "5000"));
+        this.minDelayMillis = Long.parseLong(dotenv.get("LLM_HEDGE_MIN_DELAY_MS", "200"));
+        this.minSamples = Integer.parseInt(dotenv.get("LLM_HEDGE_MIN_SAMPLES", "50"));
+        this.maxRate = Double.parseDouble(dotenv.get("LLM_HEDGE_MAX_RATE", "0.05"));
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalStateException("LLM_HEDGE_PERCENTILE must be between 0 and 1");
+        }
+        if (initialDelayMillis < 0 || minDelayMillis < 0) {
+            throw new IllegalStateException("LLM_HEDGE_INITIAL_DELAY_MS and LLM_HEDGE_MIN_DELAY_MS must not be negative");
+        }
+        if (minSamples < 1) {
+            throw new IllegalStateException("LLM_HEDGE_MIN_SAMPLES must be at least 1");
+        }
+        if (maxRate < 0 || maxRate > 1) {
+            throw new IllegalStateException("LLM_HEDGE_MAX_RATE must be between 0 and 1");
+        }
+    }
+
+    /**
+     * @return whether calls are hedged, which also needs the AZURE_OPENAI_HEDGE_* deployment
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the percentile of the main deployment's latency after which a call is hedged
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * @return the hedging delay until enough latencies are known to compute the percentile
+     */
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    /**
+     * @return the shortest hedging delay, however fast the main deployment is
+     */
+    public long getMinDelayMillis() {
+        return minDelayMillis;
+    }
+
+    /**
+     * @return how many latencies must be known before the percentile is used
+     */
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    /**
+     * @return the largest share of calls that may be hedged
+     */
+    public double getMaxRate() {
+        return maxRate;
+    }
+}
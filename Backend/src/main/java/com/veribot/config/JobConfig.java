@@ -0,0 +1,61 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for the verifications submitted as jobs and polled for.
+ */
+public class JobConfig {
+    private final int maxEntries;
+    private final long ttlMinutes;
+    private final long maxWaitSeconds;
+
+    /**
+     * Creates a new JobConfig from environment variables, falling back to defaults.
+     */
+    public JobConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.maxEntries = Integer.parseInt(dotenv.get("JOB_MAX_ENTRIES", "10000"));
+        this.ttlMinutes = Long.parseLong(dotenv.get("JOB_TTL_MINUTES", "30"));
+        this.maxWaitSeconds = Long.parseLong(dotenv.get("JOB_MAX_WAIT_SECONDS", "25"));
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (maxEntries <= 0) {
+            throw new IllegalStateException("JOB_MAX_ENTRIES must be positive");
+        }
+        if (ttlMinutes <= 0) {
+            throw new IllegalStateException("JOB_TTL_MINUTES must be positive");
+        }
+        if (maxWaitSeconds < 0) {
+            throw new IllegalStateException("JOB_MAX_WAIT_SECONDS must not be negative");
+        }
+    }
+
+    /**
+     * @return how many jobs are kept at most, running or finished
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return how long the result of a finished job is kept
+     */
+    public long getTtlMinutes() {
+        return ttlMinutes;
+    }
+
+    /**
+     * @return how long a long-poll waits at most for a job to finish, below the idle
+     *         timeout of the proxies in front of the clients
+     */
+    public long getMaxWaitSeconds() {
+        return maxWaitSeconds;
+    }
+}
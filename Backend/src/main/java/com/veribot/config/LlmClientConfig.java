@@ -0,0 +1,108 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for the timeouts, retries and circuit breaker of the LLM client.
+ */
+public class LlmClientConfig {
+    private final long requestTimeoutMillis;
+    private final int maxAttempts;
+    private final long retryBaseMillis;
+    private final long retryMaxMillis;
+    private final int breakerFailureThreshold;
+    private final long breakerOpenMillis;
+
+    /**
+     * Creates a new LlmClientConfig from environment variables, falling back to defaults.
+     */
+    public LlmClientConfig() {
+        this(null);
+    }
+
+    /**
+     * Creates a new LlmClientConfig for the deployment of a route. Each value is read
+     * from LLM_&lt;ROUTE&gt;_&lt;NAME&gt;, then from LLM_&lt;NAME&gt;, falling back to defaults.
+     *
+     * @param route the name of the route, e.g. "FAST", or null for the main deployment
+     */
+    public LlmClientConfig(String route) {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.requestTimeoutMillis = Long.parseLong(get(dotenv, route, "REQUEST_TIMEOUT_MS", "30000"));
+        this.maxAttempts = Integer.parseInt(get(dotenv, route, "MAX_ATTEMPTS", "3"));
+        this.retryBaseMillis = Long.parseLong(get(dotenv, route, "RETRY_BASE_MS", "500"));
+        this.retryMaxMillis = Long.parseLong(get(dotenv, route, "RETRY_MAX_MS", "8000"));
+        this.breakerFailureThreshold = Integer.parseInt(get(dotenv, route, "BREAKER_FAILURES", "5"));
+        this.breakerOpenMillis = Long.parseLong(get(dotenv, route, "BREAKER_OPEN_MS", "30000"));
+
+        validateConfig();
+    }
+
+    private static String get(Dotenv dotenv, String route, String name, String defaultValue) {
+        String general = dotenv.get("LLM_" + name, defaultValue);
+        return route == null ? general : dotenv.get("LLM_" + route + "_" + name, general);
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (requestTimeoutMillis <= 0) {
+            throw new IllegalStateException("LLM_REQUEST_TIMEOUT_MS must be positive");
+        }
+        if (maxAttempts < 1) {
+            throw new IllegalStateException("LLM_MAX_ATTEMPTS must be at least 1");
+        }
+        if (retryBaseMillis < 0 || retryMaxMillis < retryBaseMillis) {
+            throw new IllegalStateException("LLM_RETRY_BASE_MS must not be negative nor above LLM_RETRY_MAX_MS");
+        }
+        if (breakerFailureThreshold < 1) {
+            throw new IllegalStateException("LLM_BREAKER_FAILURES must be at least 1");
+        }
+        if (breakerOpenMillis <= 0) {
+            throw new IllegalStateException("LLM_BREAKER_OPEN_MS must be positive");
+        }
+    }
+
+    /**
+     * @return how long to wait for the response headers of one attempt
+     */
+    public long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    /**
+     * @return how many times a call is attempted, including the first one
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return the backoff before the first retry, doubled for each further retry
+     */
+    public long getRetryBaseMillis() {
+        return retryBaseMillis;
+    }
+
+    /**
+     * @return the longest backoff between two attempts, unless the server asks for more
+     */
+    public long getRetryMaxMillis() {
+        return retryMaxMillis;
+    }
+
+    /**
+     * @return how many failures in a row open the circuit breaker
+     */
+    public int getBreakerFailureThreshold() {
+        return breakerFailureThreshold;
+    }
+
+    /**
+     * @return how long the circuit breaker fails fast before letting a trial call through
+     */
+    public long getBreakerOpenMillis() {
+        return breakerOpenMillis;
+    }
+}
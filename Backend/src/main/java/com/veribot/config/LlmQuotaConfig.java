@@ -0,0 +1,87 @@
+package com.veribot.config;
+
+import com.veribot.llm.LlmPriority;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Provides configuration for scheduling the LLM calls of every session within the
+ * quota of the Azure OpenAI deployment.
+ */
+public class LlmQuotaConfig {
+    private final long tokensPerMinute;
+    private final long requestsPerMinute;
+    private final Map<LlmPriority, Long> deadlineMillis = new EnumMap<>(LlmPriority.class);
+
+    /**
+     * Creates a new LlmQuotaConfig from environment variables, falling back to defaults.
+     */
+    public LlmQuotaConfig() {
+        this(null);
+    }
+
+    /**
+     * Creates a new LlmQuotaConfig for the deployment of a route, whose quota is read
+     * from LLM_&lt;ROUTE&gt;_QUOTA_TPM and LLM_&lt;ROUTE&gt;_QUOTA_RPM.
+     *
+     * @param route the name of the route, e.g. "FAST", or null for the main deployment
+     */
+    public LlmQuotaConfig(String route) {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        String prefix = route == null ? "LLM_" : "LLM_" + route + "_";
+        this.tokensPerMinute = Long.parseLong(dotenv.get(prefix + "QUOTA_TPM", "0"));
+        this.requestsPerMinute = Long.parseLong(dotenv.get(prefix + "QUOTA_RPM", "0"));
+        deadlineMillis.put(LlmPriority.INTERACTIVE_FOLLOW_UP,
+                Long.parseLong(dotenv.get("LLM_DEADLINE_FOLLOW_UP_MS", "10000")));
+        deadlineMillis.put(LlmPriority.NEW_VERIFICATION,
+                Long.parseLong(dotenv.get("LLM_DEADLINE_VERIFICATION_MS", "30000")));
+        deadlineMillis.put(LlmPriority.BACKGROUND,
+                Long.parseLong(dotenv.get("LLM_DEADLINE_BACKGROUND_MS", "300000")));
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (tokensPerMinute < 0 || requestsPerMinute < 0) {
+            throw new IllegalStateException("LLM_QUOTA_TPM and LLM_QUOTA_RPM must not be negative");
+        }
+        if (deadlineMillis.values().stream().anyMatch(deadline -> deadline <= 0)) {
+            throw new IllegalStateException("LLM_DEADLINE_*_MS values must be positive");
+        }
+    }
+
+    /**
+     * @return whether any quota is configured, so that calls need to be scheduled
+     */
+    public boolean isEnabled() {
+        return tokensPerMinute > 0 || requestsPerMinute > 0;
+    }
+
+    /**
+     * @return the tokens per minute of the deployment, 0 if not limited
+     */
+    public long getTokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    /**
+     * @return the requests per minute of the deployment, 0 if not limited
+     */
+    public long getRequestsPerMinute() {
+        return requestsPerMinute;
+    }
+
+    /**
+     * @param priority the priority of a call
+     * @return how long a call of that priority may wait for quota before it is dropped
+     */
+    public long getDeadlineMillis(LlmPriority priority) {
+        return deadlineMillis.get(priority);
+    }
+}
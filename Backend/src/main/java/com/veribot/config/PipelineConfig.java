@@ -0,0 +1,75 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for the stages of the verification pipeline.
+ */
+public class PipelineConfig {
+    private final UnderstandingMode understandingMode;
+    private final boolean claimCoalescingEnabled;
+    private final long verificationDeadlineMillis;
+
+    /**
+     * How the query is understood before searching.
+     */
+    public enum UnderstandingMode {
+        /**
+         * Relevance, intent, search query, country and language come from a single LLM call.
+         */
+        FUSED,
+
+        /**
+         * Relevance, intent and the search query are each asked in their own LLM call.
+         */
+        STEPWISE,
+
+        /**
+         * Like stepwise, but the search query generation, the search and the scraping
+         * start at the same time as the classification, and are cancelled if the
+         * query turns out not to need a search.
+         */
+        SPECULATIVE
+    }
+
+    /**
+     * Creates a new PipelineConfig from environment variables, falling back to defaults.
+     */
+    public PipelineConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.understandingMode = UnderstandingMode.valueOf(
+                dotenv.get("QUERY_UNDERSTANDING_MODE", "fused").trim().toUpperCase());
+        this.claimCoalescingEnabled = Boolean.parseBoolean(dotenv.get("CLAIM_COALESCING_ENABLED", "true"));
+        this.verificationDeadlineMillis = Long.parseLong(dotenv.get("VERIFICATION_DEADLINE_MS", "60000"));
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (verificationDeadlineMillis <= 0) {
+            throw new IllegalStateException("VERIFICATION_DEADLINE_MS must be positive");
+        }
+    }
+
+    public UnderstandingMode getUnderstandingMode() {
+        return understandingMode;
+    }
+
+    /**
+     * @return whether identical claims verified at the same time by different sessions
+     *         share one run of the pipeline
+     */
+    public boolean isClaimCoalescingEnabled() {
+        return claimCoalescingEnabled;
+    }
+
+    /**
+     * @return how long a verification may run before its remaining work is cancelled
+     */
+    public long getVerificationDeadlineMillis() {
+        return verificationDeadlineMillis;
+    }
+}
@@ -0,0 +1,100 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for scraping the news articles returned by the search.
+ */
+public class ScrapingConfig {
+    private final int pageTimeoutMillis;
+    private final long deadlineMillis;
+    private final Mode mode;
+    private final int raceExtraLinks;
+    private final long rankPatienceMillis;
+
+    /**
+     * How the candidate links of a search are scraped.
+     */
+    public enum Mode {
+        /**
+         * Every candidate link is fetched at once and the best ranked ones are kept.
+         */
+        PARALLEL,
+
+        /**
+         * Only N+k links are fetched at once and the first good extractions win.
+         */
+        RACE
+    }
+
+    /**
+     * Creates a new ScrapingConfig from environment variables, falling back to defaults.
+     */
+    public ScrapingConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.pageTimeoutMillis = Integer.parseInt(dotenv.get("SCRAPE_PAGE_TIMEOUT_MS", "10000"));
+        this.deadlineMillis = Long.parseLong(dotenv.get("SCRAPE_DEADLINE_MS", "12000"));
+        this.mode = Mode.valueOf(dotenv.get("SCRAPE_MODE", "parallel").trim().toUpperCase());
+        this.raceExtraLinks = Integer.parseInt(dotenv.get("SCRAPE_RACE_EXTRA_LINKS", "3"));
+        this.rankPatienceMillis = Long.parseLong(dotenv.get("SCRAPE_RANK_PATIENCE_MS", "0"));
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (pageTimeoutMillis <= 0) {
+            throw new IllegalStateException("SCRAPE_PAGE_TIMEOUT_MS must be positive");
+        }
+        if (deadlineMillis <= 0) {
+            throw new IllegalStateException("SCRAPE_DEADLINE_MS must be positive");
+        }
+        if (raceExtraLinks < 0) {
+            throw new IllegalStateException("SCRAPE_RACE_EXTRA_LINKS must not be negative");
+        }
+        if (rankPatienceMillis < 0) {
+            throw new IllegalStateException("SCRAPE_RANK_PATIENCE_MS must not be negative");
+        }
+    }
+
+    /**
+     * @return the connect/read timeout used for a single page fetch
+     */
+    public int getPageTimeoutMillis() {
+        return pageTimeoutMillis;
+    }
+
+    /**
+     * @return the overall time budget for scraping all the links of one search
+     */
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * @return how the candidate links are scraped
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return how many links beyond the wanted results are fetched at once in race mode
+     */
+    public int getRaceExtraLinks() {
+        return raceExtraLinks;
+    }
+
+    /**
+     * Once enough articles were extracted in race mode, how long to keep waiting for
+     * better ranked links still running. 0 keeps the first finished; a value as large
+     * as the deadline keeps the ranking order.
+     *
+     * @return the patience in milliseconds
+     */
+    public long getRankPatienceMillis() {
+        return rankPatienceMillis;
+    }
+}
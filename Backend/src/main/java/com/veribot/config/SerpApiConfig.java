@@ -6,15 +6,31 @@ import io.github.cdimascio.dotenv.Dotenv;
  */
 public class SerpApiConfig {
 	private final String apiKey;
+	private final String baseUrl;
 	/**
      * Creates a new AzureBingSearchConfig from environment variables.
      */
     public SerpApiConfig() {
         Dotenv dotenv = Dotenv.load();
         this.apiKey = dotenv.get("SERPAPI_KEY");
+        this.baseUrl = dotenv.get("SERPAPI_BASE_URL", "https://serpapi.com/search.json");
         
         validateConfig();
     }
+
+    /**
+     * Creates a new SerpApiConfig with the given values, e.g. for a load test against a
+     * stub search server.
+     *
+     * @param apiKey the SerpApi key
+     * @param baseUrl the URL of the search endpoint
+     */
+    public SerpApiConfig(String apiKey, String baseUrl) {
+        this.apiKey = apiKey;
+        this.baseUrl = baseUrl;
+
+        validateConfig();
+    }
     
     /**
      * Validates that all required configuration is present.
@@ -28,6 +44,13 @@ public class SerpApiConfig {
     public String getApiKey() {
         return apiKey;
     }
+
+    /**
+     * @return the URL of the SerpApi search endpoint
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
     
     
     
@@ -0,0 +1,189 @@
+package com.veribot.config;
+
+import com.veribot.cache.ArticleContentCache;
+import com.veribot.cache.LlmResponseCache;
+import com.veribot.cache.SearchResponseCache;
+import com.veribot.classifier.ClassificationBatcher;
+import com.veribot.classifier.FastPathClassifier;
+import com.veribot.llm.AzureOpenAIClient;
+import com.veribot.llm.LlmHedger;
+import com.veribot.llm.LlmRouter;
+import com.veribot.service.ClaimCoalescer;
+import com.veribot.service.NewsSearchService;
+import com.veribot.service.NewsVerificationService;
+import com.veribot.store.ClaimIndex;
+import com.veribot.store.VerdictStore;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.Nullable;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Builds the services of the pipeline once, at startup. They are shared by every user
+ * session and by the batches: the configuration is read once, and the HTTP clients and
+ * their connection pools are reused by every query. A session only keeps its
+ * conversation.
+ * <p>
+ * The optional components are null beans when they are disabled, and are injected as
+ * {@link Nullable} parameters.
+ */
+@Configuration
+public class ServiceConfiguration {
+    private static final Logger logger = LoggerFactory.getLogger(ServiceConfiguration.class);
+
+    @Bean
+    public SerpApiConfig serpApiConfig() {
+        return new SerpApiConfig();
+    }
+
+    @Bean
+    public ScrapingConfig scrapingConfig() {
+        return new ScrapingConfig();
+    }
+
+    @Bean
+    public PipelineConfig pipelineConfig() {
+        return new PipelineConfig();
+    }
+
+    @Bean
+    public CacheConfig cacheConfig() {
+        return new CacheConfig();
+    }
+
+    @Bean
+    public BatchConfig batchConfig() {
+        return new BatchConfig();
+    }
+
+    /**
+     * The client of the main deployment, with the AZURE_OPENAI_* and LLM_* variables.
+     */
+    @Bean
+    public AzureOpenAIClient azureOpenAIClient() {
+        return new AzureOpenAIClient(new AzureOpenAIConfig(), new LlmClientConfig(), new LlmQuotaConfig());
+    }
+
+    /**
+     * The router of the LLM calls. The fast deployment is configured with the
+     * AZURE_OPENAI_FAST_* and LLM_FAST_* variables, the redundant deployment hedges go to
+     * with AZURE_OPENAI_HEDGE_* and LLM_HEDGE_*.
+     */
+    @Bean
+    public LlmRouter llmRouter(AzureOpenAIClient strong) {
+        AzureOpenAIClient fast = AzureOpenAIConfig.isConfigured("FAST") ? routeClient("FAST") : null;
+        HedgeConfig hedgeConfig = new HedgeConfig();
+        LlmHedger hedger = hedgeConfig.isEnabled() && AzureOpenAIConfig.isConfigured("HEDGE")
+                ? LlmHedger.create(hedgeConfig, strong, routeClient("HEDGE"))
+                : null;
+        return new LlmRouter(strong, fast, hedger);
+    }
+
+    private static AzureOpenAIClient routeClient(String route) {
+        return new AzureOpenAIClient(new AzureOpenAIConfig(route), new LlmClientConfig(route), new LlmQuotaConfig(route));
+    }
+
+    @Bean
+    public ArticleContentCache articleContentCache(CacheConfig cacheConfig) {
+        return cacheConfig.isContentCacheEnabled() ? new ArticleContentCache(cacheConfig) : null;
+    }
+
+    @Bean
+    public SearchResponseCache searchResponseCache(CacheConfig cacheConfig) {
+        return cacheConfig.isSearchCacheEnabled() ? new SearchResponseCache(cacheConfig) : null;
+    }
+
+    @Bean
+    public LlmResponseCache llmResponseCache(CacheConfig cacheConfig) {
+        return cacheConfig.isLlmCacheEnabled() ? new LlmResponseCache(cacheConfig) : null;
+    }
+
+    @Bean
+    public FastPathClassifier fastPathClassifier() {
+        ClassifierConfig config = new ClassifierConfig();
+        return config.getMode() != ClassifierConfig.Mode.OFF ? new FastPathClassifier(config) : null;
+    }
+
+    @Bean
+    public ClaimCoalescer claimCoalescer(PipelineConfig pipelineConfig) {
+        return pipelineConfig.isClaimCoalescingEnabled() ? ClaimCoalescer.create() : null;
+    }
+
+    /**
+     * The log of past verdicts, or null if it is disabled or could not be opened. It is
+     * forced to disk and closed when the context shuts down.
+     */
+    @Bean
+    public VerdictStore verdictStore() {
+        VerdictStoreConfig config = new VerdictStoreConfig();
+        if (!config.isEnabled()) {
+            return null;
+        }
+        VerdictStore store;
+        try {
+            store = VerdictStore.open(Paths.get(config.getPath()),
+                    Duration.ofDays(config.getRetentionDays()), config.getCompactionGarbageRatio());
+        } catch (UncheckedIOException | IllegalStateException e) {
+            logger.error("Verdict store disabled: {}", e.getMessage(), e);
+            return null;
+        }
+        Gauge.builder("veribot.verdicts.entries", store, VerdictStore::size).register(Metrics.globalRegistry);
+        Gauge.builder("veribot.verdicts.bytes", store, VerdictStore::bytes).register(Metrics.globalRegistry);
+        return store;
+    }
+
+    /**
+     * The index of the past verdicts for the similar-claim lookup, built from the
+     * verdict store, or null if the lookup is disabled.
+     */
+    @Bean
+    public ClaimIndex claimIndex(@Nullable VerdictStore verdictStore) {
+        ClaimIndexConfig config = new ClaimIndexConfig();
+        if (!config.isEnabled()) {
+            return null;
+        }
+        ClaimIndex index = new ClaimIndex(config);
+        if (verdictStore != null) {
+            long started = System.nanoTime();
+            verdictStore.forEach(index::add);
+            logger.info("Claim index built with {} verdicts in {} ms",
+                    index.size(), (System.nanoTime() - started) / 1_000_000);
+        }
+        Gauge.builder("veribot.claims.index.entries", index, ClaimIndex::size).register(Metrics.globalRegistry);
+        return index;
+    }
+
+    @Bean
+    public ClassificationBatcher classificationBatcher(LlmRouter llmRouter) {
+        ClassificationBatchConfig config = new ClassificationBatchConfig();
+        if (!config.isEnabled()) {
+            return null;
+        }
+        return new ClassificationBatcher(config,
+                (prompt, priority) -> llmRouter.completion(LlmRouter.Route.FAST, prompt, 0.0, priority));
+    }
+
+    @Bean
+    public NewsSearchService newsSearchService(SerpApiConfig serpApiConfig, ScrapingConfig scrapingConfig,
+            @Nullable ArticleContentCache articleContentCache, @Nullable SearchResponseCache searchResponseCache) {
+        return new NewsSearchService(serpApiConfig, scrapingConfig, articleContentCache, searchResponseCache);
+    }
+
+    @Bean
+    public NewsVerificationService newsVerificationService(LlmRouter llmRouter, NewsSearchService newsSearchService,
+            PipelineConfig pipelineConfig, @Nullable FastPathClassifier fastPathClassifier,
+            @Nullable LlmResponseCache llmResponseCache, @Nullable ClaimCoalescer claimCoalescer,
+            @Nullable VerdictStore verdictStore, @Nullable ClaimIndex claimIndex,
+            @Nullable ClassificationBatcher classificationBatcher) {
+        return new NewsVerificationService(llmRouter, newsSearchService, pipelineConfig, fastPathClassifier,
+                llmResponseCache, claimCoalescer, verdictStore, claimIndex, classificationBatcher);
+    }
+}
@@ -0,0 +1,57 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for keeping the sessions of the users in memory.
+ */
+public class SessionConfig {
+    private final int maxEntries;
+    private final long maxMemoryBytes;
+    private final long ttlMinutes;
+
+    /**
+     * Creates a new SessionConfig from environment variables, falling back to defaults.
+     */
+    public SessionConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.maxEntries = Integer.parseInt(dotenv.get("SESSION_MAX_ENTRIES", "10000"));
+        this.maxMemoryBytes = Long.parseLong(dotenv.get("SESSION_MAX_MEMORY_MB", "64")) * 1024 * 1024;
+        this.ttlMinutes = Long.parseLong(dotenv.get("SESSION_TTL_MINUTES", "30"));
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (maxEntries <= 0 || maxMemoryBytes <= 0) {
+            throw new IllegalStateException("SESSION_MAX_ENTRIES and SESSION_MAX_MEMORY_MB must be positive");
+        }
+        if (ttlMinutes <= 0) {
+            throw new IllegalStateException("SESSION_TTL_MINUTES must be positive");
+        }
+    }
+
+    /**
+     * @return how many sessions are kept at most
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return the estimated bytes all sessions may use together
+     */
+    public long getMaxMemoryBytes() {
+        return maxMemoryBytes;
+    }
+
+    /**
+     * @return how long a session is kept after its last query
+     */
+    public long getTtlMinutes() {
+        return ttlMinutes;
+    }
+}
@@ -0,0 +1,66 @@
+package com.veribot.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Provides configuration for the durable store of verification results.
+ */
+public class VerdictStoreConfig {
+    private final boolean enabled;
+    private final String path;
+    private final int retentionDays;
+    private final double compactionGarbageRatio;
+
+    /**
+     * Creates a new VerdictStoreConfig from environment variables, falling back to defaults.
+     */
+    public VerdictStoreConfig() {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        this.enabled = Boolean.parseBoolean(dotenv.get("VERDICT_STORE_ENABLED", "true"));
+        this.path = dotenv.get("VERDICT_STORE_PATH", "data/verdicts.log");
+        this.retentionDays = Integer.parseInt(dotenv.get("VERDICT_STORE_RETENTION_DAYS", "30"));
+        this.compactionGarbageRatio = Double.parseDouble(dotenv.get("VERDICT_STORE_COMPACTION_RATIO", "0.5"));
+
+        validateConfig();
+    }
+
+    /**
+     * Validates that all values are within range.
+     */
+    private void validateConfig() {
+        if (path == null || path.isBlank()) {
+            throw new IllegalStateException("VERDICT_STORE_PATH must not be empty");
+        }
+        if (retentionDays <= 0) {
+            throw new IllegalStateException("VERDICT_STORE_RETENTION_DAYS must be positive");
+        }
+        if (compactionGarbageRatio <= 0 || compactionGarbageRatio >= 1) {
+            throw new IllegalStateException("VERDICT_STORE_COMPACTION_RATIO must be between 0 and 1");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the file of the verdict log
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return how many days a verdict is kept when the log is compacted
+     */
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    /**
+     * @return the share of superseded or expired bytes in the log that triggers a compaction
+     */
+    public double getCompactionGarbageRatio() {
+        return compactionGarbageRatio;
+    }
+}
@@ -10,8 +10,9 @@ public class WebConfig implements WebMvcConfigurer {
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/api/**")
         		.allowedOriginPatterns("*") // permite todos, con compatibilidad con allowCredentials
-                .allowedMethods("POST")
+                .allowedMethods("POST", "GET")
                 .allowedHeaders("*")
+                .exposedHeaders("Location", "Retry-After")
                 .allowCredentials(true);
     }
 }
\ No newline at end of file
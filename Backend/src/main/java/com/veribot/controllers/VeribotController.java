@@ -1,31 +1,74 @@
 package com.veribot.controllers;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.veribot.model.BatchItemResult;
+import com.veribot.model.BatchPromptModel;
 import com.veribot.model.PromptModel;
+import com.veribot.service.AdmissionRejectedException;
+import com.veribot.service.BatchVerificationService;
 import com.veribot.service.ConversationService;
+import com.veribot.service.JobService;
+import com.veribot.service.VerificationJob;
+import com.veribot.service.VerificationListener;
+import com.veribot.store.ClaimIndex;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpSession;
 
 @RestController
 @RequestMapping("/api/veribot")
 public class VeribotController {
+    private static final Logger logger = LoggerFactory.getLogger(VeribotController.class);
+    private static final long STREAM_TIMEOUT_MS = 120_000;
+    private static final long BATCH_TIMEOUT_MS = 60 * 60_000;
+
+    @Autowired
+    ConversationService convServ;
+
+    @Autowired
+    BatchVerificationService batchServ;
+
     @Autowired
-    ConversationService convServ; 
+    JobService jobServ;
+
+    // Null if similar-claim lookup is disabled
+    @Autowired(required = false)
+    ClaimIndex claimIndex;
+
+    private final ExecutorService streamExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     @PostMapping
-    public ResponseEntity<Map<String, Object>> processVeribotRequest(@RequestBody PromptModel request, 
+    public ResponseEntity<Map<String, Object>> processVeribotRequest(@RequestBody PromptModel request,
             HttpSession session) {
 
         if (request.getText() == null || request.getText().trim().isEmpty()) {
@@ -37,10 +80,356 @@ public class VeribotController {
             response.put("text", convServ.processQuery(request, session.getId()));
             response.put("type", "message");
 
-            return ResponseEntity.ok(response); 
+            return ResponseEntity.ok(response);
+        } catch (AdmissionRejectedException e) {
+            return overloaded(e);
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Collections.singletonMap("error", "Failed to process request: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Submits a query to be answered in the background and returns its job at once, with
+     * 202 and the URL to poll in the Location header. A client retrying the submission
+     * with the same Idempotency-Key header gets the same job, with its result if it is done.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<Map<String, Object>> submitJob(@RequestBody PromptModel request, HttpSession session,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+
+        if (request.getText() == null || request.getText().trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "Query cannot be empty"));
+        }
+
+        try {
+            VerificationJob job = jobServ.submit(request, session.getId(), idempotencyKey);
+            if (job.getStatus() != VerificationJob.Status.RUNNING) {
+                return jobResponse(job);
+            }
+            return ResponseEntity.accepted()
+                    .header("Location", "/api/veribot/jobs/" + job.getId())
+                    .body(jobBody(job));
+        } catch (AdmissionRejectedException e) {
+            return overloaded(e);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Answers a query rejected by the admission control: 503, with the delay after
+     * which the client should try again.
+     */
+    private static ResponseEntity<Map<String, Object>> overloaded(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Collections.singletonMap("error", e.getMessage()));
+    }
+
+    /**
+     * Returns a job: 200 with its answer or error once it is finished, 202 while it runs.
+     * With a wait parameter, in seconds, a running job is long-polled: the response is
+     * sent as soon as the job finishes, or when the wait is over, without holding a
+     * request thread in the meantime.
+     */
+    @GetMapping("/jobs/{id}")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> getJob(@PathVariable("id") String id,
+            @RequestParam(name = "wait", defaultValue = "0") long waitSeconds) {
+        VerificationJob job = jobServ.get(id);
+        long wait = Math.max(0, Math.min(waitSeconds, jobServ.getMaxWaitSeconds()));
+        if (job == null || job.getStatus() != VerificationJob.Status.RUNNING || wait == 0) {
+            DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<>();
+            result.setResult(jobResponse(job));
+            return result;
+        }
+
+        DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<>(
+                TimeUnit.SECONDS.toMillis(wait), () -> jobResponse(job));
+        job.getCompletion().thenAccept(finished -> result.setResult(jobResponse(finished)));
+        return result;
+    }
+
+    private static ResponseEntity<Map<String, Object>> jobResponse(VerificationJob job) {
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Collections.singletonMap("error", "Job not found or expired"));
+        }
+        if (job.getStatus() == VerificationJob.Status.RUNNING) {
+            return ResponseEntity.accepted().body(jobBody(job));
+        }
+        if (job.getStatus() == VerificationJob.Status.OVERLOADED) {
+            // As for a rejected submission, so that the client submits it again later
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", String.valueOf(job.getRetryAfterSeconds()))
+                    .body(jobBody(job));
+        }
+        return ResponseEntity.ok(jobBody(job));
+    }
+
+    private static Map<String, Object> jobBody(VerificationJob job) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("jobId", job.getId());
+        body.put("status", job.getStatus().tag());
+        body.put("submittedAt", job.getSubmittedAt().toString());
+        if (job.getStatus() == VerificationJob.Status.DONE) {
+            body.put("text", job.getText());
+            body.put("type", "message");
+        }
+        if (job.getError() != null) {
+            body.put("error", job.getError());
+        }
+        return body;
+    }
+
+    /**
+     * Ranks the past verdicts against a query, with their scores and the threshold from
+     * which they answer it, to tune the similar-claim lookup.
+     */
+    @GetMapping("/similar")
+    public ResponseEntity<Map<String, Object>> findSimilarClaims(@RequestParam("q") String query,
+            @RequestParam(name = "limit", defaultValue = "5") int limit) {
+        ClaimIndex index = claimIndex;
+        if (index == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Collections.singletonMap("error", "Similar-claim lookup is disabled"));
+        }
+
+        List<Map<String, Object>> matches = new ArrayList<>();
+        for (ClaimIndex.Match match : index.search(query, Math.max(1, Math.min(limit, 50)),
+                Duration.ofMinutes(index.getConfig().getMaxAgeMinutes()))) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("query", match.verdict().query());
+            entry.put("score", match.score());
+            entry.put("normalizedScore", match.normalizedScore());
+            entry.put("createdAt", match.verdict().createdAt().toString());
+            entry.put("truthfulnessPercentage", match.verdict().result().truthfulnessPercentage());
+            entry.put("summary", match.verdict().result().summary());
+            matches.add(entry);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("minScore", index.getConfig().getMinScore());
+        response.put("maxAgeMinutes", index.getConfig().getMaxAgeMinutes());
+        response.put("matches", matches);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Processes a query as a stream of server-sent events: "stage" events as the pipeline
+     * progresses, "token" events while the answer is generated, and a final "result" event
+     * with the same body as the non-streaming endpoint (or an "error" event).
+     */
+    @PostMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamVeribotRequest(@RequestBody PromptModel request, HttpSession session) {
+
+        if (request.getText() == null || request.getText().trim().isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Collections.singletonMap("error", "Query cannot be empty"));
+        }
+
+        // Checked before the stream opens, so that an overloaded service answers 503
+        try {
+            convServ.rejectIfOverloaded();
+        } catch (AdmissionRejectedException e) {
+            return overloaded(e);
+        }
+
+        // The session must be read on the request thread
+        String sessionId = session.getId();
+        SseEmitter emitter = newEmitter(STREAM_TIMEOUT_MS);
+        SseListener listener = new SseListener(emitter);
+
+        Future<?> query = streamExecutor.submit(() -> {
+            try {
+                String text = convServ.processQuery(request, sessionId, listener);
+                Map<String, Object> response = new HashMap<>();
+                response.put("text", text);
+                response.put("type", "message");
+                listener.send("result", response);
+                emitter.complete();
+            } catch (AdmissionRejectedException e) {
+                // Overloaded once the query's turn came, after the stream opened
+                Map<String, Object> error = new HashMap<>();
+                error.put("error", e.getMessage());
+                error.put("retryAfter", e.getRetryAfterSeconds());
+                listener.send("error", error);
+                emitter.complete();
+            } catch (Exception e) {
+                if (listener.isClosed()) {
+                    logger.debug("Query stopped, its client is gone: {}", e.getMessage());
+                    return;
+                }
+                logger.error("Error streaming query: {}", e.getMessage(), e);
+                listener.send("error", Collections.singletonMap("error", "Failed to process request: " + e.getMessage()));
+                emitter.complete();
+            }
+        });
+        // Stops the query, and the answer the LLM streams, unless another client waits for it
+        listener.onClose(() -> query.cancel(true));
+
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Verifies a batch of claims as a stream of server-sent events: a "stage" event each
+     * time a claim enters a stage, an "item" event with the status and verdict of each
+     * claim as soon as it is done, in completion order, and a final "done" event.
+     */
+    @PostMapping(path = "/batch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> verifyBatch(@RequestBody BatchPromptModel request) {
+        List<String> claims = request.getClaims();
+        if (claims == null || claims.isEmpty() || claims.stream().anyMatch(claim -> claim == null || claim.isBlank())) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Collections.singletonMap("error", "Claims must be a non-empty list of non-empty texts"));
+        }
+        if (claims.size() > batchServ.getMaxClaims()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Collections.singletonMap("error", "A batch accepts at most " + batchServ.getMaxClaims() + " claims"));
+        }
+
+        SseEmitter emitter = newEmitter(BATCH_TIMEOUT_MS);
+        SseListener sender = new SseListener(emitter);
+        Map<String, Integer> counts = new ConcurrentHashMap<>();
+
+        Future<?> batch = streamExecutor.submit(() -> {
+            try {
+                batchServ.verifyAll(claims, new BatchVerificationService.BatchListener() {
+                    @Override
+                    public void onStage(int index, String stage) {
+                        Map<String, Object> data = new LinkedHashMap<>();
+                        data.put("index", index);
+                        data.put("stage", stage);
+                        sender.send("stage", data);
+                    }
+
+                    @Override
+                    public void onResult(BatchItemResult result) {
+                        counts.merge(result.status().tag(), 1, Integer::sum);
+                        Map<String, Object> data = new LinkedHashMap<>();
+                        data.put("index", result.index());
+                        data.put("claim", result.claim());
+                        data.put("status", result.status().tag());
+                        if (result.result() != null) {
+                            data.put("summary", result.result().summary());
+                            data.put("truthfulnessPercentage", result.result().truthfulnessPercentage());
+                            data.put("truthfulnessLevel", result.result().getTruthfulnessLevel());
+                            data.put("justification", result.result().justification());
+                            data.put("sourcesUsed", result.result().sourcesUsed());
+                        }
+                        if (result.error() != null) {
+                            data.put("error", result.error());
+                        }
+                        sender.send("item", data);
+                    }
+                });
+                Map<String, Object> done = new LinkedHashMap<>();
+                done.put("total", claims.size());
+                done.put("statuses", counts);
+                sender.send("done", done);
+                emitter.complete();
+            } catch (Exception e) {
+                logger.error("Error verifying batch: {}", e.getMessage(), e);
+                sender.send("error", Collections.singletonMap("error", "Failed to process batch: " + e.getMessage()));
+                emitter.complete();
+            }
+        });
+        // Nobody would receive the verdicts of a batch whose client is gone
+        sender.onClose(() -> batch.cancel(true));
+
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Creates the emitter of a stream; tests record what is sent to it.
+     */
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    /**
+     * Stops the streams still running when the application shuts down.
+     */
+    @PreDestroy
+    void shutdown() {
+        streamExecutor.shutdownNow();
+    }
+
+    /**
+     * Forwards the progress of a verification to an SSE connection. Once the client is gone,
+     * the remaining events are dropped and the action given to {@link #onClose} is run.
+     */
+    private static class SseListener implements VerificationListener {
+        private final SseEmitter emitter;
+        private volatile boolean closed;
+        private Runnable onClose;
+
+        SseListener(SseEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onCompletion(this::close);
+            emitter.onTimeout(this::close);
+            emitter.onError(e -> close());
+        }
+
+        /**
+         * Sets the action run once the connection is closed, at once if it already is.
+         */
+        void onClose(Runnable action) {
+            synchronized (this) {
+                if (!closed) {
+                    onClose = action;
+                    return;
+                }
+            }
+            action.run();
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        private void close() {
+            Runnable action;
+            synchronized (this) {
+                closed = true;
+                action = onClose;
+                onClose = null;
+            }
+            if (action != null) {
+                action.run();
+            }
+        }
+
+        @Override
+        public void onStage(String stage, String detail) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("stage", stage);
+            if (detail != null) {
+                data.put("detail", detail);
+            }
+            send("stage", data);
+        }
+
+        @Override
+        public void onToken(String token) {
+            send("token", Collections.singletonMap("text", token));
+        }
+
+        synchronized void send(String event, Object data) {
+            if (closed) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Client disconnected from stream: {}", e.getMessage());
+                close();
+            }
+        }
+    }
+}
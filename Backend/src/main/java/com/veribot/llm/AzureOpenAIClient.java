@@ -0,0 +1,540 @@
+package com.veribot.llm;
+
+import com.veribot.config.AzureOpenAIConfig;
+import com.veribot.config.LlmClientConfig;
+import com.veribot.config.LlmQuotaConfig;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking client for the chat completions of an Azure OpenAI deployment. Calls
+ * return futures and no thread waits while the request is in flight. Each attempt has a
+ * timeout, failed attempts are retried with jittered backoff honoring Retry-After, and a
+ * circuit breaker fails calls fast while the deployment keeps failing. When the quota of
+ * the deployment is configured, every attempt first waits for its turn in the quota
+ * scheduler.
+ */
+public class AzureOpenAIClient {
+    private static final Logger logger = LoggerFactory.getLogger(AzureOpenAIClient.class);
+    private static final int MAX_COMPLETION_TOKENS = 800;
+
+    private final String apiUrl;
+    private final String apiKey;
+    private final String deploymentName;
+    private final LlmClientConfig config;
+    private final CircuitBreaker breaker;
+    private final LlmQuotaScheduler scheduler;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient;
+
+    /**
+     * Creates a new AzureOpenAIClient for the configured deployment.
+     *
+     * @param openAIConfig the Azure OpenAI configuration
+     * @param config the timeouts, retries and circuit breaker configuration
+     * @param quotaConfig the quota of the deployment, scheduled only if configured
+     */
+    public AzureOpenAIClient(AzureOpenAIConfig openAIConfig, LlmClientConfig config, LlmQuotaConfig quotaConfig) {
+        this.apiUrl = String.format("%s/openai/deployments/%s/chat/completions?api-version=%s",
+                openAIConfig.getEndpoint().replaceAll("/$", ""),
+                openAIConfig.getDeploymentName(),
+                openAIConfig.getApiVersion());
+        this.apiKey = openAIConfig.getApiKey();
+        this.deploymentName = openAIConfig.getDeploymentName();
+        this.config = config;
+        this.breaker = new CircuitBreaker(config.getBreakerFailureThreshold(), config.getBreakerOpenMillis());
+        this.scheduler = quotaConfig.isEnabled() ? LlmQuotaScheduler.create(quotaConfig, deploymentName) : null;
+        this.httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofMillis(config.getRequestTimeoutMillis()))
+                .build();
+        Gauge.builder("veribot.llm.circuit.open", breaker, b -> b.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .tag("deployment", deploymentName).register(Metrics.globalRegistry);
+
+        logger.info("AzureOpenAIClient initialized for deployment {}", deploymentName);
+    }
+
+
+    public String getDeploymentName() {
+        return deploymentName;
+    }
+
+    /**
+     * Generates a chat completion for a single user message, as part of a new verification.
+     *
+     * @param prompt the prompt to send
+     * @param temperature the temperature to use for generation (0.0-1.0)
+     * @return the generated text, or a future failed with an {@link LlmException}
+     */
+    public CompletableFuture<String> complete(String prompt, double temperature) {
+        return complete(prompt, temperature, LlmPriority.NEW_VERIFICATION);
+    }
+
+    /**
+     * Generates a chat completion for a single user message.
+     *
+     * @param prompt the prompt to send
+     * @param temperature the temperature to use for generation (0.0-1.0)
+     * @param priority how urgently the completion is needed when the quota is short
+     * @return the generated text, or a future failed with an {@link LlmException}
+     */
+    public CompletableFuture<String> complete(String prompt, double temperature, LlmPriority priority) {
+        HttpRequest request = buildRequest(prompt, temperature, false);
+        return withRetries(() -> sendAttempt(request, HttpResponse.BodyHandlers.ofString(), true), () -> true,
+                estimateTokens(prompt), priority);
+    }
+
+    /**
+     * Generates a chat completion with stream=true, as part of a new verification.
+     *
+     * @param prompt the prompt to send
+     * @param temperature the temperature to use for generation (0.0-1.0)
+     * @param onToken receives each generated token, on a client thread
+     * @return the whole generated text, or a future failed with an {@link LlmException}
+     */
+    public CompletableFuture<String> stream(String prompt, double temperature, Consumer<String> onToken) {
+        return stream(prompt, temperature, onToken, LlmPriority.NEW_VERIFICATION);
+    }
+
+    /**
+     * Generates a chat completion with stream=true, passing each token to the consumer as
+     * soon as it arrives. Attempts are only retried while no token was passed on.
+     *
+     * @param prompt the prompt to send
+     * @param temperature the temperature to use for generation (0.0-1.0)
+     * @param onToken receives each generated token, on a client thread
+     * @param priority how urgently the completion is needed when the quota is short
+     * @return the whole generated text, or a future failed with an {@link LlmException}
+     */
+    public CompletableFuture<String> stream(String prompt, double temperature, Consumer<String> onToken,
+            LlmPriority priority) {
+        HttpRequest request = buildRequest(prompt, temperature, true);
+        AtomicBoolean emitted = new AtomicBoolean();
+        Consumer<String> tracking = token -> {
+            emitted.set(true);
+            onToken.accept(token);
+        };
+        HttpResponse.BodyHandler<String> handler = info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(new TokenSubscriber(tracking),
+                        TokenSubscriber::content, StandardCharsets.UTF_8, null)
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        return withRetries(() -> sendAttempt(request, handler, false), () -> !emitted.get(),
+                estimateTokens(prompt), priority);
+    }
+
+    /**
+     * Waits for a call of this client, unwrapping its failure. The call is cancelled if
+     * the waiting thread is interrupted.
+     *
+     * @param call the future returned by the client
+     * @return the generated text
+     * @throws LlmException if the call failed or was cancelled
+     */
+    public static <T> T await(CompletableFuture<T> call) {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            call.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new LlmException(LlmException.Kind.CANCELLED, "Interrupted while waiting for the language model", e);
+        } catch (CancellationException e) {
+            throw new LlmException(LlmException.Kind.CANCELLED, "Language model call cancelled", e);
+        } catch (ExecutionException e) {
+            throw toLlmException(e.getCause());
+        }
+    }
+
+    /**
+     * Estimates the tokens a completion counts against the quota: about four characters
+     * per prompt token, plus the completion tokens it may generate, as Azure reserves them.
+     */
+    private static long estimateTokens(String prompt) {
+        return prompt.length() / 4 + MAX_COMPLETION_TOKENS;
+    }
+
+    /**
+     * Builds the HTTP request of a completion.
+     */
+    private HttpRequest buildRequest(String prompt, double temperature, boolean stream) {
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("temperature", temperature);
+        requestBody.put("max_completion_tokens", MAX_COMPLETION_TOKENS);
+        if (stream) {
+            requestBody.put("stream", true);
+        }
+
+        JSONArray messages = new JSONArray();
+        JSONObject userMessage = new JSONObject();
+        userMessage.put("role", "user");
+        userMessage.put("content", prompt);
+        messages.put(userMessage);
+
+        requestBody.put("messages", messages);
+
+        return HttpRequest.newBuilder()
+                .uri(URI.create(apiUrl))
+                .timeout(Duration.ofMillis(config.getRequestTimeoutMillis()))
+                .header("Content-Type", "application/json")
+                .header("Accept", stream ? "text/event-stream" : "application/json")
+                .header("api-key", apiKey)
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody.toString()))
+                .build();
+    }
+
+    /**
+     * An attempt that can be started again.
+     */
+    @FunctionalInterface
+    private interface Attempt {
+        /**
+         * @return the generated text; cancelling it aborts the exchange
+         */
+        CompletableFuture<String> start();
+    }
+
+    /**
+     * Sends one attempt. Its future completes with the generated text or fails with an
+     * {@link LlmException}.
+     *
+     * @param request the request to send
+     * @param handler reads the body of the response
+     * @param parseCompletion whether the body is a completion JSON to extract the text from
+     */
+    private CompletableFuture<String> sendAttempt(HttpRequest request,
+            HttpResponse.BodyHandler<String> handler, boolean parseCompletion) {
+        CompletableFuture<HttpResponse<String>> sent = httpClient.sendAsync(request, handler);
+        CompletableFuture<String> content = sent.thenApply(response -> {
+            checkStatus(response);
+            String text = parseCompletion ? extractContent(response.body()) : response.body();
+            if (text.isEmpty()) {
+                throw new LlmException(LlmException.Kind.MALFORMED_RESPONSE, "Empty completion", null);
+            }
+            return text;
+        });
+        // Cancelling a dependent future does not reach the exchange by itself
+        content.whenComplete((text, error) -> {
+            if (content.isCancelled()) {
+                sent.cancel(true);
+            }
+        });
+        return content;
+    }
+
+    /**
+     * Runs an attempt and retries it until it succeeds, fails for good, or runs out of
+     * attempts. Cancelling the returned future aborts the attempt in flight.
+     *
+     * @param attempt starts one attempt
+     * @param retryAllowed whether a failed attempt may still be retried
+     * @param estimatedTokens the tokens each attempt counts against the quota
+     * @param priority the priority of the attempts in the quota scheduler
+     * @return the generated text
+     */
+    private CompletableFuture<String> withRetries(Attempt attempt, BooleanSupplier retryAllowed,
+            long estimatedTokens, LlmPriority priority) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Call call = new Call(attempt, retryAllowed, estimatedTokens, priority,
+                scheduler != null ? scheduler.deadlineFor(priority) : Long.MAX_VALUE);
+        runAttempt(call, 1, result);
+        return result;
+    }
+
+    /**
+     * A call and what its attempts need from the quota scheduler.
+     *
+     * @param deadline the time by which an attempt must be sent, on the scheduler's clock
+     */
+    private record Call(Attempt attempt, BooleanSupplier retryAllowed, long estimatedTokens, LlmPriority priority,
+            long deadline) {
+    }
+
+    /**
+     * Runs an attempt once the quota scheduler lets it go.
+     */
+    private void runAttempt(Call call, int number, CompletableFuture<String> result) {
+        if (result.isDone()) {
+            return;
+        }
+        if (scheduler == null) {
+            startAttempt(call, number, result);
+            return;
+        }
+
+        CompletableFuture<Void> permit = scheduler.acquire(call.estimatedTokens(), call.priority(), call.deadline());
+        result.whenComplete((content, error) -> {
+            if (result.isCancelled()) {
+                permit.cancel(true);
+            }
+        });
+        permit.whenComplete((granted, error) -> {
+            if (error == null) {
+                startAttempt(call, number, result);
+            } else if (!permit.isCancelled()) {
+                LlmException failure = toLlmException(error);
+                Metrics.counter("veribot.llm.calls", "outcome", failure.getKind().tag()).increment();
+                result.completeExceptionally(failure);
+            }
+        });
+    }
+
+    private void startAttempt(Call call, int number, CompletableFuture<String> result) {
+        if (result.isDone()) {
+            return;
+        }
+        CircuitBreaker.Permit permit = breaker.tryAcquire();
+        if (permit == null) {
+            Metrics.counter("veribot.llm.calls", "outcome", LlmException.Kind.CIRCUIT_OPEN.tag()).increment();
+            result.completeExceptionally(new LlmException(LlmException.Kind.CIRCUIT_OPEN,
+                    "Circuit breaker open for deployment " + deploymentName, null));
+            return;
+        }
+
+        CompletableFuture<String> sent = call.attempt().start();
+        result.whenComplete((content, error) -> {
+            if (result.isCancelled()) {
+                sent.cancel(true);
+            }
+        });
+        sent.whenComplete((content, error) -> {
+            if (error == null) {
+                breaker.onSuccess(permit);
+                Metrics.counter("veribot.llm.calls", "outcome", "success").increment();
+                result.complete(content);
+                return;
+            }
+
+            LlmException failure = toLlmException(error);
+            switch (failure.getKind()) {
+                case TIMEOUT, SERVER_ERROR, NETWORK -> breaker.onFailure(permit);
+                default -> breaker.onNeutral(permit);
+            }
+            if (failure.getKind() == LlmException.Kind.RATE_LIMITED && scheduler != null) {
+                scheduler.onRateLimited(failure.getRetryAfterMillis());
+            }
+
+            long delay = backoffMillis(number, failure.getRetryAfterMillis());
+            if (failure.getKind().isRetryable() && number < config.getMaxAttempts()
+                    && delay >= 0 && call.retryAllowed().getAsBoolean() && !result.isDone()) {
+                logger.warn("LLM attempt {} failed ({}), retrying in {} ms: {}",
+                        number, failure.getKind(), delay, failure.getMessage());
+                Metrics.counter("veribot.llm.retries", "reason", failure.getKind().tag()).increment();
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor)
+                        .execute(() -> runAttempt(call, number + 1, result));
+            } else if (failure.getKind() == LlmException.Kind.CANCELLED) {
+                // Cancelled by the caller, e.g. the losing call of a hedge
+                Metrics.counter("veribot.llm.calls", "outcome", failure.getKind().tag()).increment();
+                result.completeExceptionally(failure);
+            } else {
+                logger.error("LLM call failed after {} attempt(s) ({}): {}",
+                        number, failure.getKind(), failure.getMessage());
+                Metrics.counter("veribot.llm.calls", "outcome", failure.getKind().tag()).increment();
+                result.completeExceptionally(failure);
+            }
+        });
+    }
+
+    /**
+     * Computes the wait before the next attempt: a random delay up to an exponentially
+     * growing cap ("full jitter"), but never shorter than what the server asked for.
+     *
+     * @param attempt the number of the attempt that failed, from 1
+     * @param retryAfterMillis how long the server asked to wait, -1 if it did not say
+     * @return the delay in milliseconds, or -1 if the server asked to wait longer than
+     *         the maximum backoff and the call should fail now
+     */
+    long backoffMillis(int attempt, long retryAfterMillis) {
+        long cap = Math.min(config.getRetryMaxMillis(), config.getRetryBaseMillis() << Math.min(attempt - 1, 20));
+        long jitter = cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+        if (retryAfterMillis > config.getRetryMaxMillis()) {
+            return -1;
+        }
+        return Math.max(jitter, retryAfterMillis);
+    }
+
+    /**
+     * Throws a typed failure for an error status.
+     */
+    private static void checkStatus(HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (status == 200) {
+            return;
+        }
+        LlmException.Kind kind;
+        if (status == 429) {
+            kind = LlmException.Kind.RATE_LIMITED;
+        } else if (status == 408) {
+            kind = LlmException.Kind.TIMEOUT;
+        } else if (status >= 500) {
+            kind = LlmException.Kind.SERVER_ERROR;
+        } else {
+            kind = LlmException.Kind.CLIENT_ERROR;
+        }
+        throw new LlmException(kind, "Azure OpenAI API returned " + status + ": " + response.body(), null,
+                status, retryAfterMillis(response.headers()));
+    }
+
+    /**
+     * Reads how long the server asked to wait, from Azure's retry-after-ms header or the
+     * standard Retry-After header in seconds or as an HTTP date.
+     *
+     * @return the wait in milliseconds, -1 if the server did not say
+     */
+    static long retryAfterMillis(HttpHeaders headers) {
+        try {
+            Optional<String> millis = headers.firstValue("retry-after-ms");
+            if (millis.isPresent()) {
+                return Math.max(0, (long) Double.parseDouble(millis.get().trim()));
+            }
+            Optional<String> retryAfter = headers.firstValue("retry-after");
+            if (retryAfter.isEmpty()) {
+                return -1;
+            }
+            String value = retryAfter.get().trim();
+            if (value.matches("\\d+")) {
+                return Long.parseLong(value) * 1000;
+            }
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Extracts the generated text from a completion response.
+     */
+    private static String extractContent(String body) {
+        try {
+            JSONObject responseJson = new JSONObject(body);
+            JSONArray choices = responseJson.optJSONArray("choices");
+            if (choices != null && !choices.isEmpty()) {
+                JSONObject message = choices.getJSONObject(0).optJSONObject("message");
+                if (message != null && message.has("content") && !message.isNull("content")) {
+                    return message.getString("content");
+                }
+            }
+        } catch (JSONException e) {
+            throw new LlmException(LlmException.Kind.MALFORMED_RESPONSE, "Invalid completion JSON: " + e.getMessage(), e);
+        }
+        throw new LlmException(LlmException.Kind.MALFORMED_RESPONSE, "Unexpected response format: " + body, null);
+    }
+
+    /**
+     * Maps whatever an attempt failed with to a typed failure.
+     */
+    private static LlmException toLlmException(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof LlmException llmException) {
+            return llmException;
+        }
+        if (error instanceof HttpTimeoutException) {
+            return new LlmException(LlmException.Kind.TIMEOUT, "Azure OpenAI API timed out", error);
+        }
+        if (error instanceof IOException) {
+            return new LlmException(LlmException.Kind.NETWORK, "Error calling Azure OpenAI API: " + error.getMessage(), error);
+        }
+        if (error instanceof CancellationException) {
+            return new LlmException(LlmException.Kind.CANCELLED, "Language model call cancelled", error);
+        }
+        return new LlmException(LlmException.Kind.MALFORMED_RESPONSE, "Error reading Azure OpenAI response: " + error, error);
+    }
+
+    /**
+     * Reads the server-sent events of a streamed completion: "data: {chunk}" lines,
+     * ending with "data: [DONE]".
+     */
+    private static class TokenSubscriber implements Flow.Subscriber<String> {
+        private final Consumer<String> onToken;
+        private final StringBuilder content = new StringBuilder();
+
+        TokenSubscriber(Consumer<String> onToken) {
+            this.onToken = onToken;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (!line.startsWith("data:")) {
+                return;
+            }
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]")) {
+                return;
+            }
+            String token = extractToken(data);
+            if (!token.isEmpty()) {
+                content.append(token);
+                onToken.accept(token);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        String content() {
+            return content.toString();
+        }
+
+        /**
+         * Extracts the generated text from a streamed completion chunk.
+         *
+         * @return the text, empty if the chunk has none (e.g. content filter results)
+         */
+        private static String extractToken(String data) {
+            try {
+                JSONArray choices = new JSONObject(data).optJSONArray("choices");
+                if (choices == null || choices.isEmpty()) {
+                    return "";
+                }
+                JSONObject delta = choices.getJSONObject(0).optJSONObject("delta");
+                return delta != null ? delta.optString("content", "") : "";
+            } catch (JSONException e) {
+                logger.debug("Skipping malformed stream chunk: {}", data);
+                return "";
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.veribot.llm;
+
+import java.time.Clock;
+
+/**
+ * Stops calling a dependency that keeps failing. After a number of failures in a row the
+ * circuit opens and calls fail fast; once the open period is over a single trial call is
+ * let through, and its outcome closes the circuit or opens it again.
+ * <p>
+ * Each call reports its outcome with the permit it was given, which remembers the state
+ * the call started in. A call started before the circuit last opened reports on a past
+ * state: its outcome is ignored, so that a late answer cannot close the circuit or free
+ * the place of the trial call.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The state of the circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * The permission given to one call, to report its outcome with.
+     */
+    public static final class Permit {
+        private final boolean trial;
+        private final long period;
+
+        private Permit(boolean trial, long period) {
+            this.trial = trial;
+            this.period = period;
+        }
+
+        /**
+         * @return whether the call is the trial of a half-open circuit
+         */
+        public boolean isTrial() {
+            return trial;
+        }
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Clock clock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+    // How many times the circuit opened; permits of earlier periods are stale
+    private long openings;
+
+    /**
+     * Creates a closed circuit breaker.
+     *
+     * @param failureThreshold how many failures in a row open the circuit
+     * @param openMillis how long the circuit stays open before a trial call
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, Clock.systemUTC());
+    }
+
+    CircuitBreaker(int failureThreshold, long openMillis, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Asks permission for a call. A caller that gets it must report the outcome with
+     * {@link #onSuccess}, {@link #onFailure} or {@link #onNeutral}.
+     *
+     * @return the permit of the call, or null if it must fail fast
+     */
+    public synchronized Permit tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.millis() - openedAt < openMillis) {
+                return null;
+            }
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return null;
+            }
+            trialInFlight = true;
+            return new Permit(true, openings);
+        }
+        return new Permit(false, openings);
+    }
+
+    /**
+     * Records a successful call, closing the circuit.
+     *
+     * @param permit the permit of the call
+     */
+    public synchronized void onSuccess(Permit permit) {
+        if (permit.trial) {
+            trialInFlight = false;
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+        } else if (isCurrent(permit)) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * Records a failed call, opening the circuit if the trial call failed or too many
+     * calls failed in a row.
+     *
+     * @param permit the permit of the call
+     */
+    public synchronized void onFailure(Permit permit) {
+        if (permit.trial) {
+            trialInFlight = false;
+            open();
+        } else if (isCurrent(permit) && ++consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * Records a call whose outcome says nothing about the health of the dependency,
+     * e.g. one rejected for its content.
+     *
+     * @param permit the permit of the call
+     */
+    public synchronized void onNeutral(Permit permit) {
+        if (permit.trial) {
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return whether a call that is not a trial started in the current closed period
+     */
+    private boolean isCurrent(Permit permit) {
+        return state == State.CLOSED && permit.period == openings;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.millis();
+        openings++;
+    }
+}
@@ -0,0 +1,129 @@
+package com.veribot.llm;
+
+/**
+ * Thrown when a call to the language model fails. The kind tells callers whether the
+ * failure is worth retrying and how to explain it to the user.
+ */
+public class LlmException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Why a call failed.
+     */
+    public enum Kind {
+        /**
+         * The response did not arrive in time.
+         */
+        TIMEOUT(true),
+
+        /**
+         * The deployment answered 429 Too Many Requests.
+         */
+        RATE_LIMITED(true),
+
+        /**
+         * The deployment answered with a 5xx status.
+         */
+        SERVER_ERROR(true),
+
+        /**
+         * The connection failed or was closed.
+         */
+        NETWORK(true),
+
+        /**
+         * The request was rejected with a 4xx status other than 429, e.g. a content filter.
+         */
+        CLIENT_ERROR(false),
+
+        /**
+         * The response could not be understood.
+         */
+        MALFORMED_RESPONSE(false),
+
+        /**
+         * The circuit breaker is open and the call was not attempted.
+         */
+        CIRCUIT_OPEN(false),
+
+        /**
+         * The deployment's quota could not be met before the deadline of the call, which
+         * was dropped without being sent.
+         */
+        SHED(false),
+
+        /**
+         * The call was cancelled or the waiting thread was interrupted.
+         */
+        CANCELLED(false);
+
+        private final boolean retryable;
+
+        Kind(boolean retryable) {
+            this.retryable = retryable;
+        }
+
+        /**
+         * @return whether another attempt may succeed
+         */
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+        /**
+         * @return the kind as a lower-case metric tag
+         */
+        public String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Kind kind;
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    /**
+     * Creates a failure without HTTP status.
+     *
+     * @param kind why the call failed
+     * @param message the description of the failure
+     * @param cause the underlying exception, may be null
+     */
+    public LlmException(Kind kind, String message, Throwable cause) {
+        this(kind, message, cause, 0, -1);
+    }
+
+    /**
+     * Creates a failure for an HTTP error status.
+     *
+     * @param kind why the call failed
+     * @param message the description of the failure
+     * @param cause the underlying exception, may be null
+     * @param statusCode the HTTP status, 0 if there was none
+     * @param retryAfterMillis how long the server asked to wait, -1 if it did not say
+     */
+    public LlmException(Kind kind, String message, Throwable cause, int statusCode, long retryAfterMillis) {
+        super(message, cause);
+        this.kind = kind;
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the HTTP status, 0 if the failure happened before or without a response
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return how long the server asked to wait before retrying, -1 if it did not say
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
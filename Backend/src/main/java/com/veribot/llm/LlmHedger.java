@@ -0,0 +1,238 @@
+package com.veribot.llm;
+
+import com.veribot.config.HedgeConfig;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Cuts the tail latency of the main deployment by hedging its calls: when a call has
+ * not been answered after the configured percentile of recent latencies, the same call
+ * is sent to a redundant deployment, the first answer wins and the other call is
+ * cancelled. Hedges are limited by a budget: each call earns a fraction of a hedge, up
+ * to the maximum rate, so a slow deployment cannot double the load.
+ * <p>
+ * The delay is computed from the latencies of the calls the main deployment answered.
+ * A call cancelled because the hedge answered first only says the deployment took at
+ * least that long: it is recorded apart, as censored, and kept out of the window.
+ */
+public class LlmHedger {
+    private static final Logger logger = LoggerFactory.getLogger(LlmHedger.class);
+
+    // Recent latencies of the main deployment the percentile is computed from
+    private static final int WINDOW = 1000;
+    // How many latencies are recorded between two computations of the delay
+    private static final int RECOMPUTE_EVERY = 20;
+    // How many hedges can be saved up for a burst of slow calls
+    private static final double MAX_BUDGET = 10;
+
+    private final HedgeConfig config;
+    private final AzureOpenAIClient primary;
+    private final AzureOpenAIClient secondary;
+    private final long[] latencies = new long[WINDOW];
+    private int recorded;
+    private volatile long delayMillis;
+    private double budget;
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger hedges = new AtomicInteger();
+    private final Timer effectiveLatency;
+    private final Timer primaryLatency;
+    private final Timer censoredLatency;
+    private final Counter sent;
+    private final Counter won;
+    private final Counter overBudget;
+
+    /**
+     * Creates a new LlmHedger.
+     *
+     * @param config the delay and budget of the hedges
+     * @param primary the client of the deployment whose calls are hedged
+     * @param secondary the client of the redundant deployment hedges are sent to
+     * @return the hedger, its hedging rate and delay reported as gauges
+     */
+    public static LlmHedger create(HedgeConfig config, AzureOpenAIClient primary, AzureOpenAIClient secondary) {
+        LlmHedger hedger = new LlmHedger(config, primary, secondary);
+        Gauge.builder("veribot.llm.hedging.rate", hedger, LlmHedger::hedgeRate)
+                .description("Share of calls that were also sent to the redundant deployment")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("veribot.llm.hedging.delay", hedger, h -> h.delayMillis)
+                .baseUnit("milliseconds").register(Metrics.globalRegistry);
+        return hedger;
+    }
+
+    private LlmHedger(HedgeConfig config, AzureOpenAIClient primary, AzureOpenAIClient secondary) {
+        this.config = config;
+        this.primary = primary;
+        this.secondary = secondary;
+        this.delayMillis = config.getInitialDelayMillis();
+        this.effectiveLatency = Timer.builder("veribot.llm.hedging.latency").tag("path", "effective")
+                .description("Latency of hedged calls, whichever deployment answered")
+                .publishPercentiles(0.5, 0.95, 0.99).register(Metrics.globalRegistry);
+        this.primaryLatency = Timer.builder("veribot.llm.hedging.latency").tag("path", "primary")
+                .description("Latency of the main deployment alone, when it answered; calls cancelled "
+                        + "before answering are recorded as path=primary_censored")
+                .publishPercentiles(0.5, 0.95, 0.99).register(Metrics.globalRegistry);
+        this.censoredLatency = Timer.builder("veribot.llm.hedging.latency").tag("path", "primary_censored")
+                .description("Time after which calls to the main deployment were cancelled unanswered, "
+                        + "a lower bound of their latency")
+                .register(Metrics.globalRegistry);
+        this.sent = Metrics.counter("veribot.llm.hedging.requests", "outcome", "sent");
+        this.won = Metrics.counter("veribot.llm.hedging.requests", "outcome", "won");
+        this.overBudget = Metrics.counter("veribot.llm.hedging.requests", "outcome", "over_budget");
+
+        logger.info("LlmHedger initialized: {} hedged by {}", primary.getDeploymentName(), secondary.getDeploymentName());
+    }
+
+    /**
+     * @param client the client a call is routed to
+     * @return whether the calls of that client are hedged
+     */
+    public boolean covers(AzureOpenAIClient client) {
+        return client == primary;
+    }
+
+    /**
+     * Runs a call on the main deployment, hedging it on the redundant one if it is slow.
+     * Cancelling the returned future cancels both calls.
+     *
+     * @param call starts the call on a client
+     * @return the first answer, or the failure of the last call to fail
+     */
+    public CompletableFuture<String> call(Function<AzureOpenAIClient, CompletableFuture<String>> call) {
+        long started = System.nanoTime();
+        calls.incrementAndGet();
+        earnBudget();
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CompletableFuture<CompletableFuture<String>> hedge = new CompletableFuture<>();
+        // Calls that may still answer; the result fails when none is left
+        AtomicInteger running = new AtomicInteger(1);
+
+        CompletableFuture<String> first = call.apply(primary);
+        first.whenComplete((content, error) -> {
+            if (error == null) {
+                recordLatency(System.nanoTime() - started);
+            } else if (first.isCancelled()) {
+                // Only a lower bound: it would bias the delay towards the hedges that won
+                censoredLatency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+            settle(result, content, error, running, started);
+        });
+
+        CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS).execute(() -> {
+            if (result.isDone()) {
+                hedge.complete(null);
+                return;
+            }
+            if (!spendBudget()) {
+                overBudget.increment();
+                hedge.complete(null);
+                return;
+            }
+            running.incrementAndGet();
+            if (result.isDone()) {
+                hedge.complete(null);
+                return;
+            }
+            sent.increment();
+            hedges.incrementAndGet();
+            CompletableFuture<String> second = call.apply(secondary);
+            hedge.complete(second);
+            second.whenComplete((content, error) -> {
+                if (error == null && !result.isDone()) {
+                    won.increment();
+                }
+                settle(result, content, error, running, started);
+            });
+        });
+
+        // Whatever the outcome, the call still running is not needed any more
+        result.whenComplete((content, error) -> {
+            first.cancel(true);
+            hedge.thenAccept(second -> {
+                if (second != null) {
+                    second.cancel(true);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Completes the result with the first answer. A failure only fails it when no other
+     * call can answer any more.
+     */
+    private void settle(CompletableFuture<String> result, String content, Throwable error, AtomicInteger running,
+            long started) {
+        if (error == null) {
+            if (result.complete(content)) {
+                effectiveLatency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        } else if (running.decrementAndGet() == 0) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    private synchronized void earnBudget() {
+        budget = Math.min(MAX_BUDGET, budget + config.getMaxRate());
+    }
+
+    private synchronized boolean spendBudget() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+
+    /**
+     * Records a latency of the main deployment and recomputes the hedging delay from
+     * time to time.
+     */
+    private void recordLatency(long nanos) {
+        primaryLatency.record(nanos, TimeUnit.NANOSECONDS);
+        long[] snapshot = null;
+        synchronized (this) {
+            latencies[recorded % WINDOW] = TimeUnit.NANOSECONDS.toMillis(nanos);
+            recorded++;
+            if (recorded >= config.getMinSamples() && recorded % RECOMPUTE_EVERY == 0) {
+                snapshot = Arrays.copyOf(latencies, Math.min(recorded, WINDOW));
+            }
+        }
+        if (snapshot != null) {
+            Arrays.sort(snapshot);
+            int rank = (int) Math.ceil(config.getPercentile() * snapshot.length) - 1;
+            delayMillis = Math.max(config.getMinDelayMillis(), snapshot[Math.max(0, rank)]);
+        }
+    }
+
+    /**
+     * @return how many latencies of the main deployment were recorded in the window
+     */
+    synchronized int recordedLatencies() {
+        return recorded;
+    }
+
+    /**
+     * @return the delay after which calls are hedged now
+     */
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    private double hedgeRate() {
+        int total = calls.get();
+        return total == 0 ? 0 : (double) hedges.get() / total;
+    }
+}
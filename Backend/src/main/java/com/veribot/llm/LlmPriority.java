@@ -0,0 +1,29 @@
+package com.veribot.llm;
+
+/**
+ * How urgently a call to the language model is needed. When the deployment's quota is
+ * short, calls of a higher priority are sent first.
+ */
+public enum LlmPriority {
+    /**
+     * A user is waiting for the answer to a follow-up question about a verified event.
+     */
+    INTERACTIVE_FOLLOW_UP,
+
+    /**
+     * A user is waiting for the verification of a new claim.
+     */
+    NEW_VERIFICATION,
+
+    /**
+     * Nobody is waiting interactively, e.g. a claim of a batch.
+     */
+    BACKGROUND;
+
+    /**
+     * @return the priority as a lower-case metric tag
+     */
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,263 @@
+package com.veribot.llm;
+
+import com.veribot.config.LlmQuotaConfig;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Schedules the calls to a deployment within its tokens-per-minute and
+ * requests-per-minute quota, so that the calls of all sessions stop hitting 429 at
+ * random. Each quota is a token bucket holding ten seconds of it, the granularity at
+ * which Azure enforces it, and a call takes its estimated tokens and one request from
+ * the buckets before being sent. Calls wait in a queue ordered by priority, then by
+ * arrival; a call whose turn cannot come before its deadline is dropped right away
+ * rather than after waiting in vain.
+ */
+public class LlmQuotaScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(LlmQuotaScheduler.class);
+
+    // How long to stop sending after a 429 that did not say how long to wait
+    private static final long DEFAULT_PAUSE_MILLIS = 1000;
+
+    private final LlmQuotaConfig config;
+    private final LongSupplier clock;
+    private final Bucket tokens;
+    private final Bucket requests;
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::sequence));
+    private long sequence;
+    private long pausedUntil;
+    private long drainAt = Long.MAX_VALUE;
+
+    /**
+     * A call waiting for its turn.
+     *
+     * @param permit completed when the call may be sent
+     */
+    private record Waiter(LlmPriority priority, long sequence, long tokens, long enqueuedAt, long deadline,
+            CompletableFuture<Void> permit) {
+    }
+
+    /**
+     * A per-minute quota refilled continuously.
+     */
+    private static final class Bucket {
+        private final double capacity;
+        private final double perMilli;
+        private double available;
+        private long updatedAt;
+
+        Bucket(long perMinute, long now) {
+            this.capacity = Math.max(1, perMinute / 6.0);
+            this.perMilli = perMinute / 60_000.0;
+            this.available = capacity;
+            this.updatedAt = now;
+        }
+
+        void refill(long now) {
+            available = Math.min(capacity, available + (now - updatedAt) * perMilli);
+            updatedAt = now;
+        }
+
+        /**
+         * A call larger than the bucket only needs it full.
+         */
+        double cost(double amount) {
+            return Math.min(amount, capacity);
+        }
+
+        long millisUntil(double amount) {
+            double missing = amount - available;
+            return missing <= 0 ? 0 : (long) Math.ceil(missing / perMilli);
+        }
+    }
+
+    /**
+     * Creates a new LlmQuotaScheduler.
+     *
+     * @param config the quota of the deployment and the deadlines of each priority
+     * @param deploymentName the deployment whose quota is scheduled, for the metrics
+     * @return the scheduler, its queue reported as a gauge
+     */
+    public static LlmQuotaScheduler create(LlmQuotaConfig config, String deploymentName) {
+        return create(config, deploymentName, () -> System.nanoTime() / 1_000_000);
+    }
+
+    static LlmQuotaScheduler create(LlmQuotaConfig config, String deploymentName, LongSupplier clock) {
+        LlmQuotaScheduler scheduler = new LlmQuotaScheduler(config, deploymentName, clock);
+        Gauge.builder("veribot.llm.quota.queued", scheduler, LlmQuotaScheduler::queued)
+                .tag("deployment", deploymentName).register(Metrics.globalRegistry);
+        return scheduler;
+    }
+
+    private LlmQuotaScheduler(LlmQuotaConfig config, String deploymentName, LongSupplier clock) {
+        this.config = config;
+        this.clock = clock;
+        long now = clock.getAsLong();
+        this.tokens = config.getTokensPerMinute() > 0 ? new Bucket(config.getTokensPerMinute(), now) : null;
+        this.requests = config.getRequestsPerMinute() > 0 ? new Bucket(config.getRequestsPerMinute(), now) : null;
+
+        logger.info("LlmQuotaScheduler initialized for deployment {}: {} TPM, {} RPM",
+                deploymentName, config.getTokensPerMinute(), config.getRequestsPerMinute());
+    }
+
+    /**
+     * Returns the deadline of a call of the given priority starting now.
+     *
+     * @param priority the priority of the call
+     * @return the time by which the call must be sent, on the scheduler's clock
+     */
+    public long deadlineFor(LlmPriority priority) {
+        return clock.getAsLong() + config.getDeadlineMillis(priority);
+    }
+
+    /**
+     * Waits for the quota to send a call.
+     *
+     * @param estimatedTokens the tokens the call is expected to use, prompt and completion
+     * @param priority the priority of the call
+     * @param deadline the time by which the call must be sent, from {@link #deadlineFor}
+     * @return completed when the call may be sent, failed with an {@link LlmException}
+     *         of kind SHED if it could not be sent in time; cancelling it leaves the queue
+     */
+    public CompletableFuture<Void> acquire(long estimatedTokens, LlmPriority priority, long deadline) {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        synchronized (this) {
+            long now = clock.getAsLong();
+            refill(now);
+            long wait = projectedWait(estimatedTokens, priority, now);
+            if (now + wait > deadline) {
+                return CompletableFuture.failedFuture(shed(priority, wait));
+            }
+            queue.add(new Waiter(priority, sequence++, estimatedTokens, now, deadline, permit));
+        }
+        drain();
+        return permit;
+    }
+
+    /**
+     * Stops sending calls for a while after the deployment answered 429.
+     *
+     * @param retryAfterMillis how long the deployment asked to wait, -1 if it did not say
+     */
+    public void onRateLimited(long retryAfterMillis) {
+        synchronized (this) {
+            long pause = retryAfterMillis >= 0 ? retryAfterMillis : DEFAULT_PAUSE_MILLIS;
+            pausedUntil = Math.max(pausedUntil, clock.getAsLong() + pause);
+        }
+        drain();
+    }
+
+    /**
+     * Lets the calls at the head of the queue go while the quota allows, drops the ones
+     * past their deadline, and schedules the next pass for when the head fits.
+     */
+    void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        List<Waiter> expired = new ArrayList<>();
+        long now;
+        synchronized (this) {
+            now = clock.getAsLong();
+            if (now >= drainAt) {
+                drainAt = Long.MAX_VALUE;
+            }
+            refill(now);
+            queue.removeIf(waiter -> {
+                if (waiter.permit().isDone()) {
+                    return true;
+                }
+                if (waiter.deadline() < now) {
+                    expired.add(waiter);
+                    return true;
+                }
+                return false;
+            });
+
+            while (!queue.isEmpty()) {
+                Waiter head = queue.peek();
+                long wait = Math.max(pausedUntil - now, Math.max(
+                        tokens != null ? tokens.millisUntil(tokens.cost(head.tokens())) : 0,
+                        requests != null ? requests.millisUntil(1) : 0));
+                if (wait > 0) {
+                    scheduleDrain(now, wait);
+                    break;
+                }
+                queue.poll();
+                if (tokens != null) {
+                    tokens.available -= tokens.cost(head.tokens());
+                }
+                if (requests != null) {
+                    requests.available -= 1;
+                }
+                granted.add(head);
+            }
+        }
+
+        for (Waiter waiter : expired) {
+            waiter.permit().completeExceptionally(shed(waiter.priority(), now - waiter.enqueuedAt()));
+        }
+        for (Waiter waiter : granted) {
+            Metrics.timer("veribot.llm.quota.wait", "priority", waiter.priority().tag())
+                    .record(now - waiter.enqueuedAt(), TimeUnit.MILLISECONDS);
+            waiter.permit().complete(null);
+        }
+    }
+
+    /**
+     * Estimates how long a new call would wait: until the buckets hold what it and every
+     * queued call of the same or a higher priority need.
+     */
+    private long projectedWait(long estimatedTokens, LlmPriority priority, long now) {
+        double tokensAhead = tokens != null ? tokens.cost(estimatedTokens) : 0;
+        int requestsAhead = 1;
+        for (Waiter waiter : queue) {
+            if (waiter.priority().compareTo(priority) <= 0 && !waiter.permit().isDone()) {
+                tokensAhead += tokens != null ? tokens.cost(waiter.tokens()) : 0;
+                requestsAhead++;
+            }
+        }
+        return Math.max(pausedUntil - now, Math.max(
+                tokens != null ? tokens.millisUntil(tokensAhead) : 0,
+                requests != null ? requests.millisUntil(requestsAhead) : 0));
+    }
+
+    private void refill(long now) {
+        if (tokens != null) {
+            tokens.refill(now);
+        }
+        if (requests != null) {
+            requests.refill(now);
+        }
+    }
+
+    private void scheduleDrain(long now, long wait) {
+        if (now + wait >= drainAt) {
+            return;
+        }
+        drainAt = now + wait;
+        CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS).execute(this::drain);
+    }
+
+    private LlmException shed(LlmPriority priority, long waitMillis) {
+        Metrics.counter("veribot.llm.quota.shed", "priority", priority.tag()).increment();
+        logger.warn("Dropping {} LLM call: the quota cannot be met before its deadline ({} ms)",
+                priority.tag(), waitMillis);
+        return new LlmException(LlmException.Kind.SHED,
+                "Language model quota exhausted, the call could not be sent before its deadline", null);
+    }
+
+    private synchronized int queued() {
+        return queue.size();
+    }
+}
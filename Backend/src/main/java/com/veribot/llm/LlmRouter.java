@@ -0,0 +1,248 @@
+package com.veribot.llm;
+
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sends each stage of the pipeline to the deployment suited to it: short classification
+ * and query prompts to a fast, cheap deployment, analyses and follow-up answers to the
+ * strong one. Each deployment has its own client, with its own timeouts, retries,
+ * circuit breaker and quota. When a deployment cannot answer, the call falls back to the
+ * other one. Without a fast deployment configured, both routes use the main one.
+ * Completions of the main deployment can also be hedged on a redundant deployment.
+ */
+public class LlmRouter {
+    private static final Logger logger = LoggerFactory.getLogger(LlmRouter.class);
+
+    // Failures of a deployment that the other one may not have
+    private static final Set<LlmException.Kind> FALLBACK_KINDS = EnumSet.of(
+            LlmException.Kind.TIMEOUT, LlmException.Kind.RATE_LIMITED, LlmException.Kind.SERVER_ERROR,
+            LlmException.Kind.NETWORK, LlmException.Kind.CIRCUIT_OPEN, LlmException.Kind.SHED);
+
+    private final Map<Route, AzureOpenAIClient> clients = new EnumMap<>(Route.class);
+    private final LlmHedger hedger;
+
+    /**
+     * A generated text and the deployment that generated it, which is the other one when
+     * the call fell back. A hedged call counts as answered by the main deployment, as the
+     * redundant deployment runs the same model.
+     *
+     * @param content the generated text
+     * @param deploymentName the name of the deployment that answered
+     */
+    public record Completion(String content, String deploymentName) {
+    }
+
+    /**
+     * The kinds of deployment a call can be routed to.
+     */
+    public enum Route {
+        /**
+         * A small, fast model, for classifications and search queries.
+         */
+        FAST,
+
+        /**
+         * The main, stronger model, for analyses and answers.
+         */
+        STRONG;
+
+        /**
+         * @return the route as a lower-case metric tag
+         */
+        public String tag() {
+            return name().toLowerCase();
+        }
+
+        Route other() {
+            return this == FAST ? STRONG : FAST;
+        }
+    }
+
+    /**
+     * Creates a new LlmRouter.
+     *
+     * @param strong the client of the main deployment
+     * @param fast the client of the fast deployment, or null to send everything to the main one
+     * @param hedger hedges the completions of the main deployment, or null to not hedge them
+     */
+    public LlmRouter(AzureOpenAIClient strong, AzureOpenAIClient fast, LlmHedger hedger) {
+        clients.put(Route.STRONG, strong);
+        clients.put(Route.FAST, fast != null ? fast : strong);
+        this.hedger = hedger;
+
+        logger.info("LlmRouter initialized: fast={}, strong={}",
+                clients.get(Route.FAST).getDeploymentName(), strong.getDeploymentName());
+    }
+
+
+    /**
+     * @param route the route of a call
+     * @return the name of the deployment the route uses first
+     */
+    public String getDeploymentName(Route route) {
+        return clients.get(route).getDeploymentName();
+    }
+
+    /**
+     * Generates a chat completion on the deployment of a route, hedged if it is the main
+     * one, falling back to the other deployment if it cannot answer.
+     *
+     * @param route the route of the call
+     * @param prompt the prompt to send
+     * @param temperature the temperature to use for generation (0.0-1.0)
+     * @param priority how urgently the completion is needed when the quota is short
+     * @return the generated text, or a future failed with an {@link LlmException}
+     */
+    public CompletableFuture<String> complete(Route route, String prompt, double temperature, LlmPriority priority) {
+        return content(completion(route, prompt, temperature, priority));
+    }
+
+    /**
+     * Generates a chat completion like {@link #complete}, telling which deployment
+     * answered, so that the answer can be cached under it.
+     *
+     * @param route the route of the call
+     * @param prompt the prompt to send
+     * @param temperature the temperature to use for generation (0.0-1.0)
+     * @param priority how urgently the completion is needed when the quota is short
+     * @return the generated text and its deployment, or a future failed with an {@link LlmException}
+     */
+    public CompletableFuture<Completion> completion(Route route, String prompt, double temperature,
+            LlmPriority priority) {
+        Function<AzureOpenAIClient, CompletableFuture<String>> call = client -> client.complete(prompt, temperature, priority);
+        return withFallback(route, client -> hedger != null && hedger.covers(client) ? hedger.call(call) : call.apply(client),
+                () -> true);
+    }
+
+    /**
+     * Generates a streamed chat completion on the deployment of a route, falling back to
+     * the other deployment if it fails before the first token. Streams are not hedged,
+     * as the tokens of two streams cannot be merged.
+     *
+     * @param route the route of the call
+     * @param prompt the prompt to send
+     * @param temperature the temperature to use for generation (0.0-1.0)
+     * @param onToken receives each generated token, on a client thread
+     * @param priority how urgently the completion is needed when the quota is short
+     * @return the whole generated text, or a future failed with an {@link LlmException}
+     */
+    public CompletableFuture<String> stream(Route route, String prompt, double temperature, Consumer<String> onToken,
+            LlmPriority priority) {
+        return content(streamCompletion(route, prompt, temperature, onToken, priority));
+    }
+
+    /**
+     * Generates a streamed chat completion like {@link #stream}, telling which deployment
+     * answered, so that the answer can be cached under it.
+     *
+     * @param route the route of the call
+     * @param prompt the prompt to send
+     * @param temperature the temperature to use for generation (0.0-1.0)
+     * @param onToken receives each generated token, on a client thread
+     * @param priority how urgently the completion is needed when the quota is short
+     * @return the whole generated text and its deployment, or a future failed with an {@link LlmException}
+     */
+    public CompletableFuture<Completion> streamCompletion(Route route, String prompt, double temperature,
+            Consumer<String> onToken, LlmPriority priority) {
+        AtomicBoolean emitted = new AtomicBoolean();
+        Consumer<String> tracking = token -> {
+            emitted.set(true);
+            onToken.accept(token);
+        };
+        return withFallback(route, client -> client.stream(prompt, temperature, tracking, priority), () -> !emitted.get());
+    }
+
+    /**
+     * Runs a call on the deployment of a route and, if it fails in a way the other
+     * deployment may not, runs it again there. Cancelling the returned future cancels
+     * the call in flight.
+     */
+    private CompletableFuture<Completion> withFallback(Route route,
+            Function<AzureOpenAIClient, CompletableFuture<String>> call, BooleanSupplier fallbackAllowed) {
+        AzureOpenAIClient primary = clients.get(route);
+        AzureOpenAIClient secondary = clients.get(route.other());
+        CompletableFuture<Completion> result = new CompletableFuture<>();
+        if (primary == secondary) {
+            CompletableFuture<String> only = call.apply(primary);
+            result.whenComplete((content, error) -> {
+                if (result.isCancelled()) {
+                    only.cancel(true);
+                }
+            });
+            only.whenComplete((content, error) -> complete(result, primary, content, error));
+            return result;
+        }
+
+        AtomicReference<CompletableFuture<String>> current = new AtomicReference<>(call.apply(primary));
+        result.whenComplete((content, error) -> {
+            if (result.isCancelled()) {
+                current.get().cancel(true);
+            }
+        });
+        current.get().whenComplete((content, error) -> {
+            if (error == null) {
+                result.complete(new Completion(content, primary.getDeploymentName()));
+                return;
+            }
+            if (error instanceof LlmException failure && FALLBACK_KINDS.contains(failure.getKind())
+                    && fallbackAllowed.getAsBoolean() && !result.isDone()) {
+                logger.warn("Deployment {} failed ({}), falling back to {}",
+                        primary.getDeploymentName(), failure.getKind(), secondary.getDeploymentName());
+                Metrics.counter("veribot.llm.fallbacks", "route", route.tag(), "reason", failure.getKind().tag())
+                        .increment();
+                CompletableFuture<String> fallback = call.apply(secondary);
+                current.set(fallback);
+                if (result.isCancelled()) {
+                    fallback.cancel(true);
+                }
+                fallback.whenComplete((fallbackContent, fallbackError) ->
+                        complete(result, secondary, fallbackContent, fallbackError));
+                return;
+            }
+            result.completeExceptionally(error);
+        });
+        return result;
+    }
+
+    private static void complete(CompletableFuture<Completion> result, AzureOpenAIClient client, String content,
+            Throwable error) {
+        if (error == null) {
+            result.complete(new Completion(content, client.getDeploymentName()));
+        } else {
+            result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * @return the text of a completion; cancelling it cancels the completion
+     */
+    private static CompletableFuture<String> content(CompletableFuture<Completion> completion) {
+        CompletableFuture<String> content = new CompletableFuture<>();
+        content.whenComplete((text, error) -> {
+            if (content.isCancelled()) {
+                completion.cancel(true);
+            }
+        });
+        completion.whenComplete((answer, error) -> {
+            if (error == null) {
+                content.complete(answer.content());
+            } else {
+                content.completeExceptionally(error);
+            }
+        });
+        return content;
+    }
+}
@@ -0,0 +1,43 @@
+package com.veribot.model;
+
+/**
+ * The outcome of one claim of a batch verification.
+ *
+ * @param index the position of the claim in the batch
+ * @param claim the claim as submitted
+ * @param status how the claim ended
+ * @param result the verdict, null unless the status is VERIFIED or REUSED
+ * @param error the reason of a failure, null unless the status is FAILED
+ */
+public record BatchItemResult(
+    int index,
+    String claim,
+    Status status,
+    NewsVerificationResult result,
+    String error
+) {
+    /**
+     * How a claim of a batch ended.
+     */
+    public enum Status {
+        VERIFIED, REUSED, NOT_NEWS, NO_RESULTS, FAILED;
+
+        /**
+         * @return the status as a lower-case tag
+         */
+        public String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Returns the same outcome for a repeated claim at another position.
+     *
+     * @param index the position of the repeated claim
+     * @param claim the repeated claim as submitted
+     * @return the outcome of the repeated claim
+     */
+    public BatchItemResult forItem(int index, String claim) {
+        return new BatchItemResult(index, claim, status, result, error);
+    }
+}
@@ -0,0 +1,19 @@
+package com.veribot.model;
+
+/**
+ * Represents what was understood from a user query before searching for it.
+ *
+ * @param newsRelated whether the query can be verified against news
+ * @param intent "SAME_EVENT", "NEW_EVENT" or "IRRELEVANT" when a conversation is going on, null otherwise
+ * @param searchQuery the optimized search query
+ * @param countryName the country guessed from the query
+ * @param languageCode the ISO 639-1 code of the language of the query, null if unknown
+ */
+public record QueryUnderstanding(
+    boolean newsRelated,
+    String intent,
+    String searchQuery,
+    String countryName,
+    String languageCode
+) {
+}
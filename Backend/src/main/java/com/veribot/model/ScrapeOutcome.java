@@ -0,0 +1,38 @@
+package com.veribot.model;
+
+/**
+ * Represents the outcome of fetching and extracting the text of a single news link.
+ */
+public enum ScrapeOutcome {
+    /**
+     * The page was fetched and Readability extracted some text.
+     */
+    OK,
+
+    /**
+     * The page was fetched but no text could be extracted from it.
+     */
+    EMPTY,
+
+    /**
+     * The page did not finish before the scraping deadline.
+     */
+    TIMEOUT,
+
+    /**
+     * The fetch was still running when enough articles had been extracted.
+     */
+    CANCELLED,
+
+    /**
+     * The page could not be fetched or parsed.
+     */
+    ERROR;
+
+    /**
+     * @return the lower-case name used in logs and metric tags
+     */
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
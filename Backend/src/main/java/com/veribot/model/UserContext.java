@@ -2,41 +2,24 @@ package com.veribot.model;
 
 import java.time.LocalDateTime;
 
-import com.veribot.config.AzureOpenAIConfig;
-import com.veribot.config.SerpApiConfig;
-import com.veribot.service.NewsSearchService;
-import com.veribot.service.NewsVerificationService;
+import com.veribot.service.SessionMailbox;
 
+/**
+ * The state kept for each user session: the conversation, when it was last used, and
+ * the mailbox its queries run through one at a time. The services answering the session
+ * are shared by every session and hold no state of their own.
+ */
 public class UserContext {
 	private String sessionId;
     private LocalDateTime lastAccessed;
-    private NewsSearchService searchService;
-    private NewsVerificationService verificationService;
-    private AzureOpenAIConfig openAIConfig;
-    private SerpApiConfig serpApiConfig;
+    private final ConversationSession session;
+    private final SessionMailbox mailbox;
     
     public UserContext(String sessionId) {
         this.sessionId = sessionId;
         this.lastAccessed = LocalDateTime.now();
-        try {
-            // Initialize configurations
-            this.openAIConfig = new AzureOpenAIConfig();
-            this.serpApiConfig = new SerpApiConfig();
-            // Initialize services
-            this.searchService = new NewsSearchService(serpApiConfig);
-            this.verificationService = new NewsVerificationService(openAIConfig, searchService);
-            System.out.println("Creando una nueva sesion... User ID: "+sessionId);
-        } catch (Exception e) {
-            System.err.println("Failed to start VeriBot: " + e.getMessage());
-            
-            e.printStackTrace(); // << MOSTRÁ EL STACKTRACE
-            
-            if (e instanceof IllegalStateException && e.getMessage().contains("environment variable")) {
-                System.err.println("\nPlease ensure you have set up the required environment variables.");
-                System.err.println("Create a .env file in the project root with the following variables:");
-                System.err.println("AZURE_OPENAI_ENDPOINT, AZURE_OPENAI_API_KEY, AZURE_OPENAI_DEPLOYMENT_NAME, AZURE_OPENAI_API_VERSION");
-            }
-        }
+        this.session = new ConversationSession();
+        this.mailbox = new SessionMailbox(sessionId);
     }
     
     public void updateLastAccessed() {
@@ -52,20 +35,18 @@ public class UserContext {
         return sessionId;
     }
 
-	public NewsSearchService getSearchService() {
-		return searchService;
+	/**
+	 * @return the conversation of the session
+	 */
+	public ConversationSession getSession() {
+		return session;
 	}
 
-	public NewsVerificationService getVerificationService() {
-		return verificationService;
-	}
-
-	public AzureOpenAIConfig getOpenAIConfig() {
-		return openAIConfig;
-	}
-
-	public SerpApiConfig getSerpApiConfig() {
-		return serpApiConfig;
+	/**
+	 * @return the mailbox the queries of the session run through
+	 */
+	public SessionMailbox getMailbox() {
+		return mailbox;
 	}
     
 }
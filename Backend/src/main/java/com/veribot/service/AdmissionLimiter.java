@@ -0,0 +1,271 @@
+package com.veribot.service;
+
+import com.veribot.config.AdmissionConfig;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how many queries run at once, so that a spike makes some clients wait a little
+ * or retry later instead of making every query slow. Queries over the limit wait in a
+ * bounded queue, in arrival order, for a bounded time; past either bound they are
+ * rejected at once with the delay after which a slot is likely to be free. The limit
+ * adapts to the latency of the queries (additive increase, multiplicative decrease):
+ * it grows by one per limit's worth of queries answered within the latency target while
+ * the limit is in use, and shrinks by the backoff ratio, at most once per target period,
+ * when a query is slower than the target.
+ */
+public class AdmissionLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionLimiter.class);
+
+    // Weight of the newest latency in the moving average the Retry-After is based on
+    private static final double LATENCY_SMOOTHING = 0.1;
+    private static final long MAX_RETRY_AFTER_SECONDS = 60;
+
+    private final AdmissionConfig config;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<CompletableFuture<Void>> queue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseAt = Long.MIN_VALUE;
+    private double averageLatencyMillis;
+
+    /**
+     * The right to run one query, to close when the query is done.
+     */
+    public final class Permit implements AutoCloseable {
+        private final long admittedAt;
+        private final boolean limitInUse;
+        private boolean closed;
+
+        private Permit(long admittedAt, boolean limitInUse) {
+            this.admittedAt = admittedAt;
+            this.limitInUse = limitInUse;
+        }
+
+        /**
+         * Frees the slot and adapts the limit to the latency of the query.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(clock.getAsLong() - admittedAt, limitInUse, true);
+            }
+        }
+
+        /**
+         * Frees the slot of a query that did not run, without taking it into account.
+         */
+        public void abandon() {
+            if (!closed) {
+                closed = true;
+                release(0, false, false);
+            }
+        }
+    }
+
+    /**
+     * Creates a new AdmissionLimiter.
+     *
+     * @param config the bounds of the limit and of the queue
+     * @return the limiter, its limit, running and queued queries reported as gauges
+     */
+    public static AdmissionLimiter create(AdmissionConfig config) {
+        return create(config, () -> System.nanoTime() / 1_000_000);
+    }
+
+    static AdmissionLimiter create(AdmissionConfig config, LongSupplier clock) {
+        AdmissionLimiter limiter = new AdmissionLimiter(config, clock);
+        Gauge.builder("veribot.admission.limit", limiter, AdmissionLimiter::getLimit)
+                .description("Queries allowed to run at once").register(Metrics.globalRegistry);
+        Gauge.builder("veribot.admission.inflight", limiter, AdmissionLimiter::getInFlight)
+                .register(Metrics.globalRegistry);
+        Gauge.builder("veribot.admission.queued", limiter, AdmissionLimiter::getQueued)
+                .description("Queries waiting for a slot").register(Metrics.globalRegistry);
+        return limiter;
+    }
+
+    private AdmissionLimiter(AdmissionConfig config, LongSupplier clock) {
+        this.config = config;
+        this.clock = clock;
+        this.limit = config.getInitialLimit();
+
+        logger.info("AdmissionLimiter initialized: limit={} ({}-{}), queue={}, maxQueue={} ms, target={} ms",
+                config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(), config.getQueueSize(),
+                config.getMaxQueueMillis(), config.getLatencyTargetMillis());
+    }
+
+    /**
+     * Waits for a slot to run a query.
+     *
+     * @return the permit, to close when the query is done
+     * @throws AdmissionRejectedException if the queue is full or no slot was free in time
+     */
+    public Permit acquire() {
+        long enqueuedAt = clock.getAsLong();
+        CompletableFuture<Void> slot = new CompletableFuture<>();
+        lock.lock();
+        try {
+            if (queue.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                recordWait(0);
+                return new Permit(enqueuedAt, inFlight * 2 >= (int) limit);
+            }
+            if (queue.size() >= config.getQueueSize()) {
+                throw reject("queue_full");
+            }
+            queue.add(slot);
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            slot.get(config.getMaxQueueMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            lock.lock();
+            try {
+                if (queue.remove(slot)) {
+                    throw reject("queue_timeout");
+                }
+                // Granted just as the wait ended
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            abandonSlot(slot);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for admission", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        long admittedAt = clock.getAsLong();
+        recordWait(admittedAt - enqueuedAt);
+        return new Permit(admittedAt, true);
+    }
+
+    /**
+     * Rejects a query at once if it could neither run nor wait for a slot now, without
+     * taking a slot, for callers that must answer before the query's turn comes, e.g.
+     * before opening a stream. The query takes its slot with {@link #acquire} when it runs.
+     *
+     * @throws AdmissionRejectedException if the queue is full
+     */
+    public void rejectIfFull() {
+        lock.lock();
+        try {
+            if (!(queue.isEmpty() && inFlight < (int) limit) && queue.size() >= config.getQueueSize()) {
+                throw reject("queue_full");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives up a slot waited for: leaves the queue, or frees the slot if it was granted.
+     */
+    private void abandonSlot(CompletableFuture<Void> slot) {
+        lock.lock();
+        try {
+            if (queue.remove(slot)) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        release(0, false, false);
+    }
+
+    private void release(long latencyMillis, boolean limitInUse, boolean sample) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (sample) {
+                adapt(latencyMillis, limitInUse);
+            }
+            while (!queue.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                queue.poll().complete(null);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Grows the limit after a fast query that needed it, shrinks it after a slow one.
+     */
+    private void adapt(long latencyMillis, boolean limitInUse) {
+        averageLatencyMillis = averageLatencyMillis == 0
+                ? latencyMillis
+                : averageLatencyMillis + LATENCY_SMOOTHING * (latencyMillis - averageLatencyMillis);
+        long now = clock.getAsLong();
+        if (latencyMillis > config.getLatencyTargetMillis()) {
+            // One decrease per period, not one per query of the same slow spell
+            if (lastDecreaseAt == Long.MIN_VALUE || now - lastDecreaseAt >= config.getLatencyTargetMillis()) {
+                double decreased = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+                logger.info("Query took {} ms, over the {} ms target: admission limit {} -> {}",
+                        latencyMillis, config.getLatencyTargetMillis(), (int) limit, (int) decreased);
+                limit = decreased;
+                lastDecreaseAt = now;
+            }
+        } else if (limitInUse) {
+            limit = Math.min(config.getMaxLimit(), limit + 1 / limit);
+        }
+    }
+
+    private AdmissionRejectedException reject(String reason) {
+        Metrics.counter("veribot.admission.rejected", "reason", reason).increment();
+        // A slot frees up about one query latency from now
+        long retryAfter = Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS,
+                (long) Math.ceil(averageLatencyMillis / 1000)));
+        logger.warn("Query rejected ({}): {} running, {} waiting", reason, inFlight, queue.size());
+        return new AdmissionRejectedException("The service is overloaded, please try again later", retryAfter);
+    }
+
+    private void recordWait(long waitMillis) {
+        Metrics.timer("veribot.admission.wait").record(waitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return how many queries may run at once now
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int getQueued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.veribot.service;
+
+/**
+ * Thrown when a query is not admitted because the service is overloaded. The client
+ * should try again after the suggested delay.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    /**
+     * Creates a new AdmissionRejectedException.
+     *
+     * @param message why the query was rejected
+     * @param retryAfterSeconds when the client should try again
+     */
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return the seconds after which the client should try again, for the Retry-After header
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
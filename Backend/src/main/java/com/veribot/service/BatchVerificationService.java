@@ -0,0 +1,203 @@
+package com.veribot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.veribot.config.BatchConfig;
+import com.veribot.config.PipelineConfig;
+import com.veribot.llm.LlmException;
+import com.veribot.llm.LlmPriority;
+import com.veribot.model.BatchItemResult;
+import com.veribot.model.NewsVerificationResult;
+import com.veribot.model.QueryUnderstanding;
+
+import dev.langchain4j.data.document.Document;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Verifies batches of claims, such as the headlines of a fact-checking desk. Each claim
+ * runs on its own virtual thread through the stages of the pipeline (understanding,
+ * search, scrape and analysis), and each stage has its own concurrency limit shared by
+ * all batches, so that LLM-bound and network-bound stages of different claims overlap.
+ * Each stage of a claim gets the verification deadline once it has room for the claim,
+ * so that the time a claim waits behind the others is not held against it.
+ */
+@Service
+public class BatchVerificationService {
+    private static final Logger logger = LoggerFactory.getLogger(BatchVerificationService.class);
+
+    private final BatchConfig config;
+    private final Semaphore understanding;
+    private final Semaphore search;
+    private final Semaphore scrape;
+    private final Semaphore analysis;
+    private final NewsVerificationService verification;
+    private final NewsSearchService searchService;
+    private final long deadlineMillis;
+
+    /**
+     * Receives the progress of a batch. Methods are called from the threads of the claims.
+     */
+    public interface BatchListener {
+        /**
+         * Called when a claim enters a stage.
+         *
+         * @param index the position of the claim in the batch
+         * @param stage the stage name: "understanding", "searching", "scraping" or "analyzing"
+         */
+        void onStage(int index, String stage);
+
+        /**
+         * Called when a claim is done.
+         *
+         * @param result the outcome of the claim
+         */
+        void onResult(BatchItemResult result);
+    }
+
+    /**
+     * Creates the service on top of the shared pipeline services. The LLM calls of the
+     * batches give way to those of interactive users.
+     *
+     * @param verificationService the shared verification service
+     * @param searchService the shared search service
+     * @param pipelineConfig the configuration of the pipeline, for the deadline of each stage
+     * @param config the size limit of a batch and the concurrency limit of each stage
+     */
+    public BatchVerificationService(NewsVerificationService verificationService, NewsSearchService searchService,
+            PipelineConfig pipelineConfig, BatchConfig config) {
+        this.verification = verificationService.withPriority(LlmPriority.BACKGROUND);
+        this.searchService = searchService;
+        this.deadlineMillis = pipelineConfig.getVerificationDeadlineMillis();
+        this.config = config;
+        this.understanding = new Semaphore(config.getUnderstandingConcurrency());
+        this.search = new Semaphore(config.getSearchConcurrency());
+        this.scrape = new Semaphore(config.getScrapeConcurrency());
+        this.analysis = new Semaphore(config.getAnalysisConcurrency());
+    }
+
+    public int getMaxClaims() {
+        return config.getMaxClaims();
+    }
+
+    /**
+     * Verifies every claim of a batch, reporting each outcome as soon as it is known.
+     * Repeated claims are verified once. Returns when every claim is done, or as soon as
+     * the calling thread is interrupted, e.g. because the client is gone: the claims still
+     * running are then interrupted and reported as failed.
+     *
+     * @param claims the claims to verify
+     * @param listener receives the progress and the outcome of each claim
+     */
+    public void verifyAll(List<String> claims, BatchListener listener) {
+        logger.info("Verifying a batch of {} claims", claims.size());
+        Timer.Sample sample = Timer.start();
+
+        Map<String, CompletableFuture<BatchItemResult>> byFingerprint = new HashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < claims.size(); i++) {
+                int index = i;
+                String claim = claims.get(i);
+                CompletableFuture<BatchItemResult> first = byFingerprint.get(ClaimCoalescer.fingerprint(claim));
+                if (first != null) {
+                    first.thenAccept(result -> report(result.forItem(index, claim), listener));
+                    continue;
+                }
+                CompletableFuture<BatchItemResult> verified = CompletableFuture.supplyAsync(
+                        () -> verify(index, claim, listener), executor);
+                verified.thenAccept(result -> report(result, listener));
+                byFingerprint.put(ClaimCoalescer.fingerprint(claim), verified);
+            }
+        }
+        // Closing the executor waited for every claim and its report, or interrupted them
+        // if this thread was interrupted while waiting
+        sample.stop(Metrics.timer("veribot.batch.duration"));
+    }
+
+    /**
+     * Runs one claim through the stages of the pipeline, each within the verification
+     * deadline.
+     */
+    private BatchItemResult verify(int index, String claim, BatchListener listener) {
+        try {
+            NewsVerificationResult reused = verification.findSimilarVerdict(claim);
+            if (reused != null) {
+                return new BatchItemResult(index, claim, BatchItemResult.Status.REUSED, reused, null);
+            }
+
+            QueryUnderstanding understood = inStage(understanding, index, "understanding", listener,
+                    () -> verification.understandClaim(claim));
+            if (!understood.newsRelated()) {
+                return new BatchItemResult(index, claim, BatchItemResult.Status.NOT_NEWS, null, null);
+            }
+
+            String[] countryLang = verification.resolveCountryAndLanguage(understood.countryName(), understood.languageCode());
+            List<JsonNode> candidates = inStage(search, index, "searching", listener,
+                    () -> searchService.findCandidates(understood.searchQuery(), countryLang[0], countryLang[1]));
+            List<Document> documents = inStage(scrape, index, "scraping", listener,
+                    () -> searchService.scrapeArticles(candidates));
+            if (documents.isEmpty()) {
+                return new BatchItemResult(index, claim, BatchItemResult.Status.NO_RESULTS, null, null);
+            }
+
+            NewsVerificationResult result = inStage(analysis, index, "analyzing", listener,
+                    () -> verification.analyzeClaim(claim, documents, countryLang[1]));
+            return new BatchItemResult(index, claim, BatchItemResult.Status.VERIFIED, result, null);
+        } catch (TimeoutException e) {
+            return new BatchItemResult(index, claim, BatchItemResult.Status.FAILED, null, "Deadline exceeded");
+        } catch (LlmException e) {
+            return new BatchItemResult(index, claim, BatchItemResult.Status.FAILED, null,
+                    "Language model unavailable: " + e.getKind().tag());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new BatchItemResult(index, claim, BatchItemResult.Status.FAILED, null, "Interrupted");
+        } catch (Exception e) {
+            logger.error("Error verifying batch claim {}: {}", index, e.getMessage(), e);
+            return new BatchItemResult(index, claim, BatchItemResult.Status.FAILED, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the work of a stage once the stage has room for it, within the verification
+     * deadline counted from then, and records how long the claim waited for the stage.
+     *
+     * @throws TimeoutException if the work did not finish before the deadline
+     */
+    private <T> T inStage(Semaphore limit, int index, String stage, BatchListener listener, Callable<T> work) throws Exception {
+        long waiting = System.nanoTime();
+        limit.acquire();
+        VerificationScope scope = VerificationScope.open(deadlineMillis);
+        try {
+            Metrics.timer("veribot.batch.stage.wait", "stage", stage).record(System.nanoTime() - waiting,
+                    TimeUnit.NANOSECONDS);
+            listener.onStage(index, stage);
+            return work.call();
+        } catch (Exception e) {
+            if (scope.isDeadlineExceeded()) {
+                throw new TimeoutException("Claim " + index + " did not finish " + stage + " before its deadline");
+            }
+            throw e;
+        } finally {
+            scope.close();
+            limit.release();
+        }
+    }
+
+    private void report(BatchItemResult result, BatchListener listener) {
+        Metrics.counter("veribot.batch.items", "status", result.status().tag()).increment();
+        listener.onResult(result);
+    }
+}
@@ -0,0 +1,132 @@
+package com.veribot.service;
+
+import com.veribot.llm.LlmException;
+import com.veribot.model.NewsVerificationResult;
+import com.veribot.util.TextNormalizer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Lets concurrent verifications of the same claim, from any session, share one run of
+ * the pipeline. The first caller leads and runs it; callers arriving while it runs follow:
+ * they receive the leader's progress events and the same result.
+ */
+public class ClaimCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(ClaimCoalescer.class);
+
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    /**
+     * Creates a new ClaimCoalescer.
+     *
+     * @return the coalescer, its flights and coalescing ratio reported as gauges
+     */
+    public static ClaimCoalescer create() {
+        ClaimCoalescer coalescer = new ClaimCoalescer();
+        Gauge.builder("veribot.claims.coalescing.ratio", coalescer, ClaimCoalescer::coalescingRatio)
+                .description("Share of verifications that followed an identical one in flight")
+                .register(Metrics.globalRegistry);
+        return coalescer;
+    }
+
+    private ClaimCoalescer() {
+        this.leaders = Metrics.counter("veribot.claims.coalescing", "role", "leader");
+        this.followers = Metrics.counter("veribot.claims.coalescing", "role", "follower");
+        Gauge.builder("veribot.claims.inflight", inFlight, Map::size).register(Metrics.globalRegistry);
+
+        logger.info("ClaimCoalescer initialized");
+    }
+
+    /**
+     * Builds the key under which verifications of a claim are shared: its folded words,
+     * so that claims differing only in case, accents or punctuation are the same.
+     *
+     * @param claim the user's query
+     * @return the fingerprint of the claim
+     */
+    public static String fingerprint(String claim) {
+        return String.join(" ", TextNormalizer.tokens(claim));
+    }
+
+    /**
+     * Verifies a claim, running the pipeline unless an identical verification is already
+     * running, in which case its result is awaited instead.
+     *
+     * @param stages the part of the pipeline run, e.g. "pipeline" or "search"; only runs
+     *        of the same part are shared, as they report different stages
+     * @param claim the user's query
+     * @param listener receives the progress of the verification
+     * @param pipeline runs the verification, reporting to the listener it is given
+     * @return the result of the verification
+     */
+    public NewsVerificationResult verify(String stages, String claim, VerificationListener listener,
+            Function<VerificationListener, NewsVerificationResult> pipeline) {
+        String key = stages + ":" + fingerprint(claim);
+        Flight flight = new Flight();
+        Flight running = inFlight.putIfAbsent(key, flight);
+
+        if (running != null) {
+            followers.increment();
+            logger.info("Joining the verification in flight for claim: {}", key);
+            running.events.attach(listener);
+            try {
+                return running.result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Verification interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof LlmException llmException && llmException.getKind() != LlmException.Kind.CANCELLED) {
+                    // The deployment is failing; running again would only add load
+                    throw llmException;
+                }
+                // The leader was cancelled or failed on its own, verify independently
+                logger.debug("Coalesced verification failed, verifying again: {}", cause.getMessage());
+                return pipeline.apply(listener);
+            } finally {
+                running.events.detach(listener);
+            }
+        }
+
+        leaders.increment();
+        flight.events.attach(listener);
+        try {
+            NewsVerificationResult result = pipeline.apply(flight.events);
+            inFlight.remove(key, flight);
+            flight.result.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the share of verifications that followed one in flight, 0 before the first one
+     */
+    private double coalescingRatio() {
+        double total = leaders.count() + followers.count();
+        return total == 0 ? 0 : followers.count() / total;
+    }
+
+    /**
+     * A verification in flight.
+     */
+    private static class Flight {
+        final CompletableFuture<NewsVerificationResult> result = new CompletableFuture<>();
+        final FanOutListener events = new FanOutListener();
+    }
+}
@@ -1,14 +1,12 @@
 package com.veribot.service;
 import com.veribot.VeriBot;
 
+import com.veribot.config.AdmissionConfig;
+import com.veribot.config.SessionConfig;
 import com.veribot.model.PromptModel;
 import com.veribot.model.UserContext;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.http.HttpHeaders;
-import java.time.LocalDateTime;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
@@ -25,41 +23,77 @@ public class ConversationService {
     // This class is responsible for managing the conversation state and interactions with the user.
     // It will handle the logic for processing user queries and generating responses.
     private final VeriBot veriBot;
-    private final Map<String, UserContext> userContexts = new ConcurrentHashMap<>();
-    private final long CONTEXT_EXPIRY_MINUTES = 30;
+    private final SessionStore sessions = SessionStore.create(new SessionConfig());
+    private final AdmissionLimiter admission;
     private final RestTemplate restTemplate = new RestTemplate();
     
     @Autowired
     public ConversationService(VeriBot veriBot) {
         this.veriBot = veriBot;
+        AdmissionConfig admissionConfig = new AdmissionConfig();
+        this.admission = admissionConfig.isEnabled() ? AdmissionLimiter.create(admissionConfig) : null;
         setupContextCleanupTask();
     }
 
 
 	public String processQuery(PromptModel request, String sessionId) {
-		UserContext context = userContexts.computeIfAbsent(
-	            sessionId, id -> new UserContext(id)
-	        );
-	        
-	        // Actualizar timestamp de último acceso
-	        context.updateLastAccessed();
-        return veriBot.run(request.getText(),context);
+		return processQuery(request, sessionId, VerificationListener.NONE);
+	}
+
+	/**
+	 * Processes a query, reporting the progress of the verification to a listener. The
+	 * query takes its admission slot when its turn in the session's mailbox comes, so
+	 * that queries queued behind another one of the session hold no slot, and a query
+	 * identical to one in flight, which only waits for its answer, takes none.
+	 *
+	 * @param request the user's prompt
+	 * @param sessionId the id of the user's session
+	 * @param listener receives the pipeline stages and the generated tokens
+	 * @return the formatted answer
+	 * @throws AdmissionRejectedException if the service is overloaded
+	 */
+	public String processQuery(PromptModel request, String sessionId, VerificationListener listener) {
+		UserContext context = sessions.getOrCreate(sessionId);
+        
+        // Actualizar timestamp de último acceso
+        context.updateLastAccessed();
+        // One query at a time per session; an identical query in flight is shared
+        return context.getMailbox().submit(request.getText(), listener, events -> {
+            AdmissionLimiter.Permit permit = null;
+            try {
+                if (admission != null) {
+                    permit = admission.acquire();
+                }
+                return veriBot.run(request.getText(), context, events);
+            } finally {
+                if (permit != null) {
+                    permit.close();
+                }
+                sessions.updated(context);
+            }
+        });
     }
+
+	/**
+	 * Rejects a query at once if the service is too overloaded for it to wait for a slot,
+	 * e.g. before answering the request that starts it in the background. It is admitted
+	 * for good by {@link #processQuery}.
+	 *
+	 * @throws AdmissionRejectedException if the service is overloaded
+	 */
+	public void rejectIfOverloaded() {
+		if (admission != null) {
+			admission.rejectIfFull();
+		}
+	}
 	
 	
     private void setupContextCleanupTask() {
 		// TODO Auto-generated method stub
+    	// Expiring only visits the expired sessions, so it can run often
     	Executors.newSingleThreadScheduledExecutor().scheduleAtFixedRate(
-                this::cleanupOldContexts, 10, 10, TimeUnit.MINUTES
+                sessions::expire, 1, 1, TimeUnit.MINUTES
             );
 	}
-    
-    private void cleanupOldContexts() {
-        LocalDateTime expiryTime = LocalDateTime.now().minusMinutes(CONTEXT_EXPIRY_MINUTES);
-        
-        userContexts.entrySet().removeIf(entry -> 
-            entry.getValue().getLastAccessed().isBefore(expiryTime)
-        );
-    }
 
 }
@@ -0,0 +1,63 @@
+package com.veribot.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forwards the events of a verification to every attached listener. Listeners attached
+ * late first receive the events they missed, so a follower's stream looks the same
+ * as the leader's.
+ */
+class FanOutListener implements VerificationListener {
+    private final List<VerificationListener> listeners = new ArrayList<>();
+    private final List<String[]> history = new ArrayList<>();
+
+    synchronized void attach(VerificationListener listener) {
+        if (listener == VerificationListener.NONE) {
+            return;
+        }
+        for (String[] event : history) {
+            replay(listener, event);
+        }
+        listeners.add(listener);
+    }
+
+    synchronized void detach(VerificationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return whether a listener attached now reads the tokens of the answer
+     */
+    @Override
+    public synchronized boolean wantsTokens() {
+        for (VerificationListener listener : listeners) {
+            if (listener.wantsTokens()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void onStage(String stage, String detail) {
+        String[] event = {stage, detail};
+        history.add(event);
+        listeners.forEach(listener -> replay(listener, event));
+    }
+
+    @Override
+    public synchronized void onToken(String token) {
+        String[] event = {null, token};
+        history.add(event);
+        listeners.forEach(listener -> replay(listener, event));
+    }
+
+    private static void replay(VerificationListener listener, String[] event) {
+        if (event[0] == null) {
+            listener.onToken(event[1]);
+        } else {
+            listener.onStage(event[0], event[1]);
+        }
+    }
+}
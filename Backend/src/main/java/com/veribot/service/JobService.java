@@ -0,0 +1,103 @@
+package com.veribot.service;
+
+import com.veribot.config.JobConfig;
+import com.veribot.model.PromptModel;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers queries in the background, as jobs polled for by their id, for clients whose
+ * proxies close connections idle for longer than a verification takes. A job runs on its
+ * own virtual thread through the same path as a synchronous query, session included.
+ */
+@Service
+public class JobService {
+    private static final Logger logger = LoggerFactory.getLogger(JobService.class);
+
+    private final ConversationService conversationService;
+    private final JobConfig config;
+    private final JobStore store;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService expiry = Executors.newSingleThreadScheduledExecutor();
+
+    public JobService(ConversationService conversationService) {
+        this.conversationService = conversationService;
+        this.config = new JobConfig();
+        this.store = JobStore.create(config);
+        expiry.scheduleAtFixedRate(store::expire, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops expiring the jobs, and the jobs still running, when the application shuts down.
+     */
+    @PreDestroy
+    void shutdown() {
+        expiry.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submits a query to be answered in the background.
+     *
+     * @param request the user's prompt
+     * @param sessionId the id of the user's session
+     * @param idempotencyKey the key a client retrying the submission sends again, or null
+     * @return the job answering the query, the one submitted before if the key is known
+     * @throws java.util.concurrent.RejectedExecutionException if too many jobs are running
+     * @throws AdmissionRejectedException if the service is overloaded
+     */
+    public VerificationJob submit(PromptModel request, String sessionId, String idempotencyKey) {
+        // Keys are scoped to the session, so that two clients cannot collide
+        String key = idempotencyKey != null ? sessionId + ":" + idempotencyKey : null;
+        VerificationJob submitted = store.find(key);
+        if (submitted != null) {
+            logger.info("Job {} submitted again, not running it twice", submitted.getId());
+            return submitted;
+        }
+
+        // Rejected now, while the client can still be told to retry later
+        conversationService.rejectIfOverloaded();
+        JobStore.Submission submission = store.submit(key);
+        VerificationJob job = submission.job();
+        if (!submission.created()) {
+            return job;
+        }
+
+        executor.execute(() -> {
+            try {
+                store.complete(job, conversationService.processQuery(request, sessionId, VerificationListener.NONE));
+            } catch (AdmissionRejectedException e) {
+                // Overloaded once the query's turn came; the client may submit it again
+                logger.warn("Job {} rejected: {}", job.getId(), e.getMessage());
+                store.reject(job, e.getMessage(), e.getRetryAfterSeconds());
+            } catch (Exception e) {
+                logger.error("Error running job {}: {}", job.getId(), e.getMessage(), e);
+                store.fail(job, "Failed to process request: " + e.getMessage());
+            }
+        });
+        return job;
+    }
+
+    /**
+     * @param id the id of a job
+     * @return the job, or null if it does not exist or has expired
+     */
+    public VerificationJob get(String id) {
+        return store.get(id);
+    }
+
+    /**
+     * @return how long a long-poll may wait for a job at most, in seconds
+     */
+    public long getMaxWaitSeconds() {
+        return config.getMaxWaitSeconds();
+    }
+}
@@ -0,0 +1,220 @@
+package com.veribot.service;
+
+import com.veribot.config.JobConfig;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Keeps the jobs submitted to be answered in the background, so that clients can poll
+ * for their result and a client retrying is answered from here. Running jobs are kept
+ * until they finish; finished jobs are kept for their time to live. The store is bounded
+ * by count: when it is full, the oldest finished jobs make room, and new jobs are refused
+ * if every job is still running. Finished jobs are kept in the order they finished,
+ * which is the order they expire in, so expiring stops at the first live one.
+ */
+public class JobStore {
+    private static final Logger logger = LoggerFactory.getLogger(JobStore.class);
+
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Clock clock;
+
+    private final Map<String, VerificationJob> jobs = new HashMap<>();
+    // Finished jobs, in the order they finished
+    private final LinkedHashMap<String, VerificationJob> finished = new LinkedHashMap<>();
+    // Jobs submitted with an idempotency key, by key, and the other way around
+    private final Map<String, String> idsByKey = new HashMap<>();
+    private final Map<String, String> keysById = new HashMap<>();
+
+    /**
+     * The outcome of a submission.
+     *
+     * @param job the job answering the submission
+     * @param created false if the job was submitted before with the same idempotency key
+     */
+    public record Submission(VerificationJob job, boolean created) {
+    }
+
+    /**
+     * Creates a new JobStore.
+     *
+     * @param config the bound and time to live of the jobs
+     * @return the store, its size reported as a gauge
+     */
+    public static JobStore create(JobConfig config) {
+        return create(config, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a new JobStore with the given clock.
+     *
+     * @param config the bound and time to live of the jobs
+     * @param clock the clock used to expire the jobs
+     * @return the store, its size reported as a gauge
+     */
+    public static JobStore create(JobConfig config, Clock clock) {
+        JobStore store = new JobStore(config, clock);
+        Gauge.builder("veribot.jobs.stored", store, JobStore::size)
+                .description("Jobs kept, running or finished").register(Metrics.globalRegistry);
+        return store;
+    }
+
+    private JobStore(JobConfig config, Clock clock) {
+        this.maxEntries = config.getMaxEntries();
+        this.ttl = Duration.ofMinutes(config.getTtlMinutes());
+        this.clock = clock;
+
+        logger.info("JobStore initialized: maxEntries={}, ttl={}", maxEntries, ttl);
+    }
+
+    /**
+     * Creates a running job, unless one was already submitted with the same idempotency
+     * key and is still kept.
+     *
+     * @param idempotencyKey the key a client retrying the submission sends again, or null
+     * @return the new job, or the one submitted before with the key
+     * @throws RejectedExecutionException if the store is full of running jobs
+     */
+    public synchronized Submission submit(String idempotencyKey) {
+        Instant now = clock.instant();
+        expire(now);
+        if (idempotencyKey != null && idsByKey.containsKey(idempotencyKey)) {
+            return new Submission(jobs.get(idsByKey.get(idempotencyKey)), false);
+        }
+
+        Iterator<VerificationJob> eldest = finished.values().iterator();
+        while (jobs.size() >= maxEntries && eldest.hasNext()) {
+            VerificationJob job = eldest.next();
+            eldest.remove();
+            forget(job, "size");
+        }
+        if (jobs.size() >= maxEntries) {
+            throw new RejectedExecutionException("Too many verifications in progress");
+        }
+
+        VerificationJob job = new VerificationJob(UUID.randomUUID().toString(), now);
+        jobs.put(job.getId(), job);
+        if (idempotencyKey != null) {
+            idsByKey.put(idempotencyKey, job.getId());
+            keysById.put(job.getId(), idempotencyKey);
+        }
+        return new Submission(job, true);
+    }
+
+    /**
+     * @param idempotencyKey the key a job may have been submitted with, or null
+     * @return the job submitted with the key, or null if there is none
+     */
+    public synchronized VerificationJob find(String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return null;
+        }
+        expire(clock.instant());
+        String id = idsByKey.get(idempotencyKey);
+        return id != null ? jobs.get(id) : null;
+    }
+
+    /**
+     * @param id the id of a job
+     * @return the job, or null if it does not exist or has expired
+     */
+    public synchronized VerificationJob get(String id) {
+        expire(clock.instant());
+        return jobs.get(id);
+    }
+
+    /**
+     * Records the answer of a job and starts its time to live.
+     *
+     * @param job the job
+     * @param text the formatted answer
+     */
+    public synchronized void complete(VerificationJob job, String text) {
+        job.complete(text, clock.instant());
+        finish(job);
+    }
+
+    /**
+     * Records the failure of a job and starts its time to live.
+     *
+     * @param job the job
+     * @param error what went wrong
+     */
+    public synchronized void fail(VerificationJob job, String error) {
+        job.fail(error, clock.instant());
+        finish(job);
+    }
+
+    /**
+     * Records that a job was rejected because the service is overloaded, and starts its
+     * time to live. Its idempotency key is released, so that the client retrying the
+     * submission later gets a new job instead of this one.
+     *
+     * @param job the job
+     * @param error what went wrong
+     * @param retryAfterSeconds the delay after which the client should submit it again
+     */
+    public synchronized void reject(VerificationJob job, String error, long retryAfterSeconds) {
+        job.reject(error, retryAfterSeconds, clock.instant());
+        String key = keysById.remove(job.getId());
+        if (key != null) {
+            idsByKey.remove(key);
+        }
+        finish(job);
+    }
+
+    private void finish(VerificationJob job) {
+        Metrics.counter("veribot.jobs.finished", "status", job.getStatus().tag()).increment();
+        if (jobs.containsKey(job.getId())) {
+            finished.put(job.getId(), job);
+        }
+    }
+
+    /**
+     * Removes the finished jobs kept for longer than their time to live.
+     */
+    public synchronized void expire() {
+        expire(clock.instant());
+    }
+
+    private void expire(Instant now) {
+        Iterator<VerificationJob> eldest = finished.values().iterator();
+        while (eldest.hasNext()) {
+            VerificationJob job = eldest.next();
+            if (job.getFinishedAt().plus(ttl).isAfter(now)) {
+                break;
+            }
+            eldest.remove();
+            forget(job, "expired");
+        }
+    }
+
+    private void forget(VerificationJob job, String reason) {
+        jobs.remove(job.getId());
+        String key = keysById.remove(job.getId());
+        if (key != null) {
+            idsByKey.remove(key);
+        }
+        Metrics.counter("veribot.jobs.evictions", "reason", reason).increment();
+    }
+
+    /**
+     * @return the number of jobs kept, running or finished
+     */
+    public synchronized int size() {
+        return jobs.size();
+    }
+}
@@ -1,9 +1,14 @@
 package com.veribot.service;
 
+import com.veribot.cache.ArticleContentCache;
+import com.veribot.cache.SearchResponseCache;
+import com.veribot.config.ScrapingConfig;
 import com.veribot.config.SerpApiConfig;
+import com.veribot.model.ScrapeOutcome;
 
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.Metadata;
+import io.micrometer.core.instrument.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -15,18 +20,40 @@ import net.dankito.readability4j.Article;
 import org.jsoup.Jsoup;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.TreeMap;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Service to search the web for news articles and information using Azure Bing Search API.
@@ -36,18 +63,41 @@ public class NewsSearchService {
     private static final int DEFAULT_MAX_RESULTS = 5;
     
     private final String apiKey;
+    private final ScrapingConfig scrapingConfig;
+    private final ArticleContentCache contentCache;
+    private final SearchResponseCache searchCache;
     private final HttpClient httpClient;
+    private final String baseUrl;
     
-    private static final String baseUrl = "https://serpapi.com/search.json";
+    private static final String USER_AGENT = "Mozilla/5.0";
+    // The most of a page that is read, as Jsoup did by default
+    static final int MAX_PAGE_BYTES = 2 * 1024 * 1024;
+    private static final Pattern CHARSET = Pattern.compile("(?i)\\bcharset=\\s*\"?([^\\s;\"]*)");
+    // Closes the body of a page not read within the page timeout
+    private static final ScheduledThreadPoolExecutor pageTimeouts = pageTimer();
 
     /**
-     * Creates a new NewsSearchService with the provided configuration.
+     * Creates a new NewsSearchService with the provided configuration. One instance is
+     * shared by every session, and so is its HTTP client: its connections to SerpApi and
+     * to the news sites are kept alive and reused, over HTTP/2 where the server allows.
      *
      * @param config the Serp Api Configuration.
+     * @param scrapingConfig the configuration for scraping the articles found.
+     * @param contentCache the cache of extracted articles, or null to always scrape.
+     * @param searchCache the cache of SerpApi responses, or null to always search.
      */
-    public NewsSearchService(SerpApiConfig config) {
+    public NewsSearchService(SerpApiConfig config, ScrapingConfig scrapingConfig,
+            ArticleContentCache contentCache, SearchResponseCache searchCache) {
         this.apiKey = config.getApiKey();
-        this.httpClient = HttpClient.newHttpClient();
+        this.baseUrl = config.getBaseUrl();
+        this.scrapingConfig = scrapingConfig;
+        this.contentCache = contentCache;
+        this.searchCache = searchCache;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(scrapingConfig.getPageTimeoutMillis()))
+                .build();
         logger.info("NewsSearchService initialized with SerpApi");
     }
 
@@ -55,174 +105,517 @@ public class NewsSearchService {
      * Searches for news articles and information using the provided query and maximum results.
      *
      * @param query the search query
-     * @param maxResults the maximum number of results to return
+     * @param country the country code (gl)
+     * @param language the language code (hl)
      * @return a list of documents containing relevant information
      */
     public List<Document> searchNews(String query, String country, String language) {
+        return PipelineMetrics.time("search_news", () -> scrapeArticles(findCandidates(query, country, language)));
+    }
+    
+    /**
+     * Searches for news articles without scraping them, so that searching and scraping
+     * can run as separate stages.
+     *
+     * @param query the search query
+     * @param country the country code (gl)
+     * @param language the language code (hl)
+     * @return the news items found, in ranking order
+     */
+    public List<JsonNode> findCandidates(String query, String country, String language) {
     	int maxResults = DEFAULT_MAX_RESULTS;
         logger.info("Searching for news with query: {}", query);
         try {
-        	String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-        	
-            String requestUrl = baseUrl +
-            					"?engine=google&q=" + encodedQuery +
-                                "&api_key=" + apiKey +
-                                "&gl=" + country +          // Country
-                                "&hl=" +language+          // Language
-                                "&tbm=nws"+        // News search only
-                                "&num=" + maxResults;
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(requestUrl))
-                    .header("Ocp-Apim-Subscription-Key", apiKey)
-                    .GET()
-                    .build();
+            String body = searchCache != null
+                    ? searchCache.getOrFetch(query, country, language, () -> callSerpApi(query, country, language, maxResults))
+                    : callSerpApi(query, country, language, maxResults);
             
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            if (response.statusCode() == 200) {
-                return parseSerpApiResponse(response.body(), maxResults);
-            } else {
-            	logger.error("SerpAPI returned error: {} - {}", response.statusCode(), response.body());
+            if (body == null) {
                 return new ArrayList<>();
             }
-        } catch (IOException | InterruptedException e) {
-            logger.error("Error searching for news: {}", e.getMessage(), e);
+            return parseSerpApiResponse(body);
+        } catch (InterruptedException e) {
+            logger.warn("Search interrupted for query: {}", query);
             Thread.currentThread().interrupt();
             return new ArrayList<>();
+        } catch (Exception e) {
+            logger.error("Error searching for news: {}", e.getMessage(), e);
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Calls the SerpApi news search.
+     *
+     * @param query the search query
+     * @param country the country code (gl)
+     * @param language the language code (hl)
+     * @param maxResults the maximum number of results to ask for
+     * @return the response body, or null if SerpApi returned an error
+     */
+    private String callSerpApi(String query, String country, String language, int maxResults) throws IOException, InterruptedException {
+    	String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
+    	
+        String requestUrl = baseUrl +
+        					"?engine=google&q=" + encodedQuery +
+                            "&api_key=" + apiKey +
+                            "&gl=" + country +          // Country
+                            "&hl=" +language+          // Language
+                            "&tbm=nws"+        // News search only
+                            "&num=" + maxResults;
+        
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(requestUrl))
+                .header("Ocp-Apim-Subscription-Key", apiKey)
+                .GET()
+                .build();
+        
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        
+        if (response.statusCode() == 200) {
+            return response.body();
+        }
+    	logger.error("SerpAPI returned error: {} - {}", response.statusCode(), response.body());
+        return null;
+    }
+    
+    /**
+     * Scrapes the articles of the news items found by a search.
+     *
+     * @param candidates the news items, in ranking order
+     * @return the documents extracted in time
+     */
+    public List<Document> scrapeArticles(List<JsonNode> candidates) {
+        if (candidates.isEmpty()) {
+            return new ArrayList<>();
         }
+        List<Document> results = scrapeCandidates(candidates, DEFAULT_MAX_RESULTS);
+        logger.info("Scraped {} of {} news results", results.size(), candidates.size());
+        return results;
     }
     
     /**
-     * Parses the Serp Api response and converts it to Document objects.
+     * Parses the Serp Api response into the news items to scrape.
      * 
      * @param responseBody the JSON response from the SerpApi
-     * @return a list of Document objects
+     * @return the news items with a link, in ranking order
      */
-    private List<Document> parseSerpApiResponse(String responseBody, int maxResults) {
-    	List<Document> results = new ArrayList<>();
+    private List<JsonNode> parseSerpApiResponse(String responseBody) {
         try {
             ObjectMapper objectMapper = new ObjectMapper();
             JsonNode rootNode = objectMapper.readTree(responseBody);
             
-            String link,text,title,source,date = "";
+            // Candidates keep the ranking order: first "people_also_search_for", then "news_results"
+            Map<String, JsonNode> candidates = new LinkedHashMap<>();
             
-            // We first tried to get news from "people_also_search_for"
             if (rootNode.has("people_also_search_for")) {
                 JsonNode pasf = rootNode.get("people_also_search_for");
                 
                 for (JsonNode item : pasf) {
                     if (item.has("news_results")) {
-                        JsonNode newsResults = item.get("news_results");
-                        for (JsonNode news : newsResults) {
-                        	text="";
-                            if (news.has("link")) {       
-                                
-                            	link = news.get("link").asText();
-                            	text = textOfPage(link);
-                            	if(text!="") {
-                            		title = news.has("title") ? news.get("title").asText() : "";
-                                    source = news.has("source") ? news.get("source").asText() : "";
-                                    date = news.has("date") ? news.get("date").asText() : "";
-                                    
-                                    
-                                    StringBuilder contentBuilder = new StringBuilder();
-                                    Map<String, String> metadataMap = new HashMap<>();
-                                    contentBuilder.append("Title: ").append(title);
-                                    contentBuilder.append(" - Date: ").append(date);
-                                    contentBuilder.append(" - Source: ").append(source);
-                                    contentBuilder.append(" - Text: ").append(text);
-
-                                    metadataMap.put("date", date);
-                                    metadataMap.put("source", source);
-                                    metadataMap.put("link", link);
-                                    
-                                    Metadata metadata = new Metadata(metadataMap);
-                                    Document doc = Document.from(contentBuilder.toString(), metadata);
-                                    
-                                    results.add(doc);
-                                    if (results.size() >= maxResults) {
-                                        return results;
-                                    }
-                            	}                                
-                            }
-                        }
+                        addCandidates(item.get("news_results"), candidates);
                     }
                 }
             }
             
-            // If there aren't enough results or "people_also_search_for" wasn't found,
-            // we search in "news_results"
-            if (results.size() < maxResults && rootNode.has("news_results")) {
-                JsonNode newsResults = rootNode.get("news_results");
-                for (JsonNode news : newsResults) {
-                	text="";
-                    if (news.has("link")) {
-                        link = news.get("link").asText();
-                        text = textOfPage(link);
-                        
-                        if(text!="") {
-	                        title = news.has("title") ? news.get("title").asText() : "";
-	                        source = news.has("source") ? news.get("source").asText() : "";
-	                        date = news.has("date") ? news.get("date").asText() : "";
-	                        
-	                        
-	                        StringBuilder contentBuilder = new StringBuilder();
-	                        Map<String, String> metadataMap = new HashMap<>();
-	                        contentBuilder.append("Title: ").append(title);
-	                        contentBuilder.append(" - Date: ").append(date);
-	                        contentBuilder.append(" - Source: ").append(source);
-	                        contentBuilder.append(" - Text: ").append(text);
-	
-	                        metadataMap.put("date", date);
-	                        metadataMap.put("source", source);
-	                        metadataMap.put("link", link);
-	                        
-	                        Metadata metadata = new Metadata(metadataMap);
-	                        Document doc = Document.from(contentBuilder.toString(), metadata);
-	                        
-	                        results.add(doc);
-	                        if (results.size() >= maxResults) {
-	                            break;
-	                        }
-                        }
-                    }
-                }
+            if (rootNode.has("news_results")) {
+                addCandidates(rootNode.get("news_results"), candidates);
             }
             
-            logger.info("Parsed {} news results from SerpAPI response", results.size());
-            return results;
+            logger.info("Parsed {} news results from SerpAPI response", candidates.size());
+            return new ArrayList<>(candidates.values());
             
         } catch (JsonProcessingException e) {
             logger.error("Error parsing SerpAPI JSON response: {}", e.getMessage(), e);
-            return results;
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Adds every news item that has a link to the candidates, ignoring repeated links.
+     *
+     * @param newsResults the "news_results" JSON array
+     * @param candidates the candidates found so far, keyed by link
+     */
+    private void addCandidates(JsonNode newsResults, Map<String, JsonNode> candidates) {
+        for (JsonNode news : newsResults) {
+            if (news.has("link")) {
+                candidates.putIfAbsent(news.get("link").asText(), news);
+            }
+        }
+    }
+    
+    /**
+     * Scrapes the candidate links with the configured mode.
+     *
+     * @param candidates the news items to scrape, in ranking order
+     * @param maxResults the maximum number of documents to return
+     * @return the documents extracted in time, at most maxResults
+     */
+    private List<Document> scrapeCandidates(List<JsonNode> candidates, int maxResults) {
+        return switch (scrapingConfig.getMode()) {
+            case PARALLEL -> scrapeAll(candidates, maxResults);
+            case RACE -> scrapeRace(candidates, maxResults);
+        };
+    }
+    
+    /**
+     * Fetches all the candidate links concurrently and keeps, in ranking order, the ones
+     * whose text was extracted before the scraping deadline.
+     *
+     * @param candidates the news items to scrape, in ranking order
+     * @param maxResults the maximum number of documents to return
+     * @return the documents extracted in time, at most maxResults
+     */
+    private List<Document> scrapeAll(List<JsonNode> candidates, int maxResults) {
+        List<Document> results = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scrapingConfig.getDeadlineMillis());
+        VerificationScope scope = VerificationScope.open();
+        Map<ScrapeOutcome, Integer> outcomes = new EnumMap<>(ScrapeOutcome.class);
+        
+        try {
+            List<Future<ScrapeResult>> futures = new ArrayList<>();
+            for (JsonNode news : candidates) {
+                String link = news.get("link").asText();
+                futures.add(scope.fork(() -> scrape(link)));
+            }
+            
+            for (int i = 0; i < candidates.size() && results.size() < maxResults; i++) {
+                JsonNode news = candidates.get(i);
+                ScrapeResult scraped;
+                try {
+                    long remaining = Math.max(0, deadline - System.nanoTime());
+                    scraped = futures.get(i).get(remaining, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    futures.get(i).cancel(true);
+                    scraped = new ScrapeResult(ScrapeOutcome.TIMEOUT, "", scrapingConfig.getDeadlineMillis());
+                } catch (ExecutionException e) {
+                    scraped = new ScrapeResult(ScrapeOutcome.ERROR, "", 0);
+                }
+                
+                recordOutcome(news.get("link").asText(), scraped);
+                outcomes.merge(scraped.outcome(), 1, Integer::sum);
+                
+                if (scraped.outcome() == ScrapeOutcome.OK) {
+                    results.add(toDocument(news, scraped.text()));
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Scraping interrupted, returning {} documents", results.size());
+            Thread.currentThread().interrupt();
+        } finally {
+            // Stops the links still running, either late or no longer needed
+            scope.close();
+        }
+        
+        logger.info("Scraped {} candidate links: {}", candidates.size(), outcomes);
+        return results;
+    }
+    
+    /**
+     * Fetches maxResults plus the configured extra links at once, starting the next
+     * candidate whenever one fails, and keeps the first good extractions. When enough
+     * articles are in, better ranked links still running get the configured patience
+     * before every remaining fetch is cancelled.
+     *
+     * @param candidates the news items to scrape, in ranking order
+     * @param maxResults the maximum number of documents to return
+     * @return the documents extracted in time, at most maxResults, in ranking order
+     */
+    private List<Document> scrapeRace(List<JsonNode> candidates, int maxResults) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scrapingConfig.getDeadlineMillis());
+        long patienceNanos = TimeUnit.MILLISECONDS.toNanos(scrapingConfig.getRankPatienceMillis());
+        int window = maxResults + scrapingConfig.getRaceExtraLinks();
+        
+        VerificationScope scope = VerificationScope.open();
+        CompletionService<ScrapeResult> completion = new ExecutorCompletionService<>(scope);
+        Map<Future<ScrapeResult>, Integer> running = new HashMap<>();
+        TreeMap<Integer, ScrapeResult> extracted = new TreeMap<>();
+        Map<ScrapeOutcome, Integer> outcomes = new EnumMap<>(ScrapeOutcome.class);
+        int next = 0;
+        long patienceDeadline = Long.MAX_VALUE;
+        boolean deadlineReached = false;
+        
+        try {
+            for (; next < candidates.size() && running.size() < window; next++) {
+                String link = candidates.get(next).get("link").asText();
+                running.put(completion.submit(() -> scrape(link)), next);
+            }
+            
+            while (!running.isEmpty()) {
+                long waitUntil = deadline;
+                if (extracted.size() >= maxResults) {
+                    if (!betterRankedRunning(running.values(), extracted, maxResults)) {
+                        break;
+                    }
+                    if (patienceDeadline == Long.MAX_VALUE) {
+                        patienceDeadline = System.nanoTime() + patienceNanos;
+                    }
+                    waitUntil = Math.min(deadline, patienceDeadline);
+                }
+                
+                Future<ScrapeResult> done = completion.poll(Math.max(0, waitUntil - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    deadlineReached = waitUntil == deadline;
+                    break;
+                }
+                
+                int rank = running.remove(done);
+                ScrapeResult scraped;
+                try {
+                    scraped = done.get();
+                } catch (ExecutionException e) {
+                    scraped = new ScrapeResult(ScrapeOutcome.ERROR, "", 0);
+                }
+                recordOutcome(candidates.get(rank).get("link").asText(), scraped);
+                outcomes.merge(scraped.outcome(), 1, Integer::sum);
+                
+                if (scraped.outcome() == ScrapeOutcome.OK) {
+                    extracted.put(rank, scraped);
+                } else if (next < candidates.size()) {
+                    String link = candidates.get(next).get("link").asText();
+                    running.put(completion.submit(() -> scrape(link)), next++);
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Scraping interrupted, returning {} documents", Math.min(extracted.size(), maxResults));
+            Thread.currentThread().interrupt();
+        } finally {
+            scope.close();
+        }
+        
+        // The losers still running were cancelled by closing the scope
+        ScrapeOutcome loserOutcome = deadlineReached ? ScrapeOutcome.TIMEOUT : ScrapeOutcome.CANCELLED;
+        for (int rank : running.values()) {
+            recordOutcome(candidates.get(rank).get("link").asText(), new ScrapeResult(loserOutcome, "", 0));
+            outcomes.merge(loserOutcome, 1, Integer::sum);
+        }
+        
+        List<Document> results = new ArrayList<>();
+        for (Map.Entry<Integer, ScrapeResult> entry : extracted.entrySet()) {
+            if (results.size() >= maxResults) {
+                break;
+            }
+            results.add(toDocument(candidates.get(entry.getKey()), entry.getValue().text()));
+        }
+        
+        logger.info("Raced {} of {} candidate links: {}", next, candidates.size(), outcomes);
+        return results;
+    }
+    
+    /**
+     * Checks if a link still running ranks better than the worst of the articles that
+     * would be returned now.
+     *
+     * @param runningRanks the ranks of the links still running
+     * @param extracted the articles extracted so far, by rank
+     * @param maxResults the maximum number of documents to return
+     * @return true if waiting could still improve the ranking of the results
+     */
+    private boolean betterRankedRunning(Collection<Integer> runningRanks, TreeMap<Integer, ScrapeResult> extracted, int maxResults) {
+        int worstKept = extracted.keySet().stream().skip(maxResults - 1).findFirst().orElse(Integer.MAX_VALUE);
+        return runningRanks.stream().anyMatch(rank -> rank < worstKept);
+    }
+    
+    /**
+     * Fetches one link, unless its text is cached, and classifies the outcome.
+     *
+     * @param link the URL to scrape
+     * @return the outcome, the extracted text and the time it took
+     */
+    private ScrapeResult scrape(String link) {
+        long start = System.nanoTime();
+        ScrapeOutcome outcome;
+        String text = contentCache != null ? contentCache.get(link) : null;
+        if (text != null) {
+            return new ScrapeResult(ScrapeOutcome.OK, text, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        
+        text = "";
+        // A scrape given up on is told apart from a page that failed in the page timer
+        ScrapeOutcome pageOutcome;
+        try {
+            text = textOfPage(link);
+            outcome = text.isBlank() ? ScrapeOutcome.EMPTY : ScrapeOutcome.OK;
+            pageOutcome = outcome;
+            if (outcome == ScrapeOutcome.OK && contentCache != null) {
+                contentCache.put(link, text);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = ScrapeOutcome.ERROR;
+            pageOutcome = ScrapeOutcome.CANCELLED;
+        } catch (HttpTimeoutException e) {
+            logger.debug("Timeout reading URL {}: {}", link, e.getMessage());
+            outcome = ScrapeOutcome.ERROR;
+            pageOutcome = ScrapeOutcome.TIMEOUT;
+        } catch (Exception e) {
+            logger.debug("Error reading URL {}: {}", link, e.getMessage());
+            outcome = ScrapeOutcome.ERROR;
+            pageOutcome = ScrapeOutcome.ERROR;
         }
+        PipelineMetrics.recordPage(link, pageOutcome, System.nanoTime() - start);
+        return new ScrapeResult(outcome, text, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
     }
     
     /**
-     * Extracts the text from a URL.
+     * Records the outcome of a scraped link so timeouts and deadlines can be tuned.
+     *
+     * @param link the scraped URL
+     * @param scraped the result of scraping it
+     */
+    private void recordOutcome(String link, ScrapeResult scraped) {
+        logger.debug("Scrape {} in {} ms: {}", scraped.outcome().tag(), scraped.elapsedMillis(), link);
+        Metrics.counter("veribot.scrape.links", "outcome", scraped.outcome().tag()).increment();
+    }
+    
+    /**
+     * Builds the Document for a news item and the text extracted from its page.
+     *
+     * @param news the news item from the SerpApi response
+     * @param text the text extracted from the page
+     * @return the Document with its metadata
+     */
+    private Document toDocument(JsonNode news, String text) {
+        String link = news.get("link").asText();
+        String title = news.has("title") ? news.get("title").asText() : "";
+        String source = news.has("source") ? news.get("source").asText() : "";
+        String date = news.has("date") ? news.get("date").asText() : "";
+        
+        StringBuilder contentBuilder = new StringBuilder();
+        Map<String, String> metadataMap = new HashMap<>();
+        contentBuilder.append("Title: ").append(title);
+        contentBuilder.append(" - Date: ").append(date);
+        contentBuilder.append(" - Source: ").append(source);
+        contentBuilder.append(" - Text: ").append(text);
+
+        metadataMap.put("date", date);
+        metadataMap.put("source", source);
+        metadataMap.put("link", link);
+        
+        Metadata metadata = new Metadata(metadataMap);
+        return Document.from(contentBuilder.toString(), metadata);
+    }
+    
+    /**
+     * Extracts the text from a URL. As Jsoup did when it fetched the pages itself, only
+     * text and XML content is read, at most {@link #MAX_PAGE_BYTES} of it, and the bytes
+     * are decoded with the charset of the Content-Type header or, if it has none, of the
+     * byte order mark or the meta tag of the page. The page timeout covers the whole
+     * download, so that a site trickling its body cannot hold a scrape for longer.
      *
      * @param url the URL to extract from
-     * @return the plain text
-     */
-    private String textOfPage(String URL) {
-    	try {
-	    	String html = Jsoup.connect(URL)
-	                .userAgent("Mozilla/5.0")
-	                .timeout(10000)
-	                .get()
-	                .html();
-	
-			Readability4J readability = new Readability4J(URL, html);
-			Article article = readability.parse();
-			
-			return article.getTextContent();
-		
-		}catch (IOException e) {
-			System.err.println("Error al leer la URL: " + URL);
-			e.printStackTrace();
-			return "";
-		}
-
-	}
+     * @return the plain text, empty if Readability found no content
+     * @throws HttpTimeoutException if the page was not downloaded within the page timeout
+     * @throws IOException if the page could not be fetched or is not a web page
+     * @throws InterruptedException if interrupted while fetching the page
+     */
+    String textOfPage(String URL) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        long timeoutMillis = scrapingConfig.getPageTimeoutMillis();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(URL))
+                .header("User-Agent", USER_AGENT)
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        byte[] body;
+        InputStream in = response.body();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis) - (System.nanoTime() - started);
+        ScheduledFuture<?> timeout = pageTimeouts.schedule(() -> {
+            timedOut.set(true);
+            try {
+                // Wakes up the read blocked on the body
+                in.close();
+            } catch (IOException e) {
+                logger.debug("Error closing slow page {}: {}", URL, e.getMessage());
+            }
+        }, Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        try (in) {
+            if (response.statusCode() >= 400) {
+                throw new IOException("HTTP " + response.statusCode());
+            }
+            String contentType = response.headers().firstValue("Content-Type").orElse(null);
+            if (contentType != null && !isTextContent(contentType)) {
+                throw new IOException("Unsupported content type " + contentType);
+            }
+            // Closing the stream before the end drops the rest of a larger page
+            try {
+                body = in.readNBytes(MAX_PAGE_BYTES);
+            } catch (IOException e) {
+                if (timedOut.get()) {
+                    throw new HttpTimeoutException("Page not downloaded within " + timeoutMillis + " ms");
+                }
+                throw e;
+            }
+            timeout.cancel(false);
+            if (timedOut.get()) {
+                throw new HttpTimeoutException("Page not downloaded within " + timeoutMillis + " ms");
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                // Cancelled while downloading, the page is not needed any more
+                throw new InterruptedException("Scrape cancelled");
+            }
+            org.jsoup.nodes.Document page = Jsoup.parse(new ByteArrayInputStream(body),
+                    charsetOf(contentType), URL);
+
+            long parseStarted = System.nanoTime();
+            Readability4J readability = new Readability4J(URL, page);
+            Article article = readability.parse();
+            PipelineMetrics.recordParse(System.nanoTime() - parseStarted);
+
+            String text = article.getTextContent();
+            return text != null ? text : "";
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor pageTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "page-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * @param contentType the Content-Type header of a page
+     * @return whether it is text or XML, which Jsoup can parse
+     */
+    static boolean isTextContent(String contentType) {
+        String mimeType = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return mimeType.startsWith("text/") || mimeType.equals("application/xml") || mimeType.endsWith("+xml");
+    }
+
+    /**
+     * @param contentType the Content-Type header of a page, or null
+     * @return the charset it names, or null if it names none this JVM supports, so that
+     *         Jsoup finds it in the page
+     */
+    static String charsetOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        Matcher matcher = CHARSET.matcher(contentType);
+        if (!matcher.find()) {
+            return null;
+        }
+        String charset = matcher.group(1).trim().replace("\"", "").replace("'", "");
+        try {
+            return Charset.isSupported(charset) ? charset : null;
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The result of scraping a single link.
+     */
+    private record ScrapeResult(ScrapeOutcome outcome, String text, long elapsedMillis) {
+    }
 }
\ No newline at end of file
@@ -1,11 +1,24 @@
 package com.veribot.service;
 
-import com.veribot.config.AzureOpenAIConfig;
+import com.veribot.cache.LlmResponseCache;
+import com.veribot.classifier.ClassificationBatcher;
+import com.veribot.classifier.FastPathClassifier;
+import com.veribot.classifier.NaiveBayesClassifier;
+import com.veribot.config.PipelineConfig;
+import com.veribot.llm.AzureOpenAIClient;
+import com.veribot.llm.LlmException;
+import com.veribot.llm.LlmPriority;
+import com.veribot.llm.LlmRouter;
 import com.veribot.model.ConversationSession;
 import com.veribot.model.ConversationState;
 import com.veribot.model.NewsVerificationResult;
+import com.veribot.model.QueryUnderstanding;
+import com.veribot.store.ClaimIndex;
+import com.veribot.store.VerdictStore;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.Metadata;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -14,16 +27,19 @@ import org.springframework.core.io.ClassPathResource;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -34,107 +50,615 @@ import java.util.stream.Collectors;
 public class NewsVerificationService {
     private static final Logger logger = LoggerFactory.getLogger(NewsVerificationService.class);
     private final NewsSearchService searchService;
-    private final String endpoint;
-    private final String apiKey;
-    private final String deploymentName;
-    private final String apiVersion;
-    private final HttpClient httpClient;
+    private final PipelineConfig pipelineConfig;
+    private final FastPathClassifier fastPath;
+    private final LlmResponseCache responseCache;
+    private final ClaimCoalescer coalescer;
+    private final VerdictStore verdictStore;
+    private final ClaimIndex claimIndex;
+    private final ClassificationBatcher classificationBatcher;
+    private final LlmRouter llmRouter;
     
     // Conversation timeout in minutes
     private static final int CONVERSATION_TIMEOUT_MINUTES = 30;
     
-    // Store the current conversation session
-    private ConversationSession conversationSession;
+    // Summaries of analyses whose response could not be parsed, which are not stored
+    private static final String SUMMARY_NOT_AVAILABLE = "Summary not available";
+    private static final String ANALYSIS_ERROR_SUMMARY = "Error analyzing content";
+    
+    // Priority of the LLM calls of new verifications when the quota is short
+    private final LlmPriority priority;
 
     /**
-     * Creates a new NewsVerificationService with the provided configurations.
+     * Creates a new NewsVerificationService with the provided configurations. The service
+     * holds no conversation state: the session of each query is passed along with it, so
+     * that one instance serves every user.
      *
-     * @param openAIConfig the Azure OpenAI configuration
+     * @param llmRouter sends each stage to the Azure OpenAI deployment suited to it
      * @param searchService the news search service
+     * @param pipelineConfig the configuration of the pipeline stages
+     * @param fastPath the local classifier for obvious decisions, or null to always ask the LLM
+     * @param responseCache the cache of deterministic LLM responses, or null to always call the LLM
+     * @param coalescer shares the verifications of identical claims between sessions, or null
+     * @param verdictStore keeps the verdicts across restarts, or null to not keep them
+     * @param claimIndex finds the verdicts of similar past claims, or null to always verify
+     * @param classificationBatcher sends classifications together with other sessions', or null
      */
-    public NewsVerificationService(AzureOpenAIConfig openAIConfig, NewsSearchService searchService) {
-        this.endpoint = openAIConfig.getEndpoint();
-        this.apiKey = openAIConfig.getApiKey();
-        this.deploymentName = openAIConfig.getDeploymentName();
-        this.apiVersion = openAIConfig.getApiVersion();
+    public NewsVerificationService(LlmRouter llmRouter, NewsSearchService searchService,
+            PipelineConfig pipelineConfig, FastPathClassifier fastPath, LlmResponseCache responseCache,
+            ClaimCoalescer coalescer, VerdictStore verdictStore, ClaimIndex claimIndex,
+            ClassificationBatcher classificationBatcher) {
+        this.llmRouter = llmRouter;
         this.searchService = searchService;
-        this.httpClient = HttpClient.newHttpClient();
-        this.conversationSession = new ConversationSession();
+        this.pipelineConfig = pipelineConfig;
+        this.fastPath = fastPath;
+        this.responseCache = responseCache;
+        this.coalescer = coalescer;
+        this.verdictStore = verdictStore;
+        this.claimIndex = claimIndex;
+        this.classificationBatcher = classificationBatcher;
+        this.priority = LlmPriority.NEW_VERIFICATION;
         
         logger.info("NewsVerificationService initialized with Azure OpenAI");
     }
 
+    private NewsVerificationService(NewsVerificationService other, LlmPriority priority) {
+        this.llmRouter = other.llmRouter;
+        this.searchService = other.searchService;
+        this.pipelineConfig = other.pipelineConfig;
+        this.fastPath = other.fastPath;
+        this.responseCache = other.responseCache;
+        this.coalescer = other.coalescer;
+        this.verdictStore = other.verdictStore;
+        this.claimIndex = other.claimIndex;
+        this.classificationBatcher = other.classificationBatcher;
+        this.priority = priority;
+    }
+
+    /**
+     * Returns a service sharing everything with this one but the priority of the LLM calls
+     * of new verifications, e.g. BACKGROUND for claims nobody waits for interactively.
+     * Follow-up answers are always interactive.
+     *
+     * @param priority the priority in the quota scheduler
+     * @return the service with that priority
+     */
+    public NewsVerificationService withPriority(LlmPriority priority) {
+        return new NewsVerificationService(this, priority);
+    }
+
 	/**
      * Verifies a news query by searching for information and analyzing the results.
      * This method integrates conversation context to determine if the query is related
      * to a previously discussed news event.
      *
      * @param userQuery the user's query about a news item
+     * @param session the conversation of the user, updated as the query is answered
+     * @return a NewsVerificationResult containing the analysis
+     */
+    public NewsVerificationResult verifyNews(String userQuery, ConversationSession session) {
+        return verifyNews(userQuery, session, VerificationListener.NONE);
+    }
+
+    /**
+     * Verifies a news query, reporting each stage of the pipeline and the tokens of the
+     * final answer to the listener as they happen.
+     *
+     * @param userQuery the user's query about a news item
+     * @param session the conversation of the user, updated as the query is answered
+     * @param listener receives the progress of the verification
+     * @return a NewsVerificationResult containing the analysis
+     */
+    public NewsVerificationResult verifyNews(String userQuery, ConversationSession session, VerificationListener listener) {
+        return PipelineMetrics.timeRequest(() -> verify(userQuery, session, listener));
+    }
+
+    /**
+     * Verifies a news query, answering it from a similar verdict or sharing the run of
+     * an identical claim when it can.
+     *
+     * @param userQuery the user's query about a news item
+     * @param session the conversation of the user, updated as the query is answered
+     * @param listener receives the progress of the verification
      * @return a NewsVerificationResult containing the analysis
      */
-    public NewsVerificationResult verifyNews(String userQuery) {
+    private NewsVerificationResult verify(String userQuery, ConversationSession session, VerificationListener listener) {
         // Check if the conversation has expired due to inactivity
-        if (conversationSession.hasExpired(CONVERSATION_TIMEOUT_MINUTES)) {
+        if (session.hasExpired(CONVERSATION_TIMEOUT_MINUTES)) {
             logger.info("Conversation session expired, starting new session");
-            conversationSession.startNewEvent();
+            session.startNewEvent();
+        }
+        
+        session.updateLastInteractionTime();
+        
+        boolean discussing = session.getState() == ConversationState.DISCUSSING_CURRENT_EVENT;
+        String currentEvent = discussing ? Objects.toString(session.getCurrentEvent(), "") : null;
+        
+        if (!discussing) {
+            NewsVerificationResult reused = reuseSimilarVerdict(userQuery, listener);
+            if (reused != null) {
+                return reused;
+            }
+        }
+        if (!discussing && coalescer != null) {
+            // Outside a conversation nothing depends on the session, so identical claims share one run
+            return coalescer.verify("pipeline", userQuery, listener, shared -> verifyClaim(userQuery, null, session, shared));
+        }
+        return verifyClaim(userQuery, currentEvent, session, listener);
+    }
+    
+    /**
+     * Runs the verification pipeline for a query.
+     *
+     * @param userQuery the user's query about a news item
+     * @param currentEvent the event being discussed, or null if there is none
+     * @param session the conversation of the user, only used while discussing an event
+     * @param listener receives the progress of the verification
+     * @return a NewsVerificationResult containing the analysis
+     */
+    private NewsVerificationResult verifyClaim(String userQuery, String currentEvent, ConversationSession session,
+            VerificationListener listener) {
+        // Every sub-task of the verification runs in this scope and ends with it
+        VerificationScope scope = VerificationScope.open(pipelineConfig.getVerificationDeadlineMillis());
+        try {
+            return runPipeline(userQuery, currentEvent, session, listener);
+        } catch (RuntimeException e) {
+            throw scope.isDeadlineExceeded() ? scope.deadlineFailure(e) : e;
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Runs the stages of the verification pipeline for a query, in the mode configured.
+     *
+     * @param userQuery the user's query about a news item
+     * @param currentEvent the event being discussed, or null if there is none
+     * @param session the conversation of the user, only used while discussing an event
+     * @param listener receives the progress of the verification
+     * @return a NewsVerificationResult containing the analysis
+     */
+    private NewsVerificationResult runPipeline(String userQuery, String currentEvent, ConversationSession session,
+            VerificationListener listener) {
+        boolean discussing = currentEvent != null;
+        if (pipelineConfig.getUnderstandingMode() == PipelineConfig.UnderstandingMode.SPECULATIVE) {
+            return verifyNewsSpeculative(userQuery, currentEvent, session, listener);
         }
         
-        conversationSession.updateLastInteractionTime();
+        // 1. Understand the query: intent, news relevance, search query and country
+        QueryUnderstanding understanding = understand(userQuery, currentEvent);
         
         // If we're already discussing a news event, determine if this query is related
-        if (conversationSession.getState() == ConversationState.DISCUSSING_CURRENT_EVENT) {
-            String queryIntent = classifyQueryIntent(userQuery, conversationSession.getCurrentEvent());
-            
-            if (queryIntent.equals("SAME_EVENT")) {
+        if (discussing) {
+            if ("SAME_EVENT".equals(understanding.intent())) {
                 // Query is about the same event, respond with the existing information
-                logger.info("Query is about the same event: {}", conversationSession.getCurrentEvent());
-                return createFollowUpResponse(userQuery);
-            } else if (queryIntent.equals("NEW_EVENT")) {
+                logger.info("Query is about the same event: {}", currentEvent);
+                listener.onStage("classified", "follow_up");
+                return createFollowUpResponse(userQuery, session, listener);
+            } else if ("NEW_EVENT".equals(understanding.intent())) {
                 // Query is about a new event, initiate a new search
                 logger.info("Query is about a new event, initiating search");
-                conversationSession.startNewEvent();
+                session.startNewEvent();
                 // Continue with normal verification process
             } else {
                 // Query is not news-related
-                return createIrrelevantQueryResponse();
+                listener.onStage("classified", "irrelevant");
+                return createIrrelevantQueryResponse(session);
             }
         }
         
-        // If we don't have a current event or the query is about a new event
-        // 1. Validate input for news-related content
-        if (!isNewsRelatedQuery(userQuery)) {
+        // 2. Validate input for news-related content
+        if (!understanding.newsRelated()) {
+            listener.onStage("classified", "not_news");
             return createInvalidQueryResponse();
         }
-
-        // 2. Generate search query and user's country
-        String[] searchQueryAndCountry = generateSearchQuery(userQuery);
-        String searchQuery = searchQueryAndCountry[0];
-        String countryName = searchQueryAndCountry[1];
-
-        String countryCode = "ar";    //Default values
-        String languageCode = "es";
         
-        String[] countryLang = CountryLanguageUtils.findCountryAndLanguage(countryName);
-        if (countryLang != null) {
-            countryCode = countryLang[0];
-            languageCode = countryLang[1];
+        listener.onStage("classified", "news");
+        if (discussing) {
+            NewsVerificationResult reused = reuseSimilarVerdict(userQuery, listener);
+            if (reused != null) {
+                return reused;
+            }
+        }
+        if (discussing && coalescer != null) {
+            return coalescer.verify("search", userQuery, listener, shared -> searchAndAnalyze(userQuery, understanding, shared));
+        }
+        return searchAndAnalyze(userQuery, understanding, listener);
+    }
+    
+    /**
+     * Finds the verdict of a recently verified claim similar enough to answer this one.
+     * Like the other claim stages, it does not depend on the conversation, so that a
+     * batch of claims can run each stage separately.
+     *
+     * @param claim the claim to verify
+     * @return the past verdict, or null if the claim must be verified
+     */
+    public NewsVerificationResult findSimilarVerdict(String claim) {
+        return reuseSimilarVerdict(claim, VerificationListener.NONE);
+    }
+    
+    /**
+     * Understands a claim outside of any conversation: whether it is news-related, the
+     * search query, and its country and language.
+     *
+     * @param claim the claim to verify
+     * @return the understanding of the claim
+     */
+    public QueryUnderstanding understandClaim(String claim) {
+        return understand(claim, null);
+    }
+    
+    /**
+     * Analyzes the articles found for a claim and stores the verdict.
+     *
+     * @param claim the claim to verify
+     * @param documents the scraped articles
+     * @param languageCode the ISO 639-1 language code to respond in
+     * @return the verdict
+     */
+    public NewsVerificationResult analyzeClaim(String claim, List<Document> documents, String languageCode) {
+        return PipelineMetrics.time("analyze", () -> analyzeNewsContent(claim, documents, languageCode, VerificationListener.NONE));
+    }
+    
+    /**
+     * Looks for the verdict of a recently verified claim similar enough to the query to
+     * answer it without searching again.
+     *
+     * @param userQuery the user's query
+     * @param listener receives the progress of the verification
+     * @return the past verdict, or null if the query must be verified
+     */
+    private NewsVerificationResult reuseSimilarVerdict(String userQuery, VerificationListener listener) {
+        if (claimIndex == null) {
+            return null;
+        }
+        ClaimIndex.Match match = claimIndex.findSimilar(userQuery);
+        if (match == null) {
+            return null;
+        }
+        logger.info("Answering from the verdict of a similar claim (score {}): {}",
+                String.format("%.2f", match.normalizedScore()), match.verdict().query());
+        listener.onStage("reused", match.verdict().query());
+        return match.verdict().result();
+    }
+    
+    /**
+     * Understands a user query with the configured mode and times it, so the fused
+     * and stepwise modes can be compared.
+     *
+     * @param userQuery the user's query
+     * @param currentEvent the event being discussed, or null if there is none
+     * @return the understanding of the query
+     */
+    private QueryUnderstanding understand(String userQuery, String currentEvent) {
+        PipelineConfig.UnderstandingMode mode = pipelineConfig.getUnderstandingMode();
+        Timer.Sample sample = Timer.start();
+        
+        QueryUnderstanding understanding = null;
+        if (mode == PipelineConfig.UnderstandingMode.FUSED) {
+            understanding = understandLocally(userQuery, currentEvent);
+            if (understanding == null) {
+                understanding = understandQuery(userQuery, currentEvent);
+            }
+            if (understanding == null) {
+                // The model didn't follow the format, fall back to one question per call
+                logger.warn("Falling back to stepwise query understanding");
+            }
+        }
+        if (understanding == null) {
+            understanding = understandQueryStepwise(userQuery, currentEvent);
+        }
+        
+        sample.stop(Metrics.timer("veribot.query.understanding", "mode", mode.name().toLowerCase()));
+        logger.info("Query understood ({}): related={}, intent={}, search query={}, country={}",
+                mode, understanding.newsRelated(), understanding.intent(),
+                understanding.searchQuery(), understanding.countryName());
+        return understanding;
+    }
+    
+    /**
+     * Understands a query without the LLM when the fast-path classifier is confident
+     * that no search will be needed: a follow-up or irrelevant query in a conversation,
+     * or a query unrelated to news.
+     *
+     * @param userQuery the user's query
+     * @param currentEvent the event being discussed, or null if there is none
+     * @return the understanding, or null if the LLM is needed
+     */
+    private QueryUnderstanding understandLocally(String userQuery, String currentEvent) {
+        if (fastPath == null) {
+            return null;
+        }
+        if (currentEvent != null && !currentEvent.isEmpty()) {
+            NaiveBayesClassifier.Prediction intent = fastPath.predict(FastPathClassifier.Task.INTENT, userQuery, currentEvent);
+            if (intent != null && !intent.label().equals("NEW_EVENT") && fastPath.decides(FastPathClassifier.Task.INTENT, intent)) {
+                return new QueryUnderstanding(intent.label().equals("SAME_EVENT"), intent.label(), null, null, null);
+            }
+            return null;
+        }
+        NaiveBayesClassifier.Prediction relevance = fastPath.predict(FastPathClassifier.Task.RELEVANCE, userQuery, null);
+        if (relevance != null && relevance.label().equals("UNLIKELY") && fastPath.decides(FastPathClassifier.Task.RELEVANCE, relevance)) {
+            return new QueryUnderstanding(false, null, null, null, null);
+        }
+        return null;
+    }
+    
+    /**
+     * Understands a user query asking each question in its own LLM call, and only
+     * the questions the previous answers make necessary.
+     *
+     * @param userQuery the user's query
+     * @param currentEvent the event being discussed, or null if there is none
+     * @return the understanding of the query, without search query if no search is needed
+     */
+    private QueryUnderstanding understandQueryStepwise(String userQuery, String currentEvent) {
+        String intent = null;
+        if (currentEvent != null) {
+            intent = PipelineMetrics.time("classify_intent", () -> classifyQueryIntent(userQuery, currentEvent));
+            if (!intent.equals("NEW_EVENT")) {
+                return new QueryUnderstanding(intent.equals("SAME_EVENT"), intent, null, null, null);
+            }
+        }
+        
+        if (!PipelineMetrics.time("is_news_related", () -> isNewsRelatedQuery(userQuery))) {
+            return new QueryUnderstanding(false, intent, null, null, null);
+        }
+        
+        // Generate search query and user's country
+        String[] searchQueryAndCountry = PipelineMetrics.time("generate_search_query", () -> generateSearchQuery(userQuery));
+        return new QueryUnderstanding(true, intent, searchQueryAndCountry[0], searchQueryAndCountry[1], null);
+    }
+    
+    /**
+     * Verifies a news query searching for it while its intent and relevance are still
+     * being classified, so the wall-clock time is close to the slowest stage instead of
+     * the sum of all of them. The speculative search is cancelled if the query turns
+     * out to be a follow-up or not news-related, and the time it ran for nothing is
+     * recorded as wasted. The classifications are not speculative: cancelling one that
+     * another answer made unnecessary wastes nothing worth recording.
+     *
+     * @param userQuery the user's query about a news item
+     * @param currentEvent the event being discussed, or null if there is none
+     * @param session the conversation of the user, only used while discussing an event
+     * @param listener receives the progress of the verification
+     * @return a NewsVerificationResult containing the analysis
+     */
+    private NewsVerificationResult verifyNewsSpeculative(String userQuery, String currentEvent, ConversationSession session,
+            VerificationListener listener) {
+        VerificationScope scope = VerificationScope.current();
+        Speculation<SpeculativeSearch> search = new Speculation<>(scope, () -> {
+            String[] searchQueryAndCountry = PipelineMetrics.time("generate_search_query", () -> generateSearchQuery(userQuery));
+            String[] countryLang = resolveCountryAndLanguage(searchQueryAndCountry[1], null);
+            List<Document> documents = searchService.searchNews(searchQueryAndCountry[0], countryLang[0], countryLang[1]);
+            return new SpeculativeSearch(searchQueryAndCountry[0], countryLang[1], documents);
+        });
+        Future<String> intent = currentEvent != null
+                ? scope.fork(() -> PipelineMetrics.time("classify_intent", () -> classifyQueryIntent(userQuery, currentEvent)))
+                : null;
+        Future<Boolean> related = scope.fork(() -> PipelineMetrics.time("is_news_related", () -> isNewsRelatedQuery(userQuery)));
+        
+        try {
+            if (intent != null) {
+                String queryIntent = intent.get();
+                if (queryIntent.equals("SAME_EVENT")) {
+                    logger.info("Query is about the same event: {}", currentEvent);
+                    search.discard();
+                    related.cancel(true);
+                    listener.onStage("classified", "follow_up");
+                    return createFollowUpResponse(userQuery, session, listener);
+                } else if (queryIntent.equals("IRRELEVANT")) {
+                    search.discard();
+                    related.cancel(true);
+                    listener.onStage("classified", "irrelevant");
+                    return createIrrelevantQueryResponse(session);
+                }
+                logger.info("Query is about a new event, initiating search");
+                session.startNewEvent();
+            }
+            
+            if (!related.get()) {
+                search.discard();
+                listener.onStage("classified", "not_news");
+                return createInvalidQueryResponse();
+            }
+            listener.onStage("classified", "news");
+            
+            if (currentEvent != null) {
+                // As in the other modes, a new event may have been verified already or be in flight
+                NewsVerificationResult reused = reuseSimilarVerdict(userQuery, listener);
+                if (reused != null) {
+                    search.discard();
+                    return reused;
+                }
+                if (coalescer != null) {
+                    AtomicBoolean used = new AtomicBoolean();
+                    NewsVerificationResult result = coalescer.verify("search", userQuery, listener, shared -> {
+                        used.set(true);
+                        return analyzeSpeculativeSearch(userQuery, search, shared);
+                    });
+                    if (!used.get()) {
+                        search.discard();
+                    }
+                    return result;
+                }
+            }
+            return analyzeSpeculativeSearch(userQuery, search, listener);
+        } catch (InterruptedException e) {
+            search.discard();
+            related.cancel(true);
+            if (intent != null) {
+                intent.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Verification interrupted", e);
+        } catch (ExecutionException e) {
+            search.discard();
+            related.cancel(true);
+            if (e.getCause() instanceof LlmException llmException) {
+                throw llmException;
+            }
+            throw new IllegalStateException("Error in speculative verification: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+    
+    /**
+     * Waits for the speculative search of a query known to be news, and analyzes its results.
+     *
+     * @param userQuery the user's query about a news item
+     * @param search the speculative search for the query
+     * @param listener receives the progress of the verification
+     * @return a NewsVerificationResult containing the analysis
+     */
+    private NewsVerificationResult analyzeSpeculativeSearch(String userQuery, Speculation<SpeculativeSearch> search,
+            VerificationListener listener) {
+        SpeculativeSearch searched;
+        try {
+            searched = search.future().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Verification interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof LlmException llmException) {
+                throw llmException;
+            }
+            throw new IllegalStateException("Error in speculative search: " + e.getCause().getMessage(), e.getCause());
         }
+        Metrics.counter("veribot.speculation", "outcome", "used").increment();
+        // Reported once the search is known to be used, so a discarded one is never shown
+        listener.onStage("searching", searched.searchQuery());
+        listener.onStage("sources", searched.documents().size() + " sources fetched");
+        
+        if (searched.documents().isEmpty()) {
+            return createNoResultsResponse(userQuery);
+        }
+        return PipelineMetrics.time("analyze",
+                () -> analyzeNewsContent(userQuery, searched.documents(), searched.languageCode(), listener));
+    }
+    
+    /**
+     * Searches for the understood query and analyzes the results.
+     *
+     * @param userQuery the user's query about a news item
+     * @param understanding the search query, country and language understood from it
+     * @param listener receives the progress of the verification
+     * @return a NewsVerificationResult containing the analysis
+     */
+    private NewsVerificationResult searchAndAnalyze(String userQuery, QueryUnderstanding understanding,
+            VerificationListener listener) {
+        String[] countryLang = resolveCountryAndLanguage(understanding.countryName(), understanding.languageCode());
+        String countryCode = countryLang[0];
+        String languageCode = countryLang[1];
         
         // 3. Search for relevant information
-        List<Document> searchResults = searchService.searchNews(searchQuery, countryCode, languageCode);
+        listener.onStage("searching", understanding.searchQuery());
+        List<Document> searchResults = searchService.searchNews(understanding.searchQuery(), countryCode, languageCode);
+        listener.onStage("sources", searchResults.size() + " sources fetched");
         
         if (searchResults.isEmpty()) {
             return createNoResultsResponse(userQuery);
         }
 
         // 4. Analyze the search results
-        NewsVerificationResult result = analyzeNewsContent(userQuery, searchResults, languageCode);
+        NewsVerificationResult result = PipelineMetrics.time("analyze",
+                () -> analyzeNewsContent(userQuery, searchResults, languageCode, listener));
         
         
         
         return result;
     }
     
+    /**
+     * Finds the SerpApi country and language codes for a country name.
+     *
+     * @param countryName the country guessed from the query
+     * @param languageCode the language of the query when known, or null
+     * @return a String array: [countryCode, languageCode]
+     */
+    public String[] resolveCountryAndLanguage(String countryName, String languageCode) {
+        String[] countryLang = CountryLanguageUtils.findCountryAndLanguage(countryName);
+        if (countryLang != null) {
+            return countryLang;
+        }
+        //Default values
+        return new String[]{"ar", languageCode != null ? languageCode : "es"};
+    }
+    
+    /**
+     * Understands a user query with a single LLM call: whether it is news-related,
+     * its intent when a conversation is going on, the optimized search query, and the
+     * country and language of the query.
+     *
+     * @param userQuery the user's query
+     * @param currentEvent the event being discussed, or null if no conversation is going on
+     * @return the understanding, or null if the response could not be parsed
+     */
+    private QueryUnderstanding understandQuery(String userQuery, String currentEvent) {
+        LocalDate currentDate = LocalDate.now();
+        boolean discussing = currentEvent != null && !currentEvent.isEmpty();
+        
+        String intentTask = discussing ? String.format("""
+            - The conversation is currently about this news topic: "%s".
+              Determine if the query is "SAME_EVENT" (about the same news topic), "NEW_EVENT" (about a different news topic) or "IRRELEVANT" (not about news).
+            """, currentEvent) : "";
+        String intentField = discussing ? "\"intent\": \"SAME_EVENT, NEW_EVENT or IRRELEVANT\",\n" : "";
+        
+        String promptTemplate = """
+            Given the following user query, do all of these tasks:
+            - Classify its likelihood to be related to news content: true if it can reasonably appear in news articles (even local news), false if it is technical, informational, or clearly unrelated to news.
+            %s- Convert it into an optimized search query, focusing on key facts, dates, places, or persons. If the user did not specify a date, append this date %s.The date must be in this format mm/dd/aaaa . The generated search query must be in the language of the user's query 
+            - Guess the country related to the query or the user, based on the context (e.g., if the query mentions a country, city, or uses a specific language).
+            - Give the ISO 639-1 code of the language of the query.
+            
+            Return the answer ONLY in this exact JSON format:
+            {
+            "news_related": true or false,
+            %s"search_query": "your optimized search query here",
+            "country": "guessed country name here",
+            "language": "language code here"
+            }
+            
+            User query: %s
+            """;
+
+        String prompt = String.format(promptTemplate, intentTask, currentDate, intentField, userQuery);
+        String response = generateAzureOpenAIResponse(LlmRouter.Route.FAST, prompt, 0.0, true);
+
+        logger.debug("Fused query understanding: {}", response);
+
+        try {
+            JSONObject jsonResponse = extractJsonObject(response);
+            String intent = currentEvent != null ? "NEW_EVENT" : null;
+            if (discussing) {
+                intent = jsonResponse.getString("intent").trim().toUpperCase();
+                if (!intent.equals("SAME_EVENT") && !intent.equals("NEW_EVENT")) {
+                    intent = "IRRELEVANT";
+                }
+            }
+            String language = jsonResponse.optString("language", "").trim().toLowerCase();
+            QueryUnderstanding understanding = new QueryUnderstanding(
+                    jsonResponse.getBoolean("news_related"),
+                    intent,
+                    jsonResponse.getString("search_query").trim(),
+                    jsonResponse.getString("country").trim(),
+                    language.matches("[a-z]{2}") ? language : null);
+            
+            if (fastPath != null) {
+                fastPath.learn(FastPathClassifier.Task.RELEVANCE, userQuery, null,
+                        understanding.newsRelated() ? "LIKELY" : "UNLIKELY",
+                        fastPath.predict(FastPathClassifier.Task.RELEVANCE, userQuery, null));
+                if (discussing) {
+                    fastPath.learn(FastPathClassifier.Task.INTENT, userQuery, currentEvent, intent,
+                            fastPath.predict(FastPathClassifier.Task.INTENT, userQuery, currentEvent));
+                }
+            }
+            return understanding;
+        } catch (Exception e) {
+            logger.error("Error parsing fused query understanding: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+    
     /**
      * Classifies a user query to determine if it's about the current event,
      * a new event, or an irrelevant topic.
@@ -166,28 +690,38 @@ public class NewsVerificationService {
             "IRRELEVANT" if it's not about news
             """;
         
-        String prompt = String.format(promptTemplate, currentEvent, userQuery);
-        String response = generateAzureOpenAIResponse(prompt, 0.0);
-        
-        response = response.trim().toUpperCase();
-        logger.debug("Query intent classification: {}", response);
+        NaiveBayesClassifier.Prediction local = fastPath != null
+                ? fastPath.predict(FastPathClassifier.Task.INTENT, userQuery, currentEvent)
+                : null;
+        if (fastPath != null && fastPath.decides(FastPathClassifier.Task.INTENT, local)) {
+            logger.debug("Query intent classified locally: {} ({})", local.label(), local.probability());
+            return local.label();
+        }
         
-        if (response.contains("SAME_EVENT")) {
-            return "SAME_EVENT";
-        } else if (response.contains("NEW_EVENT")) {
-            return "NEW_EVENT";
-        } else {
+        String prompt = String.format(promptTemplate, currentEvent, userQuery);
+        String intent = classify(FastPathClassifier.Task.INTENT, userQuery, currentEvent, prompt);
+        logger.debug("Query intent classification: {}", intent);
+        if (intent == null) {
+            // Not an answer to learn from
             return "IRRELEVANT";
         }
+        
+        if (fastPath != null) {
+            fastPath.learn(FastPathClassifier.Task.INTENT, userQuery, currentEvent, intent, local);
+        }
+        return intent;
     }
     
     /**
      * Creates a response for follow-up questions about the current event.
      * 
      * @param userQuery The user's follow-up question
+     * @param session The conversation holding the current event
+     * @param listener Receives the tokens of the answer as they are generated
      * @return A NewsVerificationResult containing information from the current session
      */
-    private NewsVerificationResult createFollowUpResponse(String userQuery) {
+    private NewsVerificationResult createFollowUpResponse(String userQuery, ConversationSession session,
+            VerificationListener listener) {
         // Generate a response specific to the follow-up question
         String promptTemplate = """
             You are answering a follow-up question about a news event.
@@ -205,20 +739,21 @@ public class NewsVerificationService {
         
         String prompt = String.format(
             promptTemplate,
-            conversationSession.getCurrentEventSummary(),
-            conversationSession.getTruthfulnessPercentage(),
-            conversationSession.getJustification(),
+            session.getCurrentEventSummary(),
+            session.getTruthfulnessPercentage(),
+            session.getJustification(),
             userQuery
         );
         
-        String response = generateAzureOpenAIResponse(prompt, 0.0);
+        listener.onStage("answering", null);
+        String response = completeForListener(prompt, 0.0, LlmPriority.INTERACTIVE_FOLLOW_UP, listener);
         logger.debug("Follow-up response: {}", response);
         
         // Simply use the plain text response directly
         return new NewsVerificationResult(
             response.trim(),
-            conversationSession.getTruthfulnessPercentage(),
-            conversationSession.getJustification(),
+            session.getTruthfulnessPercentage(),
+            session.getJustification(),
             new ArrayList<>() // Empty sources since we're using cached info
         );
     }
@@ -226,10 +761,11 @@ public class NewsVerificationService {
     /**
      * Creates a response for when the user query is irrelevant (not news-related).
      *
+     * @param session the conversation of the user
      * @return a NewsVerificationResult with an appropriate message
      */
-    private NewsVerificationResult createIrrelevantQueryResponse() {
-        conversationSession.setState(ConversationState.IRRELEVANT_TOPIC);
+    private NewsVerificationResult createIrrelevantQueryResponse(ConversationSession session) {
+        session.setState(ConversationState.IRRELEVANT_TOPIC);
         
         return new NewsVerificationResult(
                 "I can only help with questions about news events and factual information.",
@@ -257,11 +793,26 @@ public class NewsVerificationService {
             Respond only with LIKELY or UNLIKELY.
             """;
         
+        NaiveBayesClassifier.Prediction local = fastPath != null
+                ? fastPath.predict(FastPathClassifier.Task.RELEVANCE, query, null)
+                : null;
+        if (fastPath != null && fastPath.decides(FastPathClassifier.Task.RELEVANCE, local)) {
+            logger.debug("News relevance classified locally: {} ({})", local.label(), local.probability());
+            return local.label().equals("LIKELY");
+        }
+        
         String prompt = String.format(promptTemplate, query);
-        String response = generateAzureOpenAIResponse(prompt, 0.0);
+        String label = classify(FastPathClassifier.Task.RELEVANCE, query, null, prompt);
+        logger.debug("News validation response: {}", label);
+        if (label == null) {
+            // Errors contain neither label and are not learned
+            return false;
+        }
         
-        logger.debug("News validation response: {}", response);
-        return response.trim().toUpperCase().contains("LIKELY");
+        if (fastPath != null) {
+            fastPath.learn(FastPathClassifier.Task.RELEVANCE, query, null, label, local);
+        }
+        return label.equals("LIKELY");
     }
 
     /**
@@ -287,7 +838,7 @@ public class NewsVerificationService {
             """;
 
         String prompt = String.format(promptTemplate, currentDate, userQuery);
-        String response = generateAzureOpenAIResponse(prompt, 0.0);
+        String response = generateAzureOpenAIResponse(LlmRouter.Route.FAST, prompt, 0.0, true);
 
         logger.debug("Generated search query and country: {}", response);
 
@@ -338,9 +889,11 @@ public class NewsVerificationService {
      * @param query the user's original query
      * @param documents the search results to analyze
      * @param languageCode the ISO 639-1 language code to respond in (e.g., "es" for Spanish)
+     * @param listener receives the tokens of the analysis as they are generated
      * @return a NewsVerificationResult with the analysis
      */
-    private NewsVerificationResult analyzeNewsContent(String query, List<Document> documents, String languageCode) {
+    private NewsVerificationResult analyzeNewsContent(String query, List<Document> documents, String languageCode,
+            VerificationListener listener) {
         // Extract text content from documents
         String contentToAnalyze = documents.stream()
                 .map(Document::text)
@@ -377,11 +930,23 @@ public class NewsVerificationService {
             %s
             """, systemPrompt, query, contentToAnalyze);
 
-        String response = generateAzureOpenAIResponse(userPrompt, 0.0);
+        listener.onStage("analyzing", null);
+        String response = completeForListener(userPrompt, 0.0, priority, listener);
 
         logger.debug("Verification analysis response: {}", response);
 
-        return parseVerificationResponse(response, sources);
+        NewsVerificationResult result = parseVerificationResponse(response, sources);
+        if (!result.summary().equals(SUMMARY_NOT_AVAILABLE) && !result.summary().equals(ANALYSIS_ERROR_SUMMARY)) {
+            VerdictStore.StoredVerdict verdict = new VerdictStore.StoredVerdict(
+                    ClaimCoalescer.fingerprint(query), query, Instant.now(), result);
+            if (verdictStore != null) {
+                verdictStore.append(verdict);
+            }
+            if (claimIndex != null) {
+                claimIndex.add(verdict);
+            }
+        }
+        return result;
     }
 
     private String getLanguageInstruction(String languageCode) {
@@ -447,69 +1012,134 @@ public class NewsVerificationService {
     }
 
     /**
-     * Generates a response from Azure OpenAI API.
+     * Asks the LLM a classification question. Unless the answer is cached, the question
+     * is sent together with those of other sessions when batching is enabled.
      *
+     * @param task the question
+     * @param query the user's query
+     * @param currentEvent the event being discussed, for the intent task
+     * @param prompt the prompt asking the question alone
+     * @return the label of the task the LLM answered, or null if its answer gave none
+     * @throws LlmException if the deployment could not give an answer
+     */
+    private String classify(FastPathClassifier.Task task, String query, String currentEvent, String prompt) {
+        if (classificationBatcher == null) {
+            return task.labelOf(generateAzureOpenAIResponse(LlmRouter.Route.FAST, prompt, 0.0, false));
+        }
+        if (responseCache != null) {
+            String cached = responseCache.get(llmRouter.getDeploymentName(LlmRouter.Route.FAST), prompt);
+            if (cached != null) {
+                return task.labelOf(cached);
+            }
+        }
+        
+        ClassificationBatcher.Answer answer = AzureOpenAIClient.await(
+                classificationBatcher.classify(task, query, currentEvent, prompt, priority));
+        // A batched answer is not the answer to the prompt alone, so it is never cached
+        if (responseCache != null && answer.response() != null) {
+            LlmRouter.Completion response = answer.response();
+            responseCache.put(response.deploymentName(), prompt, response.content(), false);
+        }
+        return answer.label();
+    }
+
+    /**
+     * Generates a response from Azure OpenAI API. Deterministic prompts (temperature 0)
+     * are answered from the response cache when possible.
+     *
+     * @param route the deployment the prompt is routed to
      * @param prompt the prompt to send to the API
      * @param temperature the temperature to use for generation (0.0-1.0)
+     * @param dateSensitive whether the prompt embeds the current date
      * @return the generated response text
+     * @throws LlmException if the deployment could not give an answer
      */
-    private String generateAzureOpenAIResponse(String prompt, double temperature) {
-        try {
-            // Build the API URL
-            String apiUrl = String.format("%s/openai/deployments/%s/chat/completions?api-version=%s", 
-                    endpoint.replaceAll("/$", ""), 
-                    deploymentName, 
-                    apiVersion);
-            
-            // Create the request body
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("temperature", temperature);
-            requestBody.put("max_completion_tokens", 800);
-            
-            JSONArray messages = new JSONArray();
-            JSONObject userMessage = new JSONObject();
-            userMessage.put("role", "user");
-            userMessage.put("content", prompt);
-            messages.put(userMessage);
-            
-            requestBody.put("messages", messages);
-            
-            // Build the HTTP request
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(apiUrl))
-                    .header("Content-Type", "application/json")
-                    .header("api-key", apiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBody.toString()))
-                    .build();
-            
-            // Send the request
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            // Process the response
-            if (response.statusCode() == 200) {
-                JSONObject responseJson = new JSONObject(response.body());
-                
-                // Extract the generated content
-                if (responseJson.has("choices") && responseJson.getJSONArray("choices").length() > 0) {
-                    JSONObject firstChoice = responseJson.getJSONArray("choices").getJSONObject(0);
-                    
-                    if (firstChoice.has("message") && firstChoice.getJSONObject("message").has("content")) {
-                        return firstChoice.getJSONObject("message").getString("content");
-                    }
-                }
-                
-                logger.error("Unexpected response format from Azure OpenAI: {}", response.body());
-                return "Error: Unexpected response format";
-            } else {
-                logger.error("Azure OpenAI API returned error: {} - {}", response.statusCode(), response.body());
-                return "Error: " + response.statusCode();
+    private String generateAzureOpenAIResponse(LlmRouter.Route route, String prompt, double temperature,
+            boolean dateSensitive) {
+        return generateAzureOpenAIResponse(route, prompt, temperature, dateSensitive, priority);
+    }
+
+    /**
+     * Generates a response from Azure OpenAI API with the given priority in the quota
+     * scheduler. Deterministic prompts (temperature 0) are answered from the response
+     * cache when possible.
+     *
+     * @param route the deployment the prompt is routed to
+     * @param prompt the prompt to send to the API
+     * @param temperature the temperature to use for generation (0.0-1.0)
+     * @param dateSensitive whether the prompt embeds the current date
+     * @param callPriority how urgently the response is needed when the quota is short
+     * @return the generated response text
+     * @throws LlmException if the deployment could not give an answer
+     */
+    private String generateAzureOpenAIResponse(LlmRouter.Route route, String prompt, double temperature,
+            boolean dateSensitive, LlmPriority callPriority) {
+        String deploymentName = llmRouter.getDeploymentName(route);
+        boolean cacheable = responseCache != null && temperature == 0.0;
+        if (cacheable) {
+            String cached = responseCache.get(deploymentName, prompt);
+            if (cached != null) {
+                return cached;
             }
-            
-        } catch (IOException | InterruptedException e) {
-            logger.error("Error calling Azure OpenAI API: {}", e.getMessage(), e);
-            Thread.currentThread().interrupt();
-            return "Error: " + e.getMessage();
         }
+        
+        LlmRouter.Completion completion = AzureOpenAIClient.await(
+                llmRouter.completion(route, prompt, temperature, callPriority));
+        if (cacheable) {
+            // Under the deployment that answered, which is the other one after a fallback
+            responseCache.put(completion.deploymentName(), prompt, completion.content(), dateSensitive);
+        }
+        return completion.content();
+    }
+
+    /**
+     * Generates a response on the strong deployment, streaming it token by token when
+     * someone is listening.
+     *
+     * @param prompt the prompt to send to the API
+     * @param temperature the temperature to use for generation (0.0-1.0)
+     * @param callPriority how urgently the response is needed when the quota is short
+     * @param listener receives the tokens of the response
+     * @return the generated response text
+     * @throws LlmException if the deployment could not give an answer
+     */
+    private String completeForListener(String prompt, double temperature, LlmPriority callPriority,
+            VerificationListener listener) {
+        if (!listener.wantsTokens()) {
+            return generateAzureOpenAIResponse(LlmRouter.Route.STRONG, prompt, temperature, false, callPriority);
+        }
+        return streamAzureOpenAIResponse(prompt, temperature, callPriority, listener);
+    }
+
+    /**
+     * Generates a response from the strong deployment with stream=true, passing each token
+     * to the listener as soon as it arrives. A cached response is passed as one token.
+     *
+     * @param prompt the prompt to send to the API
+     * @param temperature the temperature to use for generation (0.0-1.0)
+     * @param callPriority how urgently the response is needed when the quota is short
+     * @param listener receives the tokens of the response
+     * @return the whole generated response text
+     * @throws LlmException if the deployment could not give an answer
+     */
+    private String streamAzureOpenAIResponse(String prompt, double temperature, LlmPriority callPriority,
+            VerificationListener listener) {
+        String deploymentName = llmRouter.getDeploymentName(LlmRouter.Route.STRONG);
+        boolean cacheable = responseCache != null && temperature == 0.0;
+        if (cacheable) {
+            String cached = responseCache.get(deploymentName, prompt);
+            if (cached != null) {
+                listener.onToken(cached);
+                return cached;
+            }
+        }
+        
+        LlmRouter.Completion completion = AzureOpenAIClient.await(llmRouter.streamCompletion(LlmRouter.Route.STRONG,
+                prompt, temperature, listener::onToken, callPriority));
+        if (cacheable) {
+            responseCache.put(completion.deploymentName(), prompt, completion.content(), false);
+        }
+        return completion.content();
     }
 
     /**
@@ -542,7 +1172,7 @@ public class NewsVerificationService {
                 // Extract summary
                 Pattern summaryPattern = Pattern.compile("\"summary\"\\s*:\\s*\"([^\"]+)\"");
                 Matcher summaryMatcher = summaryPattern.matcher(response);
-                String summary = summaryMatcher.find() ? summaryMatcher.group(1) : "Summary not available";
+                String summary = summaryMatcher.find() ? summaryMatcher.group(1) : SUMMARY_NOT_AVAILABLE;
                 
                 // Extract truthfulness percentage
                 Pattern truthfulnessPattern = Pattern.compile("\"truthfulness_percentage\"\\s*:\\s*(\\d+)");
@@ -567,7 +1197,7 @@ public class NewsVerificationService {
             logger.error("Error parsing verification response: {}", e.getMessage(), e);
             
             return new NewsVerificationResult(
-                    "Error analyzing content",
+                    ANALYSIS_ERROR_SUMMARY,
                     0,
                     "An error occurred while processing the verification results.",
                     sources
@@ -633,14 +1263,46 @@ public class NewsVerificationService {
         }
     }
 
+    
+    /**
+     * The result of a search started before knowing if it was needed.
+     */
+    private record SpeculativeSearch(String searchQuery, String languageCode, List<Document> documents) {
+    }
 
     /**
-     * Get ConversationSession object.
-     *
-     * @return ConversationSession.
+     * A sub-task started before knowing if its result is needed, timed so that the work
+     * of a discarded one can be recorded: from its start until it ended or was cancelled.
      */
-    public ConversationSession getConversationSession() {
-		return conversationSession;
-	}
+    private static final class Speculation<T> {
+        private final long started = System.nanoTime();
+        private final Future<T> future;
+        // When the task ended, 0 while it runs
+        private volatile long ended;
+
+        Speculation(VerificationScope scope, Callable<T> task) {
+            this.future = scope.fork(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    ended = System.nanoTime();
+                }
+            });
+        }
+
+        Future<T> future() {
+            return future;
+        }
+
+        /**
+         * Cancels the task if it still runs, and records the time it ran for nothing.
+         */
+        void discard() {
+            future.cancel(true);
+            long end = ended != 0 ? ended : System.nanoTime();
+            Metrics.counter("veribot.speculation", "outcome", "wasted").increment();
+            Metrics.timer("veribot.speculation.wasted").record(end - started, TimeUnit.NANOSECONDS);
+        }
+    }
     
 }
\ No newline at end of file
@@ -0,0 +1,191 @@
+package com.veribot.service;
+
+import com.veribot.model.ScrapeOutcome;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The timers of the verification pipeline: whole verifications and each stage by
+ * outcome, each page scraped by outcome and by domain, and the time Readability takes to
+ * parse a page. They publish histogram buckets, so that the percentiles can be
+ * aggregated across pods from the Prometheus endpoint; recording one only increments
+ * counters, no percentile is computed on the request path. Each timer is registered
+ * once, then found in a map.
+ * <p>
+ * The domains tagged differ from pod to pod, as each pod tags the first ones it
+ * scrapes, and there are up to {@link #MAX_DOMAINS} of them per outcome. So the per-domain
+ * timer only counts pages against a few service-level buckets, to find the slow sites,
+ * and the percentiles of pages come from the domain-less timer, whose series are the
+ * same on every pod.
+ */
+final class PipelineMetrics {
+    // Domains tagged on the page timer; the rest are tagged "other"
+    static final int MAX_DOMAINS = 100;
+    static final String OTHER_DOMAIN = "other";
+
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(60);
+    // The few buckets of the per-domain page timer
+    private static final Duration[] PAGE_SLOS = {Duration.ofSeconds(1), Duration.ofSeconds(3), Duration.ofSeconds(10)};
+
+    private static final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> pageTimers = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> domainTimers = new ConcurrentHashMap<>();
+    private static final Set<String> domains = ConcurrentHashMap.newKeySet();
+    private static final Timer requestOk = requestTimer("ok");
+    private static final Timer requestError = requestTimer("error");
+    private static final Timer parseTimer = Timer.builder("veribot.scrape.parse")
+            .description("Time Readability takes to extract the text of a page")
+            .publishPercentileHistogram()
+            .minimumExpectedValue(MIN_EXPECTED)
+            .maximumExpectedValue(Duration.ofSeconds(5))
+            .register(Metrics.globalRegistry);
+
+    private PipelineMetrics() {
+    }
+
+    private static Timer requestTimer(String outcome) {
+        return Timer.builder("veribot.pipeline.request")
+                .description("Duration of a whole verification")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Runs a stage of the pipeline and records its duration, tagged "ok" or, if it
+     * throws, "error".
+     *
+     * @param stage the name of the stage, as a metric tag
+     * @param work the stage
+     * @return what the stage returned
+     */
+    static <T> T time(String stage, Supplier<T> work) {
+        long started = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = work.get();
+            outcome = "ok";
+            return result;
+        } finally {
+            recordStage(stage, outcome, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Runs a whole verification and records its duration, tagged "ok" or, if it
+     * throws, "error".
+     *
+     * @param work the verification
+     * @return what the verification returned
+     */
+    static <T> T timeRequest(Supplier<T> work) {
+        long started = System.nanoTime();
+        boolean ok = false;
+        try {
+            T result = work.get();
+            ok = true;
+            return result;
+        } finally {
+            (ok ? requestOk : requestError).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records the duration of a stage of the pipeline.
+     *
+     * @param stage the name of the stage, as a metric tag
+     * @param outcome how the stage ended, as a metric tag
+     * @param nanos how long it took
+     */
+    static void recordStage(String stage, String outcome, long nanos) {
+        stageTimers.computeIfAbsent(stage + ':' + outcome, key -> Timer.builder("veribot.pipeline.stage")
+                .description("Duration of the stages of the verification pipeline")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(Metrics.globalRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time it took to fetch a page and extract its text.
+     *
+     * @param link the URL of the page
+     * @param outcome the outcome of the scrape
+     * @param nanos how long it took
+     */
+    static void recordPage(String link, ScrapeOutcome outcome, long nanos) {
+        pageTimers.computeIfAbsent(outcome.tag(), key -> Timer.builder("veribot.scrape.page")
+                .description("Time to fetch a news page and extract its text")
+                .tag("outcome", outcome.tag())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(10))
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(Metrics.globalRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        String domain = domainTag(link);
+        domainTimers.computeIfAbsent(domain + ':' + outcome.tag(), key -> Timer.builder("veribot.scrape.page.domain")
+                .description("Time to fetch a news page and extract its text, by domain")
+                .tag("domain", domain)
+                .tag("outcome", outcome.tag())
+                .serviceLevelObjectives(PAGE_SLOS)
+                .register(Metrics.globalRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time Readability took to parse a page.
+     *
+     * @param nanos how long it took
+     */
+    static void recordParse(long nanos) {
+        parseTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Tags a page with its domain, without "www.". Only the first domains seen get a
+     * tag of their own, so that the links of a search cannot grow the metrics without bound.
+     *
+     * @param link the URL of the page
+     * @return the domain, or "other"
+     */
+    static String domainTag(String link) {
+        String host;
+        try {
+            host = URI.create(link).getHost();
+        } catch (IllegalArgumentException e) {
+            return OTHER_DOMAIN;
+        }
+        if (host == null) {
+            return OTHER_DOMAIN;
+        }
+        String domain = host.toLowerCase();
+        if (domain.startsWith("www.")) {
+            domain = domain.substring(4);
+        }
+        if (domains.contains(domain)) {
+            return domain;
+        }
+        synchronized (domains) {
+            if (domains.size() < MAX_DOMAINS) {
+                domains.add(domain);
+                return domain;
+            }
+        }
+        return OTHER_DOMAIN;
+    }
+}
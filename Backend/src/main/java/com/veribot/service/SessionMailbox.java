@@ -0,0 +1,150 @@
+package com.veribot.service;
+
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs the queries of one session one after the other, in the order they arrived, so
+ * that a double click or two open tabs cannot run two pipelines on the same
+ * conversation at once. Different sessions have different mailboxes and run in
+ * parallel. A query identical to one queued or running in the session is not run
+ * again: it receives the progress events and the answer of the first one. A query
+ * whose every caller was interrupted, because its clients left, is stopped.
+ */
+public class SessionMailbox {
+    private static final Logger logger = LoggerFactory.getLogger(SessionMailbox.class);
+
+    // Runs the queries of every session, each on its own virtual thread
+    private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final String sessionId;
+    // Completes when the last query submitted is done; never fails
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+    // Queries queued or running, by fingerprint
+    private final Map<String, Message> pending = new HashMap<>();
+
+    /**
+     * A query queued or running.
+     */
+    private static class Message {
+        final CompletableFuture<String> answer = new CompletableFuture<>();
+        final FanOutListener events = new FanOutListener();
+        // Guarded by the mailbox: the callers waiting for the answer, and the thread running it
+        int waiters;
+        Thread runner;
+        boolean cancelled;
+    }
+
+    /**
+     * Creates the mailbox of a session.
+     *
+     * @param sessionId the id of the session, for the logs
+     */
+    public SessionMailbox(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Runs a query once the queries submitted before it are done, and waits for its
+     * answer. If an identical query is already queued or running, waits for its answer
+     * instead. Interrupting the caller stops the query once no other caller waits for it.
+     *
+     * @param query the user's query
+     * @param listener receives the progress of the query
+     * @param work answers the query, reporting to the listener it is given
+     * @return the answer
+     */
+    public String submit(String query, VerificationListener listener, Function<VerificationListener, String> work) {
+        String key = ClaimCoalescer.fingerprint(query);
+        Message message;
+        boolean duplicate;
+        synchronized (this) {
+            message = pending.get(key);
+            duplicate = message != null;
+            if (!duplicate) {
+                Message created = new Message();
+                message = created;
+                pending.put(key, created);
+                // Attached before it runs, so the run knows whether to stream its answer
+                created.events.attach(listener);
+                long submitted = System.nanoTime();
+                tail = tail.thenRunAsync(() -> run(key, created, work, submitted), executor);
+            }
+            message.waiters++;
+        }
+
+        if (duplicate) {
+            logger.info("Session {}: joining the identical query in flight", sessionId);
+            message.events.attach(listener);
+        }
+        Metrics.counter("veribot.sessions.messages", "outcome", duplicate ? "attached" : "run").increment();
+        try {
+            return message.answer.get();
+        } catch (InterruptedException e) {
+            abandon(key, message);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Query interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            message.events.detach(listener);
+        }
+    }
+
+    /**
+     * @return whether a query of the session is queued or running
+     */
+    public synchronized boolean isBusy() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Stops a query when its last caller stops waiting for it: it is dropped if still
+     * queued and interrupted if running.
+     */
+    private synchronized void abandon(String key, Message message) {
+        if (--message.waiters > 0 || message.answer.isDone()) {
+            return;
+        }
+        logger.info("Session {}: stopping a query nobody waits for", sessionId);
+        message.cancelled = true;
+        pending.remove(key, message);
+        if (message.runner != null) {
+            message.runner.interrupt();
+        }
+    }
+
+    private void run(String key, Message message, Function<VerificationListener, String> work, long submitted) {
+        Metrics.timer("veribot.sessions.mailbox.wait").record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+        synchronized (this) {
+            if (message.cancelled) {
+                message.answer.cancel(false);
+                return;
+            }
+            message.runner = Thread.currentThread();
+        }
+        try {
+            message.answer.complete(work.apply(message.events));
+        } catch (Throwable e) {
+            message.answer.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                message.runner = null;
+                pending.remove(key, message);
+            }
+        }
+    }
+}
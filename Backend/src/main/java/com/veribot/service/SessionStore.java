@@ -0,0 +1,199 @@
+package com.veribot.service;
+
+import com.veribot.config.SessionConfig;
+import com.veribot.model.ConversationSession;
+import com.veribot.model.UserContext;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the sessions of the users, bounded by count and by estimated bytes, so that
+ * clients creating a session per request cannot run the heap up. The least recently
+ * used session is evicted first. Every session lives for the same time after its last
+ * use, so the least recently used session is also the first to expire: expiring only
+ * looks at the eldest sessions and stops at the first live one, instead of scanning
+ * them all.
+ * <p>
+ * A session with a query queued or running is never removed: its query would go on
+ * with a conversation the next query of the user no longer finds, and would run
+ * alongside it. The store may then stay over its bounds until that query is done.
+ */
+public class SessionStore {
+    private static final Logger logger = LoggerFactory.getLogger(SessionStore.class);
+
+    // Rough size of a session without its text: the context, the session, the mailbox, the entry
+    private static final long SESSION_OVERHEAD_BYTES = 1024;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Duration ttl;
+    private final Clock clock;
+
+    // Access order: the eldest entry is the least recently used one
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * Creates a new SessionStore.
+     *
+     * @param config the bounds and time to live of the sessions
+     * @return the store, its size reported as gauges
+     */
+    public static SessionStore create(SessionConfig config) {
+        return create(config, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a new SessionStore with the given clock.
+     *
+     * @param config the bounds and time to live of the sessions
+     * @param clock the clock used to expire the sessions
+     * @return the store, its size reported as gauges
+     */
+    public static SessionStore create(SessionConfig config, Clock clock) {
+        SessionStore store = new SessionStore(config, clock);
+        Gauge.builder("veribot.sessions.live", store, SessionStore::size)
+                .description("Sessions kept in memory").register(Metrics.globalRegistry);
+        Gauge.builder("veribot.sessions.bytes", store, SessionStore::bytes)
+                .description("Estimated memory used by the sessions").baseUnit("bytes")
+                .register(Metrics.globalRegistry);
+        return store;
+    }
+
+    private SessionStore(SessionConfig config, Clock clock) {
+        this.maxEntries = config.getMaxEntries();
+        this.maxBytes = config.getMaxMemoryBytes();
+        this.ttl = Duration.ofMinutes(config.getTtlMinutes());
+        this.clock = clock;
+
+        logger.info("SessionStore initialized: maxEntries={}, maxBytes={}, ttl={}", maxEntries, maxBytes, ttl);
+    }
+
+    /**
+     * Returns the session with the given id, creating it if it does not exist or has
+     * expired, and marks it as used now.
+     *
+     * @param sessionId the id of the session
+     * @return the session
+     */
+    public synchronized UserContext getOrCreate(String sessionId) {
+        Instant now = clock.instant();
+        expire(now);
+        Entry entry = entries.get(sessionId);
+        if (entry == null) {
+            entry = new Entry(new UserContext(sessionId));
+            entry.bytes = estimateBytes(entry.context);
+            entries.put(sessionId, entry);
+            bytes += entry.bytes;
+            evictOverBounds(sessionId);
+        }
+        entry.lastUsed = now;
+        return entry.context;
+    }
+
+    /**
+     * Estimates again the size of a session whose conversation changed, evicting other
+     * sessions if the store is now over its budget.
+     *
+     * @param context the session, as returned by {@link #getOrCreate}
+     */
+    public synchronized void updated(UserContext context) {
+        Entry entry = entries.get(context.getSessionId());
+        if (entry == null || entry.context != context) {
+            return;
+        }
+        long estimated = estimateBytes(context);
+        bytes += estimated - entry.bytes;
+        entry.bytes = estimated;
+        evictOverBounds(context.getSessionId());
+    }
+
+    /**
+     * Removes the sessions unused for longer than their time to live.
+     */
+    public synchronized void expire() {
+        expire(clock.instant());
+    }
+
+    private void expire(Instant now) {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext()) {
+            Entry entry = eldest.next();
+            if (entry.lastUsed.plus(ttl).isAfter(now)) {
+                break;
+            }
+            if (entry.context.getMailbox().isBusy()) {
+                continue;
+            }
+            remove(eldest, entry, "expired");
+        }
+    }
+
+    /**
+     * Evicts the least recently used sessions while the store is over its bounds. The
+     * given session, in use right now, is kept, and so are the busy ones.
+     */
+    private void evictOverBounds(String keep) {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            if (entry.context.getSessionId().equals(keep) || entry.context.getMailbox().isBusy()) {
+                continue;
+            }
+            remove(eldest, entry, "size");
+        }
+    }
+
+    private void remove(Iterator<Entry> iterator, Entry entry, String reason) {
+        iterator.remove();
+        bytes -= entry.bytes;
+        Metrics.counter("veribot.sessions.evictions", "reason", reason).increment();
+    }
+
+    /**
+     * Estimates the memory a session retains: a fixed overhead plus its text.
+     */
+    static long estimateBytes(UserContext context) {
+        ConversationSession session = context.getSession();
+        return SESSION_OVERHEAD_BYTES + 2L * (length(context.getSessionId()) + length(session.getCurrentEvent())
+                + length(session.getCurrentEventSummary()) + length(session.getJustification()));
+    }
+
+    private static int length(String text) {
+        return text != null ? text.length() : 0;
+    }
+
+    /**
+     * @return the number of sessions, including expired ones not yet removed
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the estimated memory used by the sessions
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    private static final class Entry {
+        private final UserContext context;
+        private long bytes;
+        private Instant lastUsed;
+
+        Entry(UserContext context) {
+            this.context = context;
+        }
+    }
+}
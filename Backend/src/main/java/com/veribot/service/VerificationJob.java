@@ -0,0 +1,135 @@
+package com.veribot.service;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A query submitted to be answered in the background, polled for by its id.
+ */
+public class VerificationJob {
+    private final String id;
+    private final Instant submittedAt;
+    private final CompletableFuture<VerificationJob> completion = new CompletableFuture<>();
+    private volatile Status status = Status.RUNNING;
+    private volatile String text;
+    private volatile String error;
+    private volatile long retryAfterSeconds;
+    private volatile Instant finishedAt;
+
+    /**
+     * The states of a job.
+     */
+    public enum Status {
+        RUNNING,
+        DONE,
+        FAILED,
+        // Rejected by the admission control when its turn came; may be submitted again
+        OVERLOADED;
+
+        /**
+         * @return the status as a lower-case tag
+         */
+        public String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Creates a running job.
+     *
+     * @param id the id of the job
+     * @param submittedAt when the job was submitted
+     */
+    public VerificationJob(String id, Instant submittedAt) {
+        this.id = id;
+        this.submittedAt = submittedAt;
+    }
+
+    /**
+     * Records the answer of the job.
+     *
+     * @param text the formatted answer
+     * @param at when the job finished
+     */
+    void complete(String text, Instant at) {
+        this.text = text;
+        this.finishedAt = at;
+        this.status = Status.DONE;
+        completion.complete(this);
+    }
+
+    /**
+     * Records the failure of the job.
+     *
+     * @param error what went wrong
+     * @param at when the job finished
+     */
+    void fail(String error, Instant at) {
+        this.error = error;
+        this.finishedAt = at;
+        this.status = Status.FAILED;
+        completion.complete(this);
+    }
+
+    /**
+     * Records that the job was rejected because the service is overloaded.
+     *
+     * @param error what went wrong
+     * @param retryAfterSeconds the delay after which the client should submit it again
+     * @param at when the job finished
+     */
+    void reject(String error, long retryAfterSeconds, Instant at) {
+        this.error = error;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.finishedAt = at;
+        this.status = Status.OVERLOADED;
+        completion.complete(this);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the answer, null unless the job is done
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return what went wrong, null unless the job failed
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return the delay after which an overloaded job should be submitted again, in seconds
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * @return when the job finished, null while it runs
+     */
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * @return completed with the job when it finishes
+     */
+    public CompletableFuture<VerificationJob> getCompletion() {
+        return completion;
+    }
+}
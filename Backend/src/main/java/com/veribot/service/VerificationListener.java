@@ -0,0 +1,46 @@
+package com.veribot.service;
+
+/**
+ * Receives the progress of a verification as it happens, so it can be streamed to the user.
+ * Methods may be called from several threads.
+ */
+public interface VerificationListener {
+
+    /**
+     * A listener that ignores every event.
+     */
+    VerificationListener NONE = new VerificationListener() {
+        @Override
+        public boolean wantsTokens() {
+            return false;
+        }
+    };
+
+    /**
+     * Called when the pipeline reaches a stage.
+     *
+     * @param stage the stage name, e.g. "classified", "searching", "sources" or "analyzing"
+     * @param detail a short description of the stage, may be null
+     */
+    default void onStage(String stage, String detail) {
+    }
+
+    /**
+     * Called for every piece of text generated by the final LLM completion.
+     *
+     * @param token the generated text
+     */
+    default void onToken(String token) {
+    }
+
+    /**
+     * Tells whether the final answer should be streamed to the listener token by token.
+     * Streamed completions cannot be hedged, so they are only requested when someone
+     * reads the tokens.
+     *
+     * @return true if {@link #onToken} should be called as the answer is generated
+     */
+    default boolean wantsTokens() {
+        return true;
+    }
+}
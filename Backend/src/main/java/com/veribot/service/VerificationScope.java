@@ -0,0 +1,238 @@
+package com.veribot.service;
+
+import com.veribot.llm.LlmException;
+
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sub-tasks of one verification (speculative searches and classifications, the
+ * parallel scrapes), each on its own virtual thread, with a shared cancellation and
+ * deadline. It follows the rules of structured concurrency, without the preview
+ * StructuredTaskScope API: a scope is opened and closed by the same thread in a
+ * try/finally block, its sub-tasks cannot outlive it, as closing it interrupts and
+ * waits for the ones still running, and a scope opened within another one is its child.
+ * Cancelling a scope, or reaching its deadline, interrupts its sub-tasks and those of
+ * its children; the deadline also interrupts the thread that opened the scope, so that
+ * whatever it waits for gives up.
+ */
+public final class VerificationScope implements Executor, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(VerificationScope.class);
+
+    // The innermost scope open on each thread, set for the sub-tasks of a scope too
+    private static final ThreadLocal<VerificationScope> current = new ThreadLocal<>();
+    private static final ScheduledThreadPoolExecutor deadlines = deadlineTimer();
+
+    private final VerificationScope parent;
+    private final Thread owner;
+    private final long deadline;
+    private final ScheduledFuture<?> timer;
+    private final Set<Thread> forks = ConcurrentHashMap.newKeySet();
+    private final Set<VerificationScope> children = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+    private volatile boolean deadlineExceeded;
+    private boolean closed;
+    private boolean ownerInterrupted;
+
+    private VerificationScope(VerificationScope parent, long timeoutMillis) {
+        this.parent = parent;
+        this.owner = Thread.currentThread();
+        long ownDeadline = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : Long.MAX_VALUE;
+        this.deadline = parent != null ? Math.min(parent.deadline, ownDeadline) : ownDeadline;
+        this.timer = timeoutMillis > 0
+                ? deadlines.schedule(this::expire, timeoutMillis, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    private static ScheduledThreadPoolExecutor deadlineTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "verification-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * Opens a scope on the current thread, as a child of the scope open on it if any.
+     * It is cancelled with its parent and has no deadline of its own.
+     *
+     * @return the scope, to close in a finally block on the same thread
+     */
+    public static VerificationScope open() {
+        return open(0);
+    }
+
+    /**
+     * Opens a scope on the current thread, as a child of the scope open on it if any.
+     *
+     * @param timeoutMillis the time after which the scope is cancelled, 0 for none
+     * @return the scope, to close in a finally block on the same thread
+     */
+    public static VerificationScope open(long timeoutMillis) {
+        VerificationScope parent = current.get();
+        VerificationScope scope = new VerificationScope(parent, timeoutMillis);
+        if (parent != null) {
+            parent.children.add(scope);
+            if (parent.cancelled) {
+                scope.cancel();
+            }
+        }
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * Starts a sub-task on its own virtual thread.
+     *
+     * @param task the sub-task
+     * @return its result; cancelling it interrupts the sub-task
+     * @throws RejectedExecutionException if the scope is closed
+     */
+    public <T> Future<T> fork(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        execute(future);
+        return future;
+    }
+
+    /**
+     * Starts a sub-task on its own virtual thread, so that the scope can back an
+     * {@link java.util.concurrent.ExecutorCompletionService}.
+     *
+     * @param task the sub-task
+     * @throws RejectedExecutionException if the scope is closed
+     */
+    @Override
+    public void execute(Runnable task) {
+        Thread thread = Thread.ofVirtual().name("verification-fork").unstarted(() -> {
+            current.set(this);
+            try {
+                task.run();
+            } finally {
+                current.remove();
+                forks.remove(Thread.currentThread());
+            }
+        });
+        synchronized (this) {
+            if (closed) {
+                throw new RejectedExecutionException("Verification scope closed");
+            }
+            forks.add(thread);
+        }
+        thread.start();
+        if (cancelled) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Cancels the scope: interrupts its sub-tasks and the scopes opened within it.
+     */
+    public void cancel() {
+        cancelled = true;
+        forks.forEach(Thread::interrupt);
+        children.forEach(VerificationScope::cancel);
+    }
+
+    /**
+     * Cancels the scope at its deadline, and interrupts the thread that opened it unless
+     * the scope is already closed.
+     */
+    private void expire() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            deadlineExceeded = true;
+            ownerInterrupted = true;
+            owner.interrupt();
+        }
+        Metrics.counter("veribot.verification.deadline.exceeded").increment();
+        logger.warn("Verification deadline exceeded, cancelling its remaining work");
+        cancel();
+    }
+
+    /**
+     * @return whether the scope, or one enclosing it, was cancelled at its deadline
+     */
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded || (parent != null && parent.isDeadlineExceeded());
+    }
+
+    /**
+     * Builds the failure of a verification cut short by the deadline.
+     *
+     * @param cause what the interrupted work failed with
+     * @return a TIMEOUT failure
+     */
+    public LlmException deadlineFailure(Throwable cause) {
+        return new LlmException(LlmException.Kind.TIMEOUT, "The verification did not finish before its deadline", cause);
+    }
+
+    /**
+     * @return the nanoseconds left before the deadline, Long.MAX_VALUE without one
+     */
+    public long remainingNanos() {
+        return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Closes the scope: interrupts the sub-tasks still running and waits for them to
+     * end, then makes the enclosing scope current again.
+     */
+    @Override
+    public void close() {
+        boolean clearInterrupt;
+        synchronized (this) {
+            closed = true;
+            clearInterrupt = ownerInterrupted;
+        }
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        forks.forEach(Thread::interrupt);
+        boolean interrupted = false;
+        for (Thread fork : forks) {
+            while (fork.isAlive()) {
+                try {
+                    fork.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (parent != null) {
+            parent.children.remove(this);
+            current.set(parent);
+        } else {
+            current.remove();
+        }
+        if (clearInterrupt) {
+            // The interrupt was the deadline's, the caller has been told about it by now
+            Thread.interrupted();
+        } else if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the innermost scope open on the current thread, or null if there is none
+     */
+    public static VerificationScope current() {
+        return current.get();
+    }
+}
@@ -0,0 +1,374 @@
+package com.veribot.store;
+
+import com.veribot.config.ClaimIndexConfig;
+import com.veribot.util.TextNormalizer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over past verdicts, to find the verdict of a claim that was
+ * already verified with other words. Each verdict is indexed by the accent-folded words
+ * of its query and summary, without stopwords, and ranked against a query with BM25.
+ * Postings are kept as primitive int arrays. Negations are words like any other, and a
+ * verdict only answers a query negated the same way, so that "no ganó" is never answered
+ * with the verdict of "ganó". Replaced verdicts, and those too old to answer a query, are
+ * reclaimed when the arrays would otherwise grow.
+ */
+public class ClaimIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ClaimIndex.class);
+    // The query words count more than the summary words, which only add vocabulary
+    private static final int QUERY_WEIGHT = 2;
+    private static final Set<String> STOPWORDS = Set.of(
+            // Spanish
+            "a", "al", "algo", "como", "con", "de", "del", "el", "en", "es", "esta", "este", "fue", "ha",
+            "hay", "la", "las", "le", "lo", "los", "mas", "o", "para", "pero", "por", "que", "se",
+            "si", "sobre", "su", "sus", "un", "una", "y", "ya",
+            // English
+            "an", "and", "are", "at", "be", "by", "did", "do", "does", "for", "from", "has", "have",
+            "in", "is", "it", "of", "on", "or", "that", "the", "this", "to", "was", "were", "what", "with",
+            // Words that frame a claim rather than state it
+            "cierto", "verdad", "real", "true", "really", "news", "noticia", "noticias");
+    // Words that reverse a claim. Contractions are expanded first, so the stems only catch
+    // apostrophes not recognized; "won" and "don" are left out as they are words too
+    private static final Set<String> NEGATIONS = Set.of(
+            "no", "ni", "nunca", "jamas", "sin", "nadie", "nada", "ningun", "ninguna", "tampoco",
+            "not", "never", "without", "nor", "nobody", "nothing", "cannot", "didn", "doesn", "isn",
+            "wasn", "weren", "aren", "hasn", "haven", "hadn", "couldn", "shouldn", "wouldn");
+    // "won't" would otherwise be read as "won", the past of "win"
+    private static final Pattern WONT = Pattern.compile("(?i)\\bwon['’´]t\\b");
+    private static final Pattern CANT = Pattern.compile("(?i)\\bcan['’´]t\\b");
+    private static final Pattern SHANT = Pattern.compile("(?i)\\bshan['’´]t\\b");
+    private static final Pattern NT = Pattern.compile("(?i)n['’´]t\\b");
+    // Best matches checked for one negated the same way as the query
+    private static final int CANDIDATES = 5;
+
+    private final ClaimIndexConfig config;
+    private final Clock clock;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> docByFingerprint = new HashMap<>();
+    private VerdictStore.StoredVerdict[] docs = new VerdictStore.StoredVerdict[64];
+    private int[] docLengths = new int[64];
+    private boolean[] deleted = new boolean[64];
+    private int docCount;
+    private int liveCount;
+    private long totalLength;
+
+    /**
+     * A past verdict matching a query.
+     *
+     * @param verdict the verdict
+     * @param score the BM25 score
+     * @param normalizedScore the score relative to an average document containing each
+     *        query word once; compared with the configured minimum
+     */
+    public record Match(VerdictStore.StoredVerdict verdict, double score, double normalizedScore) {
+    }
+
+    /**
+     * The postings of a word: the documents containing it and how often.
+     */
+    private static class Postings {
+        int[] docs = new int[4];
+        int[] frequencies = new int[4];
+        int size;
+
+        void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param config the scoring configuration
+     */
+    public ClaimIndex(ClaimIndexConfig config) {
+        this(config, Clock.systemUTC());
+    }
+
+    /**
+     * Creates an empty index with the given clock.
+     *
+     * @param config the scoring configuration
+     * @param clock the clock used to age the verdicts
+     */
+    public ClaimIndex(ClaimIndexConfig config, Clock clock) {
+        this.config = config;
+        this.clock = clock;
+    }
+
+
+    public ClaimIndexConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Indexes a verdict, replacing the previous verdict of the same fingerprint.
+     *
+     * @param verdict the verdict to index
+     */
+    public void add(VerdictStore.StoredVerdict verdict) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        for (String term : terms(verdict.query())) {
+            frequencies.merge(term, QUERY_WEIGHT, Integer::sum);
+        }
+        for (String term : terms(verdict.result().summary())) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        int length = frequencies.values().stream().mapToInt(Integer::intValue).sum();
+
+        lock.writeLock().lock();
+        try {
+            Integer previous = docByFingerprint.get(verdict.fingerprint());
+            if (previous != null && !deleted[previous]) {
+                deleted[previous] = true;
+                liveCount--;
+                totalLength -= docLengths[previous];
+            }
+            if (docCount == docs.length) {
+                compact();
+            }
+            if (docCount == docs.length) {
+                docs = Arrays.copyOf(docs, docCount * 2);
+                docLengths = Arrays.copyOf(docLengths, docCount * 2);
+                deleted = Arrays.copyOf(deleted, docCount * 2);
+            }
+            int doc = docCount++;
+            docs[doc] = verdict;
+            docLengths[doc] = length;
+            liveCount++;
+            totalLength += length;
+            docByFingerprint.put(verdict.fingerprint(), doc);
+            frequencies.forEach((term, frequency) -> postings.computeIfAbsent(term, t -> new Postings()).add(doc, frequency));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the best recent verdict for a query if it is similar enough to answer it.
+     *
+     * @param query the user's query
+     * @return the match, or null if no recent verdict reaches the minimum score
+     */
+    public Match findSimilar(String query) {
+        Timer.Sample sample = Timer.start();
+        List<Match> matches = search(query, CANDIDATES, Duration.ofMinutes(config.getMaxAgeMinutes()));
+        sample.stop(Metrics.timer("veribot.claims.similar.lookup"));
+
+        Set<String> negations = negations(query);
+        Match best = null;
+        for (Match match : matches) {
+            if (negations.equals(negations(match.verdict().query()))) {
+                best = match;
+                break;
+            }
+            Metrics.counter("veribot.claims.similar.negation.mismatch").increment();
+        }
+        DistributionSummary.builder("veribot.claims.similar.score")
+                .description("Normalized score of the best past verdict for each query")
+                .register(Metrics.globalRegistry)
+                .record(best != null ? best.normalizedScore() : 0);
+        boolean hit = best != null && best.normalizedScore() >= config.getMinScore();
+        Metrics.counter("veribot.claims.similar", "outcome", hit ? "hit" : "miss").increment();
+        return hit ? best : null;
+    }
+
+    /**
+     * Ranks the indexed verdicts against a query.
+     *
+     * @param query the query
+     * @param limit how many matches to return at most
+     * @param maxAge how old a verdict may be
+     * @return the best matches, best first
+     */
+    public List<Match> search(String query, int limit, Duration maxAge) {
+        Map<String, Integer> queryTerms = new LinkedHashMap<>();
+        for (String term : terms(query)) {
+            queryTerms.merge(term, 1, Integer::sum);
+        }
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+        long oldest = clock.millis() - maxAge.toMillis();
+        double k1 = config.getK1();
+        double b = config.getB();
+
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / liveCount;
+            float[] scores = new float[docCount];
+            int[] touched = new int[docCount];
+            int touchedCount = 0;
+            double perfectScore = 0;
+
+            for (Map.Entry<String, Integer> entry : queryTerms.entrySet()) {
+                Postings list = postings.get(entry.getKey());
+                int documentFrequency = list != null ? list.size : 0;
+                double idf = Math.log(1 + (liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                // A word no verdict contains still counts against the match
+                perfectScore += idf * entry.getValue();
+                if (list == null) {
+                    continue;
+                }
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.docs[i];
+                    if (deleted[doc]) {
+                        continue;
+                    }
+                    int frequency = list.frequencies[i];
+                    double norm = k1 * (1 - b + b * docLengths[doc] / averageLength);
+                    if (scores[doc] == 0) {
+                        touched[touchedCount++] = doc;
+                    }
+                    scores[doc] += (float) (entry.getValue() * idf * frequency * (k1 + 1) / (frequency + norm));
+                }
+            }
+
+            List<Match> matches = new ArrayList<>();
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (docs[doc].createdAt().toEpochMilli() < oldest) {
+                    continue;
+                }
+                matches.add(new Match(docs[doc], scores[doc], scores[doc] / perfectScore));
+            }
+            matches.sort((first, second) -> Double.compare(second.score(), first.score()));
+            return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the replaced verdicts and those too old to answer a query, renumbering the
+     * others. Called with the write lock held, when the arrays are full: the index then
+     * grows only if most of its verdicts are still live.
+     */
+    private void compact() {
+        long oldest = clock.millis() - Duration.ofMinutes(config.getMaxAgeMinutes()).toMillis();
+        int[] renumbered = new int[docCount];
+        int kept = 0;
+        long keptLength = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted[doc] || docs[doc].createdAt().toEpochMilli() < oldest) {
+                renumbered[doc] = -1;
+                continue;
+            }
+            renumbered[doc] = kept;
+            docs[kept] = docs[doc];
+            docLengths[kept] = docLengths[doc];
+            deleted[kept] = false;
+            keptLength += docLengths[doc];
+            kept++;
+        }
+        if (kept == docCount) {
+            return;
+        }
+        Arrays.fill(docs, kept, docCount, null);
+        Arrays.fill(deleted, kept, docCount, false);
+
+        postings.values().removeIf(list -> {
+            int size = 0;
+            for (int i = 0; i < list.size; i++) {
+                int doc = renumbered[list.docs[i]];
+                if (doc >= 0) {
+                    list.docs[size] = doc;
+                    list.frequencies[size] = list.frequencies[i];
+                    size++;
+                }
+            }
+            list.size = size;
+            return size == 0;
+        });
+        docByFingerprint.clear();
+        for (int doc = 0; doc < kept; doc++) {
+            docByFingerprint.put(docs[doc].fingerprint(), doc);
+        }
+        logger.debug("Claim index compacted: {} of {} verdicts kept", kept, docCount);
+        Metrics.counter("veribot.claims.index.reclaimed").increment(docCount - kept);
+        docCount = kept;
+        liveCount = kept;
+        totalLength = keptLength;
+    }
+
+    /**
+     * @return the number of verdicts in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the negation words of a text
+     */
+    static Set<String> negations(String text) {
+        Set<String> negations = new HashSet<>();
+        for (String token : words(text)) {
+            if (NEGATIONS.contains(token)) {
+                negations.add(token);
+            }
+        }
+        return negations;
+    }
+
+    /**
+     * Splits a text into the accent-folded words that identify a claim.
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String token : words(text)) {
+            if (token.length() > 1 && !STOPWORDS.contains(token)) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Splits a text into folded words, with the English negative contractions expanded,
+     * e.g. "won't" into "will not" and "didn't" into "did not".
+     */
+    private static List<String> words(String text) {
+        String expanded = WONT.matcher(text).replaceAll("will not");
+        expanded = CANT.matcher(expanded).replaceAll("cannot");
+        expanded = SHANT.matcher(expanded).replaceAll("shall not");
+        expanded = NT.matcher(expanded).replaceAll(" not");
+        return TextNormalizer.tokens(expanded);
+    }
+}
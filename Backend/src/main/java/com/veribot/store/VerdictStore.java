@@ -0,0 +1,480 @@
+package com.veribot.store;
+
+import com.veribot.model.NewsVerificationResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Durable store of verification results, kept as an append-only log in a memory-mapped
+ * file so that verdicts survive session expiry and restarts.
+ * <p>
+ * The file starts with a magic number and a format version, followed by records of the
+ * form {@code [int length][int crc32][payload]}. A record is only trusted if its length
+ * fits in the file and its checksum matches; the log is cut at the first record that
+ * does not, which is where a crash during an append leaves it. An index from claim
+ * fingerprint to the offset of its latest record is rebuilt at startup by scanning the
+ * log, and the log is compacted once superseded and expired records make up too much
+ * of it.
+ * <p>
+ * Appends only write to the mapping. A background thread forces the records written
+ * since its last pass to disk every {@value #SYNC_INTERVAL_MILLIS} ms, one msync for all
+ * of them, and runs the compactions the appends asked for, so that neither blocks a
+ * request. A crash loses at most the verdicts of the last interval; a record it left
+ * half written fails its checksum and the log is cut there.
+ */
+public class VerdictStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(VerdictStore.class);
+    private static final int MAGIC = 0x56455244; // "VERD"
+    private static final int FORMAT_VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final int MIN_CAPACITY = 1 << 20;
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+    private static final long SYNC_INTERVAL_MILLIS = 100;
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    private final Path path;
+    private final Duration retention;
+    private final double compactionGarbageRatio;
+    private final Clock clock;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int end;
+    // Fingerprint -> offset of its latest record
+    private final Map<String, Integer> index = new HashMap<>();
+    private long liveBytes;
+    // First offset written since the last force, or -1 if everything is on disk
+    private int unsyncedFrom = -1;
+    private boolean compactionDue;
+    private boolean closed;
+    private final ScheduledExecutorService maintenance;
+
+    /**
+     * A verdict read back from the store.
+     *
+     * @param fingerprint the normalized claim the verdict answers
+     * @param query the query as the user asked it
+     * @param createdAt when the verdict was produced
+     * @param result the verdict
+     */
+    public record StoredVerdict(String fingerprint, String query, Instant createdAt, NewsVerificationResult result) {
+    }
+
+    /**
+     * Opens the store at a path, creating the file if needed and recovering the records
+     * written by previous runs.
+     *
+     * @param path the file of the log
+     * @param retention how long a verdict is kept when the log is compacted
+     * @param compactionGarbageRatio the share of dead bytes that triggers a compaction
+     * @return the open store, to close when done
+     */
+    public static VerdictStore open(Path path, Duration retention, double compactionGarbageRatio) {
+        return open(path, retention, compactionGarbageRatio, Clock.systemUTC());
+    }
+
+    /**
+     * Opens the store at a path with the given clock.
+     *
+     * @param path the file of the log
+     * @param retention how long a verdict is kept when the log is compacted
+     * @param compactionGarbageRatio the share of dead bytes that triggers a compaction
+     * @param clock the clock used to expire verdicts
+     * @return the open store, to close when done
+     */
+    public static VerdictStore open(Path path, Duration retention, double compactionGarbageRatio, Clock clock) {
+        VerdictStore store = new VerdictStore(path, retention, compactionGarbageRatio, clock);
+        // Scheduled once constructed, so the sync thread never sees a store half built
+        store.maintenance.scheduleWithFixedDelay(store::maintain, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        return store;
+    }
+
+    private VerdictStore(Path path, Duration retention, double compactionGarbageRatio, Clock clock) {
+        this.path = path;
+        this.retention = retention;
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        this.clock = clock;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            // Left by a compaction interrupted before its rename; the log itself is intact
+            Files.deleteIfExists(compactionPath());
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening verdict store at " + path, e);
+        }
+        // A platform thread, as an msync pins the carrier of a virtual one
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "verdict-store-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Maps the file and rebuilds the index from its records.
+     */
+    private void open() throws IOException {
+        long started = System.nanoTime();
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Verdict log too large to map: " + path);
+        }
+        map(Math.max(MIN_CAPACITY, (int) size));
+
+        if (size < FILE_HEADER_BYTES || buffer.getInt(0) == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.force(0, FILE_HEADER_BYTES);
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported verdict log format in " + path);
+        }
+
+        index.clear();
+        liveBytes = 0;
+        end = FILE_HEADER_BYTES;
+        while (true) {
+            int length = recordLength(end);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0) {
+                logger.warn("Verdict log {} cut at offset {} after a torn or corrupt record", path, end);
+                truncateAt(end);
+                break;
+            }
+            ByteBuffer payload = buffer.slice(end + RECORD_HEADER_BYTES, length);
+            payload.getLong();
+            String fingerprint = readString(payload);
+            indexRecord(fingerprint, end, length);
+            end += RECORD_HEADER_BYTES + length;
+        }
+
+        logger.info("Verdict store loaded {} verdicts ({} bytes) from {} in {} ms",
+                index.size(), end, path, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Checks the record at an offset.
+     *
+     * @return the length of its payload, 0 at the end of the log, or -1 if it is invalid
+     */
+    private int recordLength(int offset) {
+        if (offset + RECORD_HEADER_BYTES > buffer.capacity()) {
+            return 0;
+        }
+        int length = buffer.getInt(offset);
+        if (length == 0) {
+            return 0;
+        }
+        if (length < 0 || length > MAX_RECORD_BYTES || offset + RECORD_HEADER_BYTES + length > buffer.capacity()) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + RECORD_HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(offset + 4) ? length : -1;
+    }
+
+    /**
+     * Zeroes the log from an offset, so that the next append starts from clean space.
+     */
+    private void truncateAt(int offset) {
+        for (int i = offset; i < buffer.capacity(); i += ZEROS.length) {
+            buffer.put(i, ZEROS, 0, Math.min(ZEROS.length, buffer.capacity() - i));
+        }
+        buffer.force();
+    }
+
+    private void map(int capacity) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Points the fingerprint to a record, accounting for the one it supersedes.
+     */
+    private void indexRecord(String fingerprint, int offset, int length) {
+        Integer previous = index.put(fingerprint, offset);
+        if (previous != null) {
+            liveBytes -= RECORD_HEADER_BYTES + buffer.getInt(previous);
+        }
+        liveBytes += RECORD_HEADER_BYTES + length;
+    }
+
+    /**
+     * Appends a verdict to the log and makes it the latest one for its fingerprint. It is
+     * forced to disk by the next pass of the background thread. Errors are logged and the
+     * verdict is dropped.
+     *
+     * @param verdict the verdict to store
+     */
+    public synchronized void append(StoredVerdict verdict) {
+        if (closed) {
+            return;
+        }
+        String fingerprint = verdict.fingerprint();
+        try {
+            byte[] payload = encode(verdict);
+            if (payload.length > MAX_RECORD_BYTES) {
+                logger.warn("Verdict for {} too large to store ({} bytes)", fingerprint, payload.length);
+                return;
+            }
+            int recordBytes = RECORD_HEADER_BYTES + payload.length;
+            if (end + recordBytes > buffer.capacity()) {
+                long capacity = Math.max(2L * buffer.capacity(), (long) end + recordBytes);
+                if (capacity > Integer.MAX_VALUE) {
+                    logger.warn("Verdict log {} is full, dropping verdict for {}", path, fingerprint);
+                    return;
+                }
+                map((int) capacity);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            // Payload and checksum first, length last: a torn write leaves a zero or invalid length
+            buffer.put(end + RECORD_HEADER_BYTES, payload);
+            buffer.putInt(end + 4, (int) crc.getValue());
+            buffer.putInt(end, payload.length);
+            if (unsyncedFrom < 0) {
+                unsyncedFrom = end;
+            }
+
+            indexRecord(fingerprint, end, payload.length);
+            end += recordBytes;
+
+            if (end > MIN_COMPACTION_BYTES && 1.0 - (double) liveBytes / (end - FILE_HEADER_BYTES) > compactionGarbageRatio) {
+                compactionDue = true;
+            }
+        } catch (IOException e) {
+            logger.error("Error appending verdict for {}: {}", fingerprint, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Forces the records appended since the last pass to disk, outside the lock so that
+     * appends go on meanwhile, then compacts the log if an append asked for it.
+     */
+    void sync() throws IOException {
+        MappedByteBuffer written;
+        int from;
+        int to;
+        boolean compactNow;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            written = buffer;
+            from = unsyncedFrom;
+            to = end;
+            unsyncedFrom = -1;
+            compactNow = compactionDue;
+            compactionDue = false;
+        }
+        if (from >= 0) {
+            written.force(from, to - from);
+        }
+        if (compactNow) {
+            compact();
+        }
+    }
+
+    private void maintain() {
+        try {
+            sync();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error syncing verdict log {}: {}", path, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the latest verdict for a fingerprint if it is recent enough.
+     *
+     * @param fingerprint the normalized claim
+     * @param maxAge how old the verdict may be
+     * @return the verdict, or null if there is none or it is too old
+     */
+    public synchronized StoredVerdict find(String fingerprint, Duration maxAge) {
+        Integer offset = index.get(fingerprint);
+        if (offset == null) {
+            return null;
+        }
+        StoredVerdict verdict = read(offset);
+        if (verdict.createdAt().isBefore(clock.instant().minus(maxAge))) {
+            return null;
+        }
+        return verdict;
+    }
+
+    /**
+     * Passes the latest verdict of every fingerprint to a consumer, oldest first.
+     *
+     * @param consumer receives the verdicts
+     */
+    public synchronized void forEach(Consumer<StoredVerdict> consumer) {
+        index.values().stream().sorted().forEach(offset -> consumer.accept(read(offset)));
+    }
+
+    /**
+     * Rewrites the log with only the latest verdict of each fingerprint, dropping those
+     * past the retention. The new log is written next to the current one and renamed
+     * over it, so a crash leaves one of the two intact.
+     */
+    public synchronized void compact() throws IOException {
+        if (closed) {
+            return;
+        }
+        long started = System.nanoTime();
+        int before = end;
+        Instant oldest = clock.instant().minus(retention);
+        List<Integer> offsets = new ArrayList<>(index.values());
+        offsets.sort(Comparator.naturalOrder());
+
+        Path compacted = compactionPath();
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+            out.write(header);
+            for (int offset : offsets) {
+                if (read(offset).createdAt().isBefore(oldest)) {
+                    continue;
+                }
+                out.write(buffer.slice(offset, RECORD_HEADER_BYTES + buffer.getInt(offset)));
+            }
+            out.force(true);
+        }
+
+        channel.close();
+        try {
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // Maps the compacted log, or the current one again if the rename failed
+            open();
+            // Everything in the new log was forced with it
+            unsyncedFrom = -1;
+        }
+        logger.info("Verdict log compacted from {} to {} bytes in {} ms",
+                before, end, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * @return the number of fingerprints with a verdict
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the bytes used by the log, including superseded records
+     */
+    public synchronized long bytes() {
+        return end;
+    }
+
+    /**
+     * Stops the background thread, letting a compaction in progress end, and forces the
+     * log to disk.
+     */
+    @Override
+    public void close() throws IOException {
+        maintenance.shutdown();
+        try {
+            maintenance.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    private Path compactionPath() {
+        return path.resolveSibling(path.getFileName() + ".compact");
+    }
+
+    private StoredVerdict read(int offset) {
+        ByteBuffer payload = buffer.slice(offset + RECORD_HEADER_BYTES, buffer.getInt(offset));
+        Instant createdAt = Instant.ofEpochMilli(payload.getLong());
+        String fingerprint = readString(payload);
+        String query = readString(payload);
+        String summary = readString(payload);
+        int truthfulness = payload.getInt();
+        String justification = readString(payload);
+        int sourceCount = payload.getInt();
+        List<String> sources = new ArrayList<>(sourceCount);
+        for (int i = 0; i < sourceCount; i++) {
+            sources.add(readString(payload));
+        }
+        return new StoredVerdict(fingerprint, query, createdAt,
+                new NewsVerificationResult(summary, truthfulness, justification, sources));
+    }
+
+    /**
+     * Serializes a verdict. The timestamp and fingerprint come first so the index can be
+     * rebuilt without decoding the rest.
+     */
+    private static byte[] encode(StoredVerdict verdict) throws IOException {
+        NewsVerificationResult result = verdict.result();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(verdict.createdAt().toEpochMilli());
+            writeString(out, verdict.fingerprint());
+            writeString(out, verdict.query());
+            writeString(out, result.summary());
+            out.writeInt(result.truthfulnessPercentage());
+            writeString(out, result.justification());
+            out.writeInt(result.sourcesUsed().size());
+            for (String source : result.sourcesUsed()) {
+                writeString(out, source);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] utf8 = new byte[in.getInt()];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
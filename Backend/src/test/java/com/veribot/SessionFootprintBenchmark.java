@@ -0,0 +1,96 @@
+package com.veribot;
+
+import com.veribot.config.AzureOpenAIConfig;
+import com.veribot.config.LlmClientConfig;
+import com.veribot.config.LlmQuotaConfig;
+import com.veribot.config.PipelineConfig;
+import com.veribot.config.ScrapingConfig;
+import com.veribot.config.SerpApiConfig;
+import com.veribot.llm.AzureOpenAIClient;
+import com.veribot.llm.LlmRouter;
+import com.veribot.model.ConversationSession;
+import com.veribot.model.UserContext;
+import com.veribot.service.NewsSearchService;
+import com.veribot.service.NewsVerificationService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Compares what a new user session costs when every session builds its own
+ * configuration and services, as sessions used to, with a session that only keeps its
+ * conversation on top of shared services: the latency of creating the first session,
+ * the mean latency of the next ones, and the heap each session retains.
+ *
+ * <p>Not a unit test. Run each mode in its own JVM, so that the first session pays the
+ * class loading of its mode only, from a directory with a .env file defining
+ * AZURE_OPENAI_ENDPOINT, AZURE_OPENAI_API_KEY, AZURE_OPENAI_DEPLOYMENT_NAME,
+ * AZURE_OPENAI_API_VERSION and SERPAPI_KEY (dummy values will do, nothing is sent):
+ * <pre>java -cp target/classes:target/test-classes:&lt;dependencies&gt; com.veribot.SessionFootprintBenchmark per-session|shared [sessions]</pre>
+ */
+public class SessionFootprintBenchmark {
+    private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        boolean perSessionMode = args.length == 0 || args[0].equals("per-session");
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        LlmRouter router = new LlmRouter(new AzureOpenAIClient(
+                new AzureOpenAIConfig("https://example.invalid/", "key", "deployment", "2024-06-01"),
+                new LlmClientConfig(), new LlmQuotaConfig()), null, null);
+
+        // What each session built before the services were shared
+        IntFunction<Object> perSession = id -> {
+            AzureOpenAIConfig openAIConfig = new AzureOpenAIConfig();
+            SerpApiConfig serpApiConfig = new SerpApiConfig();
+            ScrapingConfig scrapingConfig = new ScrapingConfig();
+            NewsSearchService searchService = new NewsSearchService(serpApiConfig, scrapingConfig, null, null);
+            NewsVerificationService verificationService = new NewsVerificationService(router, searchService,
+                    new PipelineConfig(), null, null, null, null, null, null);
+            return new Object[] {openAIConfig, serpApiConfig, scrapingConfig, searchService, verificationService,
+                    new ConversationSession()};
+        };
+        // What a session keeps now
+        IntFunction<Object> shared = id -> new UserContext("session-" + id);
+
+        if (perSessionMode) {
+            report("per-session services", perSession, sessions);
+        } else {
+            report("shared services", shared, sessions);
+        }
+        System.exit(0);
+    }
+
+    private static void report(String name, IntFunction<Object> factory, int sessions) {
+        long before = usedHeapAfterGc();
+        int threadsBefore = threads.getThreadCount();
+        List<Object> retained = new ArrayList<>(sessions);
+
+        long started = System.nanoTime();
+        retained.add(factory.apply(0));
+        long firstMicros = (System.nanoTime() - started) / 1000;
+
+        started = System.nanoTime();
+        for (int i = 1; i < sessions; i++) {
+            retained.add(factory.apply(i));
+        }
+        double meanMicros = (System.nanoTime() - started) / 1000.0 / Math.max(1, sessions - 1);
+
+        long after = usedHeapAfterGc();
+        System.out.printf("%s: first session %d us, next sessions %.1f us each, %d bytes retained"
+                + " and %d threads started per %d sessions%n", name, firstMicros, meanMicros,
+                (after - before) / sessions, threads.getThreadCount() - threadsBefore, sessions);
+        System.out.println(retained.size() + " sessions retained");
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
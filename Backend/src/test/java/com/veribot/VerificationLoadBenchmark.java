@@ -0,0 +1,195 @@
+package com.veribot;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.veribot.config.AzureOpenAIConfig;
+import com.veribot.config.LlmClientConfig;
+import com.veribot.config.LlmQuotaConfig;
+import com.veribot.config.PipelineConfig;
+import com.veribot.config.ScrapingConfig;
+import com.veribot.config.SerpApiConfig;
+import com.veribot.llm.AzureOpenAIClient;
+import com.veribot.llm.LlmRouter;
+import com.veribot.model.ConversationSession;
+import com.veribot.model.NewsVerificationResult;
+import com.veribot.service.NewsSearchService;
+import com.veribot.service.NewsVerificationService;
+import com.veribot.service.VerificationListener;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shows how many verifications one pod can have in flight when requests run on
+ * platform threads, capped like Tomcat's default pool of 200, and when each runs on a
+ * virtual thread. The verifications go through the whole pipeline (query
+ * understanding, SerpApi search, parallel scrapes in their scope, analysis) against a
+ * local stub that answers each LLM call, search and page after a fixed latency, so
+ * the pipeline spends its time waiting as it does in production.
+ *
+ * <p>Not a unit test. Run with the test classpath:
+ * <pre>java -cp target/classes:target/test-classes:&lt;dependencies&gt; com.veribot.VerificationLoadBenchmark [concurrency...]</pre>
+ */
+public class VerificationLoadBenchmark {
+    private static final int PLATFORM_THREADS = 200;
+    private static final long LLM_LATENCY_MILLIS = 400;
+    private static final long SEARCH_LATENCY_MILLIS = 300;
+    private static final long PAGE_LATENCY_MILLIS = 300;
+    private static final int ARTICLES = 5;
+
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger peakInFlight = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        int[] concurrencies = args.length > 0
+                ? java.util.Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] {200, 1000, 2000};
+
+        HttpServer stub = startStub();
+        String base = "http://127.0.0.1:" + stub.getAddress().getPort();
+        LlmRouter router = new LlmRouter(new AzureOpenAIClient(
+                new AzureOpenAIConfig(base + "/", "key", "stub", "2024-06-01"),
+                new LlmClientConfig(), new LlmQuotaConfig()), null, null);
+        NewsSearchService searchService = new NewsSearchService(new SerpApiConfig("key", base + "/search.json"),
+                new ScrapingConfig(), null, null);
+        NewsVerificationService verificationService = new NewsVerificationService(router, searchService,
+                new PipelineConfig(), null, null, null, null, null, null);
+
+        // Warms the JIT and the connection pool up
+        run("warm-up", Executors.newVirtualThreadPerTaskExecutor(), verificationService, 50);
+        System.out.printf("Stub latencies: LLM %d ms, search %d ms, page %d ms; %d articles per claim%n",
+                LLM_LATENCY_MILLIS, SEARCH_LATENCY_MILLIS, PAGE_LATENCY_MILLIS, ARTICLES);
+        for (int concurrency : concurrencies) {
+            run("platform (" + PLATFORM_THREADS + " threads)", Executors.newFixedThreadPool(PLATFORM_THREADS),
+                    verificationService, concurrency);
+            run("virtual threads", Executors.newVirtualThreadPerTaskExecutor(), verificationService, concurrency);
+        }
+        stub.stop(0);
+        System.exit(0);
+    }
+
+    /**
+     * Submits every verification at once, as many clients arriving together, and
+     * reports the peak number in flight, the throughput and the latency seen by clients.
+     */
+    private static void run(String name, ExecutorService requests, NewsVerificationService verificationService,
+            int concurrency) throws Exception {
+        inFlight.set(0);
+        peakInFlight.set(0);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failures = new AtomicInteger();
+        long started = System.nanoTime();
+
+        List<Future<?>> clients = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            String claim = "Did the city council approve the new budget number " + i + "?";
+            clients.add(requests.submit(() -> {
+                peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    NewsVerificationResult result = verificationService.verifyNews(claim, new ConversationSession(),
+                            VerificationListener.NONE);
+                    if (result.sourcesUsed().isEmpty()) {
+                        failures.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                } finally {
+                    inFlight.decrementAndGet();
+                    latencies.add((System.nanoTime() - started) / 1_000_000);
+                }
+            }));
+        }
+        for (Future<?> client : clients) {
+            client.get();
+        }
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        requests.shutdown();
+
+        if (name.equals("warm-up")) {
+            return;
+        }
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%-24s %5d clients: peak in flight %5d, %6.1f verifications/s, p50 %6d ms, p99 %6d ms,"
+                + " %d failed%n", name, concurrency, peakInFlight.get(), concurrency * 1000.0 / elapsedMillis,
+                sorted.get(sorted.size() / 2), sorted.get(Math.min(sorted.size() - 1, sorted.size() * 99 / 100)),
+                failures.get());
+    }
+
+    /**
+     * Starts a stub of Azure OpenAI, SerpApi and the news sites, each answering after
+     * its latency.
+     */
+    private static HttpServer startStub() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 8192);
+        server.createContext("/openai/deployments/", exchange -> {
+            String prompt = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String content;
+            if (prompt.contains("news_related")) {
+                content = new JSONObject().put("news_related", true).put("search_query", "city council budget")
+                        .put("country", "United States").put("language", "en").toString();
+            } else if (prompt.contains("truthfulness_percentage")) {
+                content = new JSONObject().put("summary", "The council approved the budget.")
+                        .put("truthfulness_percentage", 90).put("justification", "Several sources report it.")
+                        .toString();
+            } else {
+                content = "LIKELY";
+            }
+            JSONObject body = new JSONObject().put("choices", new JSONArray().put(
+                    new JSONObject().put("message", new JSONObject().put("content", content))));
+            reply(exchange, LLM_LATENCY_MILLIS, "application/json", body.toString());
+        });
+        server.createContext("/search.json", exchange -> {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            JSONArray results = new JSONArray();
+            for (int i = 0; i < ARTICLES; i++) {
+                results.put(new JSONObject().put("link", base + "/article/" + i + "?" + exchange.getRequestURI().getQuery())
+                        .put("title", "Council approves budget").put("source", "Stub News " + i)
+                        .put("date", "05/01/2025"));
+            }
+            reply(exchange, SEARCH_LATENCY_MILLIS, "application/json",
+                    new JSONObject().put("news_results", results).toString());
+        });
+        server.createContext("/article/", exchange -> reply(exchange, PAGE_LATENCY_MILLIS, "text/html", """
+                <html><head><title>Council approves budget</title></head><body><article>
+                <h1>Council approves budget</h1>
+                <p>The city council approved the new budget on Thursday after a long debate about
+                the funding of public transport, schools and the maintenance of the city's roads.</p>
+                <p>The budget passed by seven votes to two. The mayor said the vote was a good day
+                for the city, while the opposition criticised the rise in the property tax.</p>
+                <p>The new budget takes effect on the first of July and will be reviewed in the
+                autumn, when the council expects the first figures of the new tax year.</p>
+                </article></body></html>
+                """));
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        return server;
+    }
+
+    private static void reply(HttpExchange exchange, long latencyMillis, String contentType, String body)
+            throws IOException {
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.veribot.cache;
+
+import com.veribot.MutableClock;
+import com.veribot.config.CacheConfig;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArticleContentCacheTest {
+    private static final String URL = "https://example.com/news/1";
+
+    @TempDir
+    Path directory;
+
+    private CacheConfig config() {
+        return new CacheConfig() {
+            @Override
+            public int getContentCacheMaxEntries() {
+                return 100;
+            }
+
+            @Override
+            public long getContentCacheMaxMemoryBytes() {
+                return 1024 * 1024;
+            }
+
+            @Override
+            public String getContentCacheDirectory() {
+                return directory.toString();
+            }
+
+            @Override
+            public long getContentCacheMaxDiskBytes() {
+                return 1024 * 1024;
+            }
+
+            @Override
+            public long getContentCacheTtlMinutes() {
+                return 60;
+            }
+        };
+    }
+
+    @Test
+    void testCanonicalUrl() {
+        assertEquals("https://example.com/a/b?id=3&page=2",
+                ArticleContentCache.canonicalUrl("HTTPS://Example.COM:443/a/b/?page=2&utm_source=x&id=3#top"));
+        assertEquals("http://example.com/", ArticleContentCache.canonicalUrl("http://example.com"));
+        assertEquals("not a url", ArticleContentCache.canonicalUrl(" not a url "));
+    }
+
+    @Test
+    void testDiskHitIsPromotedToMemory() throws IOException {
+        MutableClock clock = new MutableClock(Instant.parse("2025-05-01T10:00:00Z"));
+        new ArticleContentCache(config(), clock).put(URL, "Texto de la noticia");
+
+        // A new process finds the article on disk only
+        ArticleContentCache restarted = new ArticleContentCache(config(), clock);
+        assertEquals("Texto de la noticia", restarted.get(URL + "?utm_source=feed"));
+        deleteEntries();
+        assertEquals("Texto de la noticia", restarted.get(URL));
+    }
+
+    @Test
+    void testPromotedEntryKeepsTheExpiryOfTheDiskEntry() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-05-01T10:00:00Z"));
+        new ArticleContentCache(config(), clock).put(URL, "Texto de la noticia");
+
+        ArticleContentCache restarted = new ArticleContentCache(config(), clock);
+        clock.advance(Duration.ofMinutes(50));
+        assertEquals("Texto de la noticia", restarted.get(URL));
+
+        // Put at 10:00 with a 60 minute TTL: gone at 11:00, not 50 minutes after the promotion
+        clock.advance(Duration.ofMinutes(11));
+        assertNull(restarted.get(URL));
+    }
+
+    private void deleteEntries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.veribot.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testEntriesSurviveRestart() {
+        DiskCache cache = new DiskCache(directory, 1024 * 1024);
+        cache.put("https://example.com/news", "Texto de la noticia", Instant.now().plus(Duration.ofHours(1)));
+        
+        DiskCache reopened = new DiskCache(directory, 1024 * 1024);
+        assertEquals(1, reopened.size());
+        assertEquals("Texto de la noticia", reopened.get("https://example.com/news").value());
+        assertNull(reopened.get("https://example.com/other"));
+    }
+
+    @Test
+    void testExpiredEntriesAreDeleted() {
+        DiskCache cache = new DiskCache(directory, 1024 * 1024);
+        cache.put("key", "value", Instant.now().minusSeconds(1));
+        
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.totalBytes());
+    }
+
+    @Test
+    void testEvictsOldestOverBudget() {
+        DiskCache cache = new DiskCache(directory, 200);
+        Instant expiresAt = Instant.now().plus(Duration.ofHours(1));
+        cache.put("first", "x".repeat(100), expiresAt);
+        cache.put("second", "y".repeat(100), expiresAt);
+        
+        assertNull(cache.get("first"));
+        assertEquals("y".repeat(100), cache.get("second").value());
+        assertTrue(cache.totalBytes() <= 200);
+    }
+}
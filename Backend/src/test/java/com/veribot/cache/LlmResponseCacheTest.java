@@ -0,0 +1,71 @@
+package com.veribot.cache;
+
+import com.veribot.MutableClock;
+import com.veribot.config.CacheConfig;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmResponseCacheTest {
+    private static final ZoneId BUENOS_AIRES = ZoneId.of("America/Argentina/Buenos_Aires");
+
+    @TempDir
+    Path directory;
+
+    private CacheConfig config() {
+        return new CacheConfig() {
+            @Override
+            public int getLlmCacheMaxEntries() {
+                return 100;
+            }
+
+            @Override
+            public long getLlmCacheMaxMemoryBytes() {
+                return 1024 * 1024;
+            }
+
+            @Override
+            public long getLlmCacheTtlMinutes() {
+                return 24 * 60;
+            }
+
+            @Override
+            public String getLlmCacheDirectory() {
+                return directory.toString();
+            }
+
+            @Override
+            public long getLlmCacheMaxDiskBytes() {
+                return 1024 * 1024;
+            }
+        };
+    }
+
+    @Test
+    void testDateSensitiveResponsesExpireAtLocalMidnight() {
+        // 23:30 in Buenos Aires, 02:30 UTC the next day
+        MutableClock clock = new MutableClock(Instant.parse("2025-05-02T02:30:00Z"), BUENOS_AIRES);
+        LlmResponseCache cache = new LlmResponseCache(config(), clock);
+        cache.put("fast", "Search query for today, 05/01/2025", "{\"search_query\": \"a\"}", true);
+        cache.put("fast", "Is this news?", "LIKELY", false);
+
+        clock.advance(Duration.ofMinutes(29));
+        assertEquals("{\"search_query\": \"a\"}", cache.get("fast", "Search query for today, 05/01/2025"));
+
+        clock.advance(Duration.ofMinutes(1));
+        assertNull(cache.get("fast", "Search query for today, 05/01/2025"));
+        assertEquals("LIKELY", cache.get("fast", "Is this news?"));
+        assertNull(cache.get("strong", "Is this news?"));
+
+        // Nor does the disk tier serve it after a restart
+        assertNull(new LlmResponseCache(config(), clock).get("fast", "Search query for today, 05/01/2025"));
+        assertEquals("LIKELY", new LlmResponseCache(config(), clock).get("fast", "Is this news?"));
+    }
+}
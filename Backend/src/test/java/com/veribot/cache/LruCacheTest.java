@@ -0,0 +1,61 @@
+package com.veribot.cache;
+
+import com.veribot.MutableClock;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruCacheTest {
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        LruCache<String, String> cache = new LruCache<>(2, 1000, Duration.ofMinutes(5), String::length);
+        cache.put("a", "first");
+        cache.put("b", "second");
+        
+        // Reading "a" makes "b" the least recently used entry
+        assertEquals("first", cache.get("a"));
+        cache.put("c", "third");
+        
+        assertEquals("first", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("third", cache.get("c"));
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    void testEvictsOverWeight() {
+        LruCache<String, String> cache = new LruCache<>(10, 10, Duration.ofMinutes(5), String::length);
+        cache.put("a", "12345");
+        cache.put("b", "12345");
+        cache.put("c", "123");
+        
+        assertNull(cache.get("a"));
+        assertEquals(8, cache.weight());
+        
+        // A value heavier than the whole cache is not stored
+        cache.put("d", "12345678901");
+        assertNull(cache.get("d"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testExpiresEntries() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-05-01T10:00:00Z"));
+        LruCache<String, String> cache = new LruCache<>(10, 1000, Duration.ofMinutes(5), String::length, clock);
+        cache.put("a", "value");
+        cache.put("b", "value", clock.instant().plus(Duration.ofMinutes(1)));
+        
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals("value", cache.get("a"));
+        assertNull(cache.get("b"));
+        
+        clock.advance(Duration.ofMinutes(4));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,211 @@
+package com.veribot.cache;
+
+import com.veribot.config.CacheConfig;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchResponseCacheTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 5, 10);
+
+    private static CacheConfig config(long maxWaitMillis) {
+        return new CacheConfig() {
+            @Override
+            public int getSearchCacheMaxEntries() {
+                return 100;
+            }
+
+            @Override
+            public long getSearchCacheTtlMinutes() {
+                return 30;
+            }
+
+            @Override
+            public long getSearchCacheRecentTtlMinutes() {
+                return 10;
+            }
+
+            @Override
+            public long getSearchCacheArchiveTtlMinutes() {
+                return 720;
+            }
+
+            @Override
+            public int getSearchCacheRecentDays() {
+                return 2;
+            }
+
+            @Override
+            public long getSearchCacheMaxWaitMillis() {
+                return maxWaitMillis;
+            }
+        };
+    }
+
+    @Test
+    void testKeyNormalizesEquivalentSearches() {
+        assertEquals(SearchResponseCache.key("inflación  Argentina abril", "ar", "es"),
+                SearchResponseCache.key(" Inflación Argentina\tABRIL ", " AR", "ES "));
+        assertNotEquals(SearchResponseCache.key("inflación", "ar", "es"),
+                SearchResponseCache.key("inflación", "es", "es"));
+    }
+
+    @Test
+    void testTtlDependsOnTheNewestDateOfTheQuery() {
+        SearchResponseCache cache = new SearchResponseCache(config(1000));
+
+        assertEquals(Duration.ofMinutes(30), cache.ttlFor("elecciones en Chile", TODAY));
+        assertEquals(Duration.ofMinutes(10), cache.ttlFor("elecciones en Chile 2025-05-09", TODAY));
+        assertEquals(Duration.ofMinutes(10), cache.ttlFor("elecciones en Chile 5/8/2025", TODAY));
+        assertEquals(Duration.ofMinutes(720), cache.ttlFor("elecciones en Chile 2025-04-01", TODAY));
+        // The newest of several dates, and invalid dates are ignored
+        assertEquals(Duration.ofMinutes(10), cache.ttlFor("de 2024-01-01 a 05/10/2025", TODAY));
+        assertEquals(Duration.ofMinutes(30), cache.ttlFor("elecciones 13/45/2025", TODAY));
+    }
+
+    @Test
+    void testIdenticalSearchesShareOneCall() throws Exception {
+        SearchResponseCache cache = new SearchResponseCache(config(5000));
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch leading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> fetch(cache, "sismo en Perú", () -> {
+            calls.incrementAndGet();
+            leading.countDown();
+            release.await();
+            return "{\"news_results\":[]}";
+        }));
+        assertTrue(leading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> fetch(cache, "Sismo en  Perú", () -> {
+            calls.incrementAndGet();
+            return "follower";
+        }));
+        Thread.sleep(200);
+        release.countDown();
+
+        assertEquals("{\"news_results\":[]}", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("{\"news_results\":[]}", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+
+        // Then it is a hit
+        assertEquals("{\"news_results\":[]}", cache.getOrFetch("sismo en perú", "ar", "es", () -> "again"));
+    }
+
+    @Test
+    void testFollowersFetchAgainWhenTheLeaderFails() throws Exception {
+        SearchResponseCache cache = new SearchResponseCache(config(5000));
+        CountDownLatch leading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> fetch(cache, "sismo", () -> {
+            leading.countDown();
+            release.await();
+            throw new IOException("SerpApi down");
+        }));
+        assertTrue(leading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> fetch(cache, "sismo", () -> "fresh"));
+        Thread.sleep(200);
+        release.countDown();
+
+        assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertEquals("fresh", follower.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testOneFollowerTakesOverFromAFailedLeader() throws Exception {
+        SearchResponseCache cache = new SearchResponseCache(config(5000));
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch leading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> fetch(cache, "sismo", () -> {
+            leading.countDown();
+            release.await();
+            throw new IOException("SerpApi down");
+        }));
+        assertTrue(leading.await(5, TimeUnit.SECONDS));
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        List<CompletableFuture<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            followers.add(CompletableFuture.supplyAsync(() -> fetch(cache, "sismo", () -> {
+                calls.incrementAndGet();
+                Thread.sleep(100);
+                return "fresh";
+            }), clients));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        for (CompletableFuture<String> follower : followers) {
+            assertEquals("fresh", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testFollowersFetchAgainWhenTheLeaderHasNothingToCache() throws Exception {
+        SearchResponseCache cache = new SearchResponseCache(config(5000));
+        CountDownLatch leading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> fetch(cache, "sismo", () -> {
+            leading.countDown();
+            release.await();
+            return null;
+        }));
+        assertTrue(leading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> fetch(cache, "sismo", () -> "fresh"));
+        Thread.sleep(200);
+        release.countDown();
+
+        assertNull(leader.get(5, TimeUnit.SECONDS));
+        assertEquals("fresh", follower.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testFollowersStopWaitingForASlowLeader() throws Exception {
+        SearchResponseCache cache = new SearchResponseCache(config(100));
+        CountDownLatch leading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> fetch(cache, "sismo", () -> {
+            leading.countDown();
+            release.await();
+            return "slow";
+        }));
+        assertTrue(leading.await(5, TimeUnit.SECONDS));
+
+        long started = System.nanoTime();
+        assertEquals("own", fetch(cache, "sismo", () -> "own"));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2));
+        // What the follower fetched is cached as well
+        assertEquals("own", fetch(cache, "sismo", () -> "again"));
+        release.countDown();
+        assertEquals("slow", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    private static String fetch(SearchResponseCache cache, String query, SearchResponseCache.Fetcher fetcher) {
+        try {
+            return cache.getOrFetch(query, "ar", "es", fetcher);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
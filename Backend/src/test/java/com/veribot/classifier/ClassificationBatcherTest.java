@@ -0,0 +1,97 @@
+package com.veribot.classifier;
+
+import com.veribot.config.ClassificationBatchConfig;
+import com.veribot.llm.LlmPriority;
+import com.veribot.llm.LlmRouter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassificationBatcherTest {
+
+    @Test
+    void testSendsFullBatchInOnePromptAndRetriesUnansweredItemsAlone() throws Exception {
+        ClassificationBatchConfig config = new ClassificationBatchConfig();
+        List<String> prompts = new ArrayList<>();
+        ClassificationBatcher batcher = new ClassificationBatcher(config, (prompt, priority) -> {
+            synchronized (prompts) {
+                prompts.add(prompt);
+            }
+            if (!prompt.startsWith("Classify each")) {
+                return answer("UNLIKELY.");
+            }
+            StringBuilder json = new StringBuilder("Sure: {");
+            for (int i = 1; i <= config.getMaxSize(); i++) {
+                // The second item gets a label of the wrong task
+                String label = i == 2 ? "SAME_EVENT" : i % 2 == 1 ? "LIKELY" : "NEW_EVENT";
+                json.append(i > 1 ? ", " : "").append('"').append(i).append("\": \"").append(label).append('"');
+            }
+            return answer(json.append('}').toString());
+        });
+
+        List<CompletableFuture<ClassificationBatcher.Answer>> answers = new ArrayList<>();
+        for (int i = 1; i <= config.getMaxSize(); i++) {
+            if (i % 2 == 1 || i == 2) {
+                answers.add(batcher.classify(FastPathClassifier.Task.RELEVANCE, "query " + i, null, "alone " + i,
+                        LlmPriority.NEW_VERIFICATION));
+            } else {
+                answers.add(batcher.classify(FastPathClassifier.Task.INTENT, "query " + i, "event", "alone " + i,
+                        LlmPriority.NEW_VERIFICATION));
+            }
+        }
+
+        assertEquals(new ClassificationBatcher.Answer("LIKELY", null), answers.get(0).get());
+        assertEquals("NEW_EVENT", answers.get(3).get().label());
+        // The item retried alone gets a label too, and the response to its own prompt
+        ClassificationBatcher.Answer alone = answers.get(1).get();
+        assertEquals("UNLIKELY", alone.label());
+        assertEquals(new LlmRouter.Completion("UNLIKELY.", "fast"), alone.response());
+        assertEquals(2, prompts.size());
+        assertTrue(prompts.get(0).contains("RELEVANCE. Query: \"query 1\""));
+        assertTrue(prompts.get(0).contains("INTENT. Topic: \"event\" Question: \"query 4\""));
+        assertEquals("alone 2", prompts.get(1));
+    }
+
+    @Test
+    void testBatchIsSentAtTheHighestPriorityOfItsItems() throws Exception {
+        ClassificationBatchConfig config = new ClassificationBatchConfig();
+        Map<String, LlmPriority> priorities = new ConcurrentHashMap<>();
+        ClassificationBatcher batcher = new ClassificationBatcher(config, (prompt, priority) -> {
+            priorities.put(prompt.startsWith("Classify each") ? "batch" : prompt, priority);
+            // Only the first item is answered in the batch
+            return answer(prompt.startsWith("Classify each") ? "{\"1\": \"LIKELY\"}" : "UNLIKELY");
+        });
+
+        List<CompletableFuture<ClassificationBatcher.Answer>> answers = new ArrayList<>();
+        for (int i = 1; i <= config.getMaxSize(); i++) {
+            LlmPriority priority = i == 3 ? LlmPriority.NEW_VERIFICATION : LlmPriority.BACKGROUND;
+            answers.add(batcher.classify(FastPathClassifier.Task.RELEVANCE, "query " + i, null, "alone " + i, priority));
+        }
+        for (CompletableFuture<ClassificationBatcher.Answer> answer : answers) {
+            answer.get();
+        }
+
+        assertEquals(LlmPriority.NEW_VERIFICATION, priorities.get("batch"));
+        // Items retried alone keep their own priority
+        assertEquals(LlmPriority.BACKGROUND, priorities.get("alone 2"));
+        assertEquals(LlmPriority.NEW_VERIFICATION, priorities.get("alone 3"));
+    }
+
+    @Test
+    void testParsesAnswersAroundOtherText() {
+        Map<Integer, String> answers = ClassificationBatcher.parseAnswers("```json\n{\"1\": \"likely \", \"2\": \"IRRELEVANT\"}\n```");
+        assertEquals(Map.of(1, "LIKELY", 2, "IRRELEVANT"), answers);
+        assertTrue(ClassificationBatcher.parseAnswers("I cannot answer that").isEmpty());
+    }
+
+    private static CompletableFuture<LlmRouter.Completion> answer(String content) {
+        return CompletableFuture.completedFuture(new LlmRouter.Completion(content, "fast"));
+    }
+}
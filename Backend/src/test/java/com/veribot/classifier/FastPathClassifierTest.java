@@ -0,0 +1,85 @@
+package com.veribot.classifier;
+
+import com.veribot.config.ClassifierConfig;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastPathClassifierTest {
+
+    private static ClassifierConfig config(String decisionLog, long maxBytes) {
+        return new ClassifierConfig(ClassifierConfig.Mode.SHADOW, 0.99, 0, decisionLog, maxBytes);
+    }
+
+    @Test
+    void testFeaturesAreFoldedWordsPairsAndLength() {
+        Set<String> features = FastPathClassifier.features(FastPathClassifier.Task.RELEVANCE,
+                "¿Ganó España la final?", "España ganó la final");
+
+        assertEquals(Set.of("w:gano", "w:espana", "w:la", "w:final",
+                "b:gano_espana", "b:espana_la", "b:la_final", "len:1"), features);
+    }
+
+    @Test
+    void testRepeatedWordsAreOneFeature() {
+        Set<String> features = FastPathClassifier.features(FastPathClassifier.Task.RELEVANCE,
+                "lluvia lluvia lluvia", null);
+
+        assertEquals(Set.of("w:lluvia", "b:lluvia_lluvia", "len:0"), features);
+    }
+
+    @Test
+    void testIntentFeaturesMeasureOverlapWithTheEvent() {
+        String event = "El parlamento aprobó la reforma de las pensiones";
+
+        assertTrue(FastPathClassifier.features(FastPathClassifier.Task.INTENT,
+                "¿Cuándo aprobó el parlamento la reforma?", event).contains("overlap:3"));
+        assertTrue(FastPathClassifier.features(FastPathClassifier.Task.INTENT,
+                "¿Quién ganó el partido de tenis?", event).contains("overlap:0"));
+        assertFalse(FastPathClassifier.features(FastPathClassifier.Task.INTENT, "¿Quién ganó?", null)
+                .stream().anyMatch(feature -> feature.startsWith("overlap:")));
+        assertFalse(FastPathClassifier.features(FastPathClassifier.Task.RELEVANCE, "¿Quién ganó?", event)
+                .stream().anyMatch(feature -> feature.startsWith("overlap:")));
+    }
+
+    @Test
+    void testLabelsAreReadAsWholeWords() {
+        FastPathClassifier.Task relevance = FastPathClassifier.Task.RELEVANCE;
+        assertEquals("UNLIKELY", relevance.labelOf("UNLIKELY"));
+        assertEquals("LIKELY", relevance.labelOf("Likely."));
+        assertEquals("UNLIKELY", relevance.labelOf("The query is \"unlikely\" to be news"));
+        assertNull(relevance.labelOf("LIKELY or UNLIKELY"));
+        assertNull(relevance.labelOf("Error: the request was filtered"));
+        assertEquals("NEW_EVENT", FastPathClassifier.Task.INTENT.labelOf(" new_event\n"));
+    }
+
+    @Test
+    void testDecisionLogIsRotatedAndReloaded(@TempDir Path dir) throws Exception {
+        Path log = dir.resolve("decisions.jsonl");
+        FastPathClassifier classifier = new FastPathClassifier(config(log.toString(), 200));
+        for (int i = 0; i < 10; i++) {
+            classifier.learn(FastPathClassifier.Task.RELEVANCE, "¿Ganó España la final número " + i + "?",
+                    null, "LIKELY", null);
+        }
+
+        // The log and the rotated one stay around the maximum size
+        Path previous = dir.resolve("decisions.jsonl.1");
+        assertTrue(Files.exists(previous));
+        assertTrue(Files.size(log) < 400);
+        assertTrue(Files.size(previous) < 400);
+
+        // A restart learns the decisions of both
+        long logged = Files.readAllLines(log).size() + Files.readAllLines(previous).size();
+        FastPathClassifier restarted = new FastPathClassifier(config(log.toString(), 200));
+        NaiveBayesClassifier.Prediction prediction = restarted.predict(FastPathClassifier.Task.RELEVANCE,
+                "¿Ganó España la final?", null);
+        assertEquals("LIKELY", prediction.label());
+        assertTrue(logged >= 2 && logged < 10);
+    }
+}
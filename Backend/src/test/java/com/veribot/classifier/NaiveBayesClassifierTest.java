@@ -0,0 +1,48 @@
+package com.veribot.classifier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NaiveBayesClassifierTest {
+
+    @Test
+    void testUntrainedClassifierAbstains() {
+        NaiveBayesClassifier classifier = new NaiveBayesClassifier(List.of("LIKELY", "UNLIKELY"));
+        assertNull(classifier.predict(Set.of("w:elecciones")));
+    }
+
+    @Test
+    void testPredictsLearnedLabel() {
+        NaiveBayesClassifier classifier = new NaiveBayesClassifier(List.of("LIKELY", "UNLIKELY"));
+        for (int i = 0; i < 20; i++) {
+            classifier.train(Set.of("w:elecciones", "w:presidente", "w:votos"), "LIKELY");
+            classifier.train(Set.of("w:como", "w:instalar", "w:java"), "UNLIKELY");
+        }
+        
+        NaiveBayesClassifier.Prediction news = classifier.predict(Set.of("w:elecciones", "w:votos", "w:nuevo"));
+        assertEquals("LIKELY", news.label());
+        assertTrue(news.probability() > 0.99);
+        
+        NaiveBayesClassifier.Prediction technical = classifier.predict(Set.of("w:instalar", "w:java"));
+        assertEquals("UNLIKELY", technical.label());
+        assertEquals(40, classifier.documents());
+    }
+
+    @Test
+    void testUnknownFeaturesFallBackToPrior() {
+        NaiveBayesClassifier classifier = new NaiveBayesClassifier(List.of("LIKELY", "UNLIKELY"));
+        classifier.train(Set.of("w:a"), "LIKELY");
+        classifier.train(Set.of("w:b"), "LIKELY");
+        classifier.train(Set.of("w:c"), "UNLIKELY");
+        
+        NaiveBayesClassifier.Prediction prediction = classifier.predict(Set.of("w:never_seen"));
+        assertEquals("LIKELY", prediction.label());
+        assertEquals(0.6, prediction.probability(), 1e-9);
+        
+        assertThrows(IllegalArgumentException.class, () -> classifier.train(Set.of("w:a"), "MAYBE"));
+    }
+}
@@ -0,0 +1,176 @@
+package com.veribot.controllers;
+
+import com.veribot.model.PromptModel;
+import com.veribot.service.AdmissionRejectedException;
+import com.veribot.service.ConversationService;
+import com.veribot.service.VerificationListener;
+
+import jakarta.servlet.http.HttpSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VeribotControllerTest {
+
+    /**
+     * An emitter that records the events sent to it instead of writing them to a response.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final List<Object> data = new CopyOnWriteArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        private volatile Runnable onCompletion;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof String text) {
+                    if (text.startsWith("event:")) {
+                        events.add(text.substring("event:".length(), text.indexOf('\n')));
+                    }
+                } else {
+                    data.add(part.getData());
+                }
+            }
+        }
+
+        @Override
+        public void complete() {
+            super.complete();
+            completed.countDown();
+        }
+
+        @Override
+        public void onCompletion(Runnable callback) {
+            super.onCompletion(callback);
+            onCompletion = callback;
+        }
+
+        /**
+         * Does what the container does when the client closes the connection.
+         */
+        void disconnect() {
+            onCompletion.run();
+        }
+    }
+
+    /**
+     * Answers queries from a script: reports a stage and a token, then waits before
+     * answering.
+     */
+    private static class StubConversation extends ConversationService {
+        volatile long answerMillis;
+        volatile boolean overloaded;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        StubConversation() {
+            super(null);
+        }
+
+        @Override
+        public String processQuery(PromptModel request, String sessionId, VerificationListener listener) {
+            listener.onStage("classified", "news");
+            listener.onToken("Sí");
+            started.countDown();
+            try {
+                Thread.sleep(answerMillis);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new IllegalStateException("Query interrupted", e);
+            }
+            return "Sí, hubo un sismo.";
+        }
+
+        @Override
+        public void rejectIfOverloaded() {
+            if (overloaded) {
+                throw new AdmissionRejectedException("Service overloaded", 5);
+            }
+        }
+    }
+
+    private final RecordingEmitter emitter = new RecordingEmitter();
+    private final StubConversation conversation = new StubConversation();
+    private final VeribotController controller = new VeribotController() {
+        @Override
+        SseEmitter newEmitter(long timeoutMillis) {
+            return emitter;
+        }
+    };
+
+    @BeforeEach
+    void wire() {
+        controller.convServ = conversation;
+    }
+
+    @AfterEach
+    void shutdown() {
+        controller.shutdown();
+    }
+
+    @Test
+    void testStreamsTheStagesTokensAndAnswer() throws Exception {
+        ResponseEntity<?> response = controller.streamVeribotRequest(prompt("¿Hubo un sismo en Lima?"), session());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("stage", "token", "result"), emitter.events);
+        assertEquals("Sí, hubo un sismo.", ((Map<?, ?>) emitter.data.get(2)).get("text"));
+    }
+
+    @Test
+    void testDisconnectStopsTheQuery() throws Exception {
+        conversation.answerMillis = 60_000;
+
+        controller.streamVeribotRequest(prompt("¿Hubo un sismo en Lima?"), session());
+        assertTrue(conversation.started.await(5, TimeUnit.SECONDS));
+        emitter.disconnect();
+
+        assertTrue(conversation.interrupted.await(5, TimeUnit.SECONDS));
+        // Nothing is sent to a client that left
+        Thread.sleep(50);
+        assertEquals(List.of("stage", "token"), emitter.events);
+    }
+
+    @Test
+    void testOverloadedServiceAnswers503BeforeStreaming() {
+        conversation.overloaded = true;
+
+        ResponseEntity<?> response = controller.streamVeribotRequest(prompt("¿Hubo un sismo en Lima?"), session());
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("5", response.getHeaders().getFirst("Retry-After"));
+        assertTrue(emitter.events.isEmpty());
+        assertEquals(1, conversation.started.getCount());
+    }
+
+    private static PromptModel prompt(String text) {
+        PromptModel prompt = new PromptModel();
+        prompt.setText(text);
+        return prompt;
+    }
+
+    private static HttpSession session() {
+        return (HttpSession) Proxy.newProxyInstance(HttpSession.class.getClassLoader(),
+                new Class<?>[] {HttpSession.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getId")) {
+                        return "session";
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
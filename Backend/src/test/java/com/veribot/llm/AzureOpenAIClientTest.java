@@ -0,0 +1,213 @@
+package com.veribot.llm;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.veribot.config.AzureOpenAIConfig;
+import com.veribot.config.LlmClientConfig;
+import com.veribot.config.LlmQuotaConfig;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AzureOpenAIClientTest {
+    private HttpServer server;
+    // The statuses the stub answers with, one per call; the last one is repeated
+    private final List<Integer> statuses = new CopyOnWriteArrayList<>();
+    private final List<Long> callTimes = new CopyOnWriteArrayList<>();
+    private volatile String retryAfter;
+    private volatile long delayMillis;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/openai/deployments/stub/", this::answer);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void testRetriesServerErrorsUntilAnAnswer() {
+        statuses.addAll(List.of(500, 503, 200));
+        AzureOpenAIClient client = client(3, 5000, 1000);
+
+        assertEquals("answer", AzureOpenAIClient.await(client.complete("prompt", 0.0)));
+        assertEquals(3, callTimes.size());
+    }
+
+    @Test
+    void testGivesUpAfterTheLastAttempt() {
+        statuses.add(500);
+        AzureOpenAIClient client = client(2, 5000, 1000);
+
+        LlmException failure = assertThrows(LlmException.class,
+                () -> AzureOpenAIClient.await(client.complete("prompt", 0.0)));
+        assertEquals(LlmException.Kind.SERVER_ERROR, failure.getKind());
+        assertEquals(2, callTimes.size());
+    }
+
+    @Test
+    void testDoesNotRetryRejectedRequests() {
+        statuses.add(400);
+        AzureOpenAIClient client = client(3, 5000, 1000);
+
+        LlmException failure = assertThrows(LlmException.class,
+                () -> AzureOpenAIClient.await(client.complete("prompt", 0.0)));
+        assertEquals(LlmException.Kind.CLIENT_ERROR, failure.getKind());
+        assertEquals(1, callTimes.size());
+    }
+
+    @Test
+    void testWaitsAsLongAsRateLimitedResponsesAsk() {
+        statuses.addAll(List.of(429, 200));
+        retryAfter = "1";
+        AzureOpenAIClient client = client(3, 5000, 2000);
+
+        assertEquals("answer", AzureOpenAIClient.await(client.complete("prompt", 0.0)));
+        assertEquals(2, callTimes.size());
+        assertTrue(callTimes.get(1) - callTimes.get(0) >= 950,
+                "retried after " + (callTimes.get(1) - callTimes.get(0)) + " ms");
+    }
+
+    @Test
+    void testFailsAtOnceWhenAskedToWaitLongerThanTheMaximumBackoff() {
+        statuses.add(429);
+        retryAfter = "30";
+        AzureOpenAIClient client = client(3, 5000, 2000);
+
+        LlmException failure = assertThrows(LlmException.class,
+                () -> AzureOpenAIClient.await(client.complete("prompt", 0.0)));
+        assertEquals(LlmException.Kind.RATE_LIMITED, failure.getKind());
+        assertEquals(1, callTimes.size());
+    }
+
+    @Test
+    void testTimesOutSlowResponses() {
+        statuses.add(200);
+        delayMillis = 1000;
+        AzureOpenAIClient client = client(2, 200, 100);
+
+        long started = System.nanoTime();
+        LlmException failure = assertThrows(LlmException.class,
+                () -> AzureOpenAIClient.await(client.complete("prompt", 0.0)));
+        assertEquals(LlmException.Kind.TIMEOUT, failure.getKind());
+        assertEquals(2, callTimes.size());
+        assertTrue(System.nanoTime() - started < 1_000_000_000L);
+    }
+
+    @Test
+    void testBackoffGrowsWithFullJitterUpToTheMaximum() {
+        AzureOpenAIClient client = client(5, 1000, 800);
+
+        for (int i = 0; i < 100; i++) {
+            long first = client.backoffMillis(1, -1);
+            assertTrue(first >= 0 && first <= 100, "first backoff " + first);
+            long third = client.backoffMillis(3, -1);
+            assertTrue(third >= 0 && third <= 400, "third backoff " + third);
+            long capped = client.backoffMillis(10, -1);
+            assertTrue(capped >= 0 && capped <= 800, "capped backoff " + capped);
+            // Never shorter than what the server asked for
+            assertTrue(client.backoffMillis(1, 500) >= 500);
+        }
+        assertEquals(-1, client.backoffMillis(1, 801));
+    }
+
+    @Test
+    void testReadsRetryAfterHeaders() {
+        assertEquals(150, AzureOpenAIClient.retryAfterMillis(headers("retry-after-ms", "150.5")));
+        assertEquals(2000, AzureOpenAIClient.retryAfterMillis(headers("Retry-After", "2")));
+        // Azure's header in milliseconds wins over the standard one
+        assertEquals(20, AzureOpenAIClient.retryAfterMillis(HttpHeaders.of(
+                Map.of("retry-after-ms", List.of("20"), "retry-after", List.of("5")), (name, value) -> true)));
+        String date = ZonedDateTime.now().plusSeconds(10).format(DateTimeFormatter.RFC_1123_DATE_TIME);
+        long fromDate = AzureOpenAIClient.retryAfterMillis(headers("Retry-After", date));
+        assertTrue(fromDate > 8000 && fromDate <= 10_000, "from date " + fromDate);
+        assertEquals(-1, AzureOpenAIClient.retryAfterMillis(headers("Retry-After", "soon")));
+        assertEquals(-1, AzureOpenAIClient.retryAfterMillis(HttpHeaders.of(Map.of(), (name, value) -> true)));
+    }
+
+    private static HttpHeaders headers(String name, String value) {
+        return HttpHeaders.of(Map.of(name, List.of(value)), (header, content) -> true);
+    }
+
+    private AzureOpenAIClient client(int maxAttempts, long requestTimeoutMillis, long retryMaxMillis) {
+        AzureOpenAIConfig openAIConfig = new AzureOpenAIConfig("http://127.0.0.1:" + server.getAddress().getPort(),
+                "key", "stub", "2024-02-01");
+        LlmClientConfig config = new LlmClientConfig() {
+            @Override
+            public long getRequestTimeoutMillis() {
+                return requestTimeoutMillis;
+            }
+
+            @Override
+            public int getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            @Override
+            public long getRetryBaseMillis() {
+                return 100;
+            }
+
+            @Override
+            public long getRetryMaxMillis() {
+                return retryMaxMillis;
+            }
+
+            @Override
+            public int getBreakerFailureThreshold() {
+                return 100;
+            }
+        };
+        LlmQuotaConfig quotaConfig = new LlmQuotaConfig() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+        };
+        return new AzureOpenAIClient(openAIConfig, config, quotaConfig);
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        callTimes.add(System.nanoTime() / 1_000_000);
+        int status = statuses.get(Math.min(callTimes.size(), statuses.size()) - 1);
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = (status == 200 ? "{\"choices\":[{\"message\":{\"content\":\"answer\"}}]}" : "{\"error\":{}}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        if (status == 429 && retryAfter != null) {
+            exchange.getResponseHeaders().add("Retry-After", retryAfter);
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        } catch (IOException e) {
+            // The client gave up waiting
+        }
+    }
+}
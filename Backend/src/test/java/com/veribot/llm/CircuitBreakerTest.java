@@ -0,0 +1,96 @@
+package com.veribot.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final Clock clock = new Clock() {
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now.get());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    };
+
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1000, clock);
+        for (int i = 0; i < 2; i++) {
+            breaker.onFailure(acquired(breaker));
+        }
+        // A success resets the count
+        breaker.onSuccess(acquired(breaker));
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure(acquired(breaker));
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+    }
+
+    @Test
+    void testLetsOneTrialCallThroughAfterOpenPeriod() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000, clock);
+        breaker.onFailure(acquired(breaker));
+
+        now.addAndGet(1000);
+        CircuitBreaker.Permit trial = acquired(breaker);
+        assertTrue(trial.isTrial());
+        assertNull(breaker.tryAcquire());
+
+        // The failed trial opens the circuit for another period
+        breaker.onFailure(trial);
+        assertNull(breaker.tryAcquire());
+        now.addAndGet(1000);
+        breaker.onSuccess(acquired(breaker));
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertFalse(acquired(breaker).isTrial());
+    }
+
+    @Test
+    void testIgnoresLateOutcomesOfCallsStartedBeforeTheCircuitOpened() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000, clock);
+        CircuitBreaker.Permit slow = acquired(breaker);
+        CircuitBreaker.Permit neutral = acquired(breaker);
+        breaker.onFailure(acquired(breaker));
+        now.addAndGet(1000);
+        CircuitBreaker.Permit trial = acquired(breaker);
+
+        // Answers of calls sent while the circuit was closed say nothing of the trial
+        breaker.onSuccess(slow);
+        breaker.onNeutral(neutral);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+
+        breaker.onSuccess(trial);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // Nor does a late failure count against the closed circuit
+        breaker.onFailure(slow);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private static CircuitBreaker.Permit acquired(CircuitBreaker breaker) {
+        CircuitBreaker.Permit permit = breaker.tryAcquire();
+        assertNotNull(permit);
+        return permit;
+    }
+}
@@ -0,0 +1,110 @@
+package com.veribot.llm;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.veribot.config.AzureOpenAIConfig;
+import com.veribot.config.HedgeConfig;
+import com.veribot.config.LlmClientConfig;
+import com.veribot.config.LlmQuotaConfig;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmHedgerTest {
+    private HttpServer server;
+    private final AtomicInteger slowCalls = new AtomicInteger();
+    private final AtomicInteger quickCalls = new AtomicInteger();
+
+    @BeforeEach
+    void startStub() throws IOException {
+        // A stub of two Azure OpenAI deployments: one answers after a second, the other at once
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/openai/deployments/slow/", exchange -> {
+            slowCalls.incrementAndGet();
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            answer(exchange, "slow answer");
+        });
+        server.createContext("/openai/deployments/quick/", exchange -> {
+            quickCalls.incrementAndGet();
+            answer(exchange, "quick answer");
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void testFirstAnswerWinsWhenPrimaryIsSlow() {
+        LlmHedger hedger = LlmHedger.create(hedgeConfig(1.0), client("slow"), client("quick"));
+
+        long started = System.nanoTime();
+        String answer = AzureOpenAIClient.await(hedger.call(client -> client.complete("prompt", 0.0)));
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        assertEquals("quick answer", answer);
+        assertTrue(elapsedMillis < 900, "hedged call took " + elapsedMillis + " ms");
+        assertEquals(1, slowCalls.get());
+        assertEquals(1, quickCalls.get());
+
+        // The cancelled primary call is censored, not a latency of the window
+        assertEquals(0, hedger.recordedLatencies());
+    }
+
+    @Test
+    void testDoesNotHedgeOverBudget() {
+        LlmHedger hedger = LlmHedger.create(hedgeConfig(0.0), client("slow"), client("quick"));
+
+        String answer = AzureOpenAIClient.await(hedger.call(client -> client.complete("prompt", 0.0)));
+
+        assertEquals("slow answer", answer);
+        assertEquals(0, quickCalls.get());
+        assertEquals(1, hedger.recordedLatencies());
+    }
+
+    private AzureOpenAIClient client(String deployment) {
+        AzureOpenAIConfig config = new AzureOpenAIConfig("http://127.0.0.1:" + server.getAddress().getPort(),
+                "key", deployment, "2024-02-01");
+        return new AzureOpenAIClient(config, new LlmClientConfig(), new LlmQuotaConfig());
+    }
+
+    private static HedgeConfig hedgeConfig(double maxRate) {
+        return new HedgeConfig() {
+            @Override
+            public long getInitialDelayMillis() {
+                return 100;
+            }
+
+            @Override
+            public double getMaxRate() {
+                return maxRate;
+            }
+        };
+    }
+
+    private static void answer(HttpExchange exchange, String content) throws IOException {
+        byte[] body = ("{\"choices\":[{\"message\":{\"content\":\"" + content + "\"}}]}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.veribot.llm;
+
+import com.veribot.config.LlmQuotaConfig;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmQuotaSchedulerTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    // Six requests per minute: one every ten seconds, at most one at once
+    private final LlmQuotaConfig config = new LlmQuotaConfig() {
+        @Override
+        public long getTokensPerMinute() {
+            return 0;
+        }
+
+        @Override
+        public long getRequestsPerMinute() {
+            return 6;
+        }
+
+        @Override
+        public long getDeadlineMillis(LlmPriority priority) {
+            return 60_000;
+        }
+    };
+    private final LlmQuotaScheduler scheduler = LlmQuotaScheduler.create(config, "test", now::get);
+
+    @Test
+    void testGrantsQueuedCallsByPriority() {
+        assertTrue(scheduler.acquire(100, LlmPriority.BACKGROUND, scheduler.deadlineFor(LlmPriority.BACKGROUND)).isDone());
+
+        CompletableFuture<Void> background = scheduler.acquire(100, LlmPriority.BACKGROUND,
+                scheduler.deadlineFor(LlmPriority.BACKGROUND));
+        CompletableFuture<Void> verification = scheduler.acquire(100, LlmPriority.NEW_VERIFICATION,
+                scheduler.deadlineFor(LlmPriority.NEW_VERIFICATION));
+        CompletableFuture<Void> followUp = scheduler.acquire(100, LlmPriority.INTERACTIVE_FOLLOW_UP,
+                scheduler.deadlineFor(LlmPriority.INTERACTIVE_FOLLOW_UP));
+        assertFalse(background.isDone() || verification.isDone() || followUp.isDone());
+
+        now.addAndGet(10_000);
+        scheduler.drain();
+        assertTrue(followUp.isDone());
+        assertFalse(verification.isDone() || background.isDone());
+
+        now.addAndGet(10_000);
+        scheduler.drain();
+        assertTrue(verification.isDone());
+        assertFalse(background.isDone());
+
+        now.addAndGet(10_000);
+        scheduler.drain();
+        assertTrue(background.isDone());
+    }
+
+    @Test
+    void testShedsCallsThatCannotMeetTheirDeadline() {
+        assertTrue(scheduler.acquire(100, LlmPriority.NEW_VERIFICATION, now.get() + 1_000).isDone());
+
+        CompletableFuture<Void> shed = scheduler.acquire(100, LlmPriority.NEW_VERIFICATION, now.get() + 5_000);
+        ExecutionException failure = assertThrows(ExecutionException.class, shed::get);
+        assertEquals(LlmException.Kind.SHED, ((LlmException) failure.getCause()).getKind());
+
+        // A queued call is dropped once its deadline passes behind calls of higher priority
+        CompletableFuture<Void> background = scheduler.acquire(100, LlmPriority.BACKGROUND, now.get() + 15_000);
+        CompletableFuture<Void> followUp = scheduler.acquire(100, LlmPriority.INTERACTIVE_FOLLOW_UP, now.get() + 15_000);
+        now.addAndGet(10_000);
+        scheduler.drain();
+        assertTrue(followUp.isDone() && !followUp.isCompletedExceptionally());
+        now.addAndGet(6_000);
+        scheduler.drain();
+        assertTrue(background.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,167 @@
+package com.veribot.llm;
+
+import com.veribot.config.AzureOpenAIConfig;
+import com.veribot.config.LlmClientConfig;
+import com.veribot.config.LlmQuotaConfig;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmRouterTest {
+
+    /**
+     * A client that answers from a script instead of calling a deployment: it streams
+     * the given tokens, then fails with the given kind or answers with their text.
+     */
+    private static class StubClient extends AzureOpenAIClient {
+        private final List<String> tokens;
+        private final LlmException.Kind failure;
+        private final AtomicInteger calls = new AtomicInteger();
+        final List<CompletableFuture<String>> started = new ArrayList<>();
+
+        StubClient(String deployment, LlmException.Kind failure, String... tokens) {
+            super(new AzureOpenAIConfig("http://127.0.0.1:9", "key", deployment, "2024-02-01"),
+                    new LlmClientConfig(), new LlmQuotaConfig());
+            this.tokens = List.of(tokens);
+            this.failure = failure;
+        }
+
+        @Override
+        public CompletableFuture<String> complete(String prompt, double temperature, LlmPriority priority) {
+            return stream(prompt, temperature, token -> { }, priority);
+        }
+
+        @Override
+        public CompletableFuture<String> stream(String prompt, double temperature, Consumer<String> onToken,
+                LlmPriority priority) {
+            calls.incrementAndGet();
+            tokens.forEach(onToken);
+            CompletableFuture<String> call = failure != null
+                    ? CompletableFuture.failedFuture(new LlmException(failure, getDeploymentName() + " failed", null))
+                    : CompletableFuture.completedFuture(String.join("", tokens));
+            started.add(call);
+            return call;
+        }
+    }
+
+    /**
+     * A client whose calls never end, to check cancellation.
+     */
+    private static class HangingClient extends StubClient {
+        HangingClient(String deployment) {
+            super(deployment, null);
+        }
+
+        @Override
+        public CompletableFuture<String> stream(String prompt, double temperature, Consumer<String> onToken,
+                LlmPriority priority) {
+            CompletableFuture<String> call = new CompletableFuture<>();
+            started.add(call);
+            return call;
+        }
+    }
+
+    @Test
+    void testFallsBackOnFailuresTheOtherDeploymentMayNotHave() {
+        for (LlmException.Kind kind : List.of(LlmException.Kind.TIMEOUT, LlmException.Kind.RATE_LIMITED,
+                LlmException.Kind.SERVER_ERROR, LlmException.Kind.NETWORK, LlmException.Kind.CIRCUIT_OPEN,
+                LlmException.Kind.SHED)) {
+            StubClient strong = new StubClient("strong", null, "strong answer");
+            StubClient fast = new StubClient("fast", kind);
+            LlmRouter router = new LlmRouter(strong, fast, null);
+
+            LlmRouter.Completion completion = AzureOpenAIClient.await(
+                    router.completion(LlmRouter.Route.FAST, "prompt", 0.0, LlmPriority.NEW_VERIFICATION));
+
+            assertEquals("strong answer", completion.content(), kind.name());
+            // Cached under the deployment that answered, not the one the route prefers
+            assertEquals("strong", completion.deploymentName(), kind.name());
+            assertEquals(1, fast.calls.get());
+        }
+    }
+
+    @Test
+    void testDoesNotFallBackOnFailuresOfTheRequest() {
+        for (LlmException.Kind kind : List.of(LlmException.Kind.CLIENT_ERROR, LlmException.Kind.MALFORMED_RESPONSE,
+                LlmException.Kind.CANCELLED)) {
+            StubClient strong = new StubClient("strong", null, "strong answer");
+            StubClient fast = new StubClient("fast", kind);
+            LlmRouter router = new LlmRouter(strong, fast, null);
+
+            LlmException failure = assertThrows(LlmException.class, () -> AzureOpenAIClient.await(
+                    router.complete(LlmRouter.Route.FAST, "prompt", 0.0, LlmPriority.NEW_VERIFICATION)));
+
+            assertEquals(kind, failure.getKind());
+            assertEquals(0, strong.calls.get(), kind.name());
+        }
+    }
+
+    @Test
+    void testAnswerOfTheRouteDeployment() {
+        StubClient strong = new StubClient("strong", null, "strong answer");
+        StubClient fast = new StubClient("fast", null, "fast answer");
+        LlmRouter router = new LlmRouter(strong, fast, null);
+
+        LlmRouter.Completion completion = AzureOpenAIClient.await(
+                router.completion(LlmRouter.Route.STRONG, "prompt", 0.0, LlmPriority.NEW_VERIFICATION));
+        assertEquals(new LlmRouter.Completion("strong answer", "strong"), completion);
+        assertEquals("fast answer", AzureOpenAIClient.await(
+                router.complete(LlmRouter.Route.FAST, "prompt", 0.0, LlmPriority.NEW_VERIFICATION)));
+        assertEquals(1, strong.calls.get());
+    }
+
+    @Test
+    void testWithoutFastDeploymentBothRoutesUseTheMainOne() {
+        StubClient strong = new StubClient("strong", LlmException.Kind.TIMEOUT);
+        LlmRouter router = new LlmRouter(strong, null, null);
+
+        assertEquals("strong", router.getDeploymentName(LlmRouter.Route.FAST));
+        LlmException failure = assertThrows(LlmException.class, () -> AzureOpenAIClient.await(
+                router.complete(LlmRouter.Route.FAST, "prompt", 0.0, LlmPriority.NEW_VERIFICATION)));
+        assertEquals(LlmException.Kind.TIMEOUT, failure.getKind());
+        assertEquals(1, strong.calls.get());
+    }
+
+    @Test
+    void testStreamFallsBackOnlyBeforeItsFirstToken() {
+        StubClient strong = new StubClient("strong", null, "Respuesta", " completa");
+        LlmRouter router = new LlmRouter(strong, new StubClient("fast", LlmException.Kind.TIMEOUT), null);
+        List<String> tokens = new ArrayList<>();
+
+        LlmRouter.Completion completion = AzureOpenAIClient.await(router.streamCompletion(LlmRouter.Route.FAST,
+                "prompt", 0.0, tokens::add, LlmPriority.NEW_VERIFICATION));
+        assertEquals(new LlmRouter.Completion("Respuesta completa", "strong"), completion);
+        assertEquals(List.of("Respuesta", " completa"), tokens);
+
+        // Once a token reached the listener, a second stream would repeat the answer
+        StubClient unused = new StubClient("strong", null, "Otra");
+        LlmRouter started = new LlmRouter(unused, new StubClient("fast", LlmException.Kind.NETWORK, "Respuesta"), null);
+        List<String> partial = new ArrayList<>();
+        LlmException failure = assertThrows(LlmException.class, () -> AzureOpenAIClient.await(started.stream(
+                LlmRouter.Route.FAST, "prompt", 0.0, partial::add, LlmPriority.NEW_VERIFICATION)));
+        assertEquals(LlmException.Kind.NETWORK, failure.getKind());
+        assertEquals(List.of("Respuesta"), partial);
+        assertEquals(0, unused.calls.get());
+    }
+
+    @Test
+    void testCancellingTheAnswerCancelsTheCall() {
+        HangingClient strong = new HangingClient("strong");
+        HangingClient fast = new HangingClient("fast");
+        LlmRouter router = new LlmRouter(strong, fast, null);
+
+        CompletableFuture<String> answer = router.complete(LlmRouter.Route.FAST, "prompt", 0.0,
+                LlmPriority.NEW_VERIFICATION);
+        answer.cancel(true);
+
+        assertTrue(fast.started.get(0).isCancelled());
+        assertTrue(strong.started.isEmpty());
+    }
+}
@@ -0,0 +1,141 @@
+package com.veribot.service;
+
+import com.veribot.config.AdmissionConfig;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionLimiterTest {
+
+    private static AdmissionConfig config(int initialLimit, int queueSize, long maxQueueMillis) {
+        return new AdmissionConfig() {
+            @Override
+            public int getInitialLimit() {
+                return initialLimit;
+            }
+
+            @Override
+            public int getMinLimit() {
+                return 1;
+            }
+
+            @Override
+            public int getMaxLimit() {
+                return 4;
+            }
+
+            @Override
+            public int getQueueSize() {
+                return queueSize;
+            }
+
+            @Override
+            public long getMaxQueueMillis() {
+                return maxQueueMillis;
+            }
+
+            @Override
+            public long getLatencyTargetMillis() {
+                return 1000;
+            }
+
+            @Override
+            public double getBackoffRatio() {
+                return 0.5;
+            }
+        };
+    }
+
+    @Test
+    void testRejectsWhenTheQueueIsFull() {
+        AtomicLong clock = new AtomicLong();
+        AdmissionLimiter limiter = AdmissionLimiter.create(config(1, 0, 1000), clock::get);
+
+        // A query of 3 s makes the clients retry in about 3 s
+        AdmissionLimiter.Permit sampled = limiter.acquire();
+        clock.addAndGet(3000);
+        sampled.close();
+
+        AdmissionLimiter.Permit permit = limiter.acquire();
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class, limiter::acquire);
+        assertEquals(3, rejected.getRetryAfterSeconds());
+
+        // The slot is free again once the query is done
+        permit.close();
+        limiter.acquire().abandon();
+    }
+
+    @Test
+    void testChecksTheQueueWithoutTakingASlot() {
+        AdmissionLimiter limiter = AdmissionLimiter.create(config(1, 0, 1000), System::currentTimeMillis);
+
+        // Checking leaves the only slot free
+        limiter.rejectIfFull();
+        limiter.rejectIfFull();
+        AdmissionLimiter.Permit permit = limiter.acquire();
+        assertThrows(AdmissionRejectedException.class, limiter::rejectIfFull);
+        permit.close();
+        limiter.rejectIfFull();
+    }
+
+    @Test
+    void testQueuedQueriesGetTheFreedSlotsOrTimeOut() throws Exception {
+        AdmissionLimiter limiter = AdmissionLimiter.create(config(1, 1, 50), System::currentTimeMillis);
+        AdmissionLimiter.Permit permit = limiter.acquire();
+
+        // Nobody frees the slot in time
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class, limiter::acquire);
+        assertTrue(rejected.getRetryAfterSeconds() >= 1);
+
+        AdmissionLimiter slowLimiter = AdmissionLimiter.create(config(1, 1, 5000), System::currentTimeMillis);
+        AdmissionLimiter.Permit running = slowLimiter.acquire();
+        CompletableFuture<AdmissionLimiter.Permit> waiting = CompletableFuture.supplyAsync(slowLimiter::acquire,
+                Thread::startVirtualThread);
+        Thread.sleep(50);
+        assertFalse(waiting.isDone());
+
+        // The waiting query takes the slot of the one that ends
+        running.close();
+        waiting.get(5, TimeUnit.SECONDS).close();
+        permit.close();
+    }
+
+    @Test
+    void testLimitShrinksOnSlowQueriesAndGrowsOnFastOnes() {
+        AtomicLong clock = new AtomicLong();
+        AdmissionLimiter limiter = AdmissionLimiter.create(config(2, 0, 1000), clock::get);
+        assertEquals(2, limiter.getLimit());
+
+        AdmissionLimiter.Permit slow = limiter.acquire();
+        AdmissionLimiter.Permit alsoSlow = limiter.acquire();
+        clock.addAndGet(1500);
+        slow.close();
+        assertEquals(1, limiter.getLimit());
+
+        // Only one decrease per target period
+        alsoSlow.close();
+        assertEquals(1, limiter.getLimit());
+
+        // A fast query that used the whole limit grows it by one over the limit
+        AdmissionLimiter.Permit fast = limiter.acquire();
+        assertThrows(AdmissionRejectedException.class, limiter::acquire);
+        clock.addAndGet(100);
+        fast.close();
+        assertEquals(2, limiter.getLimit());
+
+        // It grows slower as it gets larger, and never past the maximum
+        for (int i = 0; i < 20; i++) {
+            AdmissionLimiter.Permit first = limiter.acquire();
+            AdmissionLimiter.Permit second = limiter.acquire();
+            clock.addAndGet(100);
+            first.close();
+            second.close();
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+}
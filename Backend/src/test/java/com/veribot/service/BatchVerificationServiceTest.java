@@ -0,0 +1,282 @@
+package com.veribot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.veribot.config.BatchConfig;
+import com.veribot.config.PipelineConfig;
+import com.veribot.config.ScrapingConfig;
+import com.veribot.config.SerpApiConfig;
+import com.veribot.llm.LlmPriority;
+import com.veribot.model.BatchItemResult;
+import com.veribot.model.NewsVerificationResult;
+import com.veribot.model.QueryUnderstanding;
+
+import dev.langchain4j.data.document.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchVerificationServiceTest {
+
+    /**
+     * Counts how many claims are in each stage at once, and the most there ever were.
+     */
+    private static class Stages {
+        private final Map<String, AtomicInteger> current = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> most = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+        volatile long workMillis = 30;
+
+        void run(String stage) {
+            calls.computeIfAbsent(stage, key -> new AtomicInteger()).incrementAndGet();
+            int now = current.computeIfAbsent(stage, key -> new AtomicInteger()).incrementAndGet();
+            most.computeIfAbsent(stage, key -> new AtomicInteger()).accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(workMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted in " + stage);
+            } finally {
+                current.get(stage).decrementAndGet();
+            }
+        }
+
+        int most(String stage) {
+            return most.getOrDefault(stage, new AtomicInteger()).get();
+        }
+
+        int calls(String stage) {
+            return calls.getOrDefault(stage, new AtomicInteger()).get();
+        }
+    }
+
+    private static class StubVerification extends NewsVerificationService {
+        private final Stages stages;
+
+        StubVerification(Stages stages) {
+            super(null, null, null, null, null, null, null, null, null);
+            this.stages = stages;
+        }
+
+        @Override
+        public NewsVerificationService withPriority(LlmPriority priority) {
+            return this;
+        }
+
+        @Override
+        public NewsVerificationResult findSimilarVerdict(String claim) {
+            return null;
+        }
+
+        @Override
+        public QueryUnderstanding understandClaim(String claim) {
+            stages.run("understanding");
+            return new QueryUnderstanding(!claim.startsWith("Hola"), "verify", claim, "Perú", "es");
+        }
+
+        @Override
+        public String[] resolveCountryAndLanguage(String countryName, String languageCode) {
+            return new String[] {"pe", "es"};
+        }
+
+        @Override
+        public NewsVerificationResult analyzeClaim(String claim, List<Document> documents, String languageCode) {
+            stages.run("analyzing");
+            return new NewsVerificationResult("Resumen de " + claim, 80, "Justificación", List.of("https://a.pe"));
+        }
+    }
+
+    private static class StubSearch extends NewsSearchService {
+        private final Stages stages;
+
+        StubSearch(Stages stages) {
+            super(new SerpApiConfig("key", "http://127.0.0.1:9/search.json"), new ScrapingConfig(), null, null);
+            this.stages = stages;
+        }
+
+        @Override
+        public List<JsonNode> findCandidates(String query, String country, String language) {
+            stages.run("searching");
+            return List.of(JsonNodeFactory.instance.objectNode().put("link", "https://a.pe"));
+        }
+
+        @Override
+        public List<Document> scrapeArticles(List<JsonNode> candidates) {
+            stages.run("scraping");
+            return List.of(Document.from("Artículo"));
+        }
+    }
+
+    private static BatchConfig config(int understanding, int search, int scrape, int analysis) {
+        return new BatchConfig() {
+            @Override
+            public int getUnderstandingConcurrency() {
+                return understanding;
+            }
+
+            @Override
+            public int getSearchConcurrency() {
+                return search;
+            }
+
+            @Override
+            public int getScrapeConcurrency() {
+                return scrape;
+            }
+
+            @Override
+            public int getAnalysisConcurrency() {
+                return analysis;
+            }
+        };
+    }
+
+    private static BatchVerificationService service(Stages stages, BatchConfig config) {
+        return service(stages, config, new PipelineConfig());
+    }
+
+    private static BatchVerificationService service(Stages stages, BatchConfig config, long deadlineMillis) {
+        return service(stages, config, new PipelineConfig() {
+            @Override
+            public long getVerificationDeadlineMillis() {
+                return deadlineMillis;
+            }
+        });
+    }
+
+    private static BatchVerificationService service(Stages stages, BatchConfig config, PipelineConfig pipelineConfig) {
+        return new BatchVerificationService(new StubVerification(stages), new StubSearch(stages), pipelineConfig,
+                config);
+    }
+
+    /**
+     * Collects the outcomes and the stage events of a batch.
+     */
+    private static class Collector implements BatchVerificationService.BatchListener {
+        final List<BatchItemResult> results = new CopyOnWriteArrayList<>();
+        final List<String> stageEvents = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onStage(int index, String stage) {
+            stageEvents.add(index + ":" + stage);
+        }
+
+        @Override
+        public void onResult(BatchItemResult result) {
+            results.add(result);
+        }
+
+        BatchItemResult at(int index) {
+            return results.stream().filter(result -> result.index() == index).findFirst().orElseThrow();
+        }
+    }
+
+    @Test
+    void testEachStageRunsAtMostItsLimitOfClaims() {
+        Stages stages = new Stages();
+        Collector collector = new Collector();
+        List<String> claims = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            claims.add("Sismo número " + (char) ('a' + i) + " en Perú");
+        }
+
+        service(stages, config(3, 2, 4, 1)).verifyAll(claims, collector);
+
+        assertEquals(12, collector.results.size());
+        assertTrue(collector.results.stream().allMatch(result -> result.status() == BatchItemResult.Status.VERIFIED));
+        assertEquals(3, stages.most("understanding"));
+        assertEquals(2, stages.most("searching"));
+        assertTrue(stages.most("scraping") <= 4);
+        assertEquals(1, stages.most("analyzing"));
+        assertEquals(12 * 4, collector.stageEvents.size());
+    }
+
+    @Test
+    void testRepeatedClaimsAreVerifiedOnce() {
+        Stages stages = new Stages();
+        Collector collector = new Collector();
+        List<String> claims = List.of("Sismo en Perú", "Hola, ¿qué tal?", "sismo en  PERU", "hola que tal");
+
+        service(stages, config(8, 8, 8, 8)).verifyAll(claims, collector);
+
+        assertEquals(2, stages.calls("understanding"));
+        assertEquals(1, stages.calls("analyzing"));
+        assertEquals(4, collector.results.size());
+        // Each repetition is reported at its own position, with its own text
+        assertEquals(BatchItemResult.Status.VERIFIED, collector.at(2).status());
+        assertEquals("sismo en  PERU", collector.at(2).claim());
+        assertEquals(collector.at(0).result(), collector.at(2).result());
+        assertEquals(BatchItemResult.Status.NOT_NEWS, collector.at(3).status());
+        assertEquals("hola que tal", collector.at(3).claim());
+    }
+
+    @Test
+    void testTimeWaitingForAStageIsNotHeldAgainstTheDeadline() {
+        Stages stages = new Stages();
+        stages.workMillis = 50;
+        Collector collector = new Collector();
+        List<String> claims = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            claims.add("Sismo número " + (char) ('a' + i) + " en Perú");
+        }
+
+        // The last claims wait 350 ms for each stage, past the deadline of 200 ms
+        service(stages, config(1, 1, 1, 1), 200).verifyAll(claims, collector);
+
+        assertEquals(8, collector.results.size());
+        assertTrue(collector.results.stream().allMatch(result -> result.status() == BatchItemResult.Status.VERIFIED),
+                collector.results.toString());
+    }
+
+    @Test
+    void testStageRunningPastTheDeadlineFailsItsClaim() {
+        Stages stages = new Stages();
+        stages.workMillis = 60_000;
+        Collector collector = new Collector();
+
+        service(stages, config(8, 8, 8, 8), 200).verifyAll(List.of("Sismo en Perú"), collector);
+
+        assertEquals(BatchItemResult.Status.FAILED, collector.at(0).status());
+        assertEquals("Deadline exceeded", collector.at(0).error());
+    }
+
+    @Test
+    void testInterruptingTheBatchStopsItsClaims() throws Exception {
+        Stages stages = new Stages();
+        stages.workMillis = 60_000;
+        Collector collector = new Collector();
+        List<String> claims = List.of("Sismo en Perú", "Huracán en Cuba", "Sequía en Chile");
+        BatchVerificationService service = service(stages, config(8, 8, 8, 1));
+
+        Thread batch = Thread.ofVirtual().start(() -> service.verifyAll(claims, collector));
+        // Understanding the claims takes a minute, so the batch is stopped in that stage
+        assertTrue(waitFor(() -> stages.most("understanding") == 3));
+        batch.interrupt();
+        batch.join(5000);
+
+        assertFalse(batch.isAlive());
+        assertEquals(3, collector.results.size());
+        assertTrue(collector.results.stream().allMatch(result -> result.status() == BatchItemResult.Status.FAILED));
+        assertEquals(0, stages.calls("searching"));
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
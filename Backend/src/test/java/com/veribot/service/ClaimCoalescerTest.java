@@ -0,0 +1,123 @@
+package com.veribot.service;
+
+import com.veribot.model.NewsVerificationResult;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClaimCoalescerTest {
+
+    @Test
+    void testFingerprintIgnoresCaseAccentsAndPunctuation() {
+        assertEquals(ClaimCoalescer.fingerprint("¿Subió el dólar hoy?"),
+                ClaimCoalescer.fingerprint("subio  el DOLAR hoy"));
+        assertNotEquals(ClaimCoalescer.fingerprint("subio el dolar"),
+                ClaimCoalescer.fingerprint("bajo el dolar"));
+    }
+
+    @Test
+    void testConcurrentIdenticalClaimsShareOneRun() throws Exception {
+        ClaimCoalescer coalescer = ClaimCoalescer.create();
+        NewsVerificationResult verdict = new NewsVerificationResult("summary", 80, "justification", List.of());
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<NewsVerificationResult> leader = CompletableFuture.supplyAsync(() ->
+                coalescer.verify("pipeline", "Is it raining in Paris?", VerificationListener.NONE, listener -> {
+                    runs.incrementAndGet();
+                    listener.onStage("searching", "rain paris");
+                    started.countDown();
+                    await(release);
+                    listener.onToken("done");
+                    return verdict;
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<String> events = new CopyOnWriteArrayList<>();
+        VerificationListener recorder = new VerificationListener() {
+            @Override
+            public void onStage(String stage, String detail) {
+                events.add(stage);
+            }
+
+            @Override
+            public void onToken(String token) {
+                events.add(token);
+            }
+        };
+        CompletableFuture<NewsVerificationResult> follower = CompletableFuture.supplyAsync(() ->
+                coalescer.verify("pipeline", "is it raining in paris", recorder, listener -> {
+                    runs.incrementAndGet();
+                    return null;
+                }));
+        // Let the follower attach before the leader finishes
+        while (events.isEmpty()) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertSame(verdict, leader.get(5, TimeUnit.SECONDS));
+        assertSame(verdict, follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(List.of("searching", "done"), events);
+    }
+
+    @Test
+    void testOnlyRunsOfTheSamePartOfThePipelineAreShared() throws Exception {
+        ClaimCoalescer coalescer = ClaimCoalescer.create();
+        NewsVerificationResult verdict = new NewsVerificationResult("summary", 80, "justification", List.of());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<NewsVerificationResult> whole = CompletableFuture.supplyAsync(() ->
+                coalescer.verify("pipeline", "Did the port strike end?", VerificationListener.NONE, listener -> {
+                    listener.onStage("classified", "news");
+                    started.countDown();
+                    await(release);
+                    return verdict;
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // A search started after classifying on its own does not replay "classified"
+        NewsVerificationResult searched = new NewsVerificationResult("other", 60, "justification", List.of());
+        assertSame(searched, coalescer.verify("search", "Did the port strike end?", VerificationListener.NONE,
+                listener -> searched));
+        release.countDown();
+        assertSame(verdict, whole.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testLeaderStreamsOnlyWhenItsListenerReadsTheTokens() {
+        ClaimCoalescer coalescer = ClaimCoalescer.create();
+        NewsVerificationResult verdict = new NewsVerificationResult("summary", 80, "justification", List.of());
+        List<Boolean> streamed = new CopyOnWriteArrayList<>();
+
+        coalescer.verify("pipeline", "Was the match postponed?", VerificationListener.NONE, listener -> {
+            streamed.add(listener.wantsTokens());
+            return verdict;
+        });
+        coalescer.verify("pipeline", "Was the final postponed?", new VerificationListener() {
+        }, listener -> {
+            streamed.add(listener.wantsTokens());
+            return verdict;
+        });
+        assertEquals(List.of(false, true), streamed);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.veribot.service;
+
+import com.veribot.MutableClock;
+import com.veribot.config.JobConfig;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobStoreTest {
+
+    private static JobConfig config(int maxEntries) {
+        return new JobConfig() {
+            @Override
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            @Override
+            public long getTtlMinutes() {
+                return 30;
+            }
+        };
+    }
+
+    @Test
+    void testRetriedSubmissionGetsTheSameJob() {
+        JobStore store = JobStore.create(config(10));
+        JobStore.Submission first = store.submit("key");
+        assertTrue(first.created());
+
+        JobStore.Submission retried = store.submit("key");
+        assertFalse(retried.created());
+        assertSame(first.job(), retried.job());
+        assertTrue(store.submit(null).created());
+
+        store.complete(first.job(), "answer");
+        assertEquals(VerificationJob.Status.DONE, store.get(first.job().getId()).getStatus());
+        assertEquals("answer", store.submit("key").job().getText());
+        assertTrue(first.job().getCompletion().isDone());
+    }
+
+    @Test
+    void testOverloadedJobCanBeSubmittedAgain() {
+        JobStore store = JobStore.create(config(10));
+        VerificationJob rejected = store.submit("key").job();
+        store.reject(rejected, "The service is overloaded", 5);
+
+        assertEquals(VerificationJob.Status.OVERLOADED, store.get(rejected.getId()).getStatus());
+        assertEquals(5, rejected.getRetryAfterSeconds());
+        // The retry is a new job, while the rejected one can still be polled for
+        assertNull(store.find("key"));
+        JobStore.Submission retried = store.submit("key");
+        assertTrue(retried.created());
+        assertNotSame(rejected, retried.job());
+        assertSame(rejected, store.get(rejected.getId()));
+    }
+
+    @Test
+    void testBoundedByCountAndExpiresFinishedJobs() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-05-01T10:00:00Z"));
+        JobStore store = JobStore.create(config(2), clock);
+        VerificationJob a = store.submit(null).job();
+        VerificationJob b = store.submit(null).job();
+
+        // Running jobs are never evicted, so a full store refuses new ones
+        assertThrows(RejectedExecutionException.class, () -> store.submit(null));
+
+        // The oldest finished job makes room
+        store.fail(b, "error");
+        clock.advance(Duration.ofMinutes(1));
+        store.complete(a, "answer");
+        VerificationJob c = store.submit(null).job();
+        assertNull(store.get(b.getId()));
+        assertSame(a, store.get(a.getId()));
+
+        // Finished jobs expire after their time to live, running ones stay
+        clock.advance(Duration.ofMinutes(31));
+        assertNull(store.get(a.getId()));
+        assertSame(c, store.get(c.getId()));
+        assertEquals(1, store.size());
+    }
+}
@@ -0,0 +1,234 @@
+package com.veribot.service;
+
+import com.veribot.config.ScrapingConfig;
+import com.veribot.config.SerpApiConfig;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.data.document.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NewsSearchServiceTest {
+    private static final String ARTICLE = "El gobierno de España aprobó ayer el presupuesto de la región, "
+            + "tras una votación en la que participaron todos los grupos. La sesión se alargó durante horas "
+            + "y terminó con un acuerdo sobre la financiación de los hospitales y de las escuelas públicas.";
+
+    private HttpServer server;
+    private String base;
+    private final Map<String, Integer> requests = new ConcurrentHashMap<>();
+    private NewsSearchService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Slow pages must not hold up the others
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+        service = new NewsSearchService(new SerpApiConfig("key", base + "/search.json"), new ScrapingConfig(),
+                null, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private void serve(String path, String contentType, byte[] body) {
+        server.createContext(path, exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+
+    /**
+     * Serves an article after a delay, counting how many times it was asked for.
+     */
+    private void serveArticle(String path, long delayMillis) {
+        byte[] body = page("").getBytes(StandardCharsets.UTF_8);
+        server.createContext(path, exchange -> {
+            requests.merge(path, 1, Integer::sum);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            } catch (IOException e) {
+                // The scrape was cancelled
+            }
+        });
+    }
+
+    private NewsSearchService racing(int extraLinks, long rankPatienceMillis) {
+        ScrapingConfig config = new ScrapingConfig() {
+            @Override
+            public Mode getMode() {
+                return Mode.RACE;
+            }
+
+            @Override
+            public int getRaceExtraLinks() {
+                return extraLinks;
+            }
+
+            @Override
+            public long getRankPatienceMillis() {
+                return rankPatienceMillis;
+            }
+        };
+        return new NewsSearchService(new SerpApiConfig("key", base + "/search.json"), config, null, null);
+    }
+
+    private List<JsonNode> candidates(String... paths) {
+        List<JsonNode> candidates = new ArrayList<>();
+        for (String path : paths) {
+            candidates.add(JsonNodeFactory.instance.objectNode().put("link", base + path));
+        }
+        return candidates;
+    }
+
+    private List<String> links(List<Document> documents) {
+        return documents.stream()
+                .map(document -> document.metadata().getString("link").substring(base.length()))
+                .toList();
+    }
+
+    private static String page(String head) {
+        return "<html><head>" + head + "<title>Presupuesto</title></head><body><article><p>" + ARTICLE
+                + "</p><p>" + ARTICLE + "</p></article></body></html>";
+    }
+
+    @Test
+    void testDecodesPagesWithTheCharsetOfTheirMetaTag() throws Exception {
+        serve("/latin1", "text/html", page("<meta charset=\"ISO-8859-1\">").getBytes(StandardCharsets.ISO_8859_1));
+
+        String text = service.textOfPage(base + "/latin1");
+        assertTrue(text.contains("España aprobó"), text);
+    }
+
+    @Test
+    void testDecodesPagesWithTheCharsetOfTheirHeader() throws Exception {
+        serve("/header", "text/html; charset=iso-8859-1", page("").getBytes(StandardCharsets.ISO_8859_1));
+
+        assertTrue(service.textOfPage(base + "/header").contains("España aprobó"));
+        assertEquals("iso-8859-1", NewsSearchService.charsetOf("text/html; charset=\"iso-8859-1\""));
+        assertNull(NewsSearchService.charsetOf("text/html; charset=made-up"));
+        assertNull(NewsSearchService.charsetOf("text/html"));
+    }
+
+    @Test
+    void testRejectsContentThatIsNotAWebPage() {
+        serve("/report.pdf", "application/pdf", "%PDF-1.4".getBytes(StandardCharsets.US_ASCII));
+
+        IOException error = assertThrows(IOException.class, () -> service.textOfPage(base + "/report.pdf"));
+        assertTrue(error.getMessage().contains("application/pdf"));
+        assertTrue(NewsSearchService.isTextContent("application/xhtml+xml; charset=utf-8"));
+    }
+
+    @Test
+    void testRaceStartsTheNextLinkWhenOneFails() {
+        for (String path : List.of("/b", "/d", "/e", "/f", "/g", "/h")) {
+            serveArticle(path, 0);
+        }
+        serve("/a", "application/pdf", "%PDF-1.4".getBytes(StandardCharsets.US_ASCII));
+        serve("/c", "application/pdf", "%PDF-1.4".getBytes(StandardCharsets.US_ASCII));
+
+        List<Document> documents = racing(0, 0)
+                .scrapeArticles(candidates("/a", "/b", "/c", "/d", "/e", "/f", "/g", "/h"));
+
+        // Each failure started one more link, and no link beyond was fetched
+        assertEquals(List.of("/b", "/d", "/e", "/f", "/g"), links(documents));
+        assertNull(requests.get("/h"));
+    }
+
+    @Test
+    void testRaceKeepsTheFirstExtractionsOnceThePatienceIsOver() {
+        serveArticle("/a", 3000);
+        for (String path : List.of("/b", "/c", "/d", "/e", "/f")) {
+            serveArticle(path, 0);
+        }
+
+        long started = System.nanoTime();
+        List<Document> documents = racing(1, 200).scrapeArticles(candidates("/a", "/b", "/c", "/d", "/e", "/f"));
+
+        assertEquals(List.of("/b", "/c", "/d", "/e", "/f"), links(documents));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    void testRaceWaitsForABetterRankedLinkDuringThePatience() {
+        serveArticle("/a", 300);
+        for (String path : List.of("/b", "/c", "/d", "/e", "/f")) {
+            serveArticle(path, 0);
+        }
+
+        List<Document> documents = racing(1, 5000).scrapeArticles(candidates("/a", "/b", "/c", "/d", "/e", "/f"));
+
+        // The best ranked link came in time, so the worst one is dropped
+        assertEquals(List.of("/a", "/b", "/c", "/d", "/e"), links(documents));
+    }
+
+    @Test
+    void testPageTimeoutCoversTheWholeDownload() {
+        // The headers come at once, then the body trickles in for seconds
+        server.createContext("/trickle", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 50; i++) {
+                    out.write("<p>texto</p>".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    Thread.sleep(100);
+                }
+            } catch (IOException | InterruptedException e) {
+                // The client gave up
+            }
+        });
+        NewsSearchService impatient = new NewsSearchService(new SerpApiConfig("key", base + "/search.json"),
+                new ScrapingConfig() {
+                    @Override
+                    public int getPageTimeoutMillis() {
+                        return 300;
+                    }
+                }, null, null);
+
+        long started = System.nanoTime();
+        assertThrows(HttpTimeoutException.class, () -> impatient.textOfPage(base + "/trickle"));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    void testReadsAtMostTheSizeCapOfAPage() throws Exception {
+        // The article is after 3 MB of markup, past the cap, so it is never read
+        String padding = "<!--" + "x".repeat(3 * 1024 * 1024) + "-->";
+        serve("/huge", "text/html", page(padding).getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(service.textOfPage(base + "/huge").contains("España"));
+        serve("/small", "text/html", page("<!-- x -->").getBytes(StandardCharsets.UTF_8));
+        assertTrue(service.textOfPage(base + "/small").contains("España"));
+    }
+}
@@ -0,0 +1,312 @@
+package com.veribot.service;
+
+import com.veribot.config.AzureOpenAIConfig;
+import com.veribot.config.ClaimIndexConfig;
+import com.veribot.config.LlmClientConfig;
+import com.veribot.config.LlmQuotaConfig;
+import com.veribot.config.PipelineConfig;
+import com.veribot.config.ScrapingConfig;
+import com.veribot.config.SerpApiConfig;
+import com.veribot.llm.AzureOpenAIClient;
+import com.veribot.llm.LlmPriority;
+import com.veribot.llm.LlmRouter;
+import com.veribot.model.ConversationSession;
+import com.veribot.model.NewsVerificationResult;
+import com.veribot.model.QueryUnderstanding;
+import com.veribot.store.ClaimIndex;
+import com.veribot.store.VerdictStore;
+
+import dev.langchain4j.data.document.Document;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NewsVerificationServiceTest {
+    private static final String ANALYSIS = "{\"summary\": \"Hubo un sismo en Lima\", \"truthfulness_percentage\": 85, "
+            + "\"justification\": \"Tres fuentes lo confirman\"}";
+
+    /**
+     * A deployment answering each prompt of the pipeline from a script, after a delay
+     * per question.
+     */
+    private static class ScriptedClient extends AzureOpenAIClient {
+        private static final Executor executor = Executors.newVirtualThreadPerTaskExecutor();
+        volatile String relevance = "LIKELY";
+        volatile long relevanceMillis;
+        volatile String intent = "NEW_EVENT";
+        volatile long intentMillis;
+        volatile String fused = "";
+        final AtomicInteger relevanceCalls = new AtomicInteger();
+
+        ScriptedClient() {
+            super(new AzureOpenAIConfig("http://127.0.0.1:9", "key", "stub", "2024-02-01"),
+                    new LlmClientConfig(), new LlmQuotaConfig());
+        }
+
+        @Override
+        public CompletableFuture<String> complete(String prompt, double temperature, LlmPriority priority) {
+            return CompletableFuture.supplyAsync(() -> {
+                if (prompt.contains("do all of these tasks")) {
+                    return fused;
+                }
+                if (prompt.contains("Classify the following query")) {
+                    relevanceCalls.incrementAndGet();
+                    sleep(relevanceMillis);
+                    return relevance;
+                }
+                if (prompt.contains("Determine if the user's question is")) {
+                    sleep(intentMillis);
+                    return intent;
+                }
+                if (prompt.contains("optimized search query")) {
+                    return "{\"search_query\": \"sismo Lima\", \"country\": \"Peru\"}";
+                }
+                if (prompt.contains("news verification agent")) {
+                    return ANALYSIS;
+                }
+                return "Sí, según las fuentes.";
+            }, executor);
+        }
+
+        @Override
+        public CompletableFuture<String> stream(String prompt, double temperature, Consumer<String> onToken,
+                LlmPriority priority) {
+            return complete(prompt, temperature, priority).thenApply(answer -> {
+                onToken.accept(answer);
+                return answer;
+            });
+        }
+
+        private static void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class StubSearch extends NewsSearchService {
+        volatile long searchMillis;
+        volatile boolean interrupted;
+
+        StubSearch() {
+            super(new SerpApiConfig("key", "http://127.0.0.1:9/search.json"), new ScrapingConfig(), null, null);
+        }
+
+        @Override
+        public List<Document> searchNews(String query, String country, String language) {
+            try {
+                Thread.sleep(searchMillis);
+            } catch (InterruptedException e) {
+                interrupted = true;
+                Thread.currentThread().interrupt();
+                return List.of();
+            }
+            return List.of(Document.from("Un sismo de magnitud 5 sacudió Lima."));
+        }
+    }
+
+    private final ScriptedClient client = new ScriptedClient();
+    private final StubSearch search = new StubSearch();
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void addRegistry() {
+        registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterEach
+    void removeRegistry() {
+        Metrics.removeRegistry(registry);
+        registry.close();
+    }
+
+    private NewsVerificationService service(PipelineConfig.UnderstandingMode mode) {
+        return service(mode, null);
+    }
+
+    private NewsVerificationService service(PipelineConfig.UnderstandingMode mode, ClaimIndex claimIndex) {
+        PipelineConfig config = new PipelineConfig() {
+            @Override
+            public UnderstandingMode getUnderstandingMode() {
+                return mode;
+            }
+        };
+        return new NewsVerificationService(new LlmRouter(client, null, null), search, config,
+                null, null, null, null, claimIndex, null);
+    }
+
+    /**
+     * Records the stages a verification reports.
+     */
+    private static class StageRecorder implements VerificationListener {
+        final List<String> stages = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onStage(String stage, String detail) {
+            stages.add(stage);
+        }
+    }
+
+    private double speculations(String outcome) {
+        Counter counter = registry.find("veribot.speculation").tag("outcome", outcome).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    @Test
+    void testSpeculativeSearchIsUsedForNews() {
+        search.searchMillis = 20;
+        client.relevanceMillis = 50;
+        StageRecorder listener = new StageRecorder();
+
+        NewsVerificationResult result = service(PipelineConfig.UnderstandingMode.SPECULATIVE)
+                .verifyNews("¿Hubo un sismo en Lima?", new ConversationSession(), listener);
+
+        assertEquals("Hubo un sismo en Lima", result.summary());
+        assertEquals(85, result.truthfulnessPercentage());
+        assertEquals(1, speculations("used"));
+        assertEquals(0, speculations("wasted"));
+        assertEquals(List.of("classified", "searching", "sources"), listener.stages.subList(0, 3));
+    }
+
+    @Test
+    void testWastedTimeIsHowLongTheDiscardedSearchRan() {
+        // The search is done long before the query turns out not to be news
+        search.searchMillis = 20;
+        client.relevance = "UNLIKELY";
+        client.relevanceMillis = 400;
+        StageRecorder listener = new StageRecorder();
+
+        NewsVerificationResult result = service(PipelineConfig.UnderstandingMode.SPECULATIVE)
+                .verifyNews("¿Cómo se instala Java?", new ConversationSession(), listener);
+
+        assertEquals(0, result.truthfulnessPercentage());
+        assertEquals(1, speculations("wasted"));
+        Timer wasted = registry.find("veribot.speculation.wasted").timer();
+        assertEquals(1, wasted.count());
+        assertTrue(wasted.max(TimeUnit.MILLISECONDS) < 300, "wasted " + wasted.max(TimeUnit.MILLISECONDS) + " ms");
+        // The user is never told about a search that was thrown away
+        assertEquals(List.of("classified"), listener.stages);
+    }
+
+    @Test
+    void testOnlyTheSearchIsWastedByAFollowUp() {
+        search.searchMillis = 5000;
+        client.intent = "SAME_EVENT";
+        client.intentMillis = 50;
+        client.relevanceMillis = 5000;
+        ConversationSession session = new ConversationSession();
+        session.updateWithNewsResult(new NewsVerificationResult("Hubo un sismo en Lima", 85, "Tres fuentes", List.of()));
+
+        long started = System.nanoTime();
+        NewsVerificationResult result = service(PipelineConfig.UnderstandingMode.SPECULATIVE)
+                .verifyNews("¿A qué hora fue?", session);
+
+        assertEquals("Sí, según las fuentes.", result.summary());
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(3));
+        assertTrue(search.interrupted);
+        // The relevance classification was cancelled too, but it was not speculative
+        assertEquals(1, speculations("wasted"));
+        assertEquals(0, speculations("used"));
+    }
+
+    @Test
+    void testSpeculativeNewEventIsAnsweredWithTheVerdictOfASimilarClaim() {
+        search.searchMillis = 5000;
+        ClaimIndex index = new ClaimIndex(new ClaimIndexConfig(true, 0.7, 360, 1.2, 0.75));
+        NewsVerificationResult past = new NewsVerificationResult("Hubo un sismo en Lima", 85, "Tres fuentes", List.of());
+        index.add(new VerdictStore.StoredVerdict(ClaimCoalescer.fingerprint("Hubo un sismo en Lima"),
+                "Hubo un sismo en Lima", Instant.now(), past));
+        ConversationSession session = new ConversationSession();
+        session.updateWithNewsResult(new NewsVerificationResult("Llueve en París", 90, "Dos fuentes", List.of()));
+
+        NewsVerificationResult result = service(PipelineConfig.UnderstandingMode.SPECULATIVE, index)
+                .verifyNews("¿Hubo un sismo en Lima?", session);
+
+        assertEquals(past, result);
+        assertTrue(search.interrupted);
+        assertEquals(1, speculations("wasted"));
+    }
+
+    @Test
+    void testFusedUnderstandingIsReadFromOneAnswer() {
+        client.fused = "```json\n{\"news_related\": true, \"search_query\": \" sismo Lima 05/10/2025 \", "
+                + "\"country\": \"Peru\", \"language\": \"ES\"}\n```";
+
+        QueryUnderstanding understanding = service(PipelineConfig.UnderstandingMode.FUSED)
+                .understandClaim("¿Hubo un sismo en Lima?");
+
+        assertEquals(new QueryUnderstanding(true, null, "sismo Lima 05/10/2025", "Peru", "es"), understanding);
+        assertEquals(0, client.relevanceCalls.get());
+
+        // A language that is not an ISO 639-1 code is left out
+        client.fused = "{\"news_related\": false, \"search_query\": \"java\", \"country\": \"Peru\", "
+                + "\"language\": \"spanish\"}";
+        understanding = service(PipelineConfig.UnderstandingMode.FUSED).understandClaim("¿Cómo se instala Java?");
+        assertFalse(understanding.newsRelated());
+        assertNull(understanding.languageCode());
+    }
+
+    @Test
+    void testFusedIntentIsNormalized() {
+        client.fused = "{\"news_related\": true, \"intent\": \" same_event \", \"search_query\": \"sismo\", "
+                + "\"country\": \"Peru\", \"language\": \"es\"}";
+        ConversationSession session = new ConversationSession();
+        session.updateWithNewsResult(new NewsVerificationResult("Hubo un sismo en Lima", 85, "Tres fuentes", List.of()));
+
+        NewsVerificationResult result = service(PipelineConfig.UnderstandingMode.FUSED)
+                .verifyNews("¿A qué hora fue?", session);
+
+        assertEquals("Sí, según las fuentes.", result.summary());
+
+        // Any other intent means the query is not about news
+        client.fused = client.fused.replace(" same_event ", "OTHER");
+        StageRecorder listener = new StageRecorder();
+        service(PipelineConfig.UnderstandingMode.FUSED).verifyNews("¿Qué tal?", session, listener);
+        assertEquals(List.of("classified"), listener.stages);
+    }
+
+    @Test
+    void testUnparsableFusedAnswerFallsBackToOneQuestionPerCall() {
+        client.fused = "No estoy seguro.";
+        client.relevance = "UNLIKELY";
+
+        QueryUnderstanding understanding = service(PipelineConfig.UnderstandingMode.FUSED)
+                .understandClaim("¿Cómo se instala Java?");
+
+        // UNLIKELY contains LIKELY, but it is a different label
+        assertFalse(understanding.newsRelated());
+        assertEquals(1, client.relevanceCalls.get());
+    }
+
+    @Test
+    void testRelevanceIsReadAsAWholeLabel() {
+        NewsVerificationService service = service(PipelineConfig.UnderstandingMode.STEPWISE);
+
+        client.relevance = "UNLIKELY";
+        assertFalse(service.understandClaim("¿Cómo se instala Java?").newsRelated());
+        client.relevance = "Likely.";
+        assertTrue(service.understandClaim("¿Hubo un sismo en Lima?").newsRelated());
+        // An answer with both labels is not trusted
+        client.relevance = "LIKELY or UNLIKELY";
+        assertFalse(service.understandClaim("¿Llovió en Cusco?").newsRelated());
+    }
+}
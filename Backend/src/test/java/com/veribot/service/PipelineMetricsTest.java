@@ -0,0 +1,55 @@
+package com.veribot.service;
+
+import com.veribot.model.ScrapeOutcome;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineMetricsTest {
+
+    @Test
+    void testStagesArePublishedAsHistograms() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        Metrics.addRegistry(registry);
+        try {
+            assertEquals("answer", PipelineMetrics.time("analyze", () -> "answer"));
+            assertThrows(IllegalStateException.class, () -> PipelineMetrics.time("analyze", () -> {
+                throw new IllegalStateException("failed");
+            }));
+            String link = "https://www.example.com/news/1";
+            PipelineMetrics.recordPage(link, ScrapeOutcome.OK, TimeUnit.MILLISECONDS.toNanos(300));
+            PipelineMetrics.recordParse(TimeUnit.MILLISECONDS.toNanos(20));
+
+            String scrape = registry.scrape();
+            assertTrue(scrape.contains("veribot_pipeline_stage_seconds_bucket{outcome=\"ok\",stage=\"analyze\",le=\"0.001\"}"));
+            assertTrue(scrape.contains("veribot_pipeline_stage_seconds_count{outcome=\"error\",stage=\"analyze\"} 1"));
+            assertTrue(scrape.contains("veribot_scrape_page_seconds_bucket{outcome=\"ok\",le=\"0.01\"} 0"));
+            // By domain, only the service-level buckets
+            String domain = "veribot_scrape_page_domain_seconds_bucket{domain=\"" + PipelineMetrics.domainTag(link)
+                    + "\",outcome=\"ok\",";
+            assertTrue(scrape.contains(domain + "le=\"1.0\"} 1"));
+            assertEquals(4, scrape.lines().filter(line -> line.startsWith(domain)).count());
+            assertTrue(scrape.contains("veribot_scrape_parse_seconds_bucket{le="));
+        } finally {
+            Metrics.removeRegistry(registry);
+            registry.close();
+        }
+    }
+
+    @Test
+    void testDomainTagsAreBounded() {
+        assertEquals("example.org", PipelineMetrics.domainTag("https://WWW.Example.org/a"));
+        assertEquals(PipelineMetrics.OTHER_DOMAIN, PipelineMetrics.domainTag("not a url"));
+        for (int i = 0; i < PipelineMetrics.MAX_DOMAINS; i++) {
+            PipelineMetrics.domainTag("https://site" + i + ".example/a");
+        }
+        assertEquals(PipelineMetrics.OTHER_DOMAIN, PipelineMetrics.domainTag("https://one-too-many.example/a"));
+        assertEquals("example.org", PipelineMetrics.domainTag("https://example.org/b"));
+    }
+}
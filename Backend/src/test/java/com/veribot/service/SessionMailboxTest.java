@@ -0,0 +1,148 @@
+package com.veribot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionMailboxTest {
+
+    @Test
+    void testRunsQueriesOfASessionOneAtATime() throws Exception {
+        SessionMailbox mailbox = new SessionMailbox("session");
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        List<CompletableFuture<String>> answers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String query = "query " + i;
+            answers.add(CompletableFuture.supplyAsync(() -> mailbox.submit(query, VerificationListener.NONE, events -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                order.add(query);
+                sleep(20);
+                running.decrementAndGet();
+                return "answer to " + query;
+            }), clients));
+            Thread.sleep(5);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("answer to query " + i, answers.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, maxRunning.get());
+        assertEquals(List.of("query 0", "query 1", "query 2", "query 3", "query 4"), order);
+    }
+
+    @Test
+    void testDuplicateQueryAttachesToTheOneInFlight() throws Exception {
+        SessionMailbox mailbox = new SessionMailbox("session");
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        List<String> followerStages = Collections.synchronizedList(new ArrayList<>());
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(
+                () -> mailbox.submit("Is the bridge closed?", VerificationListener.NONE, events -> {
+                    runs.incrementAndGet();
+                    events.onStage("searching", null);
+                    started.countDown();
+                    await(release);
+                    events.onStage("analyzing", null);
+                    return "answer";
+                }), clients);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        VerificationListener follower = new VerificationListener() {
+            @Override
+            public void onStage(String stage, String detail) {
+                followerStages.add(stage);
+            }
+        };
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(
+                () -> mailbox.submit("is the bridge closed", follower, events -> {
+                    runs.incrementAndGet();
+                    return "other answer";
+                }), clients);
+        Thread.sleep(50);
+        release.countDown();
+
+        assertEquals("answer", first.get(5, TimeUnit.SECONDS));
+        assertEquals("answer", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(List.of("searching", "analyzing"), followerStages);
+    }
+
+    @Test
+    void testStreamsOnlyWhenAListenerReadsTheTokens() {
+        SessionMailbox mailbox = new SessionMailbox("session");
+        assertEquals("false", mailbox.submit("Did it snow in Madrid?", VerificationListener.NONE,
+                events -> String.valueOf(events.wantsTokens())));
+
+        VerificationListener streaming = new VerificationListener() {
+        };
+        assertEquals("true", mailbox.submit("Did it snow in Lisbon?", streaming,
+                events -> String.valueOf(events.wantsTokens())));
+    }
+
+    @Test
+    void testQueryStopsWhenNoCallerWaitsForItAnyMore() throws Exception {
+        SessionMailbox mailbox = new SessionMailbox("session");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Function<VerificationListener, String> work = events -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "answer";
+        };
+
+        Thread first = Thread.ofVirtual().start(
+                () -> mailbox.submit("Is the bridge closed?", VerificationListener.NONE, work));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread second = Thread.ofVirtual().start(
+                () -> mailbox.submit("is the bridge closed", VerificationListener.NONE, work));
+        Thread.sleep(50);
+
+        // The second caller still waits, so the query goes on
+        first.interrupt();
+        first.join(5000);
+        assertFalse(interrupted.await(200, TimeUnit.MILLISECONDS));
+
+        second.interrupt();
+        second.join(5000);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertFalse(mailbox.isBusy());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
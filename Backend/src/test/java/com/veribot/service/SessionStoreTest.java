@@ -0,0 +1,119 @@
+package com.veribot.service;
+
+import com.veribot.MutableClock;
+import com.veribot.config.SessionConfig;
+import com.veribot.model.NewsVerificationResult;
+import com.veribot.model.UserContext;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionStoreTest {
+
+    private static SessionConfig config(int maxEntries, long maxBytes) {
+        return new SessionConfig() {
+            @Override
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            @Override
+            public long getMaxMemoryBytes() {
+                return maxBytes;
+            }
+
+            @Override
+            public long getTtlMinutes() {
+                return 30;
+            }
+        };
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedOverBounds() {
+        SessionStore store = SessionStore.create(config(2, 1_000_000));
+        UserContext a = store.getOrCreate("a");
+        store.getOrCreate("b");
+
+        // Using "a" again makes "b" the least recently used session
+        assertSame(a, store.getOrCreate("a"));
+        store.getOrCreate("c");
+        assertEquals(2, store.size());
+        assertSame(a, store.getOrCreate("a"));
+
+        // A conversation growing past the byte budget evicts the other sessions
+        SessionStore small = SessionStore.create(config(10, 3000));
+        small.getOrCreate("x");
+        UserContext y = small.getOrCreate("y");
+        y.getSession().updateWithNewsResult(new NewsVerificationResult("s".repeat(1000), 50, "j", List.of()));
+        small.updated(y);
+        assertEquals(1, small.size());
+        assertSame(y, small.getOrCreate("y"));
+        assertEquals(SessionStore.estimateBytes(y), small.bytes());
+    }
+
+    @Test
+    void testExpiresUnusedSessions() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-05-01T10:00:00Z"));
+        SessionStore store = SessionStore.create(config(10, 1_000_000), clock);
+        UserContext a = store.getOrCreate("a");
+        store.getOrCreate("b");
+
+        clock.advance(Duration.ofMinutes(20));
+        store.getOrCreate("a");
+        clock.advance(Duration.ofMinutes(15));
+        store.expire();
+
+        assertEquals(1, store.size());
+        assertSame(a, store.getOrCreate("a"));
+
+        clock.advance(Duration.ofMinutes(31));
+        assertNotSame(a, store.getOrCreate("a"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testKeepsSessionsWithAQueryInFlight() throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2025-05-01T10:00:00Z"));
+        SessionStore store = SessionStore.create(config(1, 1_000_000), clock);
+        UserContext busy = store.getOrCreate("busy");
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread query = Thread.ofVirtual().start(() -> busy.getMailbox().submit("¿Llovió en Lima?",
+                VerificationListener.NONE, listener -> {
+                    running.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "answer";
+                }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        // Over the bounds, and then past its time to live, the busy session stays
+        store.getOrCreate("other");
+        clock.advance(Duration.ofMinutes(31));
+        store.expire();
+        assertSame(busy, store.getOrCreate("busy"));
+
+        release.countDown();
+        query.join(5000);
+        // The mailbox forgets the query just after handing out its answer
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (busy.getMailbox().isBusy() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(busy.getMailbox().isBusy());
+        store.getOrCreate("next");
+        assertEquals(1, store.size());
+        assertNotSame(busy, store.getOrCreate("busy"));
+    }
+}
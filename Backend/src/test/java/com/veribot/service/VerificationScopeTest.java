@@ -0,0 +1,83 @@
+package com.veribot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerificationScopeTest {
+
+    @Test
+    void testCloseInterruptsAndWaitsForSubTasks() throws Exception {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AtomicBoolean ended = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+
+        VerificationScope scope = VerificationScope.open();
+        try {
+            assertSame(scope, VerificationScope.current());
+            scope.fork(() -> {
+                // A scope opened by a sub-task is a child of the scope
+                VerificationScope child = VerificationScope.open();
+                try {
+                    child.fork(() -> {
+                        started.countDown();
+                        try {
+                            Thread.sleep(10_000);
+                        } catch (InterruptedException e) {
+                            interrupted.set(true);
+                        }
+                        ended.set(true);
+                        return null;
+                    });
+                    Thread.sleep(10_000);
+                } finally {
+                    child.close();
+                }
+                return null;
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+        } finally {
+            scope.close();
+        }
+
+        assertTrue(interrupted.get());
+        assertTrue(ended.get());
+        assertNull(VerificationScope.current());
+    }
+
+    @Test
+    void testDeadlineCancelsSubTasksAndOwner() throws Exception {
+        long started = System.nanoTime();
+        VerificationScope scope = VerificationScope.open(100);
+        Future<String> fork;
+        boolean ownerInterrupted = false;
+        try {
+            fork = scope.fork(() -> {
+                Thread.sleep(10_000);
+                return "too late";
+            });
+            try {
+                fork.get();
+            } catch (InterruptedException e) {
+                ownerInterrupted = true;
+            } catch (ExecutionException e) {
+                // The fork, interrupted just after the owner, ended before the owner woke up
+                ownerInterrupted = Thread.currentThread().isInterrupted();
+            }
+        } finally {
+            scope.close();
+        }
+
+        assertTrue(ownerInterrupted);
+        assertTrue(scope.isDeadlineExceeded());
+        assertTrue(fork.isDone());
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+    }
+}
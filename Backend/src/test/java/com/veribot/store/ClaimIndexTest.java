@@ -0,0 +1,102 @@
+package com.veribot.store;
+
+import com.veribot.MutableClock;
+import com.veribot.config.ClaimIndexConfig;
+import com.veribot.model.NewsVerificationResult;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClaimIndexTest {
+    private static final Instant NOW = Instant.parse("2025-05-01T10:00:00Z");
+
+    private static final ClaimIndexConfig CONFIG = new ClaimIndexConfig(true, 0.7, 360, 1.2, 0.75);
+
+    private final ClaimIndex index = new ClaimIndex(CONFIG, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    void testFindsRephrasedClaim() {
+        index.add(verdict("¿Es cierto que subió la nafta?",
+                "El precio de la nafta aumentó un 5% en todo el país desde hoy.", NOW));
+        index.add(verdict("Llueve en París", "Se esperan lluvias intensas en París durante el fin de semana.", NOW));
+        index.add(verdict("Ganó Boca el superclásico", "Boca venció a River por 2 a 1 en la Bombonera.", NOW));
+
+        ClaimIndex.Match match = index.findSimilar("aumentó el precio de la nafta");
+        assertNotNull(match);
+        assertEquals("¿Es cierto que subió la nafta?", match.verdict().query());
+
+        assertNull(index.findSimilar("¿Bajó el precio del dólar en Chile?"));
+    }
+
+    @Test
+    void testReplacesVerdictOfSameFingerprintAndSkipsOldOnes() {
+        index.add(verdict("Subió la nafta", "Primera versión.", NOW.minus(Duration.ofDays(2))));
+        index.add(verdict("Llueve en París", "Se esperan lluvias intensas en París.", NOW.minus(Duration.ofDays(2))));
+        index.add(verdict("Subió la nafta", "Segunda versión.", NOW));
+
+        assertEquals(2, index.size());
+        List<ClaimIndex.Match> matches = index.search("subió la nafta", 5, Duration.ofDays(7));
+        assertEquals(1, matches.size());
+        assertEquals("Segunda versión.", matches.get(0).verdict().result().summary());
+
+        assertTrue(index.search("llueve en paris", 5, Duration.ofDays(1)).isEmpty());
+        assertEquals(1, index.search("llueve en paris", 5, Duration.ofDays(7)).size());
+    }
+
+    @Test
+    void testNegatedClaimIsNotAnsweredWithTheVerdictOfTheClaim() {
+        index.add(verdict("Milei ganó las elecciones", "Milei ganó la segunda vuelta con el 55% de los votos.", NOW));
+
+        assertNotNull(index.findSimilar("¿Ganó Milei las elecciones?"));
+        assertNull(index.findSimilar("Milei no ganó las elecciones"));
+        assertNull(index.findSimilar("Milei nunca ganó las elecciones"));
+        assertEquals(Set.of("not"), ClaimIndex.negations("Milei didn't win the elections"));
+
+        index.add(verdict("Milei no ganó las elecciones", "Milei sí ganó la segunda vuelta.", NOW));
+        assertEquals("Milei no ganó las elecciones", index.findSimilar("¿Milei no ganó las elecciones?").verdict().query());
+    }
+
+    @Test
+    void testContractedNegationIsNotReadAsAnotherWord() {
+        index.add(verdict("Argentina won the World Cup", "Argentina beat France on penalties in the final.", NOW));
+
+        // "won't" is not "won", the past of "win"
+        assertNull(index.findSimilar("Argentina won't win the World Cup"));
+        assertNotNull(index.findSimilar("Argentina won the World Cup?"));
+        assertEquals(Set.of("not"), ClaimIndex.negations("Argentina won’t win the World Cup"));
+        assertEquals(Set.of(), ClaimIndex.negations("Did Argentina win the World Cup?"));
+        assertEquals(Set.of(), ClaimIndex.negations("Argentina won the World Cup"));
+        assertEquals(Set.of("cannot"), ClaimIndex.negations("Argentina can't win"));
+    }
+
+    @Test
+    void testReclaimsReplacedAndExpiredVerdicts() {
+        MutableClock clock = new MutableClock(NOW);
+        ClaimIndex aging = new ClaimIndex(CONFIG, clock);
+        for (int i = 0; i < 1000; i++) {
+            // Each verdict is replaced once, and all but the last ones are too old by the end
+            aging.add(verdict("Claim number " + (i / 2), "Summary " + i, clock.instant()));
+            clock.advance(Duration.ofMinutes(1));
+        }
+
+        assertTrue(aging.size() <= 500);
+        assertTrue(aging.size() >= 180);
+        List<ClaimIndex.Match> matches = aging.search("claim number 499", 5, Duration.ofMinutes(360));
+        assertEquals("Summary 999", matches.get(0).verdict().result().summary());
+        assertTrue(aging.search("claim number 3", 5, Duration.ofDays(7)).stream()
+                .noneMatch(match -> match.verdict().query().equals("Claim number 3")));
+    }
+
+    private static VerdictStore.StoredVerdict verdict(String query, String summary, Instant createdAt) {
+        return new VerdictStore.StoredVerdict(String.join(" ", ClaimIndex.terms(query)), query, createdAt,
+                new NewsVerificationResult(summary, 80, "justification", List.of("a.com")));
+    }
+}
@@ -0,0 +1,127 @@
+package com.veribot.store;
+
+import com.veribot.model.NewsVerificationResult;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerdictStoreTest {
+    private static final Instant NOW = Instant.parse("2025-05-01T10:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReloadsLatestVerdictAfterRestart() throws Exception {
+        Path log = directory.resolve("verdicts.log");
+        try (VerdictStore store = VerdictStore.open(log, Duration.ofDays(30), 0.5, Clock.fixed(NOW, ZoneOffset.UTC))) {
+            store.append(stored("dolar subio", "¿Subió el dólar?", NOW, "first", 40));
+            store.append(stored("dolar subio", "subio el dolar", NOW, "second", 70));
+            store.append(stored("llueve en paris", "Llueve en París", NOW, "rain", 90));
+        }
+
+        try (VerdictStore store = VerdictStore.open(log, Duration.ofDays(30), 0.5, Clock.fixed(NOW, ZoneOffset.UTC))) {
+            assertEquals(2, store.size());
+            VerdictStore.StoredVerdict found = store.find("dolar subio", Duration.ofHours(1));
+            assertEquals("second", found.result().summary());
+            assertEquals(70, found.result().truthfulnessPercentage());
+            assertEquals(List.of("a.com", "b.com"), found.result().sourcesUsed());
+            assertEquals("subio el dolar", found.query());
+            assertEquals(NOW, found.createdAt());
+            assertNull(store.find("unknown", Duration.ofHours(1)));
+        }
+    }
+
+    @Test
+    void testCutsLogAtTornRecord() throws Exception {
+        Path log = directory.resolve("verdicts.log");
+        try (VerdictStore store = VerdictStore.open(log, Duration.ofDays(30), 0.5, Clock.fixed(NOW, ZoneOffset.UTC))) {
+            store.append(stored("first claim", "first claim", NOW, "first", 40));
+            store.append(stored("second claim", "second claim", NOW, "second", 70));
+        }
+
+        // Corrupt the last byte written, as a crash in the middle of the append would
+        byte[] bytes = Files.readAllBytes(log);
+        int last = bytes.length - 1;
+        while (bytes[last] == 0) {
+            last--;
+        }
+        bytes[last] ^= 0x5A;
+        Files.write(log, bytes);
+
+        try (VerdictStore store = VerdictStore.open(log, Duration.ofDays(30), 0.5, Clock.fixed(NOW, ZoneOffset.UTC))) {
+            assertEquals(1, store.size());
+            assertNotNull(store.find("first claim", Duration.ofHours(1)));
+            assertNull(store.find("second claim", Duration.ofHours(1)));
+            store.append(stored("third claim", "third claim", NOW, "third", 10));
+        }
+        try (VerdictStore store = VerdictStore.open(log, Duration.ofDays(30), 0.5, Clock.fixed(NOW, ZoneOffset.UTC))) {
+            assertEquals(2, store.size());
+            assertNotNull(store.find("third claim", Duration.ofHours(1)));
+        }
+    }
+
+    @Test
+    void testCompactionKeepsOnlyLiveVerdicts() throws Exception {
+        Path log = directory.resolve("verdicts.log");
+        try (VerdictStore store = VerdictStore.open(log, Duration.ofDays(30), 0.5, Clock.fixed(NOW, ZoneOffset.UTC))) {
+            store.append(stored("old claim", "old claim", NOW, "old", 50));
+            store.append(stored("claim", "claim", NOW, "first", 40));
+        }
+
+        Instant later = NOW.plus(Duration.ofDays(31));
+        try (VerdictStore store = VerdictStore.open(log, Duration.ofDays(30), 0.5, Clock.fixed(later, ZoneOffset.UTC))) {
+            store.append(stored("claim", "claim", later, "second", 60));
+            long before = store.bytes();
+            store.compact();
+
+            assertTrue(store.bytes() < before);
+            List<String> summaries = new ArrayList<>();
+            store.forEach(verdict -> summaries.add(verdict.result().summary()));
+            assertEquals(List.of("second"), summaries);
+        }
+        assertFalse(Files.exists(directory.resolve("verdicts.log.compact")));
+    }
+
+    @Test
+    void testCompactsInTheBackgroundWhenMostOfTheLogIsDead() throws Exception {
+        Path log = directory.resolve("verdicts.log");
+        String summary = "x".repeat(100_000);
+        try (VerdictStore store = VerdictStore.open(log, Duration.ofDays(30), 0.5, Clock.fixed(NOW, ZoneOffset.UTC))) {
+            // Each verdict supersedes the previous one, leaving 1.2 MB of dead records
+            for (int i = 0; i < 12; i++) {
+                store.append(stored("claim", "claim", NOW, summary + i, 50));
+            }
+            long before = store.bytes();
+            assertTrue(before > 1 << 20);
+
+            // The append only asked for it; the background pass compacts the log
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (store.bytes() >= before && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(store.bytes() < 200_000);
+            assertEquals(summary + 11, store.find("claim", Duration.ofHours(1)).result().summary());
+        }
+        try (VerdictStore store = VerdictStore.open(log, Duration.ofDays(30), 0.5, Clock.fixed(NOW, ZoneOffset.UTC))) {
+            assertEquals(1, store.size());
+        }
+    }
+
+    private static VerdictStore.StoredVerdict stored(String fingerprint, String query, Instant createdAt,
+            String summary, int truthfulness) {
+        return new VerdictStore.StoredVerdict(fingerprint, query, createdAt,
+                new NewsVerificationResult(summary, truthfulness, "justification", List.of("a.com", "b.com")));
+    }
+}